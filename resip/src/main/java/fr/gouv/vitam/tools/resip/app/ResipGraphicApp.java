@@ -45,6 +45,9 @@ import fr.gouv.vitam.tools.resip.sedaobjecteditor.components.viewers.DataObjectP
 import fr.gouv.vitam.tools.resip.sedaobjecteditor.components.viewers.DataObjectPackageTreeNode;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
 import fr.gouv.vitam.tools.sedalib.droid.DroidIdentifier;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.xml.CompactXMLData;
+import fr.gouv.vitam.tools.sedalib.xml.CompactXMLDataDiskStore;
 
 import javax.swing.*;
 import javax.swing.tree.TreePath;
@@ -209,6 +212,7 @@ public class ResipGraphicApp implements ActionListener, Runnable {
         try {
             mainWindow = new MainWindow(this);
             this.treatmentParameters = new TreatmentParameters(Prefs.getInstance());
+            applyXmlDataStorageMode();
             mainWindow.setVisible(true);
             this.searchDialog = new SearchDialog(mainWindow);
             this.technicalSearchDialog = new TechnicalSearchDialog(mainWindow);
@@ -231,6 +235,30 @@ public class ResipGraphicApp implements ActionListener, Runnable {
 
     }
 
+    /**
+     * Apply the ArchiveUnit XML blocks storage mode defined in treatment parameters, the disk store being
+     * created in the default work directory, renewed with each work and deleted at exit. Already stored blocks keep
+     * their mode.
+     */
+    private void applyXmlDataStorageMode() {
+        int mode = treatmentParameters.getXmlDataStorageMode();
+        try {
+            if ((mode == CompactXMLData.DISK_STORAGE) && (CompactXMLData.getDiskStore() == null)) {
+                CompactXMLDataDiskStore diskStore = new CompactXMLDataDiskStore(Paths.get(Prefs.getDefaultWorkDir()));
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    CompactXMLDataDiskStore lastDiskStore = CompactXMLData.getDiskStore();
+                    if (lastDiskStore != null)
+                        lastDiskStore.close();
+                }));
+                CompactXMLData.setDiskStore(diskStore);
+            }
+            CompactXMLData.setStorageMode(mode);
+        } catch (SEDALibException | IllegalArgumentException e) {
+            getGlobalLogger().log(ResipLogger.ERROR, "Mode de stockage des blocs XML [" + mode +
+                    "] impossible, le stockage standard est utilisé", e);
+        }
+    }
+
     /**
      * Gets app name.
      *
@@ -627,6 +655,8 @@ public class ResipGraphicApp implements ActionListener, Runnable {
      */
     public void setModifiedContext(boolean isModified) {
         modifiedWork = isModified;
+        if (isModified && (mainWindow != null))
+            mainWindow.treePane.markIndexesChanged();
         saveMenuItem.setEnabled(modifiedWork && (filenameWork != null));
     }
 
@@ -657,6 +687,66 @@ public class ResipGraphicApp implements ActionListener, Runnable {
         searchDialog.emptyDialog();
     }
 
+    /**
+     * Renew the XML blocks disk store, if any, when the work is replaced. The blocks of the new work are moved in a
+     * new store and the previous one, which also holds the blocks of the replaced work and the ones replaced by
+     * edits, is closed, so that its files don't grow for the whole application life.
+     *
+     * @param work the new work, or null if none
+     */
+    private void renewXmlDataDiskStore(Work work) {
+        CompactXMLDataDiskStore previousDiskStore = CompactXMLData.getDiskStore();
+        if (previousDiskStore == null)
+            return;
+        try {
+            CompactXMLDataDiskStore diskStore = new CompactXMLDataDiskStore(Paths.get(Prefs.getDefaultWorkDir()));
+            try {
+                if ((work != null) && (work.getDataObjectPackage() != null))
+                    work.getDataObjectPackage().moveXmlDataToDiskStore(diskStore);
+            } catch (SEDALibException e) {
+                diskStore.close();
+                throw e;
+            }
+            CompactXMLData.setDiskStore(diskStore);
+            previousDiskStore.close();
+        } catch (SEDALibException e) {
+            getGlobalLogger().log(ResipLogger.STEP, "Resip.Graphic: Erreur de renouvellement du stockage disque " +
+                    "des blocs XML, le stockage actuel est conservé", e);
+        }
+    }
+
+    /**
+     * Sets the current work, closing the content sources still read by the replaced one, and renewing the XML
+     * blocks disk store.
+     *
+     * @param work the work, or null if none
+     */
+    public void setCurrentWork(Work work) {
+        if ((currentWork != null) && (currentWork != work) && (currentWork.getDataObjectPackage() != null)
+                && (currentWork.getDataObjectPackage() != (work == null ? null : work.getDataObjectPackage()))) {
+            try {
+                currentWork.getDataObjectPackage().closeContentSources();
+            } catch (SEDALibException e) {
+                getGlobalLogger().log(ResipLogger.STEP, "Resip.Graphic: Erreur de fermeture des fichiers sources du " +
+                        "contexte remplacé", e);
+            }
+            renewXmlDataDiskStore(work);
+        }
+        currentWork = work;
+    }
+
+    /**
+     * Checks if a file is a manifest file still read by the current work, and then must not be deleted.
+     *
+     * @param file the file
+     * @return true, if it is a used manifest file
+     */
+    public boolean isCurrentWorkManifestFile(File file) {
+        Work work = currentWork;
+        return (work != null) && (work.getDataObjectPackage() != null)
+                && work.getDataObjectPackage().isUsedManifestFile(file.toPath());
+    }
+
     /**
      * Sets filename work.
      *
@@ -696,7 +786,7 @@ public class ResipGraphicApp implements ActionListener, Runnable {
             if (fileChooser.showOpenDialog(mainWindow) == JFileChooser.APPROVE_OPTION) {
                 mainWindow.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
                 filename = fileChooser.getSelectedFile().getCanonicalPath();
-                currentWork = Work.createFromFile(filename);
+                setCurrentWork(Work.createFromFile(filename));
                 getGlobalLogger().log(ResipLogger.GLOBAL, "Fichier [" + filename + "] chargé",null);
                 mainWindow.load();
                 mainWindow.setCursor(Cursor.getDefaultCursor());
@@ -781,7 +871,7 @@ public class ResipGraphicApp implements ActionListener, Runnable {
                     null) != OK_DIALOG)
                 return;
 
-            currentWork = null;
+            setCurrentWork(null);
             setFilenameWork(null);
             setModifiedContext(false);
             setContextLoaded(false);
@@ -815,6 +905,7 @@ public class ResipGraphicApp implements ActionListener, Runnable {
                 prefsDialog.ip.toPrefs(Prefs.getInstance());
                 Prefs.getInstance().save();
                 treatmentParameters = prefsDialog.tp;
+                applyXmlDataStorageMode();
                 ResipLogger.createGlobalLogger(prefsDialog.cc.getWorkDir() + File.separator + "log.txt",
                         getGlobalLogger().getProgressLogLevel());
             }
@@ -0,0 +1,683 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.resip.data;
+
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnitTraversal;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.core.PhysicalDataObject;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogIfStep;
+
+/**
+ * The Class DuplicatesFinder.
+ * <p>
+ * Find the similar DataObjectGroups of a DataObjectPackage, that is to say those with the same logbook and, depending
+ * on the comparison options, the same BinaryDataObjects contents and/or filenames and the same PhysicalDataObjects
+ * metadata, whatever the order of the DataObjects in the group.
+ * <p>
+ * Each DataObjectGroup is reduced, in parallel, to a 128 bits fingerprint hashing its sorted comparison keys, and
+ * groups are then made with a hash table on these fingerprints. Groups are finally ordered, with their DataObjectGroups
+ * and ArchiveUnits, in the ArchiveUnit tree walk order in one traversal.
+ * <p>
+ * The content of a BinaryDataObject is compared by its MessageDigest. When it has none, its file is compared to the
+ * other files without MessageDigest with the same size, first by a hash of the beginning of the file and then, if
+ * still needed, by a hash of the whole file. A BinaryDataObject without MessageDigest and without readable file is
+ * never similar to another one.
+ */
+public class DuplicatesFinder {
+
+    /**
+     * The number of DataObjectGroups or files handled by one worker thread task.
+     */
+    private static final int RANGE_SIZE = 256;
+
+    /**
+     * The number of bytes at the beginning of a file hashed before comparing whole files.
+     */
+    static final int PARTIAL_HASH_SIZE = 65536;
+
+    /**
+     * The size of BinaryDataObjects whose file size is not known.
+     */
+    private static final long UNKNOWN_SIZE = -1;
+
+    /**
+     * The worker threads counter, used for thread names.
+     */
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    /**
+     * The range task interface, processing the elements from start (inclusive) to end (exclusive).
+     */
+    private interface RangeTask {
+        /**
+         * Process a range of elements.
+         *
+         * @param start the first element index
+         * @param end   the index after the last element
+         * @throws SEDALibException     if the process has failed
+         * @throws InterruptedException if the process is interrupted
+         */
+        void run(int start, int end) throws SEDALibException, InterruptedException;
+    }
+
+    /**
+     * The DataObjectPackage.
+     */
+    private final DataObjectPackage dataObjectPackage;
+
+    /**
+     * The comparison options.
+     */
+    private final boolean binaryHash;
+    private final boolean binaryFilename;
+    private final boolean physicalAllMD;
+
+    /**
+     * The number of worker threads.
+     */
+    private int threadCount;
+
+    /**
+     * The progress logger, or null if none.
+     */
+    private SEDALibProgressLogger spl;
+
+    /**
+     * The content key by BinaryDataObject without MessageDigest, when similar to at least another one.
+     */
+    private HashMap<BinaryDataObject, String> contentKeyMap;
+
+    /**
+     * The number of partially and fully hashed files.
+     */
+    private int partialHashCount;
+    private int fullHashCount;
+
+    /**
+     * The result maps, by group fingerprint.
+     */
+    private LinkedHashMap<String, List<DataObjectGroup>> dogByFingerprintMap;
+    private HashMap<String, List<ArchiveUnit>> auByFingerprintMap;
+
+    /**
+     * Instantiates a new duplicates finder.
+     *
+     * @param dataObjectPackage the DataObjectPackage
+     * @param binaryHash        the BinaryDataObjects content comparison flag
+     * @param binaryFilename    the BinaryDataObjects filename comparison flag
+     * @param physicalAllMD     the PhysicalDataObjects metadata comparison flag
+     */
+    public DuplicatesFinder(DataObjectPackage dataObjectPackage, boolean binaryHash, boolean binaryFilename,
+                            boolean physicalAllMD) {
+        this.dataObjectPackage = dataObjectPackage;
+        this.binaryHash = binaryHash;
+        this.binaryFilename = binaryFilename;
+        this.physicalAllMD = physicalAllMD;
+        this.threadCount = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Find the similar DataObjectGroups.
+     *
+     * @throws SEDALibException     if the search has failed
+     * @throws InterruptedException if the search is interrupted
+     */
+    public void find() throws SEDALibException, InterruptedException {
+        List<DataObjectGroup> dogList =
+                new ArrayList<DataObjectGroup>(dataObjectPackage.getDogInDataObjectPackageIdMap().values());
+        contentKeyMap = new HashMap<BinaryDataObject, String>();
+        partialHashCount = 0;
+        fullHashCount = 0;
+        if (binaryHash)
+            computeContentKeys(dogList);
+
+        long[] fingerprints = new long[2 * dogList.size()];
+        runByRanges(dogList.size(), (start, end) -> {
+            MessageDigest messageDigest = newMessageDigest();
+            for (int i = start; i < end; i++)
+                computeFingerprint(dogList.get(i), messageDigest, fingerprints, i);
+        }, " groupes d'objets comparés");
+        sortByTree(dogList, fingerprints, groupByFingerprint(fingerprints, dogList.size()));
+    }
+
+    /**
+     * Compute the content keys of the BinaryDataObjects without MessageDigest, by size, then partial hash and then
+     * full hash, each step being done only for the files still similar to another one.
+     *
+     * @param dogList the DataObjectGroups list
+     * @throws SEDALibException     if the hash has failed
+     * @throws InterruptedException if the hash is interrupted
+     */
+    private void computeContentKeys(List<DataObjectGroup> dogList) throws SEDALibException, InterruptedException {
+        HashMap<Long, List<BinaryDataObject>> bdoBySizeMap = new HashMap<Long, List<BinaryDataObject>>();
+        for (DataObjectGroup dog : dogList) {
+            for (BinaryDataObject bdo : dog.getBinaryDataObjectList()) {
+                if ((bdo.getOnDiskPath() != null) && ((bdo.messageDigest == null)
+                        || (bdo.messageDigest.getValue() == null)))
+                    bdoBySizeMap.computeIfAbsent(getContentSize(bdo), size -> new ArrayList<BinaryDataObject>())
+                            .add(bdo);
+            }
+        }
+        List<BinaryDataObject> candidates = new ArrayList<BinaryDataObject>();
+        for (List<BinaryDataObject> bdoList : bdoBySizeMap.values())
+            if (bdoList.size() > 1)
+                candidates.addAll(bdoList);
+        if (candidates.isEmpty())
+            return;
+
+        String[] partialHashes = hashContents(candidates, PARTIAL_HASH_SIZE);
+        partialHashCount = candidates.size();
+        HashMap<String, List<BinaryDataObject>> bdoByPartialKeyMap = new HashMap<String, List<BinaryDataObject>>();
+        for (int i = 0; i < candidates.size(); i++)
+            if (partialHashes[i] != null)
+                bdoByPartialKeyMap.computeIfAbsent("H" + getContentSize(candidates.get(i)) + ":" + partialHashes[i],
+                        key -> new ArrayList<BinaryDataObject>()).add(candidates.get(i));
+        candidates.clear();
+        for (Map.Entry<String, List<BinaryDataObject>> e : bdoByPartialKeyMap.entrySet()) {
+            if (e.getValue().size() < 2)
+                continue;
+            // a partial hash without '+' is the hash of the whole file
+            if (e.getKey().endsWith("+"))
+                candidates.addAll(e.getValue());
+            else
+                for (BinaryDataObject bdo : e.getValue())
+                    contentKeyMap.put(bdo, e.getKey());
+        }
+        if (candidates.isEmpty())
+            return;
+
+        String[] fullHashes = hashContents(candidates, Long.MAX_VALUE);
+        fullHashCount = candidates.size();
+        for (int i = 0; i < candidates.size(); i++)
+            if (fullHashes[i] != null)
+                contentKeyMap.put(candidates.get(i), "H" + getContentSize(candidates.get(i)) + ":" + fullHashes[i]);
+    }
+
+    /**
+     * Gets the content size of a BinaryDataObject, from its file if on disk, else from its metadata.
+     *
+     * @param bdo the BinaryDataObject
+     * @return the content size, or UNKNOWN_SIZE
+     */
+    private long getContentSize(BinaryDataObject bdo) {
+        try {
+            if (Files.isRegularFile(bdo.getOnDiskPath()))
+                return Files.size(bdo.getOnDiskPath());
+        } catch (IOException ignored) {
+            // then try the metadata
+        }
+        if ((bdo.size != null) && (bdo.size.getValue() != null))
+            return bdo.size.getValue();
+        return UNKNOWN_SIZE;
+    }
+
+    /**
+     * Hash in parallel the beginning of the BinaryDataObjects contents. The files that can't be read are logged and
+     * have no hash.
+     *
+     * @param bdoList the BinaryDataObjects list
+     * @param limit   the max number of bytes hashed by file
+     * @return the hexadecimal hashes, in the list order, followed by '+' when the content is longer than the limit,
+     * or null for files that can't be read
+     * @throws SEDALibException     if the hash has failed
+     * @throws InterruptedException if the hash is interrupted
+     */
+    private String[] hashContents(List<BinaryDataObject> bdoList, long limit)
+            throws SEDALibException, InterruptedException {
+        String[] hashes = new String[bdoList.size()];
+        Exception[] exceptions = new Exception[bdoList.size()];
+        runByRanges(bdoList.size(), (start, end) -> {
+            MessageDigest messageDigest = newMessageDigest();
+            byte[] buffer = new byte[PARTIAL_HASH_SIZE];
+            for (int i = start; i < end; i++) {
+                try {
+                    hashes[i] = hashContent(bdoList.get(i), messageDigest, buffer, limit);
+                } catch (SEDALibException | IOException e) {
+                    exceptions[i] = e;
+                }
+            }
+        }, " fichiers sans empreinte comparés");
+        for (int i = 0; i < bdoList.size(); i++)
+            if (exceptions[i] != null)
+                doProgressLog(spl, SEDALibProgressLogger.OBJECTS_WARNINGS, "resip: fichier du BinaryDataObject ["
+                        + bdoList.get(i).getInDataObjectPackageId() + "] illisible, il n'est pas comparé", exceptions[i]);
+        return hashes;
+    }
+
+    /**
+     * Hash the beginning of a BinaryDataObject content.
+     *
+     * @param bdo           the BinaryDataObject
+     * @param messageDigest the message digest
+     * @param buffer        the read buffer
+     * @param limit         the max number of bytes hashed
+     * @return the hexadecimal hash, followed by '+' when the content is longer than the limit
+     * @throws SEDALibException if the file can't be opened
+     * @throws IOException      if the file can't be read
+     */
+    private String hashContent(BinaryDataObject bdo, MessageDigest messageDigest, byte[] buffer, long limit)
+            throws SEDALibException, IOException {
+        long remaining = limit;
+        boolean truncated = false;
+        messageDigest.reset();
+        try (InputStream is = bdo.getInputStream()) {
+            int read;
+            while ((read = is.read(buffer, 0, (int) Math.min(buffer.length, remaining))) > 0) {
+                messageDigest.update(buffer, 0, read);
+                remaining -= read;
+                if ((remaining == 0) && (is.read() != -1)) {
+                    truncated = true;
+                    break;
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : messageDigest.digest())
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        if (truncated)
+            sb.append('+');
+        return sb.toString();
+    }
+
+    /**
+     * Compute the fingerprint of a DataObjectGroup, that is to say the first 128 bits of the hash of its logbook and
+     * of its sorted BinaryDataObjects and PhysicalDataObjects comparison keys.
+     *
+     * @param dog           the DataObjectGroup
+     * @param messageDigest the message digest
+     * @param fingerprints  the fingerprints array, two longs by DataObjectGroup
+     * @param index         the DataObjectGroup index
+     * @throws SEDALibException if the PhysicalDataObject metadata can't be exported
+     */
+    private void computeFingerprint(DataObjectGroup dog, MessageDigest messageDigest, long[] fingerprints, int index)
+            throws SEDALibException {
+        messageDigest.reset();
+        updateDigest(messageDigest, dog.logBook == null ? "" : dog.logBook.toString());
+        if (binaryHash || binaryFilename) {
+            List<String> keys = new ArrayList<String>(dog.getBinaryDataObjectList().size());
+            for (BinaryDataObject bdo : dog.getBinaryDataObjectList()) {
+                String filename = (bdo.fileInfo == null ? null : bdo.fileInfo.getSimpleMetadata("Filename"));
+                keys.add((binaryHash ? getContentKey(bdo) : "") +
+                        (binaryFilename ? (filename == null ? "\u0001" : "\u0000" + filename) : ""));
+            }
+            updateDigest(messageDigest, keys);
+        }
+        if (physicalAllMD) {
+            List<String> keys = new ArrayList<String>(dog.getPhysicalDataObjectList().size());
+            for (PhysicalDataObject pdo : dog.getPhysicalDataObjectList()) {
+                String fragments = pdo.toSedaXmlFragments();
+                keys.add(fragments == null ? "" : fragments);
+            }
+            updateDigest(messageDigest, keys);
+        }
+        byte[] digest = messageDigest.digest();
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; i++) {
+            high = (high << 8) | (digest[i] & 0xFF);
+            low = (low << 8) | (digest[i + 8] & 0xFF);
+        }
+        fingerprints[2 * index] = high;
+        fingerprints[2 * index + 1] = low;
+    }
+
+    /**
+     * Gets the content comparison key of a BinaryDataObject.
+     *
+     * @param bdo the BinaryDataObject
+     * @return the content key, unique to this BinaryDataObject if not similar to any other
+     */
+    private String getContentKey(BinaryDataObject bdo) {
+        if ((bdo.messageDigest != null) && (bdo.messageDigest.getValue() != null))
+            return "D" + bdo.messageDigest.getValue();
+        String contentKey = contentKeyMap.get(bdo);
+        if (contentKey == null)
+            return "U" + bdo.getInDataObjectPackageId();
+        return contentKey;
+    }
+
+    /**
+     * Update the message digest with a length prefixed string.
+     *
+     * @param messageDigest the message digest
+     * @param value         the value
+     */
+    private static void updateDigest(MessageDigest messageDigest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        updateDigest(messageDigest, bytes.length);
+        messageDigest.update(bytes);
+    }
+
+    /**
+     * Update the message digest with an int.
+     *
+     * @param messageDigest the message digest
+     * @param value         the value
+     */
+    private static void updateDigest(MessageDigest messageDigest, int value) {
+        messageDigest.update((byte) (value >>> 24));
+        messageDigest.update((byte) (value >>> 16));
+        messageDigest.update((byte) (value >>> 8));
+        messageDigest.update((byte) value);
+    }
+
+    /**
+     * Update the message digest with the sorted values of a list, whose order is then not significant.
+     *
+     * @param messageDigest the message digest
+     * @param values        the values list, sorted by this method
+     */
+    private static void updateDigest(MessageDigest messageDigest, List<String> values) {
+        Collections.sort(values);
+        updateDigest(messageDigest, values.size());
+        for (String value : values)
+            updateDigest(messageDigest, value);
+    }
+
+    /**
+     * Group the DataObjectGroups by fingerprint, in an open addressing hash table.
+     *
+     * @param fingerprints the fingerprints array, two longs by DataObjectGroup
+     * @param count        the number of DataObjectGroups
+     * @return the group of each DataObjectGroup, which is the index of the first DataObjectGroup with the same
+     * fingerprint
+     */
+    private static int[] groupByFingerprint(long[] fingerprints, int count) {
+        int mask = (Integer.highestOneBit(Math.max(1, count)) << 2) - 1;
+        // index + 1 of the first DataObjectGroup of the slot, or 0 if empty
+        int[] slots = new int[mask + 1];
+        int[] groups = new int[count];
+        for (int i = 0; i < count; i++) {
+            int slot = (int) fingerprints[2 * i + 1] & mask;
+            while (true) {
+                int first = slots[slot] - 1;
+                if (first < 0) {
+                    slots[slot] = i + 1;
+                    groups[i] = i;
+                    break;
+                }
+                if ((fingerprints[2 * first] == fingerprints[2 * i])
+                        && (fingerprints[2 * first + 1] == fingerprints[2 * i + 1])) {
+                    groups[i] = first;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Browse the ArchiveUnit tree to create the DataObjectGroups and ArchiveUnits lists of each group in the natural
+     * order of ArchiveUnit tree browsing, and keep the groups used by more than one ArchiveUnit.
+     *
+     * @param dogList      the DataObjectGroups list
+     * @param fingerprints the fingerprints array, two longs by DataObjectGroup
+     * @param groups       the group of each DataObjectGroup
+     * @throws SEDALibException     if the traversal has failed
+     * @throws InterruptedException if the traversal is interrupted
+     */
+    private void sortByTree(List<DataObjectGroup> dogList, long[] fingerprints, int[] groups)
+            throws SEDALibException, InterruptedException {
+        HashMap<DataObjectGroup, Integer> dogIndexMap = new HashMap<DataObjectGroup, Integer>(dogList.size() * 2);
+        for (int i = 0; i < dogList.size(); i++)
+            dogIndexMap.put(dogList.get(i), i);
+        boolean[] sortedFlags = new boolean[dogList.size()];
+        HashMap<Integer, List<DataObjectGroup>> dogListByGroupMap = new HashMap<Integer, List<DataObjectGroup>>();
+        LinkedHashMap<Integer, List<ArchiveUnit>> auListByGroupMap = new LinkedHashMap<Integer, List<ArchiveUnit>>();
+        new ArchiveUnitTraversal(dataObjectPackage).traverse(au -> {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            for (DataObject dataObject : au.getDataObjectRefList().getDataObjectList()) {
+                Integer index = (dataObject instanceof DataObjectGroup ? dogIndexMap.get(dataObject) : null);
+                if (index == null)
+                    continue;
+                List<ArchiveUnit> auList = auListByGroupMap.get(groups[index]);
+                if (auList == null) {
+                    auList = new ArrayList<ArchiveUnit>();
+                    auListByGroupMap.put(groups[index], auList);
+                    dogListByGroupMap.put(groups[index], new ArrayList<DataObjectGroup>());
+                }
+                auList.add(au);
+                if (!sortedFlags[index]) {
+                    sortedFlags[index] = true;
+                    dogListByGroupMap.get(groups[index]).add((DataObjectGroup) dataObject);
+                }
+            }
+            return true;
+        });
+
+        dogByFingerprintMap = new LinkedHashMap<String, List<DataObjectGroup>>();
+        auByFingerprintMap = new HashMap<String, List<ArchiveUnit>>();
+        for (Map.Entry<Integer, List<ArchiveUnit>> e : auListByGroupMap.entrySet()) {
+            if (e.getValue().size() < 2)
+                continue;
+            String fingerprint = String.format("%016x%016x", fingerprints[2 * e.getKey()],
+                    fingerprints[2 * e.getKey() + 1]);
+            dogByFingerprintMap.put(fingerprint, dogListByGroupMap.get(e.getKey()));
+            auByFingerprintMap.put(fingerprint, e.getValue());
+        }
+    }
+
+    /**
+     * Run a task on ranges of elements, in parallel if more than one worker thread, and log progress.
+     *
+     * @param count       the number of elements
+     * @param rangeTask   the range task
+     * @param progressLog the progress log, after the count of processed elements
+     * @throws SEDALibException     if the task has failed
+     * @throws InterruptedException if the task is interrupted
+     */
+    private void runByRanges(int count, RangeTask rangeTask, String progressLog)
+            throws SEDALibException, InterruptedException {
+        int counter = 0;
+        if ((threadCount <= 1) || (count <= RANGE_SIZE)) {
+            for (int start = 0; start < count; start += RANGE_SIZE) {
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                rangeTask.run(start, Math.min(count, start + RANGE_SIZE));
+                counter = logProgress(counter, Math.min(count, start + RANGE_SIZE), progressLog);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, r -> {
+            Thread t = new Thread(r, "resip-duplicates-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<?>> inProgressFutures = new ArrayDeque<Future<?>>();
+        try {
+            for (int start = 0; start < count; start += RANGE_SIZE) {
+                if (inProgressFutures.size() >= 2 * threadCount) {
+                    waitFirstInProgress(inProgressFutures);
+                    counter = logProgress(counter, Math.min(count, counter + RANGE_SIZE), progressLog);
+                }
+                int rangeStart = start;
+                inProgressFutures.add(executor.submit(() -> {
+                    rangeTask.run(rangeStart, Math.min(count, rangeStart + RANGE_SIZE));
+                    return null;
+                }));
+            }
+            while (!inProgressFutures.isEmpty()) {
+                waitFirstInProgress(inProgressFutures);
+                counter = logProgress(counter, Math.min(count, counter + RANGE_SIZE), progressLog);
+            }
+        } finally {
+            // cancel all pending tasks if any (exception or interruption)
+            executor.shutdownNow();
+            // wait for running ones, as they fill the results and read the files
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Wait for the end of the first task in progress and remove it from in progress list.
+     *
+     * @param inProgressFutures the in progress task futures
+     * @throws SEDALibException     if the task has failed
+     * @throws InterruptedException if the task is interrupted
+     */
+    private static void waitFirstInProgress(Deque<Future<?>> inProgressFutures)
+            throws SEDALibException, InterruptedException {
+        try {
+            inProgressFutures.poll().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SEDALibException)
+                throw (SEDALibException) e.getCause();
+            if (e.getCause() instanceof InterruptedException)
+                throw (InterruptedException) e.getCause();
+            throw new SEDALibException("Erreur durant la recherche de doublons", e.getCause());
+        } catch (CancellationException e) {
+            throw new InterruptedException("Recherche de doublons annulée");
+        }
+    }
+
+    /**
+     * Log progress for the processed elements.
+     *
+     * @param counter     the number of elements already logged
+     * @param processed   the number of processed elements
+     * @param progressLog the progress log, after the count of processed elements
+     * @return the number of processed elements
+     * @throws InterruptedException if interrupted
+     */
+    private int logProgress(int counter, int processed, String progressLog) throws InterruptedException {
+        for (int i = counter + 1; i <= processed; i++)
+            doProgressLogIfStep(spl, SEDALibProgressLogger.OBJECTS, i, "resip: " + i + progressLog);
+        return processed;
+    }
+
+    /**
+     * Create a new message digest for the hashes.
+     *
+     * @return the message digest
+     * @throws SEDALibException if the algorithm is not available
+     */
+    private static MessageDigest newMessageDigest() throws SEDALibException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new SEDALibException("Algorithme de hachage SHA-256 indisponible", e);
+        }
+    }
+
+    /**
+     * Gets the number of worker threads.
+     *
+     * @return the thread count
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Sets the number of worker threads.
+     *
+     * @param threadCount the thread count, 1 for a sequential search
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Sets the progress logger.
+     *
+     * @param spl the progress logger, or null if none
+     */
+    public void setProgressLogger(SEDALibProgressLogger spl) {
+        this.spl = spl;
+    }
+
+    /**
+     * Gets the number of files hashed on their beginning during the last search.
+     *
+     * @return the partial hash count
+     */
+    public int getPartialHashCount() {
+        return partialHashCount;
+    }
+
+    /**
+     * Gets the number of files fully hashed during the last search.
+     *
+     * @return the full hash count
+     */
+    public int getFullHashCount() {
+        return fullHashCount;
+    }
+
+    /**
+     * Gets the similar DataObjectGroups lists by group fingerprint, in the ArchiveUnit tree walk order.
+     *
+     * @return the DataObjectGroups by fingerprint map
+     */
+    public LinkedHashMap<String, List<DataObjectGroup>> getDogByFingerprintMap() {
+        return dogByFingerprintMap;
+    }
+
+    /**
+     * Gets the ArchiveUnits lists using the similar DataObjectGroups by group fingerprint, in the ArchiveUnit tree
+     * walk order.
+     *
+     * @return the ArchiveUnits by fingerprint map
+     */
+    public HashMap<String, List<ArchiveUnit>> getAuByFingerprintMap() {
+        return auByFingerprintMap;
+    }
+}
@@ -0,0 +1,653 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.resip.data;
+
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.core.PhysicalDataObject;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * The Class SearchIndex.
+ * <p>
+ * In memory inverted index of the ArchiveUnits texts searched by the {@link fr.gouv.vitam.tools.resip.threads.SearchThread}:
+ * the title displayed in the tree, the ids of the ArchiveUnit and of its DataObjects, and the Content metadata. Each
+ * text is case folded and cut in terms, which are the runs of letters and digits, and each term has the sorted list
+ * of the ArchiveUnits where it appears. The term dictionary of each field has also its trigram index, to find quickly
+ * the terms containing a given string.
+ * <p>
+ * A searched string is cut in words the same way, the inner words being looked up as exact terms, the first one as a
+ * term suffix and the last one as a term prefix, so that term, prefix and phrase searches are answered from the term
+ * dictionary without reading the ArchiveUnits. For a regular expression, the literal strings that any match has to
+ * contain are searched the same way.
+ * <p>
+ * The index only gives candidates, a superset of the ArchiveUnits whose text contains the searched string, on which
+ * the exact search has still to be done. ArchiveUnits changed since their indexation are marked dirty and stay
+ * candidates until they are indexed again by the background indexing thread, and terms which disappeared from an
+ * ArchiveUnit are not removed from the postings.
+ */
+public class SearchIndex {
+
+    /**
+     * The title field, as displayed in the tree.
+     */
+    public static final int TITLE_FIELD = 0;
+
+    /**
+     * The id field, with the ids of the ArchiveUnit and of its DataObjects.
+     */
+    public static final int ID_FIELD = 1;
+
+    /**
+     * The metadata field, with the Content XML.
+     */
+    public static final int METADATA_FIELD = 2;
+
+    /**
+     * The fields count.
+     */
+    private static final int FIELD_COUNT = 3;
+
+    /**
+     * The number of ArchiveUnits indexed between two index locks.
+     */
+    private static final int INDEXING_BATCH_SIZE = 1000;
+
+    /**
+     * The indexing sequence of the ArchiveUnits which texts could not be read, and which are always candidates.
+     */
+    private static final int NOT_INDEXED_SEQUENCE = Integer.MAX_VALUE;
+
+    /**
+     * The indexing thread counter, used to name the threads.
+     */
+    private static final AtomicInteger indexingThreadCounter = new AtomicInteger();
+
+    /**
+     * Growable sorted list of distinct ints.
+     */
+    private static class IntList {
+        int[] values = new int[2];
+        int size = 0;
+
+        void insert(int value) {
+            int pos;
+            if ((size == 0) || (values[size - 1] < value))
+                pos = size;
+            else {
+                pos = Arrays.binarySearch(values, 0, size, value);
+                if (pos >= 0)
+                    return;
+                pos = -pos - 1;
+            }
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            System.arraycopy(values, pos, values, pos + 1, size - pos);
+            values[pos] = value;
+            size++;
+        }
+    }
+
+    /**
+     * Index of one field, with the term dictionary, the postings of each term and the trigram index of the terms.
+     */
+    private static class FieldIndex {
+        HashMap<String, Integer> termOrdinalMap = new HashMap<String, Integer>();
+        ArrayList<String> termList = new ArrayList<String>();
+        ArrayList<IntList> postingsList = new ArrayList<IntList>();
+        HashMap<Long, IntList> trigramTermsMap = new HashMap<Long, IntList>();
+        String[] sortedTerms = null;
+
+        void addTerm(String term, int docId) {
+            Integer ordinal = termOrdinalMap.get(term);
+            if (ordinal == null) {
+                final int newOrdinal = termList.size();
+                termOrdinalMap.put(term, newOrdinal);
+                termList.add(term);
+                postingsList.add(new IntList());
+                for (int i = 0; i + 3 <= term.length(); i++)
+                    trigramTermsMap.computeIfAbsent(getTrigram(term, i), k -> new IntList()).insert(newOrdinal);
+                sortedTerms = null;
+                ordinal = newOrdinal;
+            }
+            postingsList.get(ordinal).insert(docId);
+        }
+
+        void addPostings(int ordinal, BitSet docs) {
+            IntList postings = postingsList.get(ordinal);
+            for (int i = 0; i < postings.size; i++)
+                docs.set(postings.values[i]);
+        }
+
+        String[] getSortedTerms() {
+            if (sortedTerms == null) {
+                sortedTerms = termList.toArray(new String[0]);
+                Arrays.sort(sortedTerms);
+            }
+            return sortedTerms;
+        }
+    }
+
+    /**
+     * The indexed DataObjectPackage.
+     */
+    private final DataObjectPackage dataObjectPackage;
+
+    /**
+     * The title provider, giving the ArchiveUnit title as displayed in the tree.
+     */
+    private final Function<ArchiveUnit, String> titleProvider;
+
+    /**
+     * The fields indexes.
+     */
+    private final FieldIndex[] fieldIndexes;
+
+    /**
+     * The indexed ArchiveUnits, in doc id order.
+     */
+    private final ArrayList<ArchiveUnit> docList;
+
+    /**
+     * The doc id by indexed ArchiveUnit.
+     */
+    private final HashMap<ArchiveUnit, Integer> docIdMap;
+
+    /**
+     * The indexing sequence of each doc id, incremented at each indexation.
+     */
+    private int[] docSequences;
+
+    /**
+     * The last indexing sequence.
+     */
+    private int indexingSequence;
+
+    /**
+     * The mark sequence by dirty ArchiveUnit, not indexed since last change.
+     */
+    private final HashMap<ArchiveUnit, Long> dirtyArchiveUnitsMap;
+
+    /**
+     * The last mark sequence.
+     */
+    private long markSequence;
+
+    /**
+     * The background indexing thread.
+     */
+    private Thread indexingThread;
+
+    /**
+     * The closed flag, to stop the background indexing thread.
+     */
+    private volatile boolean closedFlag;
+
+    /**
+     * Instantiates a new search index, with all the ArchiveUnits of the DataObjectPackage to be indexed.
+     *
+     * @param dataObjectPackage the DataObjectPackage
+     * @param titleProvider     the title provider, giving the ArchiveUnit title as displayed in the tree
+     */
+    public SearchIndex(DataObjectPackage dataObjectPackage, Function<ArchiveUnit, String> titleProvider) {
+        this.dataObjectPackage = dataObjectPackage;
+        this.titleProvider = titleProvider;
+        this.fieldIndexes = new FieldIndex[FIELD_COUNT];
+        for (int i = 0; i < FIELD_COUNT; i++)
+            this.fieldIndexes[i] = new FieldIndex();
+        this.docList = new ArrayList<ArchiveUnit>();
+        this.docIdMap = new HashMap<ArchiveUnit, Integer>();
+        this.docSequences = new int[16];
+        this.indexingSequence = 0;
+        this.dirtyArchiveUnitsMap = new HashMap<ArchiveUnit, Long>();
+        this.markSequence = 0;
+        for (ArchiveUnit archiveUnit : dataObjectPackage.getAuInDataObjectPackageIdMap().values())
+            dirtyArchiveUnitsMap.put(archiveUnit, 0L);
+        this.indexingThread = null;
+        this.closedFlag = false;
+    }
+
+    /**
+     * Gets the indexed DataObjectPackage.
+     *
+     * @return the DataObjectPackage
+     */
+    public DataObjectPackage getDataObjectPackage() {
+        return dataObjectPackage;
+    }
+
+    /**
+     * Gets the id text of the ArchiveUnit, with its id and the ids of its DataObjects, each one between angle
+     * brackets.
+     *
+     * @param archiveUnit the ArchiveUnit
+     * @return the id text
+     */
+    public static String getIdText(ArchiveUnit archiveUnit) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('<').append(archiveUnit.getInDataObjectPackageId()).append('>');
+        for (DataObject dataObject : archiveUnit.getDataObjectRefList().getDataObjectList()) {
+            sb.append('<').append(dataObject.getInDataObjectPackageId()).append('>');
+            if (dataObject instanceof DataObjectGroup) {
+                for (BinaryDataObject bo : ((DataObjectGroup) dataObject).getBinaryDataObjectList())
+                    sb.append('<').append(bo.getInDataObjectPackageId()).append('>');
+                for (PhysicalDataObject po : ((DataObjectGroup) dataObject).getPhysicalDataObjectList())
+                    sb.append('<').append(po.getInDataObjectPackageId()).append('>');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Mark the ArchiveUnit as changed, so that it's a candidate for all searches until it is indexed again.
+     *
+     * @param archiveUnit the ArchiveUnit
+     */
+    public synchronized void markDirty(ArchiveUnit archiveUnit) {
+        dirtyArchiveUnitsMap.put(archiveUnit, ++markSequence);
+        notifyAll();
+    }
+
+    /**
+     * Gets the number of ArchiveUnits waiting to be indexed.
+     *
+     * @return the dirty ArchiveUnits count
+     */
+    public synchronized int getDirtyCount() {
+        return dirtyArchiveUnitsMap.size();
+    }
+
+    /**
+     * Start the background indexing thread, which indexes all the dirty ArchiveUnits as soon as they are marked.
+     */
+    public synchronized void start() {
+        if (indexingThread != null)
+            return;
+        indexingThread = new Thread(() -> {
+            try {
+                while (!closedFlag) {
+                    synchronized (this) {
+                        while (dirtyArchiveUnitsMap.isEmpty() && !closedFlag)
+                            wait();
+                    }
+                    indexDirtyBatch();
+                }
+            } catch (InterruptedException ignored) {
+                // closed
+            }
+        }, "resip-search-index-" + indexingThreadCounter.incrementAndGet());
+        indexingThread.setDaemon(true);
+        indexingThread.setPriority(Thread.MIN_PRIORITY);
+        indexingThread.start();
+    }
+
+    /**
+     * Stop the background indexing thread.
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            closedFlag = true;
+            thread = indexingThread;
+            notifyAll();
+        }
+        if (thread != null)
+            thread.interrupt();
+    }
+
+    /**
+     * Index in the calling thread all the dirty ArchiveUnits.
+     *
+     * @throws InterruptedException if interrupted
+     */
+    public void refresh() throws InterruptedException {
+        boolean doneFlag = false;
+        while (!doneFlag)
+            doneFlag = !indexDirtyBatch();
+    }
+
+    private boolean indexDirtyBatch() throws InterruptedException {
+        List<Map.Entry<ArchiveUnit, Long>> batch = new ArrayList<Map.Entry<ArchiveUnit, Long>>(INDEXING_BATCH_SIZE);
+        synchronized (this) {
+            for (Map.Entry<ArchiveUnit, Long> e : dirtyArchiveUnitsMap.entrySet()) {
+                batch.add(new AbstractMap.SimpleImmutableEntry<ArchiveUnit, Long>(e));
+                if (batch.size() == INDEXING_BATCH_SIZE)
+                    break;
+            }
+        }
+        if (batch.isEmpty())
+            return false;
+
+        List<List<Set<String>>> batchTerms = new ArrayList<List<Set<String>>>(batch.size());
+        for (Map.Entry<ArchiveUnit, Long> e : batch) {
+            if (Thread.currentThread().isInterrupted() || closedFlag)
+                throw new InterruptedException();
+            batchTerms.add(getTerms(e.getKey()));
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < batch.size(); i++) {
+                ArchiveUnit archiveUnit = batch.get(i).getKey();
+                Integer docId = docIdMap.get(archiveUnit);
+                if (docId == null) {
+                    docId = docList.size();
+                    docList.add(archiveUnit);
+                    docIdMap.put(archiveUnit, docId);
+                    if (docId == docSequences.length)
+                        docSequences = Arrays.copyOf(docSequences, docId * 2);
+                }
+                List<Set<String>> terms = batchTerms.get(i);
+                if (terms == null)
+                    docSequences[docId] = NOT_INDEXED_SEQUENCE;
+                else {
+                    for (int field = 0; field < FIELD_COUNT; field++)
+                        for (String term : terms.get(field))
+                            fieldIndexes[field].addTerm(term, docId);
+                    docSequences[docId] = ++indexingSequence;
+                }
+                dirtyArchiveUnitsMap.remove(archiveUnit, batch.get(i).getValue());
+            }
+        }
+        return true;
+    }
+
+    private List<Set<String>> getTerms(ArchiveUnit archiveUnit) {
+        List<Set<String>> terms = new ArrayList<Set<String>>(FIELD_COUNT);
+        try {
+            String metadata;
+            try {
+                metadata = archiveUnit.getContentString();
+            } catch (SEDALibException e) {
+                // not searchable, as in the SearchThread
+                metadata = null;
+            }
+            terms.add(getTerms(titleProvider.apply(archiveUnit)));
+            terms.add(getTerms(getIdText(archiveUnit)));
+            terms.add(getTerms(metadata));
+        } catch (RuntimeException e) {
+            // concurrently modified, will be searched anyway
+            return null;
+        }
+        return terms;
+    }
+
+    private static Set<String> getTerms(String text) {
+        Set<String> terms = new HashSet<String>();
+        if (text == null)
+            return terms;
+        String folded = fold(text);
+        int i = 0;
+        while (i < folded.length()) {
+            if (!isTermChar(folded.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while ((i < folded.length()) && isTermChar(folded.charAt(i)))
+                i++;
+            terms.add(folded.substring(start, i));
+        }
+        return terms;
+    }
+
+    private static boolean isTermChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    private static String fold(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        return new String(chars);
+    }
+
+    private static long getTrigram(String term, int start) {
+        return ((long) term.charAt(start) << 32) | ((long) term.charAt(start + 1) << 16) | term.charAt(start + 2);
+    }
+
+    /**
+     * Gets the candidates filter of a search, which rejects only the ArchiveUnits whose field text can't contain the
+     * searched string, or can't match the regular expression.
+     *
+     * @param field      the searched field
+     * @param searchExp  the searched string, or the regular expression
+     * @param regExpFlag true if the searched expression is a regular expression
+     * @return the candidates filter, or null if the index can't narrow the search
+     */
+    public synchronized Predicate<ArchiveUnit> getCandidateFilter(int field, String searchExp, boolean regExpFlag) {
+        List<String> literals;
+        if (regExpFlag) {
+            literals = getRegExpLiterals(searchExp);
+            if (literals == null)
+                return null;
+        } else
+            literals = Arrays.asList(searchExp);
+
+        BitSet candidates = null;
+        for (String literal : literals) {
+            BitSet literalCandidates = getSubstringCandidates(fieldIndexes[field], fold(literal));
+            if (literalCandidates == null)
+                continue;
+            if (candidates == null)
+                candidates = literalCandidates;
+            else
+                candidates.and(literalCandidates);
+        }
+        if (candidates == null)
+            return null;
+
+        final BitSet finalCandidates = candidates;
+        final int snapshotSequence = indexingSequence;
+        return archiveUnit -> isCandidate(archiveUnit, finalCandidates, snapshotSequence);
+    }
+
+    private synchronized boolean isCandidate(ArchiveUnit archiveUnit, BitSet candidates, int snapshotSequence) {
+        if (dirtyArchiveUnitsMap.containsKey(archiveUnit))
+            return true;
+        Integer docId = docIdMap.get(archiveUnit);
+        if (docId == null) {
+            // never marked, so index it for the next searches
+            markDirty(archiveUnit);
+            return true;
+        }
+        return (docSequences[docId] > snapshotSequence) || candidates.get(docId);
+    }
+
+    private static BitSet getSubstringCandidates(FieldIndex fieldIndex, String substring) {
+        BitSet candidates = null;
+        int i = 0;
+        while (i < substring.length()) {
+            if (!isTermChar(substring.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while ((i < substring.length()) && isTermChar(substring.charAt(i)))
+                i++;
+            BitSet wordCandidates = getWordCandidates(fieldIndex, substring.substring(start, i), start == 0,
+                    i == substring.length());
+            if (candidates == null)
+                candidates = wordCandidates;
+            else
+                candidates.and(wordCandidates);
+            if (candidates.isEmpty())
+                break;
+        }
+        return candidates;
+    }
+
+    private static BitSet getWordCandidates(FieldIndex fieldIndex, String word, boolean leftOpenFlag,
+                                            boolean rightOpenFlag) {
+        BitSet docs = new BitSet();
+        if (!leftOpenFlag) {
+            if (!rightOpenFlag) {
+                Integer ordinal = fieldIndex.termOrdinalMap.get(word);
+                if (ordinal != null)
+                    fieldIndex.addPostings(ordinal, docs);
+            } else {
+                String[] sortedTerms = fieldIndex.getSortedTerms();
+                int pos = Arrays.binarySearch(sortedTerms, word);
+                if (pos < 0)
+                    pos = -pos - 1;
+                while ((pos < sortedTerms.length) && sortedTerms[pos].startsWith(word))
+                    fieldIndex.addPostings(fieldIndex.termOrdinalMap.get(sortedTerms[pos++]), docs);
+            }
+            return docs;
+        }
+
+        IntList trigramTerms = null;
+        if (word.length() >= 3) {
+            for (int i = 0; i + 3 <= word.length(); i++) {
+                IntList terms = fieldIndex.trigramTermsMap.get(getTrigram(word, i));
+                if (terms == null)
+                    return docs;
+                if ((trigramTerms == null) || (terms.size < trigramTerms.size))
+                    trigramTerms = terms;
+            }
+        }
+        int count = (trigramTerms == null ? fieldIndex.termList.size() : trigramTerms.size);
+        for (int i = 0; i < count; i++) {
+            int ordinal = (trigramTerms == null ? i : trigramTerms.values[i]);
+            String term = fieldIndex.termList.get(ordinal);
+            if (rightOpenFlag ? term.contains(word) : term.endsWith(word))
+                fieldIndex.addPostings(ordinal, docs);
+        }
+        return docs;
+    }
+
+    /**
+     * Gets the literal strings that any match of the regular expression has to contain, or null if the expression
+     * uses constructs not analysed here, as alternations, special groups or escapes with arguments.
+     *
+     * @param regExp the regular expression
+     * @return the literal strings list, or null
+     */
+    static List<String> getRegExpLiterals(String regExp) {
+        List<String> literals = new ArrayList<String>();
+        StringBuilder literal = new StringBuilder();
+        int depth = 0;
+        int i = 0;
+        while (i < regExp.length()) {
+            char c = regExp.charAt(i++);
+            switch (c) {
+                case '\\':
+                    if (i == regExp.length())
+                        return null;
+                    c = regExp.charAt(i++);
+                    if (!Character.isLetterOrDigit(c)) {
+                        if (depth == 0)
+                            literal.append(c);
+                    } else if ("dDwWsShHvVbBRX".indexOf(c) >= 0)
+                        addLiteral(literals, literal);
+                    else
+                        return null;
+                    break;
+                case '|':
+                    return null;
+                case '(':
+                    if ((i < regExp.length()) && (regExp.charAt(i) == '?'))
+                        return null;
+                    addLiteral(literals, literal);
+                    depth++;
+                    break;
+                case ')':
+                    addLiteral(literals, literal);
+                    depth--;
+                    break;
+                case '[':
+                    addLiteral(literals, literal);
+                    i = skipCharClass(regExp, i);
+                    if (i < 0)
+                        return null;
+                    break;
+                case '{':
+                    i = regExp.indexOf('}', i) + 1;
+                    if (i == 0)
+                        return null;
+                    // fall through, the quantified char may be absent
+                case '*':
+                case '?':
+                    if (literal.length() > 0)
+                        literal.setLength(literal.length() - 1);
+                    addLiteral(literals, literal);
+                    break;
+                case '+':
+                case '.':
+                case '^':
+                case '$':
+                    addLiteral(literals, literal);
+                    break;
+                default:
+                    if (depth == 0)
+                        literal.append(c);
+            }
+        }
+        addLiteral(literals, literal);
+        return literals;
+    }
+
+    private static void addLiteral(List<String> literals, StringBuilder literal) {
+        if (literal.length() > 0)
+            literals.add(literal.toString());
+        literal.setLength(0);
+    }
+
+    private static int skipCharClass(String regExp, int i) {
+        int depth = 1;
+        if ((i < regExp.length()) && (regExp.charAt(i) == '^'))
+            i++;
+        if ((i < regExp.length()) && (regExp.charAt(i) == ']'))
+            i++;
+        while (i < regExp.length()) {
+            char c = regExp.charAt(i++);
+            if (c == '\\')
+                i++;
+            else if (c == '[')
+                depth++;
+            else if ((c == ']') && (--depth == 0))
+                return i;
+        }
+        return -1;
+    }
+}
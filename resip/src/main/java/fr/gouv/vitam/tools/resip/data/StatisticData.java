@@ -1,5 +1,6 @@
 package fr.gouv.vitam.tools.resip.data;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -12,6 +13,7 @@ public class StatisticData {
     private long maxSize;
     private double meanSize;
     private long totalSize;
+    private long[] percentileSizes;
 
     /**
      * Instantiates a new Statistic data.
@@ -20,20 +22,30 @@ public class StatisticData {
      * @param sizeList       the size list
      */
     public StatisticData(String formatCategory, List<Long> sizeList){
+        this(formatCategory, sizeList.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    /**
+     * Instantiates a new Statistic data, from a sizes array which is sorted in place.
+     *
+     * @param formatCategory the format category
+     * @param sizes          the sizes array
+     */
+    public StatisticData(String formatCategory, long[] sizes){
         this.formatCategory=formatCategory;
-        this.objectNumber=sizeList.size();
-        long min=Long.MAX_VALUE;
-        long max=-1;
+        this.objectNumber=sizes.length;
+        Arrays.sort(sizes);
         long accu=0;
-        for (long size:sizeList){
-            if (size<min) min=size;
-            if (size>max) max=size;
+        for (long size:sizes)
             accu+=size;
-        }
-        this.minSize=min;
-        this.maxSize=max;
+        this.minSize=(sizes.length==0?Long.MAX_VALUE:sizes[0]);
+        this.maxSize=(sizes.length==0?-1:sizes[sizes.length-1]);
         this.meanSize=(double)accu/(double)this.objectNumber;
         this.totalSize=accu;
+        this.percentileSizes=new long[101];
+        for (int percentile=0;percentile<=100;percentile++)
+            this.percentileSizes[percentile]=(sizes.length==0?-1:
+                    sizes[Math.max(0,(int)Math.ceil(percentile*sizes.length/100.0)-1)]);
     }
 
     /**
@@ -89,4 +101,23 @@ public class StatisticData {
     public long getTotalSize() {
         return totalSize;
     }
+
+    /**
+     * Gets the size percentile, the smallest size greater or equal to this percentage of the sizes (nearest rank).
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the size percentile, or -1 if there is no object
+     */
+    public long getPercentileSize(int percentile) {
+        return percentileSizes[percentile];
+    }
+
+    /**
+     * Gets median size.
+     *
+     * @return the median size
+     */
+    public long getMedianSize() {
+        return getPercentileSize(50);
+    }
 }
@@ -0,0 +1,326 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.resip.data;
+
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnitTraversal;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The Class TechnicalIndex.
+ * <p>
+ * Columnar index of the BinaryDataObjects technical metadata used by the technical search and the statistics: one row
+ * by BinaryDataObject with its format id ordinal in the format dictionary and its size, and the owning ArchiveUnits in
+ * tree walk order with their BinaryDataObject rows. Format and size filters and statistics by format category are
+ * then computed on primitive arrays, the category of each format being computed once by query and not once by
+ * BinaryDataObject.
+ * <p>
+ * The index is marked stale when the DataObjectPackage changes and is then rebuilt by the next query.
+ */
+public class TechnicalIndex {
+
+    /**
+     * The format ordinal of BinaryDataObjects without FormatIdentification.
+     */
+    private static final int NO_FORMAT_IDENTIFICATION = -1;
+
+    /**
+     * The size of BinaryDataObjects without Size.
+     */
+    private static final long NO_SIZE = Long.MIN_VALUE;
+
+    /**
+     * The indexed DataObjectPackage.
+     */
+    private final DataObjectPackage dataObjectPackage;
+
+    /**
+     * The stale flag, set when the DataObjectPackage changed since the last build.
+     */
+    private volatile boolean staleFlag;
+
+    /**
+     * The format ids dictionary, with ordinal by format id.
+     */
+    private HashMap<String, Integer> formatOrdinalMap;
+    private ArrayList<String> formatList;
+
+    /**
+     * The BinaryDataObjects columns, the first rows being the BinaryDataObjects of the DataObjectPackage map.
+     */
+    private int rowCount;
+    private int mapRowCount;
+    private BinaryDataObject[] binaryDataObjects;
+    private int[] formatOrdinals;
+    private long[] sizes;
+    private HashMap<BinaryDataObject, Integer> rowMap;
+
+    /**
+     * The ArchiveUnits in tree walk order, with their BinaryDataObjects rows in archiveUnitRows from
+     * archiveUnitRowStarts[i] to archiveUnitRowStarts[i+1].
+     */
+    private int archiveUnitCount;
+    private ArchiveUnit[] archiveUnits;
+    private int[] archiveUnitRowStarts;
+    private int[] archiveUnitRows;
+
+    /**
+     * Instantiates a new technical index, built by the first query.
+     *
+     * @param dataObjectPackage the DataObjectPackage
+     */
+    public TechnicalIndex(DataObjectPackage dataObjectPackage) {
+        this.dataObjectPackage = dataObjectPackage;
+        this.staleFlag = true;
+    }
+
+    /**
+     * Gets the indexed DataObjectPackage.
+     *
+     * @return the DataObjectPackage
+     */
+    public DataObjectPackage getDataObjectPackage() {
+        return dataObjectPackage;
+    }
+
+    /**
+     * Mark the index as stale, to be rebuilt by the next query.
+     */
+    public void markStale() {
+        staleFlag = true;
+    }
+
+    private void ensureUpToDate() throws SEDALibException, InterruptedException {
+        if (!staleFlag)
+            return;
+        staleFlag = false;
+        try {
+            rebuild();
+        } catch (SEDALibException | InterruptedException | RuntimeException e) {
+            staleFlag = true;
+            throw e;
+        }
+    }
+
+    private void rebuild() throws SEDALibException, InterruptedException {
+        formatOrdinalMap = new HashMap<String, Integer>();
+        formatList = new ArrayList<String>();
+        Collection<BinaryDataObject> mapBinaryDataObjects = dataObjectPackage.getBdoInDataObjectPackageIdMap().values();
+        int capacity = Math.max(16, mapBinaryDataObjects.size());
+        rowCount = 0;
+        binaryDataObjects = new BinaryDataObject[capacity];
+        formatOrdinals = new int[capacity];
+        sizes = new long[capacity];
+        rowMap = new HashMap<BinaryDataObject, Integer>();
+        for (BinaryDataObject bdo : mapBinaryDataObjects)
+            addRow(bdo);
+        mapRowCount = rowCount;
+
+        archiveUnitCount = 0;
+        archiveUnits = new ArchiveUnit[Math.max(16, dataObjectPackage.getAuInDataObjectPackageIdMap().size())];
+        archiveUnitRowStarts = new int[archiveUnits.length + 1];
+        archiveUnitRows = new int[capacity];
+        new ArchiveUnitTraversal(dataObjectPackage).traverse(this::addArchiveUnit);
+    }
+
+    private int addRow(BinaryDataObject bdo) {
+        Integer row = rowMap.get(bdo);
+        if (row != null)
+            return row;
+        if (rowCount == binaryDataObjects.length) {
+            binaryDataObjects = Arrays.copyOf(binaryDataObjects, rowCount * 2);
+            formatOrdinals = Arrays.copyOf(formatOrdinals, rowCount * 2);
+            sizes = Arrays.copyOf(sizes, rowCount * 2);
+        }
+        binaryDataObjects[rowCount] = bdo;
+        if (bdo.formatIdentification == null)
+            formatOrdinals[rowCount] = NO_FORMAT_IDENTIFICATION;
+        else
+            formatOrdinals[rowCount] = formatOrdinalMap.computeIfAbsent(
+                    bdo.formatIdentification.getSimpleMetadata("FormatId"), formatId -> {
+                        formatList.add(formatId);
+                        return formatList.size() - 1;
+                    });
+        sizes[rowCount] = (bdo.size == null ? NO_SIZE : bdo.size.getValue());
+        rowMap.put(bdo, rowCount);
+        return rowCount++;
+    }
+
+    private void addArchiveUnitRow(int row) {
+        int end = archiveUnitRowStarts[archiveUnitCount + 1];
+        if (end == archiveUnitRows.length)
+            archiveUnitRows = Arrays.copyOf(archiveUnitRows, end * 2);
+        archiveUnitRows[end] = row;
+        archiveUnitRowStarts[archiveUnitCount + 1] = end + 1;
+    }
+
+    private boolean addArchiveUnit(ArchiveUnit archiveUnit) {
+        if (archiveUnitCount + 1 == archiveUnits.length) {
+            archiveUnits = Arrays.copyOf(archiveUnits, archiveUnits.length * 2);
+            archiveUnitRowStarts = Arrays.copyOf(archiveUnitRowStarts, archiveUnits.length + 1);
+        }
+        archiveUnitRowStarts[archiveUnitCount + 1] = archiveUnitRowStarts[archiveUnitCount];
+        for (DataObject dataObject : archiveUnit.getDataObjectRefList().getDataObjectList()) {
+            if (dataObject instanceof BinaryDataObject)
+                addArchiveUnitRow(addRow((BinaryDataObject) dataObject));
+            else if (dataObject instanceof DataObjectGroup) {
+                for (BinaryDataObject bdo : ((DataObjectGroup) dataObject).getBinaryDataObjectList())
+                    addArchiveUnitRow(addRow(bdo));
+            }
+        }
+        if (archiveUnitRowStarts[archiveUnitCount + 1] > archiveUnitRowStarts[archiveUnitCount])
+            archiveUnits[archiveUnitCount++] = archiveUnit;
+        return true;
+    }
+
+    /**
+     * Find the BinaryDataObjects by format and size, grouped by owning ArchiveUnit in tree walk order.
+     *
+     * @param formatFilter the format id filter, or null to accept all BinaryDataObjects even without
+     *                     FormatIdentification
+     * @param min          the min size
+     * @param max          the max size
+     * @return the BinaryDataObjects lists by ArchiveUnit
+     * @throws SEDALibException     if the index can't be rebuilt
+     * @throws InterruptedException if interrupted
+     */
+    public synchronized LinkedHashMap<ArchiveUnit, List<BinaryDataObject>> findBinaryDataObjects(
+            Predicate<String> formatFilter, long min, long max) throws SEDALibException, InterruptedException {
+        ensureUpToDate();
+        boolean[] acceptedFormats = null;
+        if (formatFilter != null) {
+            acceptedFormats = new boolean[formatList.size()];
+            for (int i = 0; i < acceptedFormats.length; i++)
+                acceptedFormats[i] = formatFilter.test(formatList.get(i));
+        }
+        boolean sizeFilterFlag = (min != 0) || (max != Long.MAX_VALUE);
+        boolean[] acceptedRows = new boolean[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            if (sizes[row] == NO_SIZE) {
+                if (sizeFilterFlag)
+                    continue;
+            } else if ((sizes[row] < min) || (sizes[row] > max))
+                continue;
+            if (acceptedFormats != null) {
+                if ((formatOrdinals[row] == NO_FORMAT_IDENTIFICATION) || !acceptedFormats[formatOrdinals[row]])
+                    continue;
+            }
+            acceptedRows[row] = true;
+        }
+
+        LinkedHashMap<ArchiveUnit, List<BinaryDataObject>> result =
+                new LinkedHashMap<ArchiveUnit, List<BinaryDataObject>>();
+        for (int i = 0; i < archiveUnitCount; i++) {
+            List<BinaryDataObject> bdos = null;
+            for (int j = archiveUnitRowStarts[i]; j < archiveUnitRowStarts[i + 1]; j++) {
+                if (acceptedRows[archiveUnitRows[j]]) {
+                    if (bdos == null) {
+                        bdos = new ArrayList<BinaryDataObject>();
+                        result.put(archiveUnits[i], bdos);
+                    }
+                    bdos.add(binaryDataObjects[archiveUnitRows[j]]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the sizes statistics of the DataObjectPackage BinaryDataObjects by format category, the BinaryDataObjects
+     * whose format is in no category being in the category containing "Other", and the statistics of all the
+     * BinaryDataObjects at the end.
+     *
+     * @param formatByCategoryMap the format ids list by category
+     * @param allFormatsCategory  the name of the all formats category
+     * @return the statistic data list
+     * @throws SEDALibException     if the index can't be rebuilt
+     * @throws InterruptedException if interrupted
+     */
+    public synchronized List<StatisticData> getStatisticDataList(LinkedHashMap<String, List<String>> formatByCategoryMap,
+                                                                 String allFormatsCategory)
+            throws SEDALibException, InterruptedException {
+        ensureUpToDate();
+        List<String> categories = new ArrayList<String>(formatByCategoryMap.keySet());
+        int allFormatsCategoryOrdinal = categories.size();
+        int otherCategoryOrdinal = -1;
+        for (int i = 0; i < categories.size(); i++)
+            if (formatByCategoryMap.get(categories.get(i)).contains("Other"))
+                otherCategoryOrdinal = i;
+        int[] formatCategoryOrdinals = new int[formatList.size()];
+        for (int i = 0; i < formatCategoryOrdinals.length; i++) {
+            formatCategoryOrdinals[i] = otherCategoryOrdinal;
+            for (int j = 0; j < categories.size(); j++)
+                if (formatByCategoryMap.get(categories.get(j)).contains(formatList.get(i))) {
+                    formatCategoryOrdinals[i] = j;
+                    break;
+                }
+        }
+
+        int[] rowCategoryOrdinals = new int[mapRowCount];
+        int[] counts = new int[categories.size() + 1];
+        for (int row = 0; row < mapRowCount; row++) {
+            rowCategoryOrdinals[row] = (formatOrdinals[row] == NO_FORMAT_IDENTIFICATION ? otherCategoryOrdinal :
+                    formatCategoryOrdinals[formatOrdinals[row]]);
+            if (sizes[row] != NO_SIZE) {
+                if (rowCategoryOrdinals[row] >= 0)
+                    counts[rowCategoryOrdinals[row]]++;
+                counts[allFormatsCategoryOrdinal]++;
+            }
+        }
+        long[][] categorySizes = new long[counts.length][];
+        for (int i = 0; i < counts.length; i++) {
+            categorySizes[i] = new long[counts[i]];
+            counts[i] = 0;
+        }
+        for (int row = 0; row < mapRowCount; row++) {
+            if (sizes[row] != NO_SIZE) {
+                if (rowCategoryOrdinals[row] >= 0)
+                    categorySizes[rowCategoryOrdinals[row]][counts[rowCategoryOrdinals[row]]++] = sizes[row];
+                categorySizes[allFormatsCategoryOrdinal][counts[allFormatsCategoryOrdinal]++] = sizes[row];
+            }
+        }
+
+        List<StatisticData> statisticDataList = new ArrayList<StatisticData>(counts.length);
+        for (int i = 0; i < categories.size(); i++)
+            statisticDataList.add(new StatisticData(categories.get(i), categorySizes[i]));
+        statisticDataList.add(new StatisticData(allFormatsCategory, categorySizes[allFormatsCategoryOrdinal]));
+        return statisticDataList;
+    }
+}
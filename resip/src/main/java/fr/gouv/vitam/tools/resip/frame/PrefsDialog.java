@@ -79,6 +79,7 @@ public class PrefsDialog extends JDialog {
     private JCheckBox attachementMetadataCheckBox;
     private JTextArea ignorePatternsTextArea;
     private JCheckBox ignoreLinksChexBox;
+    private JCheckBox technicalCacheCheckBox;
     private JComboBox csvCharsetCombobox;
     private JTextField csvDelimiterTextField;
 
@@ -94,6 +95,7 @@ public class PrefsDialog extends JDialog {
     private JCheckBox metadataFilterCheckBox;
 
     private JTextField dupMaxTextField;
+    private JComboBox<String> xmlDataStorageModeCombobox;
     private JRadioButton structuredInterfaceRadioButton;
     private JCheckBox debugModeCheckBox;
 
@@ -895,6 +897,19 @@ public class PrefsDialog extends JDialog {
         gbc.gridy = 6;
         importParametersPanel.add(ignoreLinksChexBox, gbc);
 
+        technicalCacheCheckBox = new JCheckBox("conserver les infos techniques des fichiers dans un cache du répertoire de travail");
+        technicalCacheCheckBox.setToolTipText("Evite de recalculer empreinte et format des fichiers inchangés lors d'un nouvel import");
+        technicalCacheCheckBox.setSelected(dic.isTechnicalCacheFlag());
+        gbc = new GridBagConstraints();
+        gbc.gridwidth = 2;
+        gbc.insets = new Insets(0, 5, 5, 5);
+        gbc.weightx = 1.0;
+        gbc.anchor = GridBagConstraints.CENTER;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.gridx = 1;
+        gbc.gridy = 7;
+        importParametersPanel.add(technicalCacheCheckBox, gbc);
+
         JLabel csvImportLabel = new JLabel("Import/export des csv");
         csvImportLabel.setFont(MainWindow.BOLD_LABEL_FONT);
         gbc = new GridBagConstraints();
@@ -904,7 +919,7 @@ public class PrefsDialog extends JDialog {
         gbc.anchor = GridBagConstraints.NORTHWEST;
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.gridx = 0;
-        gbc.gridy = 7;
+        gbc.gridy = 8;
         importParametersPanel.add(csvImportLabel, gbc);
 
         JLabel csvCharsetLabel = new JLabel("Encodage des csv :");
@@ -912,7 +927,7 @@ public class PrefsDialog extends JDialog {
         gbc.anchor = GridBagConstraints.EAST;
         gbc.insets = new Insets(0, 0, 5, 5);
         gbc.gridx = 0;
-        gbc.gridy = 8;
+        gbc.gridy = 9;
         importParametersPanel.add(csvCharsetLabel, gbc);
 
         csvCharsetCombobox = new JComboBox<String>(charsetStrings);
@@ -921,7 +936,7 @@ public class PrefsDialog extends JDialog {
         gbc.insets = new Insets(0, 0, 5, 5);
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.gridx = 1;
-        gbc.gridy = 8;
+        gbc.gridy = 9;
         importParametersPanel.add(csvCharsetCombobox, gbc);
         csvCharsetCombobox.setSelectedItem(cic.getCsvCharsetName());
 
@@ -930,7 +945,7 @@ public class PrefsDialog extends JDialog {
         gbc.anchor = GridBagConstraints.EAST;
         gbc.insets = new Insets(0, 5, 5, 5);
         gbc.gridx = 0;
-        gbc.gridy = 9;
+        gbc.gridy = 10;
         importParametersPanel.add(lblCsvDelimiter, gbc);
 
         csvDelimiterTextField = new JTextField();
@@ -940,7 +955,7 @@ public class PrefsDialog extends JDialog {
         gbc.insets = new Insets(0, 0, 5, 5);
         gbc.gridwidth = 2;
         gbc.gridx = 1;
-        gbc.gridy = 9;
+        gbc.gridy = 10;
         gbc.anchor = GridBagConstraints.WEST;
         importParametersPanel.add(csvDelimiterTextField, gbc);
         csvDelimiterTextField.setColumns(1);
@@ -950,8 +965,8 @@ public class PrefsDialog extends JDialog {
         tabbedPane.addTab("Traitement/Interface", new ImageIcon(getClass().getResource("/icon/edit-find-replace.png")),
                 treatmentParametersPanel, null);
         GridBagLayout gbl_treatmentParametersPanel = new GridBagLayout();
-        gbl_treatmentParametersPanel.rowHeights = new int[]{0, 0, 0, 0, 0, 0,0};
-        gbl_treatmentParametersPanel.rowWeights = new double[]{0, 0, 0, 0, 0,0, 1.0};
+        gbl_treatmentParametersPanel.rowHeights = new int[]{0, 0, 0, 0, 0, 0, 0, 0};
+        gbl_treatmentParametersPanel.rowWeights = new double[]{0, 0, 0, 0, 0, 0, 0, 1.0};
         treatmentParametersPanel.setLayout(gbl_treatmentParametersPanel);
 
         JLabel workDirLabel = new JLabel("Répertoire de travail");
@@ -1028,6 +1043,27 @@ public class PrefsDialog extends JDialog {
         gbc.anchor = GridBagConstraints.WEST;
         treatmentParametersPanel.add(dupMaxTextField, gbc);
 
+        JLabel xmlDataStorageModeLabel = new JLabel("Stockage des blocs XML des ArchiveUnits :");
+        gbc = new GridBagConstraints();
+        gbc.anchor = GridBagConstraints.EAST;
+        gbc.insets = new Insets(0, 5, 5, 5);
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        treatmentParametersPanel.add(xmlDataStorageModeLabel, gbc);
+
+        String[] xmlDataStorageModeStrings = {"Standard", "UTF-8", "Compressé", "Disque"};
+        xmlDataStorageModeCombobox = new JComboBox<String>(xmlDataStorageModeStrings);
+        xmlDataStorageModeCombobox.setFont(MainWindow.LABEL_FONT);
+        if ((tp.getXmlDataStorageMode() >= 0) && (tp.getXmlDataStorageMode() < xmlDataStorageModeStrings.length))
+            xmlDataStorageModeCombobox.setSelectedIndex(tp.getXmlDataStorageMode());
+        gbc = new GridBagConstraints();
+        gbc.insets = new Insets(0, 0, 5, 5);
+        gbc.gridwidth = 2;
+        gbc.gridx = 1;
+        gbc.gridy = 4;
+        gbc.anchor = GridBagConstraints.WEST;
+        treatmentParametersPanel.add(xmlDataStorageModeCombobox, gbc);
+
         JLabel interfaceLabel = new JLabel("Interface");
         interfaceLabel.setFont(MainWindow.BOLD_LABEL_FONT);
         gbc = new GridBagConstraints();
@@ -1037,7 +1073,7 @@ public class PrefsDialog extends JDialog {
         gbc.anchor = GridBagConstraints.NORTHWEST;
         gbc.fill = GridBagConstraints.HORIZONTAL;
         gbc.gridx = 0;
-        gbc.gridy = 4;
+        gbc.gridy = 5;
         treatmentParametersPanel.add(interfaceLabel, gbc);
 
         JLabel interfaceTypeLabel = new JLabel("Interface par défaut:");
@@ -1045,7 +1081,7 @@ public class PrefsDialog extends JDialog {
         gbc.anchor = GridBagConstraints.EAST;
         gbc.insets = new Insets(0, 0, 5, 5);
         gbc.gridx = 0;
-        gbc.gridy = 5;
+        gbc.gridy = 6;
         treatmentParametersPanel.add(interfaceTypeLabel, gbc);
 
         structuredInterfaceRadioButton = new JRadioButton("Structurée");
@@ -1053,7 +1089,7 @@ public class PrefsDialog extends JDialog {
         gbc.anchor = GridBagConstraints.WEST;
         gbc.insets = new Insets(0, 0, 5, 5);
         gbc.gridx = 1;
-        gbc.gridy = 5;
+        gbc.gridy = 6;
         treatmentParametersPanel.add(structuredInterfaceRadioButton, gbc);
 
         JRadioButton classicInterfaceRadioButton = new JRadioButton("XML-expert");
@@ -1061,7 +1097,7 @@ public class PrefsDialog extends JDialog {
         gbc.anchor = GridBagConstraints.WEST;
         gbc.insets = new Insets(0, 0, 5, 5);
         gbc.gridx = 2;
-        gbc.gridy = 5;
+        gbc.gridy = 6;
         treatmentParametersPanel.add(classicInterfaceRadioButton, gbc);
 
         ButtonGroup interfaceTypeButtonGroup = new ButtonGroup();
@@ -1079,7 +1115,7 @@ public class PrefsDialog extends JDialog {
         gbc.anchor = GridBagConstraints.EAST;
         gbc.insets = new Insets(0, 0, 5, 5);
         gbc.gridx = 0;
-        gbc.gridy = 6;
+        gbc.gridy = 7;
         treatmentParametersPanel.add(debugModeLabel, gbc);
 
         debugModeCheckBox = new JCheckBox("");
@@ -1088,7 +1124,7 @@ public class PrefsDialog extends JDialog {
         gbc.anchor = GridBagConstraints.WEST;
         gbc.insets = new Insets(0, 0, 5, 5);
         gbc.gridx = 1;
-        gbc.gridy = 6;
+        gbc.gridy = 7;
         treatmentParametersPanel.add(debugModeCheckBox, gbc);
 
         // Buttons
@@ -1175,6 +1211,7 @@ public class PrefsDialog extends JDialog {
 
         dic.setIgnorePatternList(Arrays.asList(ignorePatternsTextArea.getText().split("\\s*\n\\s*")));
         dic.setNoLinkFlag(ignoreLinksChexBox.isSelected());
+        dic.setTechnicalCacheFlag(technicalCacheCheckBox.isSelected());
 
         mic.setExtractMessageTextMetadata(messageMetadataCheckBox.isSelected());
         mic.setExtractAttachmentTextMetadata(attachementMetadataCheckBox.isSelected());
@@ -1239,6 +1276,7 @@ public class PrefsDialog extends JDialog {
             return false;
         }
         tp.setDupMax(tmp);
+        tp.setXmlDataStorageMode(xmlDataStorageModeCombobox.getSelectedIndex());
 
         ip.setStructuredMetadataEditionFlag(structuredInterfaceRadioButton.isSelected());
         ip.setDebugFlag(debugModeCheckBox.isSelected());
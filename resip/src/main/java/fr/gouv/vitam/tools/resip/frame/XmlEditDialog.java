@@ -434,10 +434,9 @@ public class XmlEditDialog extends JDialog {
             try (ByteArrayInputStream bais = new ByteArrayInputStream(xmlDataString.getBytes(StandardCharsets.UTF_8));
                  SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
                 // jump StartDocument
-                xmlReader.nextUsefullEvent();
+                xmlReader.skipNextUsefullEvent();
                 result = filterDefaultValues(xmlReader);
-                XMLEvent event = xmlReader.xmlReader.peek();
-                if (!event.isEndDocument())
+                if (!xmlReader.peekEndDocument())
                     throw new ResipException("Il y a des champs en trop");
             } catch (XMLStreamException | SEDALibException | IOException e) {
                 throw new ResipException("Erreur de lecture", e);
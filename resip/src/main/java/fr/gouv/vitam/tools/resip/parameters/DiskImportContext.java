@@ -24,6 +24,11 @@ public class DiskImportContext extends CreationContext {
     boolean noLinkFlag;
 
 // session element
+    /**
+     * The technical elements cache flag.
+     */
+    boolean technicalCacheFlag;
+
     /**
      * The model version.
      */
@@ -66,6 +71,7 @@ public class DiskImportContext extends CreationContext {
 		else
 			ignorePatternList = Arrays.asList(ignorePatternsString.split("\\s*\n\\s*"));
 		noLinkFlag=Boolean.parseBoolean(prefs.getPrefProperties().getProperty("importContext.disk.noLinkFlag", "false"));
+		technicalCacheFlag=Boolean.parseBoolean(prefs.getPrefProperties().getProperty("importContext.disk.technicalCacheFlag", "false"));
 	}
 
 	/* (non-Javadoc)
@@ -74,6 +80,7 @@ public class DiskImportContext extends CreationContext {
 	public void toPrefs(Prefs prefs) {
 		prefs.getPrefProperties().setProperty("importContext.disk.ignorePatternList", String.join("\n", ignorePatternList));
 		prefs.getPrefProperties().setProperty("importContext.disk.noLinkFlag",Boolean.toString(noLinkFlag));
+		prefs.getPrefProperties().setProperty("importContext.disk.technicalCacheFlag",Boolean.toString(technicalCacheFlag));
 	}
 
 	/* (non-Javadoc)
@@ -83,6 +90,7 @@ public class DiskImportContext extends CreationContext {
 		super.setDefaultPrefs();
 		ignorePatternList = Arrays.asList("Thumbs.db", "pagefile.sys");
 		noLinkFlag=false;
+		technicalCacheFlag=false;
 	}
 
 	// Getters and setters
@@ -123,6 +131,24 @@ public class DiskImportContext extends CreationContext {
 		this.noLinkFlag = noLinkFlag;
 	}
 
+    /**
+     * Is technical cache flag boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isTechnicalCacheFlag() {
+		return technicalCacheFlag;
+	}
+
+    /**
+     * Sets technical cache flag.
+     *
+     * @param technicalCacheFlag the technical cache flag
+     */
+    public void setTechnicalCacheFlag(boolean technicalCacheFlag) {
+		this.technicalCacheFlag = technicalCacheFlag;
+	}
+
     /**
      * Gets the model version.
      *
@@ -50,6 +50,16 @@ public class TreatmentParameters {
      */
     int dupMax;
 
+    /**
+     * The ArchiveUnit XML blocks storage mode, see sedalib CompactXMLData.
+     */
+    int xmlDataStorageMode;
+
+    /**
+     * The flag indicating if ArchiveUnit XML blocks are kept as byte ranges in the imported manifest.
+     */
+    boolean metadataInManifestFlag;
+
     /**
      * Instantiates a new creation context.
      */
@@ -87,6 +97,13 @@ public class TreatmentParameters {
         catch (NumberFormatException e){
             dupMax=1000;
         }
+        try {
+            xmlDataStorageMode=Integer.parseInt(prefs.getPrefProperties().getProperty("treatmentParameters.xmlDataStorageMode","0"));
+        }
+        catch (NumberFormatException e){
+            xmlDataStorageMode=0;
+        }
+        metadataInManifestFlag=Boolean.parseBoolean(prefs.getPrefProperties().getProperty("treatmentParameters.metadataInManifestFlag","false"));
     }
 
     /**
@@ -100,6 +117,8 @@ public class TreatmentParameters {
             prefs.getPrefProperties().setProperty("treatmentParameters.categories."+canonizeCategoryName(e.getKey()),String.join("|",e.getValue()));
         }
         prefs.getPrefProperties().setProperty("treatmentParameters.dupMax", Integer.toString(dupMax));
+        prefs.getPrefProperties().setProperty("treatmentParameters.xmlDataStorageMode", Integer.toString(xmlDataStorageMode));
+        prefs.getPrefProperties().setProperty("treatmentParameters.metadataInManifestFlag", Boolean.toString(metadataInManifestFlag));
     }
 
     /**
@@ -149,6 +168,8 @@ public class TreatmentParameters {
         formatByCategoryMap.put("Non connu",Arrays.asList("UNKNOWN"));
         formatByCategoryMap.put("Autres...",Arrays.asList("Other"));
         dupMax=1000;
+        xmlDataStorageMode=0;
+        metadataInManifestFlag=false;
     }
 
     // Getters and setters
@@ -188,4 +209,40 @@ public class TreatmentParameters {
     public void setDupMax(int dupMax) {
         this.dupMax = dupMax;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the ArchiveUnit XML blocks storage mode.
+     *
+     * @return the xml data storage mode
+     */
+    public int getXmlDataStorageMode() {
+        return xmlDataStorageMode;
+    }
+
+    /**
+     * Sets the ArchiveUnit XML blocks storage mode.
+     *
+     * @param xmlDataStorageMode the xml data storage mode
+     */
+    public void setXmlDataStorageMode(int xmlDataStorageMode) {
+        this.xmlDataStorageMode = xmlDataStorageMode;
+    }
+
+    /**
+     * Is metadata in manifest flag boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isMetadataInManifestFlag() {
+        return metadataInManifestFlag;
+    }
+
+    /**
+     * Sets metadata in manifest flag.
+     *
+     * @param metadataInManifestFlag the metadata in manifest flag
+     */
+    public void setMetadataInManifestFlag(boolean metadataInManifestFlag) {
+        this.metadataInManifestFlag = metadataInManifestFlag;
+    }
+}
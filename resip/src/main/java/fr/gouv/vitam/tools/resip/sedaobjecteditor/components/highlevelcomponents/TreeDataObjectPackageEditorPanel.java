@@ -28,6 +28,8 @@
 package fr.gouv.vitam.tools.resip.sedaobjecteditor.components.highlevelcomponents;
 
 import fr.gouv.vitam.tools.resip.app.ResipGraphicApp;
+import fr.gouv.vitam.tools.resip.data.SearchIndex;
+import fr.gouv.vitam.tools.resip.data.TechnicalIndex;
 import fr.gouv.vitam.tools.resip.frame.UserInteractionDialog;
 import fr.gouv.vitam.tools.resip.sedaobjecteditor.components.viewers.DataObjectPackageTreeModel;
 import fr.gouv.vitam.tools.resip.sedaobjecteditor.components.viewers.DataObjectPackageTreeNode;
@@ -38,6 +40,8 @@ import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 
 import javax.swing.*;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
 import javax.swing.tree.TreePath;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -60,6 +64,16 @@ public class TreeDataObjectPackageEditorPanel extends JPanel {
     private DataObjectPackage editedDataObjectPackage;
     private DataObjectPackageTreeNode displayedTreeNode;
 
+    /**
+     * The search index of the edited DataObjectPackage.
+     */
+    private SearchIndex searchIndex;
+
+    /**
+     * The technical index of the edited DataObjectPackage.
+     */
+    private TechnicalIndex technicalIndex;
+
     /**
      * The graphic elements
      */
@@ -94,6 +108,27 @@ public class TreeDataObjectPackageEditorPanel extends JPanel {
         add(dataObjectPackageTreeLabel, gbc);
 
         DataObjectPackageTreeModel dataObjectPackageTreeModel = new DataObjectPackageTreeModel(null);
+        dataObjectPackageTreeModel.addTreeModelListener(new TreeModelListener() {
+            @Override
+            public void treeNodesChanged(TreeModelEvent e) {
+                markIndexesDirty(e);
+            }
+
+            @Override
+            public void treeNodesInserted(TreeModelEvent e) {
+                markIndexesDirty(e);
+            }
+
+            @Override
+            public void treeNodesRemoved(TreeModelEvent e) {
+                markIndexesDirty(e);
+            }
+
+            @Override
+            public void treeStructureChanged(TreeModelEvent e) {
+                markIndexesDirty(e);
+            }
+        });
         dataObjectPackageTreeViewer = new DataObjectPackageTreeViewer(this, dataObjectPackageTreeModel);
         dataObjectPackageTreeViewer.setFont(TREE_FONT);
         JScrollPane dataObjectPackageTreeViewerScrollPane = new JScrollPane(dataObjectPackageTreeViewer);
@@ -215,6 +250,9 @@ public class TreeDataObjectPackageEditorPanel extends JPanel {
                 if (stn.getArchiveUnit() != null) {
                     // is ArchiveUnit
                     path = stn.getArchiveUnit().getOnDiskPath();
+                } else if (stn.getDataObject() instanceof BinaryDataObject) {
+                    // extracted from SIP if lazily imported
+                    path = ((BinaryDataObject) stn.getDataObject()).getAvailableOnDiskPath();
                 } else if (stn.getDataObject() != null) {
                     // is DataObject
                     path = ((DataObjectPackageIdElement) stn.getDataObject()).getOnDiskPath();
@@ -224,6 +262,11 @@ public class TreeDataObjectPackageEditorPanel extends JPanel {
                 Desktop.getDesktop().open(path.toFile());
         } catch (IOException e) {
             // too bad
+        } catch (SEDALibException e) {
+            UserInteractionDialog.getUserAnswer(ResipGraphicApp.getTheWindow(),
+                    "Impossible d'extraire le fichier à ouvrir\n->" + e.getMessage(),
+                    "Erreur", UserInteractionDialog.ERROR_DIALOG,
+                    null);
         }
     }
 
@@ -303,6 +346,7 @@ public class TreeDataObjectPackageEditorPanel extends JPanel {
      * Refresh TreePaneLabel informations.
      */
     public void refreshTreeLabel() {
+        markIndexesChanged();
         dataObjectPackageTreeLabel
                 .setText("Arbre du SIP (" + editedDataObjectPackage.getArchiveUnitCount()
                         + " archiveUnit/" + editedDataObjectPackage.getDataObjectGroupCount()
@@ -416,6 +460,11 @@ public class TreeDataObjectPackageEditorPanel extends JPanel {
         DataObjectPackageTreeNode top;
 
         this.editedDataObjectPackage=dataObjectPackage;
+        if (searchIndex != null) {
+            searchIndex.close();
+            searchIndex = null;
+        }
+        technicalIndex = null;
         if (dataObjectPackage!=null) {
             top = model.generateDataObjectPackageNodes(dataObjectPackage);
             refreshTreeLabel();
@@ -426,6 +475,65 @@ public class TreeDataObjectPackageEditorPanel extends JPanel {
         model.setRoot(top);
         model.reload();
         displayedTreeNode = null;
+        if (dataObjectPackage != null) {
+            searchIndex = new SearchIndex(dataObjectPackage, this::findTreeTitle);
+            searchIndex.start();
+            technicalIndex = new TechnicalIndex(dataObjectPackage);
+        }
+    }
+
+    /**
+     * Gets the search index of the edited DataObjectPackage, built in background and kept up to date with the tree
+     * changes.
+     *
+     * @return the search index, or null if there is no edited DataObjectPackage
+     */
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    private String findTreeTitle(ArchiveUnit archiveUnit) {
+        DataObjectPackageTreeNode node = ((DataObjectPackageTreeModel) dataObjectPackageTreeViewer.getModel())
+                .findTreeNode(archiveUnit);
+        return (node == null ? null : node.getTitle());
+    }
+
+    /**
+     * Gets the technical index of the edited DataObjectPackage, rebuilt when used after changes.
+     *
+     * @return the technical index, or null if there is no edited DataObjectPackage
+     */
+    public TechnicalIndex getTechnicalIndex() {
+        return technicalIndex;
+    }
+
+    /**
+     * Mark the indexes as changed after an edition which may not be seen in the tree, as DataObjects edition, and
+     * which concerns the displayed ArchiveUnit.
+     */
+    public void markIndexesChanged() {
+        if (technicalIndex != null)
+            technicalIndex.markStale();
+        if ((searchIndex != null) && (displayedTreeNode != null))
+            markSearchIndexDirty(displayedTreeNode);
+    }
+
+    private void markIndexesDirty(TreeModelEvent e) {
+        if (technicalIndex != null)
+            technicalIndex.markStale();
+        if (searchIndex == null)
+            return;
+        Object[] path = e.getPath();
+        if ((path != null) && (path.length > 0))
+            markSearchIndexDirty((DataObjectPackageTreeNode) path[path.length - 1]);
+        if (e.getChildren() != null)
+            for (Object child : e.getChildren())
+                markSearchIndexDirty((DataObjectPackageTreeNode) child);
+    }
+
+    private void markSearchIndexDirty(DataObjectPackageTreeNode node) {
+        if ((node != null) && (node.getArchiveUnit() != null))
+            searchIndex.markDirty(node.getArchiveUnit());
     }
 
     /**
@@ -197,7 +197,8 @@ public class XMLDataObjectGroupEditorPanel extends JPanel implements DataObjectG
         Path path;
         try {
             if ((displayedDataObject instanceof BinaryDataObject)) {
-                path = ((BinaryDataObject) displayedDataObject).getOnDiskPath();
+                // extracted from SIP if lazily imported
+                path = ((BinaryDataObject) displayedDataObject).getAvailableOnDiskPath();
                 if (path != null) {
                     try {
                         // Office bug workaround
@@ -214,6 +215,11 @@ public class XMLDataObjectGroupEditorPanel extends JPanel implements DataObjectG
                 }
             }
         } catch (IOException ignored) {
+        } catch (SEDALibException e) {
+            UserInteractionDialog.getUserAnswer(ResipGraphicApp.getTheWindow(),
+                    "Impossible d'extraire le fichier à ouvrir \n->" + e.getMessage(),
+                    "Erreur", UserInteractionDialog.ERROR_DIALOG,
+                    null);
         }
     }
 
@@ -35,7 +35,7 @@ public class StatisticCellRenderer extends DefaultTableCellRenderer {
             else if (value instanceof Long) {
                 if ((Long) value == Long.MAX_VALUE)
                     cellContent = "-";
-                else if (column==5)
+                else if (column==7)
                     cellContent=readableFileSize((Long)value);
                 else
                     cellContent = String.format("%,d", (Long) value);
@@ -10,7 +10,7 @@ import java.util.List;
  */
 public class StatisticTableModel extends AbstractTableModel {
 
-    private final String[] entetes = { "Catégorie", "Nombre", "Taille min", "Taille moy", "Taille max", "Total"};
+    private final String[] entetes = { "Catégorie", "Nombre", "Taille min", "Taille moy", "Taille max", "Taille médiane", "Taille 90%", "Total"};
     private List<StatisticData> statisticDataList;
 
     /**
@@ -78,6 +78,14 @@ public class StatisticTableModel extends AbstractTableModel {
                     return Long.MAX_VALUE;
                 return statisticData.getMaxSize();
             case 5:
+                if (statisticData.getObjectNumber() == 0)
+                    return Long.MAX_VALUE;
+                return statisticData.getMedianSize();
+            case 6:
+                if (statisticData.getObjectNumber() == 0)
+                    return Long.MAX_VALUE;
+                return statisticData.getPercentileSize(90);
+            case 7:
                 if (statisticData.getObjectNumber() == 0)
                     return Long.MAX_VALUE;
                 return statisticData.getTotalSize();
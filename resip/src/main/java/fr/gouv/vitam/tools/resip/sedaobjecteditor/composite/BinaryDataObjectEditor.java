@@ -276,6 +276,9 @@ public class BinaryDataObjectEditor extends CompositeEditor {
     private void openButton() {
         try {
             if (editedOnDiskPath != null) {
+                // extracted from SIP if lazily imported
+                if (editedOnDiskPath.equals(getBinaryDataObjectMetadata().getOnDiskPath()))
+                    getBinaryDataObjectMetadata().getAvailableOnDiskPath();
                 try {
                     // Office bug workaround
                     // This is a special patch to prevent Office to change a file when opening it to see the content...
@@ -291,6 +294,11 @@ public class BinaryDataObjectEditor extends CompositeEditor {
                 Desktop.getDesktop().open(editedOnDiskPath.toFile());
             }
         } catch (IOException ignored) {
+        } catch (SEDALibException e) {
+            UserInteractionDialog.getUserAnswer(ResipGraphicApp.getTheWindow(),
+                    "Impossible d'extraire le fichier à ouvrir [" + editedOnDiskPath.toString() + "]\n->" + e.getMessage(),
+                    "Erreur", UserInteractionDialog.ERROR_DIALOG,
+                    null);
         }
     }
 
@@ -186,7 +186,7 @@ public class AddThread extends SwingWorker<String, String> {
             setWorkFromDataObjectPackage(di.getDataObjectPackage());
             work.getCreationContext().setOnDiskInput("DragAndDrop");
             work.getCreationContext().setSummary(summary);
-            ResipGraphicApp.getTheApp().currentWork = work;
+            ResipGraphicApp.getTheApp().setCurrentWork(work);
             ResipGraphicApp.getTheApp().setFilenameWork(null);
             ResipGraphicApp.getTheApp().setModifiedContext(true);
             ResipGraphicApp.getTheApp().setContextLoaded(true);
@@ -194,7 +194,7 @@ public class AddThread extends SwingWorker<String, String> {
             doProgressLogWithoutInterruption(spl, GLOBAL, "Ajout terminé", null);
             doProgressLogWithoutInterruption(spl, GLOBAL, summary, null);
         } else {
-            ResipGraphicApp.getTheApp().currentWork = this.work;
+            ResipGraphicApp.getTheApp().setCurrentWork(this.work);
             List<ArchiveUnit> addedNodes = di.getDataObjectPackage().getGhostRootAu().getChildrenAuList()
                     .getArchiveUnitList();
             targetNode.getArchiveUnit().getDataObjectPackage().moveContentFromDataObjectPackage(di.getDataObjectPackage(), targetNode.getArchiveUnit());
@@ -69,6 +69,10 @@ public class CleanThread extends SwingWorker<String, String> {
             for (File f : inFile.listFiles())
                 recursiveDelete(f);
             inFile.delete();
+        } else if (ResipGraphicApp.getTheApp().isCurrentWorkManifestFile(inFile)) {
+            // still read by the current work
+            doProgressLog(spl, SEDALibProgressLogger.STEP, "Manifest utilisé par le contexte en cours conservé: " +
+                    inFile, null);
         } else {
             inFile.delete();
             fileCounter++;
@@ -46,6 +46,7 @@ import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
 import javax.swing.*;
 import java.io.File;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
@@ -125,6 +126,10 @@ public class ExpandThread extends SwingWorker<String, String> {
             for (File f : inFile.listFiles())
                 recursiveDelete(f);
             inFile.delete();
+        } else if (ResipGraphicApp.getTheApp().isCurrentWorkManifestFile(inFile)) {
+            // still read by the current work
+            doProgressLog(spl, SEDALibProgressLogger.STEP, "Manifest utilisé par le contexte en cours conservé: " +
+                    inFile, null);
         } else {
             inFile.delete();
             fileCounter++;
@@ -191,8 +196,13 @@ public class ExpandThread extends SwingWorker<String, String> {
             else
                 encoding = "UTF8";
             ZipImportContext zic = new ZipImportContext(Prefs.getInstance());
-            String target = getTmpDirTarget(zic.getWorkDir(), bdoToExpand.getOnDiskPathToString(), bdoToExpand.getInDataObjectPackageId());
-            zi = new CompressedFileToArchiveTransferImporter(bdoToExpand.getOnDiskPathToString(), target, encoding, null, spl);
+            // extracted from SIP if lazily imported
+            Path onDiskPath = bdoToExpand.getAvailableOnDiskPath();
+            if (onDiskPath == null)
+                throw new ResipException("Pas de fichier associé au BinaryDataObject " +
+                        bdoToExpand.getInDataObjectPackageId());
+            String target = getTmpDirTarget(zic.getWorkDir(), onDiskPath.toString(), bdoToExpand.getInDataObjectPackageId());
+            zi = new CompressedFileToArchiveTransferImporter(onDiskPath.toString(), target, encoding, null, spl);
             for (String ip : zic.getIgnorePatternList())
                 zi.addIgnorePattern(ip);
             zi.doImport();
@@ -213,7 +223,7 @@ public class ExpandThread extends SwingWorker<String, String> {
         else if (exitThrowable != null)
             doProgressLogWithoutInterruption(spl, GLOBAL, "Erreur durant l'expansion, les données n'ont pas été modifiées", exitThrowable);
         else {
-            ResipGraphicApp.getTheApp().currentWork = this.work;
+            ResipGraphicApp.getTheApp().setCurrentWork(this.work);
             List<ArchiveUnit> addedNodes = zi.getArchiveTransfer().getDataObjectPackage().getGhostRootAu().getChildrenAuList()
                     .getArchiveUnitList();
             targetNode.getArchiveUnit().getDataObjectPackage().moveContentFromDataObjectPackage(zi.getArchiveTransfer().getDataObjectPackage(), targetNode.getArchiveUnit());
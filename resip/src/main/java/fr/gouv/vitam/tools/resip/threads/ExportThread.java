@@ -162,6 +162,8 @@ public class ExportThread extends SwingWorker<String, String> {
                 case SIP_ALL_EXPORT:
                     inOutDialog.extProgressTextArea.setText("Export du SIP SEDA en " + work.getExportContext().getOnDiskOutput() + "\n");
                     ArchiveTransferToSIPExporter smm = new ArchiveTransferToSIPExporter(archiveTransfer, spl);
+                    // files modified since import are reported in summary
+                    smm.setDigestVerificationMode(ArchiveTransferToSIPExporter.DigestVerificationMode.WARN);
                     smm.doExportToSEDASIP(work.getExportContext().getOnDiskOutput(), work.getExportContext().isHierarchicalArchiveUnits(),
                             work.getExportContext().isIndented());
                     doProgressLog(spl, GLOBAL,
@@ -39,6 +39,7 @@ import fr.gouv.vitam.tools.resip.utils.ResipLogger;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveDeliveryRequestReply;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveTransfer;
 import fr.gouv.vitam.tools.sedalib.inout.importer.*;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
 
 import javax.swing.*;
@@ -108,6 +109,10 @@ public class ImportThread extends SwingWorker<String, String> {
             for (File f : inFile.listFiles())
                 recursiveDelete(f);
             inFile.delete();
+        } else if (ResipGraphicApp.getTheApp().isCurrentWorkManifestFile(inFile)) {
+            // still read by the current work
+            doProgressLog(spl, SEDALibProgressLogger.STEP, "Manifest utilisé par le contexte en cours conservé: " +
+                    inFile, null);
         } else {
             inFile.delete();
             fileCounter++;
@@ -180,6 +185,12 @@ public class ImportThread extends SwingWorker<String, String> {
                         spl);
                 for (String ip : diskImportContext.getIgnorePatternList())
                     di.addIgnorePattern(ip);
+                if (diskImportContext.isTechnicalCacheFlag()) {
+                    TechnicalElementsExtractor tee = new TechnicalElementsExtractor();
+                    tee.setTechnicalElementsCache(new TechnicalElementsCache(
+                            Paths.get(diskImportContext.getWorkDir(), "technicalElements.cache")));
+                    di.setTechnicalElementsExtractor(tee);
+                }
                 di.doImport();
                 diskImportContext.setModelVersion(di.getModelVersion());
                 setWorkFromArchiveTransfer(di.getArchiveTransfer());
@@ -190,6 +201,9 @@ public class ImportThread extends SwingWorker<String, String> {
                 String target = getTmpDirTarget(sic.getWorkDir(), sic.getOnDiskInput());
                 SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(sic.getOnDiskInput(),
                         target, spl);
+                // files are extracted from the SIP only when needed
+                si.setLazyExtractionFlag(true);
+                si.setMetadataInManifestFlag(ResipGraphicApp.getTheApp().treatmentParameters.isMetadataInManifestFlag());
                 si.doImport();
                 setWorkFromArchiveTransfer(si.getArchiveTransfer());
                 summary = si.getSummary();
@@ -199,6 +213,7 @@ public class ImportThread extends SwingWorker<String, String> {
                 String target = getTmpDirTarget(dic.getWorkDir(), dic.getOnDiskInput());
                 DIPToArchiveDeliveryRequestReplyImporter si = new DIPToArchiveDeliveryRequestReplyImporter(
                         dic.getOnDiskInput(), target, spl);
+                si.setMetadataInManifestFlag(ResipGraphicApp.getTheApp().treatmentParameters.isMetadataInManifestFlag());
                 si.doImport();
                 setWorkFromArchiveDeliveryRequestReply(si.getArchiveDeliveryRequestReply());
                 summary = si.getSummary();
@@ -255,6 +270,12 @@ public class ImportThread extends SwingWorker<String, String> {
                 summary += "\n" + work.doVitamNormalize(spl);
         } catch (Throwable e) {
             exitThrowable = e;
+            if ((work != null) && (work.getDataObjectPackage() != null))
+                try {
+                    work.getDataObjectPackage().closeContentSources();
+                } catch (SEDALibException ignored) {
+                    // the import error is reported
+                }
             work = null;
             return "KO";
         }
@@ -274,7 +295,7 @@ public class ImportThread extends SwingWorker<String, String> {
             doProgressLogWithoutInterruption(spl, GLOBAL, "resip: erreur durant l'import, les données n'ont pas été modifiées", exitThrowable);
         else {
             work.getCreationContext().setSummary(summary);
-            theApp.currentWork = work;
+            theApp.setCurrentWork(work);
             theApp.setFilenameWork(null);
             theApp.setModifiedContext(true);
             theApp.setContextLoaded(true);
@@ -28,6 +28,7 @@
 package fr.gouv.vitam.tools.resip.threads;
 
 import fr.gouv.vitam.tools.resip.app.ResipGraphicApp;
+import fr.gouv.vitam.tools.resip.data.SearchIndex;
 import fr.gouv.vitam.tools.resip.sedaobjecteditor.components.highlevelcomponents.TreeDataObjectPackageEditorPanel;
 import fr.gouv.vitam.tools.sedalib.core.*;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
@@ -36,6 +37,7 @@ import javax.swing.*;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -59,6 +61,7 @@ public class SearchThread extends SwingWorker<String, String> {
     private String searchExp;
     private DataObjectPackage dataObjectPackage;
     private Pattern searchPattern;
+    private Predicate<ArchiveUnit> candidateFilter;
     private List<ArchiveUnit> searchResult;
 
 
@@ -84,57 +87,47 @@ public class SearchThread extends SwingWorker<String, String> {
     }
 
     /**
-     * Search in archive unit.
+     * Search in archive unit, visited once in the search unit descendants traversal.
      *
-     * @param au the au
+     * @param childUnit the archive unit
+     * @return true, to search also in its children
      */
-    void searchInArchiveUnit(ArchiveUnit au) {
-        List<ArchiveUnit> auList = au.getChildrenAuList().getArchiveUnitList();
+    boolean searchInArchiveUnit(ArchiveUnit childUnit) {
         TreeDataObjectPackageEditorPanel treePane = ResipGraphicApp.getTheWindow().treePane;
 
-        for (ArchiveUnit childUnit : auList) {
-            if (dataObjectPackage.isTouchedInDataObjectPackageId(childUnit.getInDataObjectPackageId()))
-                continue;
-            try {
-                String tmp;
-                int dataObjectCount = 0;
-                if (childUnit.getTheDataObjectGroup() != null) {
-                    DataObjectGroup dataObjectGroup = childUnit.getTheDataObjectGroup();
-                    dataObjectCount = dataObjectGroup.getBinaryDataObjectList().size() + dataObjectGroup.getPhysicalDataObjectList().size();
-                }
-                if (!(isWithoutChildArchiveUnitCheck && (childUnit.getChildrenAuList().getCount() != 0)) &&
-                        !(isWithoutDataObjectGroupCheck && (dataObjectCount != 0))) {
-                    if (isIdCheck) {
-                        tmp = "<" + childUnit.getInDataObjectPackageId() + ">";
-                        for (DataObject dataObject : childUnit.getDataObjectRefList().getDataObjectList()) {
-                            tmp += "<" + dataObject.getInDataObjectPackageId() + ">";
-                            if (dataObject instanceof DataObjectGroup) {
-                                for (BinaryDataObject bo : ((DataObjectGroup) dataObject).getBinaryDataObjectList())
-                                    tmp += "<" + bo.getInDataObjectPackageId() + ">";
-                                for (PhysicalDataObject po : ((DataObjectGroup) dataObject).getPhysicalDataObjectList())
-                                    tmp += "<" + po.getInDataObjectPackageId() + ">";
-                            }
-                        }
-                    } else if (isMetadataCheck) {
-                        tmp = childUnit.getContent().toString();
-                    } else
-                        tmp = treePane.getTreeTitle(childUnit);
+        try {
+            String tmp;
+            int dataObjectCount = 0;
+            if (childUnit.getTheDataObjectGroup() != null) {
+                DataObjectGroup dataObjectGroup = childUnit.getTheDataObjectGroup();
+                dataObjectCount = dataObjectGroup.getBinaryDataObjectList().size() + dataObjectGroup.getPhysicalDataObjectList().size();
+            }
+            if (!(isWithoutChildArchiveUnitCheck && (childUnit.getChildrenAuList().getCount() != 0)) &&
+                    !(isWithoutDataObjectGroupCheck && (dataObjectCount != 0))) {
+                if ((candidateFilter != null) && !candidateFilter.test(childUnit))
+                    return true;
+                if (isIdCheck)
+                    tmp = SearchIndex.getIdText(childUnit);
+                else if (isMetadataCheck) {
+                    tmp = childUnit.getContentString();
+                    if (tmp == null)
+                        return true;
+                } else
+                    tmp = treePane.getTreeTitle(childUnit);
 
-                    if (isRegExpCheck) {
-                        Matcher matcher = searchPattern.matcher(tmp);
-                        if (matcher.matches())
-                            searchResult.add(childUnit);
-                    } else {
-                        if (!isCaseCheck) tmp = tmp.toLowerCase();
-                        if (tmp.contains(searchExp))
-                            searchResult.add(childUnit);
-                    }
+                if (isRegExpCheck) {
+                    Matcher matcher = searchPattern.matcher(tmp);
+                    if (matcher.matches())
+                        searchResult.add(childUnit);
+                } else {
+                    if (!isCaseCheck) tmp = tmp.toLowerCase();
+                    if (tmp.contains(searchExp))
+                        searchResult.add(childUnit);
                 }
-                dataObjectPackage.addTouchedInDataObjectPackageId(childUnit.getInDataObjectPackageId());
-            } catch (SEDALibException ignored) {
             }
-            searchInArchiveUnit(childUnit);
+        } catch (SEDALibException ignored) {
         }
+        return true;
     }
 
     @Override
@@ -144,10 +137,19 @@ public class SearchThread extends SwingWorker<String, String> {
         else if (!isCaseCheck) searchExp = searchExp.toLowerCase();
         if (isIdCheck) searchExp = "<" + searchExp + ">";
         dataObjectPackage=searchUnit.getDataObjectPackage();
-        dataObjectPackage.resetTouchedInDataObjectPackageIdMap();
         searchResult = new LinkedList<ArchiveUnit>();
+        SearchIndex searchIndex = ResipGraphicApp.getTheWindow().treePane.getSearchIndex();
+        if ((searchIndex != null) && (searchIndex.getDataObjectPackage() == dataObjectPackage))
+            candidateFilter = searchIndex.getCandidateFilter(isIdCheck ? SearchIndex.ID_FIELD :
+                            (isMetadataCheck ? SearchIndex.METADATA_FIELD : SearchIndex.TITLE_FIELD),
+                    isRegExpCheck ? searchText : searchExp, isRegExpCheck);
 
-        searchInArchiveUnit(searchUnit);
+        try {
+            new ArchiveUnitTraversal(dataObjectPackage).traverse(searchUnit.getChildrenAuList().getArchiveUnitList(),
+                    this::searchInArchiveUnit);
+        } catch (SEDALibException | InterruptedException e) {
+            return "KO";
+        }
         return "OK";
     }
 
@@ -28,8 +28,10 @@
 package fr.gouv.vitam.tools.resip.threads;
 
 import fr.gouv.vitam.tools.resip.app.ResipGraphicApp;
+import fr.gouv.vitam.tools.resip.data.TechnicalIndex;
 import fr.gouv.vitam.tools.sedalib.core.*;
 import fr.gouv.vitam.tools.sedalib.metadata.data.FormatIdentification;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 
 import javax.swing.*;
 import java.util.ArrayList;
@@ -100,54 +102,60 @@ public class TechnicalSearchThread extends SwingWorker<String, String> {
     private boolean testBinaryDataObject(BinaryDataObject bdo) {
         if ((bdo.size == null) && ((min != 0) || (max != Long.MAX_VALUE)))
             return false;
-        if ((bdo.size.getValue() < min) || (bdo.size.getValue() > max))
+        if ((bdo.size != null) && ((bdo.size.getValue() < min) || (bdo.size.getValue() > max)))
             return false;
         if (allFormatsFlag)
             return true;
         FormatIdentification formatIdentification=bdo.formatIdentification;
         if (formatIdentification==null)
             return false;
-        if (formats.contains(formatIdentification.getSimpleMetadata("FormatId")))
+        return isSearchedFormat(formatIdentification.getSimpleMetadata("FormatId"));
+    }
+
+    private boolean isSearchedFormat(String formatId) {
+        if (formats.contains(formatId))
             return true;
-        if (searchOthers && !otherFormats.contains(formatIdentification.getSimpleMetadata("FormatId")))
+        if (searchOthers && !otherFormats.contains(formatId))
             return true;
         return false;
     }
 
-    private void searchInArchiveUnit(ArchiveUnit au) {
-        List<ArchiveUnit> auList = au.getChildrenAuList().getArchiveUnitList();
-
-        for (ArchiveUnit childUnit : auList) {
-            if (dataObjectPackage.isTouchedInDataObjectPackageId(childUnit.getInDataObjectPackageId()))
+    private boolean searchInArchiveUnit(ArchiveUnit childUnit) {
+        for (DataObject dataObject : childUnit.getDataObjectRefList().getDataObjectList()) {
+            if (dataObject instanceof PhysicalDataObject)
                 continue;
-            for (DataObject dataObject : childUnit.getDataObjectRefList().getDataObjectList()) {
-                if (dataObject instanceof PhysicalDataObject)
-                    continue;
-                else if (dataObject instanceof BinaryDataObject) {
-                    BinaryDataObject bdo = (BinaryDataObject) dataObject;
+            else if (dataObject instanceof BinaryDataObject) {
+                BinaryDataObject bdo = (BinaryDataObject) dataObject;
+                if (testBinaryDataObject(bdo))
+                    addBinaryDataObject(childUnit, bdo);
+
+            } else if (dataObject instanceof DataObjectGroup) {
+                for (BinaryDataObject bdo : ((DataObjectGroup) dataObject).getBinaryDataObjectList()) {
                     if (testBinaryDataObject(bdo))
                         addBinaryDataObject(childUnit, bdo);
-
-                } else if (dataObject instanceof DataObjectGroup) {
-                    for (BinaryDataObject bdo : ((DataObjectGroup) dataObject).getBinaryDataObjectList()) {
-                        if (testBinaryDataObject(bdo))
-                            addBinaryDataObject(childUnit, bdo);
-                    }
                 }
             }
-            dataObjectPackage.addTouchedInDataObjectPackageId(childUnit.getInDataObjectPackageId());
-
-            searchInArchiveUnit(childUnit);
         }
+        return true;
     }
 
     @Override
     public String doInBackground() {
         dataObjectPackage =searchUnit.getDataObjectPackage();
-        dataObjectPackage.resetTouchedInDataObjectPackageIdMap();
         searchDataObjectResult = new LinkedHashMap<ArchiveUnit, List<BinaryDataObject>>();
 
-        searchInArchiveUnit(searchUnit);
+        try {
+            TechnicalIndex technicalIndex = ResipGraphicApp.getTheWindow().treePane.getTechnicalIndex();
+            if ((technicalIndex != null) && (technicalIndex.getDataObjectPackage() == dataObjectPackage) &&
+                    (searchUnit == dataObjectPackage.getGhostRootAu()))
+                searchDataObjectResult = technicalIndex.findBinaryDataObjects(allFormatsFlag ? null :
+                        this::isSearchedFormat, min, max);
+            else
+                new ArchiveUnitTraversal(dataObjectPackage).traverse(searchUnit.getChildrenAuList().getArchiveUnitList(),
+                        this::searchInArchiveUnit);
+        } catch (SEDALibException | InterruptedException e) {
+            return "KO";
+        }
         return "OK";
     }
 
@@ -0,0 +1,95 @@
+package fr.gouv.vitam.tools.resip;
+
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.metadata.content.Content;
+import fr.gouv.vitam.tools.sedalib.metadata.data.FormatIdentification;
+import fr.gouv.vitam.tools.sedalib.metadata.namedtype.DigestType;
+import fr.gouv.vitam.tools.sedalib.metadata.namedtype.IntegerType;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+
+import java.nio.file.Path;
+
+/**
+ * The type Test fixtures, building small DataObjectPackages in memory.
+ */
+public class TestFixtures {
+
+    /**
+     * New ArchiveUnit, child of the ghost root, referencing the DataObjectGroup if not null.
+     *
+     * @param dataObjectPackage the data object package
+     * @param dataObjectGroup   the data object group, or null
+     * @return the archive unit
+     */
+    public static ArchiveUnit newArchiveUnit(DataObjectPackage dataObjectPackage, DataObjectGroup dataObjectGroup) {
+        ArchiveUnit au = new ArchiveUnit(dataObjectPackage);
+        dataObjectPackage.getGhostRootAu().addChildArchiveUnit(au);
+        if (dataObjectGroup != null)
+            au.addDataObjectById(dataObjectGroup.getInDataObjectPackageId());
+        return au;
+    }
+
+    /**
+     * New ArchiveUnit, child of the ghost root, with an Item Content of given title and description.
+     *
+     * @param dataObjectPackage the data object package
+     * @param title             the title
+     * @param description       the description
+     * @return the archive unit
+     * @throws SEDALibException if the content can't be built
+     */
+    public static ArchiveUnit newArchiveUnit(DataObjectPackage dataObjectPackage, String title, String description)
+            throws SEDALibException {
+        ArchiveUnit au = newArchiveUnit(dataObjectPackage, null);
+        Content content = new Content();
+        content.addNewMetadata("DescriptionLevel", "Item");
+        content.addNewMetadata("Title", title);
+        content.addNewMetadata("Description", description);
+        au.setContent(content);
+        return au;
+    }
+
+    /**
+     * New BinaryDataObject, in the DataObjectGroup, with given format and size.
+     *
+     * @param dataObjectPackage the data object package
+     * @param dataObjectGroup   the data object group
+     * @param formatId          the format id, or null if not identified
+     * @param size              the size
+     * @return the binary data object
+     * @throws SEDALibException if the metadata can't be built
+     */
+    public static BinaryDataObject newBinaryDataObject(DataObjectPackage dataObjectPackage,
+                                                       DataObjectGroup dataObjectGroup, String formatId, long size)
+            throws SEDALibException {
+        BinaryDataObject bdo = new BinaryDataObject(dataObjectPackage);
+        if (formatId != null)
+            bdo.formatIdentification = new FormatIdentification(null, null, formatId, null);
+        bdo.size = new IntegerType("Size", size);
+        dataObjectGroup.addDataObject(bdo);
+        return bdo;
+    }
+
+    /**
+     * New BinaryDataObject master, in the DataObjectGroup, with given digest and file.
+     *
+     * @param dataObjectPackage the data object package
+     * @param dataObjectGroup   the data object group
+     * @param digest            the message digest, or null if not computed
+     * @param path              the file path, or null
+     * @param filename          the filename
+     * @return the binary data object
+     */
+    public static BinaryDataObject newBinaryDataObject(DataObjectPackage dataObjectPackage,
+                                                       DataObjectGroup dataObjectGroup, String digest, Path path,
+                                                       String filename) {
+        BinaryDataObject bdo = new BinaryDataObject(dataObjectPackage, path, filename, "BinaryMaster_1");
+        if (digest != null)
+            bdo.messageDigest = new DigestType("MessageDigest", digest);
+        dataObjectGroup.addDataObject(bdo);
+        return bdo;
+    }
+}
@@ -0,0 +1,117 @@
+package fr.gouv.vitam.tools.resip.data;
+
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static fr.gouv.vitam.tools.resip.TestFixtures.newArchiveUnit;
+import static fr.gouv.vitam.tools.resip.TestFixtures.newBinaryDataObject;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DuplicatesFinderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path newFile(String name, int size, byte last) throws Exception {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++)
+            content[i] = (byte) (i % 251);
+        content[size - 1] = last;
+        return Files.write(tempDir.resolve(name), content);
+    }
+
+    @Test
+    void testFindDuplicates() throws Exception {
+        // Given
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        DataObjectGroup dogA1 = new DataObjectGroup(dataObjectPackage, null);
+        newBinaryDataObject(dataObjectPackage, dogA1, "a", null, "f1");
+        newBinaryDataObject(dataObjectPackage, dogA1, "b", null, "f2");
+        DataObjectGroup dogA2 = new DataObjectGroup(dataObjectPackage, null);
+        newBinaryDataObject(dataObjectPackage, dogA2, "b", null, "f2");
+        newBinaryDataObject(dataObjectPackage, dogA2, "a", null, "f3");
+        DataObjectGroup dogN1 = new DataObjectGroup(dataObjectPackage, null);
+        newBinaryDataObject(dataObjectPackage, dogN1, null, null, "n");
+        DataObjectGroup dogN2 = new DataObjectGroup(dataObjectPackage, null);
+        newBinaryDataObject(dataObjectPackage, dogN2, null, null, "n");
+        int bigSize = DuplicatesFinder.PARTIAL_HASH_SIZE + 1000;
+        DataObjectGroup dogF1 = new DataObjectGroup(dataObjectPackage, null);
+        newBinaryDataObject(dataObjectPackage, dogF1, null, newFile("f1.bin", bigSize, (byte) 1), "f");
+        DataObjectGroup dogF2 = new DataObjectGroup(dataObjectPackage, null);
+        newBinaryDataObject(dataObjectPackage, dogF2, null, newFile("f2.bin", bigSize, (byte) 1), "f");
+        DataObjectGroup dogF3 = new DataObjectGroup(dataObjectPackage, null);
+        newBinaryDataObject(dataObjectPackage, dogF3, null, newFile("f3.bin", bigSize, (byte) 2), "f");
+        DataObjectGroup dogS = new DataObjectGroup(dataObjectPackage, null);
+        newBinaryDataObject(dataObjectPackage, dogS, null, newFile("s.bin", 10, (byte) 1), "f");
+        ArchiveUnit au1 = newArchiveUnit(dataObjectPackage, dogA1);
+        ArchiveUnit au2 = newArchiveUnit(dataObjectPackage, dogA2);
+        newArchiveUnit(dataObjectPackage, dogN1);
+        newArchiveUnit(dataObjectPackage, dogN2);
+        ArchiveUnit au5 = newArchiveUnit(dataObjectPackage, dogF1);
+        ArchiveUnit au6 = newArchiveUnit(dataObjectPackage, dogF2);
+        newArchiveUnit(dataObjectPackage, dogF3);
+        newArchiveUnit(dataObjectPackage, dogS);
+        ArchiveUnit au9 = newArchiveUnit(dataObjectPackage, dogA1);
+
+        // When compared by content
+        DuplicatesFinder duplicatesFinder = new DuplicatesFinder(dataObjectPackage, true, false, false);
+        duplicatesFinder.find();
+
+        // Then BinaryDataObjects order ignored, no digest never equal and files hashed only when needed
+        List<List<DataObjectGroup>> dogLists =
+                new ArrayList<List<DataObjectGroup>>(duplicatesFinder.getDogByFingerprintMap().values());
+        assertThat(dogLists).hasSize(2);
+        assertThat(dogLists.get(0)).containsExactly(dogA1, dogA2);
+        assertThat(dogLists.get(1)).containsExactly(dogF1, dogF2);
+        String fingerprint = duplicatesFinder.getDogByFingerprintMap().keySet().iterator().next();
+        assertThat(fingerprint).hasSize(32);
+        assertThat(duplicatesFinder.getAuByFingerprintMap().get(fingerprint)).containsExactly(au1, au2, au9);
+        assertThat(duplicatesFinder.getAuByFingerprintMap().values()).contains(Arrays.asList(au5, au6));
+        assertThat(duplicatesFinder.getPartialHashCount()).isEqualTo(3);
+        assertThat(duplicatesFinder.getFullHashCount()).isEqualTo(3);
+
+        // When compared also by filename, Then only the shared DataObjectGroup
+        duplicatesFinder = new DuplicatesFinder(dataObjectPackage, true, true, false);
+        duplicatesFinder.find();
+        assertThat(duplicatesFinder.getDogByFingerprintMap().values())
+                .containsExactly(Arrays.asList(dogA1), Arrays.asList(dogF1, dogF2));
+        assertThat(duplicatesFinder.getAuByFingerprintMap().values()).contains(Arrays.asList(au1, au9));
+    }
+
+    @Test
+    void testParallelFind() throws Exception {
+        // Given
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        List<DataObjectGroup> dogList = new ArrayList<DataObjectGroup>();
+        for (int i = 0; i < 2000; i++) {
+            DataObjectGroup dog = new DataObjectGroup(dataObjectPackage, null);
+            newBinaryDataObject(dataObjectPackage, dog, "digest" + (i % 10), null, "f");
+            newArchiveUnit(dataObjectPackage, dog);
+            dogList.add(dog);
+        }
+
+        // When found in parallel and sequentially
+        DuplicatesFinder duplicatesFinder = new DuplicatesFinder(dataObjectPackage, true, true, false);
+        duplicatesFinder.setThreadCount(4);
+        duplicatesFinder.find();
+        DuplicatesFinder sequentialDuplicatesFinder = new DuplicatesFinder(dataObjectPackage, true, true, false);
+        sequentialDuplicatesFinder.setThreadCount(1);
+        sequentialDuplicatesFinder.find();
+
+        // Then same groups in tree order
+        assertThat(duplicatesFinder.getDogByFingerprintMap()).hasSize(10);
+        assertThat(duplicatesFinder.getDogByFingerprintMap().values().iterator().next()).hasSize(200)
+                .startsWith(dogList.get(0), dogList.get(10));
+        assertThat(sequentialDuplicatesFinder.getDogByFingerprintMap())
+                .isEqualTo(duplicatesFinder.getDogByFingerprintMap());
+    }
+}
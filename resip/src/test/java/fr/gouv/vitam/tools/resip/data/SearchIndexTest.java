@@ -0,0 +1,80 @@
+package fr.gouv.vitam.tools.resip.data;
+
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static fr.gouv.vitam.tools.resip.TestFixtures.newArchiveUnit;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchIndexTest {
+
+    private List<ArchiveUnit> filter(List<ArchiveUnit> archiveUnits, Predicate<ArchiveUnit> candidateFilter) {
+        List<ArchiveUnit> result = new ArrayList<ArchiveUnit>();
+        for (ArchiveUnit au : archiveUnits)
+            if (candidateFilter.test(au))
+                result.add(au);
+        return result;
+    }
+
+    @Test
+    void testCandidates() throws Exception {
+        // Given
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        ArchiveUnit au1 = newArchiveUnit(dataObjectPackage, "Rapport annuel 2019", "Budget de l'État");
+        ArchiveUnit au2 = newArchiveUnit(dataObjectPackage, "Compte rendu", "Réunion annuelle");
+        ArchiveUnit au3 = newArchiveUnit(dataObjectPackage, "Courrier", "Lettre");
+        List<ArchiveUnit> archiveUnits = Arrays.asList(au1, au2, au3);
+        Map<ArchiveUnit, String> titles = new HashMap<ArchiveUnit, String>();
+        for (ArchiveUnit au : archiveUnits)
+            titles.put(au, au.getContent().getSimpleMetadata("Title"));
+        SearchIndex searchIndex = new SearchIndex(dataObjectPackage, titles::get);
+
+        // When not indexed, Then all candidates
+        assertThat(filter(archiveUnits, searchIndex.getCandidateFilter(SearchIndex.TITLE_FIELD, "annuel", false)))
+                .containsExactly(au1, au2, au3);
+
+        // When indexed, Then term, prefix, infix and phrase searches narrowed
+        searchIndex.refresh();
+        assertThat(searchIndex.getDirtyCount()).isZero();
+        assertThat(filter(archiveUnits, searchIndex.getCandidateFilter(SearchIndex.TITLE_FIELD, "annuel", false)))
+                .containsExactly(au1);
+        assertThat(filter(archiveUnits, searchIndex.getCandidateFilter(SearchIndex.METADATA_FIELD, "annuel", false)))
+                .containsExactly(au1, au2);
+        assertThat(filter(archiveUnits, searchIndex.getCandidateFilter(SearchIndex.METADATA_FIELD, " annuel ", false)))
+                .containsExactly(au1);
+        assertThat(filter(archiveUnits, searchIndex.getCandidateFilter(SearchIndex.METADATA_FIELD, "NNUE", false)))
+                .containsExactly(au1, au2);
+        assertThat(filter(archiveUnits, searchIndex.getCandidateFilter(SearchIndex.METADATA_FIELD,
+                "rapport annuel 20", false))).containsExactly(au1);
+        assertThat(filter(archiveUnits, searchIndex.getCandidateFilter(SearchIndex.METADATA_FIELD, "de l'état", false)))
+                .containsExactly(au1);
+        assertThat(filter(archiveUnits, searchIndex.getCandidateFilter(SearchIndex.ID_FIELD,
+                "<" + au2.getInDataObjectPackageId() + ">", false))).containsExactly(au2);
+        assertThat(searchIndex.getCandidateFilter(SearchIndex.METADATA_FIELD, "<>", false)).isNull();
+
+        // When regular expression, Then narrowed by its literals
+        assertThat(filter(archiveUnits, searchIndex.getCandidateFilter(SearchIndex.METADATA_FIELD,
+                "Rap+ort\\s+annuel [0-9]{4}", true))).containsExactly(au1);
+        assertThat(searchIndex.getCandidateFilter(SearchIndex.METADATA_FIELD, "Rapport|Lettre", true)).isNull();
+        assertThat(SearchIndex.getRegExpLiterals("ab*c\\.d[xy\\]]+(ef)?g{2}h")).containsExactly("a", "c.d", "h");
+
+        // When changed, Then candidate until indexed again
+        au3.getContent().addNewMetadata("Description", "Rapport annuel");
+        searchIndex.markDirty(au3);
+        Predicate<ArchiveUnit> candidateFilter = searchIndex.getCandidateFilter(SearchIndex.METADATA_FIELD,
+                "rapport", false);
+        assertThat(filter(archiveUnits, candidateFilter)).containsExactly(au1, au3);
+        searchIndex.refresh();
+        assertThat(filter(archiveUnits, candidateFilter)).containsExactly(au1, au3);
+        assertThat(filter(archiveUnits, searchIndex.getCandidateFilter(SearchIndex.METADATA_FIELD,
+                "rapport", false))).containsExactly(au1, au3);
+    }
+}
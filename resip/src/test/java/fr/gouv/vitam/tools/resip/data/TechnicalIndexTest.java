@@ -0,0 +1,67 @@
+package fr.gouv.vitam.tools.resip.data;
+
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.metadata.namedtype.IntegerType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static fr.gouv.vitam.tools.resip.TestFixtures.newArchiveUnit;
+import static fr.gouv.vitam.tools.resip.TestFixtures.newBinaryDataObject;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TechnicalIndexTest {
+
+    @Test
+    void testSearchAndStatistics() throws Exception {
+        // Given
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        DataObjectGroup dog1 = new DataObjectGroup(dataObjectPackage, null);
+        BinaryDataObject pdf = newBinaryDataObject(dataObjectPackage, dog1, "fmt/18", 1000);
+        BinaryDataObject jpg = newBinaryDataObject(dataObjectPackage, dog1, "fmt/43", 50);
+        DataObjectGroup dog2 = new DataObjectGroup(dataObjectPackage, null);
+        BinaryDataObject unknown = newBinaryDataObject(dataObjectPackage, dog2, "x-fmt/999", 10);
+        BinaryDataObject unidentified = newBinaryDataObject(dataObjectPackage, dog2, null, 5);
+        ArchiveUnit au1 = newArchiveUnit(dataObjectPackage, dog1);
+        newArchiveUnit(dataObjectPackage, null);
+        ArchiveUnit au3 = newArchiveUnit(dataObjectPackage, dog2);
+        LinkedHashMap<String, List<String>> formatByCategoryMap = new LinkedHashMap<String, List<String>>();
+        formatByCategoryMap.put("PDF", Arrays.asList("fmt/18"));
+        formatByCategoryMap.put("Image", Arrays.asList("fmt/43"));
+        formatByCategoryMap.put("Autres", Arrays.asList("Other"));
+        TechnicalIndex technicalIndex = new TechnicalIndex(dataObjectPackage);
+
+        // When searched by format and size, Then
+        assertThat(technicalIndex.findBinaryDataObjects("fmt/18"::equals, 0, Long.MAX_VALUE))
+                .containsOnlyKeys(au1).containsEntry(au1, Arrays.asList(pdf));
+        LinkedHashMap<ArchiveUnit, List<BinaryDataObject>> result = technicalIndex.findBinaryDataObjects(null, 0, 100);
+        assertThat(result.keySet()).containsExactly(au1, au3);
+        assertThat(result.get(au1)).containsExactly(jpg);
+        assertThat(result.get(au3)).containsExactly(unknown, unidentified);
+        assertThat(technicalIndex.findBinaryDataObjects(formatId -> !formatId.startsWith("fmt"), 0, Long.MAX_VALUE)
+                .get(au3)).containsExactly(unknown);
+
+        // When statistics, Then by category with unknown formats in Other
+        List<StatisticData> statisticDataList = technicalIndex.getStatisticDataList(formatByCategoryMap,
+                "Tous formats");
+        assertThat(statisticDataList).extracting(StatisticData::getFormatCategory)
+                .containsExactly("PDF", "Image", "Autres", "Tous formats");
+        assertThat(statisticDataList).extracting(StatisticData::getObjectNumber).containsExactly(1, 1, 2, 4);
+        StatisticData all = statisticDataList.get(3);
+        assertThat(all.getMinSize()).isEqualTo(5);
+        assertThat(all.getMaxSize()).isEqualTo(1000);
+        assertThat(all.getTotalSize()).isEqualTo(1065);
+        assertThat(all.getMedianSize()).isEqualTo(10);
+        assertThat(all.getPercentileSize(90)).isEqualTo(1000);
+
+        // When changed and marked stale, Then rebuilt
+        jpg.size = new IntegerType("Size", 5000L);
+        technicalIndex.markStale();
+        assertThat(technicalIndex.findBinaryDataObjects(null, 0, 100).get(au1)).isNull();
+    }
+}
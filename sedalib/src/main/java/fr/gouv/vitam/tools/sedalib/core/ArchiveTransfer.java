@@ -33,13 +33,12 @@ import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
 import fr.gouv.vitam.tools.sedalib.xml.IndentXMLTool;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLValidatingOutputStream;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLValidator;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.XMLEvent;
 import javax.xml.validation.Schema;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
 
@@ -99,7 +98,7 @@ public class ArchiveTransfer {
      * @throws SEDALibException if the XML can't be written
      */
 
-    private void exportStartDocument(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
+    public void exportStartDocument(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
         try {
             xmlWriter.writeStartDocument();
             xmlWriter.writeStartElement("ArchiveTransfer");
@@ -122,7 +121,7 @@ public class ArchiveTransfer {
      * @throws SEDALibException if the XML can't be written
      */
 
-    private void exportHeader(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
+    public void exportHeader(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
         try {
             xmlWriter.writeElementValueIfNotEmpty("Comment", globalMetadata.comment);
             if (globalMetadata.isNowFlag())
@@ -143,7 +142,7 @@ public class ArchiveTransfer {
      * @throws SEDALibException if the XML can't be written
      */
 
-    private void exportFooter(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
+    public void exportFooter(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
         try {
             xmlWriter.writeElementValueIfNotEmpty("TransferRequestReplyIdentifier",
                     globalMetadata.transferRequestReplyIdentifier);
@@ -166,7 +165,7 @@ public class ArchiveTransfer {
      * @param xmlWriter the SEDAXMLStreamWriter generating the SEDA manifest
      * @throws SEDALibException if the XML can't be written
      */
-    private void exportEndDocument(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
+    public void exportEndDocument(SEDAXMLStreamWriter xmlWriter) throws SEDALibException {
         try {
             xmlWriter.writeEndElement();
             xmlWriter.writeEndDocument();
@@ -329,40 +328,58 @@ public class ArchiveTransfer {
 
     // SEDA Validator
 
-    public void seda21Validate(SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
-        String manifest;
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             SEDAXMLStreamWriter ixsw = new SEDAXMLStreamWriter(baos, IndentXMLTool.STANDARD_INDENT)) {
-            toSedaXml(ixsw, true, sedaLibProgressLogger);
-            manifest = baos.toString("UTF-8");
-        } catch (XMLStreamException | IOException e) {
-            throw new SEDALibException("Echec d'écriture XML du manifest", e);
+    /**
+     * Validate the SEDA manifest while it is written, without keeping it in memory or on disk.
+     *
+     * @param schema                the schema
+     * @param rngSchema             true for a RNG schema, false for a XSD one
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if any validation problem occurs with a descriptive message
+     * @throws InterruptedException if export process is interrupted
+     */
+    private void validateManifest(Schema schema, boolean rngSchema, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        SEDAXMLValidatingOutputStream vos = new SEDAXMLValidatingOutputStream(null, schema, rngSchema);
+        try {
+            try (SEDAXMLStreamWriter ixsw = new SEDAXMLStreamWriter(vos, IndentXMLTool.STANDARD_INDENT)) {
+                toSedaXml(ixsw, true, sedaLibProgressLogger);
+            }
+            vos.finish();
+        } catch (XMLStreamException | SEDALibException e) {
+            // a write failure may come from the validation abort
+            if (vos.getValidationException() != null)
+                throw vos.getValidationException();
+            if (e instanceof XMLStreamException)
+                throw new SEDALibException("Echec d'écriture XML du manifest", e);
+            throw (SEDALibException) e;
+        } finally {
+            vos.abort();
         }
-        SEDAXMLValidator sedaXMLvalidator = new SEDAXMLValidator();
-        Schema sedaSchema = sedaXMLvalidator.getSEDASchema();
-        sedaXMLvalidator.checkWithXSDSchema(manifest, sedaSchema);
     }
 
+    /**
+     * Validate SEDA 2.1 conformity. The manifest is validated while written, in a single serialization pass.
+     *
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if any validation problem occurs with a descriptive message
+     * @throws InterruptedException if export process is interrupted
+     */
+    public void seda21Validate(SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
+        validateManifest(new SEDAXMLValidator().getSEDASchema(), false, sedaLibProgressLogger);
+    }
+
+    /**
+     * Validate SEDA Profile, either RNG or XSD file, conformity. The manifest is validated while written, in a single
+     * serialization pass.
+     *
+     * @param profileFileName       the profile file name
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if any validation problem occurs with a descriptive message
+     * @throws InterruptedException if export process is interrupted
+     */
     public void sedaProfileValidate(String profileFileName, SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
-        String manifest;
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             SEDAXMLStreamWriter ixsw = new SEDAXMLStreamWriter(baos, IndentXMLTool.STANDARD_INDENT)) {
-            toSedaXml(ixsw, true, sedaLibProgressLogger);
-            manifest = baos.toString("UTF-8");
-        } catch (XMLStreamException | IOException e) {
-            throw new SEDALibException("Echec d'écriture XML du manifest", e);
-        }
-        SEDAXMLValidator sedaXMLvalidator = new SEDAXMLValidator();
-        Schema sedaSchema;
-        if (profileFileName.endsWith(".rng"))
-            sedaSchema = sedaXMLvalidator.getSchemaFromRNGFile(profileFileName);
-        else
-            sedaSchema = sedaXMLvalidator.getSchemaFromXSDFile(profileFileName);
-
-        if (profileFileName.endsWith(".rng"))
-            sedaXMLvalidator.checkWithRNGSchema(manifest, sedaSchema);
-        else
-            sedaXMLvalidator.checkWithXSDSchema(manifest, sedaSchema);
+        validateManifest(new SEDAXMLValidator().getSchemaFromProfileFile(profileFileName),
+                SEDAXMLValidator.isRNGProfile(profileFileName), sedaLibProgressLogger);
     }
 
     // Getters and setters
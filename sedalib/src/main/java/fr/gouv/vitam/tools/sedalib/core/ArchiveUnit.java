@@ -29,15 +29,17 @@ package fr.gouv.vitam.tools.sedalib.core;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import fr.gouv.vitam.tools.sedalib.metadata.ArchiveUnitProfile;
+import fr.gouv.vitam.tools.sedalib.metadata.SEDAMetadata;
 import fr.gouv.vitam.tools.sedalib.metadata.content.Content;
 import fr.gouv.vitam.tools.sedalib.metadata.management.Management;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.xml.CompactXMLData;
+import fr.gouv.vitam.tools.sedalib.xml.CompactXMLDataDiskStore;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
 
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -57,9 +59,9 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
     // SEDA elements
 
     /**
-     * The ArchiveUnit profile xml element in String form.
+     * The ArchiveUnit profile xml element in String form, kept compact, see {@link CompactXMLData}.
      */
-    private String archiveUnitProfileXmlData;
+    private CompactXMLData archiveUnitProfileXmlData;
 
     /**
      * The ArchiveUnit profile xml element in metadata form.
@@ -68,9 +70,9 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
     private ArchiveUnitProfile archiveUnitProfile;
 
     /**
-     * The Management xml element in String form.
+     * The Management xml element in String form, kept compact, see {@link CompactXMLData}.
      */
-    private String managementXmlData;
+    private CompactXMLData managementXmlData;
 
     /**
      * The Management xml element in metadata form.
@@ -79,9 +81,9 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
     private Management management;
 
     /**
-     * The Content xml element in String form.
+     * The Content xml element in String form, kept compact, see {@link CompactXMLData}.
      */
-    private String contentXmlData;
+    private CompactXMLData contentXmlData;
 
     /**
      * The Content xml element in String form.
@@ -114,6 +116,8 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         this.content = null;
         this.childrenAuList = new ArchiveUnitRefList(null);
         this.dataObjectRefList = new DataObjectRefList(null);
+        this.childrenAuList.setOwner(this);
+        this.dataObjectRefList.setOwner(this);
     }
 
     /**
@@ -134,6 +138,8 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         this.content = null;
         this.childrenAuList = new ArchiveUnitRefList(dataObjectPackage);
         this.dataObjectRefList = new DataObjectRefList(dataObjectPackage);
+        this.childrenAuList.setOwner(this);
+        this.dataObjectRefList.setOwner(this);
         if (dataObjectPackage != null)
             try {
                 dataObjectPackage.addArchiveUnit(this);
@@ -151,11 +157,12 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public String getArchiveUnitProfileXmlData() {
         if (archiveUnitProfileXmlData != null)
-            return archiveUnitProfileXmlData;
+            return archiveUnitProfileXmlData.toString();
         if (archiveUnitProfile == null)
             return null;
-        archiveUnitProfileXmlData = archiveUnitProfile.toString();
-        return archiveUnitProfileXmlData;
+        String xmlData = archiveUnitProfile.toString();
+        archiveUnitProfileXmlData = CompactXMLData.of(xmlData);
+        return xmlData;
     }
 
     /**
@@ -164,7 +171,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      * @param archiveUnitProfileXmlData the archive unit profile xml data
      */
     public void setArchiveUnitProfileXmlData(String archiveUnitProfileXmlData) {
-        this.archiveUnitProfileXmlData = archiveUnitProfileXmlData;
+        this.archiveUnitProfileXmlData = CompactXMLData.of(archiveUnitProfileXmlData);
         this.archiveUnitProfile = null;
     }
 
@@ -181,7 +188,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         }
         if (archiveUnitProfileXmlData == null)
             return null;
-        archiveUnitProfile = (ArchiveUnitProfile) ArchiveUnitProfile.fromString(archiveUnitProfileXmlData,
+        archiveUnitProfile = (ArchiveUnitProfile) SEDAMetadata.fromCompactXMLData(archiveUnitProfileXmlData,
                 ArchiveUnitProfile.class);
         // as fromString function normalise ArchiveUnitProfile had to destroy approximate version archiveUnitProfileXmlData
         archiveUnitProfileXmlData = null;
@@ -205,11 +212,12 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public String getManagementXmlData() {
         if (managementXmlData != null)
-            return managementXmlData;
+            return managementXmlData.toString();
         if (management == null)
             return null;
-        managementXmlData = management.toString();
-        return managementXmlData;
+        String xmlData = management.toString();
+        managementXmlData = CompactXMLData.of(xmlData);
+        return xmlData;
     }
 
     /**
@@ -218,7 +226,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      * @param managementXmlData the management xml data
      */
     public void setManagementXmlData(String managementXmlData) {
-        this.managementXmlData = managementXmlData;
+        this.managementXmlData = CompactXMLData.of(managementXmlData);
         this.management = null;
     }
 
@@ -235,8 +243,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         }
         if (managementXmlData == null)
             return null;
-        management = (Management) Management.fromString(managementXmlData,
-                Management.class);
+        management = (Management) SEDAMetadata.fromCompactXMLData(managementXmlData, Management.class);
         // as fromString function normalise Management had to destroy approximate version managementXmlData
         managementXmlData = null;
         return management;
@@ -259,11 +266,12 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public String getContentXmlData() {
         if (contentXmlData != null)
-            return contentXmlData;
+            return contentXmlData.toString();
         if (content == null)
             return null;
-        contentXmlData = content.toString();
-        return contentXmlData;
+        String xmlData = content.toString();
+        contentXmlData = CompactXMLData.of(xmlData);
+        return xmlData;
     }
 
     /**
@@ -278,8 +286,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         if (contentXmlData == null)
             return false;
         try {
-            content = (Content) Content.fromString(contentXmlData,
-                    Content.class);
+            content = (Content) SEDAMetadata.fromCompactXMLData(contentXmlData, Content.class);
             contentXmlData = null;
         } catch (SEDALibException e) {
             return false;
@@ -299,22 +306,43 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         if (content != null)
             return content.filteredToString(getDataObjectPackage().getExportMetadataList());
         try {
-            content = (Content) Content.fromString(contentXmlData,
-                    Content.class);
+            content = (Content) SEDAMetadata.fromCompactXMLData(contentXmlData, Content.class);
             contentXmlData = null;
         } catch (SEDALibException e) {
-            return contentXmlData;
+            return contentXmlData.toString();
         }
         return content.filteredToString(getDataObjectPackage().getExportMetadataList());
     }
 
+    /**
+     * Gets content in normalised String form, the same as getContent().toString(), but without keeping the parsed
+     * Content when the ArchiveUnit is in compact xml form, so that it can be read from another thread.
+     *
+     * @return the content normalised String, or null if there is no content
+     * @throws SEDALibException if raw xml data is not convenient
+     */
+    @JsonIgnore
+    public String getContentString() throws SEDALibException {
+        Content localContent = content;
+        if (localContent != null)
+            return localContent.toString();
+        CompactXMLData localContentXmlData = contentXmlData;
+        if (localContentXmlData != null)
+            return SEDAMetadata.fromCompactXMLData(localContentXmlData, Content.class).toString();
+        // the content may have been parsed meanwhile
+        localContent = content;
+        if (localContent == null)
+            return null;
+        return localContent.toString();
+    }
+
     /**
      * Sets content xml data.
      *
      * @param contentXmlData the content xml data
      */
     public void setContentXmlData(String contentXmlData) {
-        this.contentXmlData = contentXmlData;
+        this.contentXmlData = CompactXMLData.of(contentXmlData);
         this.content = null;
     }
 
@@ -331,8 +359,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         }
         if (contentXmlData == null)
             return null;
-        content = (Content) Content.fromString(contentXmlData,
-                Content.class);
+        content = (Content) SEDAMetadata.fromCompactXMLData(contentXmlData, Content.class);
         // as fromString function normalise Content had to destroy approximate version contentXmlData
         contentXmlData = null;
         return content;
@@ -366,6 +393,22 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         setContent(c);
     }
 
+    /**
+     * Move the XML blocks kept in another disk store to the given one, see
+     * {@link CompactXMLData#moveToDiskStore(CompactXMLDataDiskStore)}.
+     *
+     * @param diskStore the disk store
+     * @throws IOException if the disk store can't store the blocks
+     */
+    public void moveXmlDataToDiskStore(CompactXMLDataDiskStore diskStore) throws IOException {
+        if (archiveUnitProfileXmlData != null)
+            archiveUnitProfileXmlData = archiveUnitProfileXmlData.moveToDiskStore(diskStore);
+        if (managementXmlData != null)
+            managementXmlData = managementXmlData.moveToDiskStore(diskStore);
+        if (contentXmlData != null)
+            contentXmlData = contentXmlData.moveToDiskStore(diskStore);
+    }
+
     /**
      * Adds one DataObject by Id.
      *
@@ -424,6 +467,23 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
 
     // SEDA XML exporter
 
+    /**
+     * Write a metadata xml element kept in compact raw form as is, or from the
+     * metadata form if not.
+     *
+     * @param xmlWriter the SEDAXMLStreamWriter generating the SEDA manifest
+     * @param xmlData   the xml element in compact raw form or null
+     * @param metadata  the xml element in metadata form or null
+     * @throws XMLStreamException if the XML can't be written
+     */
+    private static void writeRawXMLData(SEDAXMLStreamWriter xmlWriter, CompactXMLData xmlData, Object metadata)
+            throws XMLStreamException {
+        if (xmlData != null)
+            xmlWriter.writeRawXMLBlockIfNotEmpty(xmlData);
+        else if (metadata != null)
+            xmlWriter.writeRawXMLBlockIfNotEmpty(metadata.toString());
+    }
+
     /**
      * Export the ArchiveUnit in XML expected form for the SEDA Manifest.
      *
@@ -435,34 +495,91 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public void toSedaXml(SEDAXMLStreamWriter xmlWriter, boolean imbricateFlag, SEDALibProgressLogger sedaLibProgressLogger)
             throws SEDALibException, InterruptedException {
+        int firstRefId = 0;
         try {
             if (imbricateFlag) {
-                if (getDataObjectPackage().isTouchedInDataObjectPackageId(inDataPackageObjectId)) {
+                if (getDataObjectPackage().isTouched(this)) {
                     xmlWriter.writeStartElement("ArchiveUnit");
                     xmlWriter.writeAttribute("id", getDataObjectPackage().getNextRefID());
                     xmlWriter.writeElementValue("ArchiveUnitRefId", inDataPackageObjectId);
                     xmlWriter.writeEndElement();
                     return;
                 } else
-                    getDataObjectPackage().addTouchedInDataObjectPackageId(inDataPackageObjectId);
-            }
+                    getDataObjectPackage().addTouched(this);
+            } else
+                firstRefId = getDataObjectPackage().reserveRefIDs(childrenAuList.getCount());
+        } catch (XMLStreamException e) {
+            throw new SEDALibException(
+                    "Erreur d'écriture XML de l'ArchiveUnit [" + inDataPackageObjectId + "]", e);
+        }
+        writeSedaXml(xmlWriter, imbricateFlag, firstRefId, sedaLibProgressLogger);
 
+        int counter = getDataObjectPackage().getNextInOutCounter();
+        doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
+                "sedalib: " + counter + " métadonnées ArchiveUnit exportées");
+    }
+
+    /**
+     * Export the ArchiveUnit in flat mode XML expected form for the SEDA Manifest, in a UTF-8 fragment to be
+     * inserted by {@link SEDAXMLStreamWriter#writeRawXMLFragment(byte[])} in the manifest writer.
+     * <p>
+     * The child ArchiveUnits references RefIDs are numbered from firstRefId, as reserved by the caller, and the
+     * DataObjectPackage is not modified, so that different ArchiveUnits can be rendered concurrently, once their
+     * references lists have been resolved.
+     *
+     * @param xmlWriter             the SEDAXMLStreamWriter generating the SEDA manifest, used for indentation
+     * @param firstRefId            the first RefID number of the child ArchiveUnits references
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @return the XML fragment in UTF-8 bytes
+     * @throws SEDALibException     if the XML can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
+    byte[] toFlatSedaXmlFragment(SEDAXMLStreamWriter xmlWriter, int firstRefId,
+                                 SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (SEDAXMLStreamWriter fragmentWriter = xmlWriter.newFragmentWriter(baos)) {
+            writeSedaXml(fragmentWriter, false, firstRefId, sedaLibProgressLogger);
+            fragmentWriter.flush();
+        } catch (XMLStreamException e) {
+            throw new SEDALibException(
+                    "Erreur d'écriture XML de l'ArchiveUnit [" + inDataPackageObjectId + "]", e);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Write the ArchiveUnit element.
+     *
+     * @param xmlWriter             the SEDAXMLStreamWriter generating the SEDA manifest
+     * @param imbricateFlag         indicates if the manifest ArchiveUnits are to be exported in imbricate mode (true)
+     *                              or in flat mode (false)
+     * @param firstRefId            the first RefID number of the child ArchiveUnits references, in flat mode
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the XML can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
+    private void writeSedaXml(SEDAXMLStreamWriter xmlWriter, boolean imbricateFlag, int firstRefId,
+                              SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException, InterruptedException {
+        try {
             xmlWriter.writeStartElement("ArchiveUnit");
             xmlWriter.writeAttribute("id", inDataPackageObjectId);
-            xmlWriter.writeRawXMLBlockIfNotEmpty(getArchiveUnitProfileXmlData());
-            xmlWriter.writeRawXMLBlockIfNotEmpty(getManagementXmlData());
+            writeRawXMLData(xmlWriter, archiveUnitProfileXmlData, archiveUnitProfile);
+            writeRawXMLData(xmlWriter, managementXmlData, management);
             if ((getDataObjectPackage().getExportMetadataList() != null) &&
                     !isContentSEDACompliant()) {
                 doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.GLOBAL,
                         "sedalib: l'ArchiveUnit [" + inDataPackageObjectId + "] ne peut être filtrée car son Content " +
                                 "n'est pas conforme SEDA. Le Content est écrit tel quel.", null);
-                xmlWriter.writeRawXMLBlockIfNotEmpty(getContentXmlData());
-            } else
+                writeRawXMLData(xmlWriter, contentXmlData, content);
+            } else if (getDataObjectPackage().getExportMetadataList() == null)
+                writeRawXMLData(xmlWriter, contentXmlData, content);
+            else
                 xmlWriter.writeRawXMLBlockIfNotEmpty(getFilteredContentExportString());
+            int refId = firstRefId;
             for (ArchiveUnit au : childrenAuList.getArchiveUnitList()) {
                 if (!imbricateFlag) {
                     xmlWriter.writeStartElement("ArchiveUnit");
-                    xmlWriter.writeAttribute("id", getDataObjectPackage().getNextRefID());
+                    xmlWriter.writeAttribute("id", "RefID" + refId++);
                     xmlWriter.writeElementValue("ArchiveUnitRefId", au.inDataPackageObjectId);
                     xmlWriter.writeEndElement();
                 } else {
@@ -482,10 +599,6 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
             throw new SEDALibException(
                     "Erreur d'écriture XML de l'ArchiveUnit [" + inDataPackageObjectId + "]", e);
         }
-
-        int counter = getDataObjectPackage().getNextInOutCounter();
-        doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
-                "sedalib: " + counter + " métadonnées ArchiveUnit exportées");
     }
 
     /**
@@ -530,7 +643,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         try {
             tmp = xmlReader.peekAttributeBlockIfNamed("ArchiveUnit", "id");
             if (tmp != null) {
-                xmlReader.nextUsefullEvent();
+                xmlReader.skipNextUsefullEvent();
                 if (xmlReader.peekBlockIfNamed("ArchiveUnitRefId")) {
                     tmp = xmlReader.nextMandatoryValue("ArchiveUnitRefId");
                     xmlReader.endBlockNamed("ArchiveUnit");
@@ -540,9 +653,19 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
                     au = new ArchiveUnit();
                     au.inDataPackageObjectId = tmp;
                     dataObjectPackage.addArchiveUnit(au);
-                    au.setArchiveUnitProfileXmlData(xmlReader.nextBlockAsStringIfNamed("ArchiveUnitProfile"));
-                    au.setManagementXmlData(xmlReader.nextBlockAsStringIfNamed("Management"));
-                    au.setContentXmlData(xmlReader.nextBlockAsStringIfNamed("Content"));
+                    if (xmlReader.isMetadataObjectsFlag()) {
+                        if (xmlReader.peekBlockIfNamed("ArchiveUnitProfile"))
+                            au.setArchiveUnitProfile((ArchiveUnitProfile) SEDAMetadata.fromSedaXml(xmlReader,
+                                    ArchiveUnitProfile.class));
+                        if (xmlReader.peekBlockIfNamed("Management"))
+                            au.setManagement((Management) SEDAMetadata.fromSedaXml(xmlReader, Management.class));
+                        if (xmlReader.peekBlockIfNamed("Content"))
+                            au.setContent((Content) SEDAMetadata.fromSedaXml(xmlReader, Content.class));
+                    } else {
+                        au.archiveUnitProfileXmlData = xmlReader.nextBlockAsCompactXMLDataIfNamed("ArchiveUnitProfile");
+                        au.managementXmlData = xmlReader.nextBlockAsCompactXMLDataIfNamed("Management");
+                        au.contentXmlData = xmlReader.nextBlockAsCompactXMLDataIfNamed("Content");
+                    }
                     while (true) {
                         tmp = xmlReader.peekName();
                         if (tmp == null)
@@ -553,7 +676,7 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
                                 au.addChildArchiveUnitById(subAuId);
                                 break;
                             case "DataObjectReference":
-                                xmlReader.nextUsefullEvent();
+                                xmlReader.skipNextUsefullEvent();
                                 tmp = xmlReader.peekName();
                                 if (tmp == null)
                                     break;
@@ -616,12 +739,11 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
         try (ByteArrayInputStream bais = new ByteArrayInputStream(fragments.getBytes("UTF-8"));
              SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
             // jump StartDocument
-            xmlReader.nextUsefullEvent();
+            xmlReader.skipNextUsefullEvent();
             au.setArchiveUnitProfileXmlData(xmlReader.nextBlockAsStringIfNamed("ArchiveUnitProfile"));
             au.setManagementXmlData(xmlReader.nextBlockAsStringIfNamed("Management"));
             au.setContentXmlData(xmlReader.nextBlockAsStringIfNamed("Content"));
-            XMLEvent event = xmlReader.xmlReader.peek();
-            if (!event.isEndDocument())
+            if (!xmlReader.peekEndDocument())
                 throw new SEDALibException("Il y a des champs illégaux");
         } catch (XMLStreamException | SEDALibException | IOException e) {
             throw new SEDALibException(
@@ -674,6 +796,9 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public void setChildrenAuList(ArchiveUnitRefList childrenAuList) {
         this.childrenAuList = childrenAuList;
+        childrenAuList.setOwner(this);
+        if (getDataObjectPackage() != null)
+            getDataObjectPackage().markNormalizationDirty(this, false);
     }
 
     /**
@@ -692,6 +817,9 @@ public class ArchiveUnit extends DataObjectPackageIdElement {
      */
     public void setDataObjectRefList(DataObjectRefList dataObjectRefList) {
         this.dataObjectRefList = dataObjectRefList;
+        dataObjectRefList.setOwner(this);
+        if (getDataObjectPackage() != null)
+            getDataObjectPackage().markNormalizationDirty(this, true);
     }
 
     /**
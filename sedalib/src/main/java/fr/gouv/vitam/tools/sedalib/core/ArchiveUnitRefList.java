@@ -29,7 +29,6 @@ package fr.gouv.vitam.tools.sedalib.core;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -39,28 +38,19 @@ import java.util.List;
  * reference. Those two modes are useful at different moments of process (import
  * -&lt; ID, ArchiveTransfer fusion -&lt; objects...).
  * <p>
- * It keeps inner two lists, one of ids and one of ArchiveUnit objects. At a
- * given moment only one list is defined the other one is null. So if you need
- * for example to change ArchiveUnits ID, you have before to force all
- * ArchiveUnitRefList in object reference mode by reading the object references list.
+ * The references are kept as int indexes in the DataObjectPackage, see {@link DataObjectPackageRefList}, and both
+ * the id list and the ArchiveUnit objects list are views on them. Ids referencing ArchiveUnits not yet in the
+ * DataObjectPackage are kept as is till the first access by objects, so if you need for example to change
+ * ArchiveUnits ID, you have before to force all ArchiveUnitRefList in object reference mode by reading the object
+ * references list.
  */
-public class ArchiveUnitRefList extends DataObjectPackageElement {
-
-    /**
-     * The ArchiveUnit list.
-     */
-    @JsonIgnore
-    private List<ArchiveUnit> archiveUnitList;
-
-    /**
-     * The inDataPackageObjectId list.
-     */
-    private List<String> inDataObjectPackageIdList;
+public class ArchiveUnitRefList extends DataObjectPackageRefList<ArchiveUnit> {
 
     /**
      * Instantiates a new ArchiveUnit references list.
      */
     public ArchiveUnitRefList() {
+        this(null);
     }
 
     /**
@@ -70,8 +60,11 @@ public class ArchiveUnitRefList extends DataObjectPackageElement {
      */
     public ArchiveUnitRefList(DataObjectPackage dataObjectPackage) {
         super(dataObjectPackage);
-        archiveUnitList = null;
-        inDataObjectPackageIdList = null;
+    }
+
+    @Override
+    ArchiveUnit getElementById(String inDataObjectPackageId) {
+        return getDataObjectPackage().getArchiveUnitById(inDataObjectPackageId);
     }
 
     /**
@@ -80,17 +73,7 @@ public class ArchiveUnitRefList extends DataObjectPackageElement {
      * @return the inDataPackageObjectId list
      */
     public List<String> getInDataObjectPackageIdList() {
-        if (inDataObjectPackageIdList != null)
-            return inDataObjectPackageIdList;
-        if (archiveUnitList == null)
-            inDataObjectPackageIdList = new ArrayList<String>(0);
-        else {
-            inDataObjectPackageIdList = new ArrayList<String>(archiveUnitList.size());
-            for (ArchiveUnit au : archiveUnitList)
-                inDataObjectPackageIdList.add(au.inDataPackageObjectId);
-        }
-        archiveUnitList = null;
-        return inDataObjectPackageIdList;
+        return getIdListView();
     }
 
     /**
@@ -99,8 +82,7 @@ public class ArchiveUnitRefList extends DataObjectPackageElement {
      * @param inDataObjectPackageIdList the new inDataPackageObjectId list
      */
     public void setInDataObjectPackageIdList(List<String> inDataObjectPackageIdList) {
-        this.inDataObjectPackageIdList = inDataObjectPackageIdList;
-        archiveUnitList = null;
+        setIds(inDataObjectPackageIdList);
     }
 
     /**
@@ -110,17 +92,7 @@ public class ArchiveUnitRefList extends DataObjectPackageElement {
      */
     @JsonIgnore
     public List<ArchiveUnit> getArchiveUnitList() {
-        if (archiveUnitList != null)
-            return archiveUnitList;
-        if (inDataObjectPackageIdList == null)
-            archiveUnitList = new ArrayList<ArchiveUnit>(0);
-        else {
-            archiveUnitList = new ArrayList<ArchiveUnit>(inDataObjectPackageIdList.size());
-            for (String inSipId : inDataObjectPackageIdList)
-                archiveUnitList.add(getDataObjectPackage().getArchiveUnitById(inSipId));
-        }
-        inDataObjectPackageIdList = null;
-        return archiveUnitList;
+        return getElementListView();
     }
 
     /**
@@ -130,8 +102,7 @@ public class ArchiveUnitRefList extends DataObjectPackageElement {
      */
     @JsonIgnore
     public void setArchiveUnitList(List<ArchiveUnit> archiveUnitList) {
-        this.archiveUnitList = archiveUnitList;
-        inDataObjectPackageIdList = null;
+        setElements(archiveUnitList);
     }
 
     /**
@@ -177,10 +148,6 @@ public class ArchiveUnitRefList extends DataObjectPackageElement {
      */
     @JsonIgnore
     public int getCount() {
-        if (inDataObjectPackageIdList != null)
-            return inDataObjectPackageIdList.size();
-        else if (archiveUnitList != null)
-            return archiveUnitList.size();
-        return 0;
+        return getReferencesCount();
     }
 }
@@ -0,0 +1,439 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.core;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Class ArchiveUnitTraversal.
+ * <p>
+ * Class for depth first traversals of the ArchiveUnits graph of a DataObjectPackage, calling an
+ * {@link ArchiveUnitVisitor} before and after the children of each ArchiveUnit. An ArchiveUnit reached by several
+ * parents is visited only once, the first time it is reached, in the same order as a recursive walk.
+ * <p>
+ * The traversal uses an explicit stack, so that deep graphs don't overflow the Java stack, and its own visited
+ * bitset, indexed by the DataObjectPackage dense indexes, so that it doesn't use the DataObjectPackage touched map
+ * and independent traversals can run at the same time.
+ * <p>
+ * The traversal can be cancelled by the visitor or another thread with {@link #cancel()}, or by interrupting the
+ * traversing thread if interruptible. It can also run in parallel, each root subtree being traversed in one of
+ * threadCount threads, with a shared visited bitset so that an ArchiveUnit common to several subtrees is still
+ * visited once. The visitor has then to be thread-safe, and the post visit of an ArchiveUnit may happen before the
+ * visit of a child already reached from another subtree.
+ */
+public class ArchiveUnitTraversal {
+
+    /**
+     * The number of root subtrees traversed in advance by each thread in parallel traversal.
+     */
+    private static final int LOOKAHEAD_BY_THREAD = 16;
+
+    /**
+     * The traversing threads counter, used for thread names.
+     */
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    /**
+     * The DataObjectPackage.
+     */
+    private final DataObjectPackage dataObjectPackage;
+
+    /**
+     * The cycle detection flag, if true a SEDALibException is thrown when a cycle is reached.
+     */
+    private boolean cycleDetectionFlag;
+
+    /**
+     * The interruptible flag, if true the traversal is cancelled when the traversing thread is interrupted.
+     */
+    private boolean interruptibleFlag;
+
+    /**
+     * The number of threads traversing root subtrees, 1 for traversal in the calling thread.
+     */
+    private int threadCount;
+
+    /**
+     * The cancelled flag.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * The visited ArchiveUnits bitset, by DataObjectPackage dense index.
+     */
+    private BitSet visited;
+
+    /**
+     * The visited ArchiveUnits count.
+     */
+    private AtomicInteger visitedCount;
+
+    /**
+     * The flag indicating if the current traversal is parallel, the children lists and the visited bitset being then
+     * accessed under lock.
+     */
+    private boolean parallelFlag;
+
+    /**
+     * The Class Frame, for one ArchiveUnit in the explicit stack.
+     */
+    private static class Frame {
+
+        /**
+         * The ArchiveUnit.
+         */
+        final ArchiveUnit archiveUnit;
+
+        /**
+         * The children list, null if the children are not to be traversed.
+         */
+        final List<ArchiveUnit> children;
+
+        /**
+         * The index of the next child to traverse.
+         */
+        int next;
+
+        /**
+         * Instantiates a new frame.
+         *
+         * @param archiveUnit the ArchiveUnit
+         * @param children    the children list
+         */
+        Frame(ArchiveUnit archiveUnit, List<ArchiveUnit> children) {
+            this.archiveUnit = archiveUnit;
+            this.children = children;
+            this.next = 0;
+        }
+    }
+
+    /**
+     * Instantiates a new ArchiveUnit traversal, sequential, interruptible and without cycle detection.
+     *
+     * @param dataObjectPackage the DataObjectPackage
+     */
+    public ArchiveUnitTraversal(DataObjectPackage dataObjectPackage) {
+        this.dataObjectPackage = dataObjectPackage;
+        this.cycleDetectionFlag = false;
+        this.interruptibleFlag = true;
+        this.threadCount = 1;
+        this.cancelled = false;
+        this.visited = new BitSet();
+        this.visitedCount = new AtomicInteger();
+        this.parallelFlag = false;
+    }
+
+    /**
+     * Sets the cycle detection flag. If true, reaching an ArchiveUnit which is in the current path throws a
+     * SEDALibException. Cycle detection is only possible in sequential traversal, so a traversal with cycle detection
+     * is always done in the calling thread.
+     *
+     * @param cycleDetectionFlag the cycle detection flag
+     */
+    public void setCycleDetectionFlag(boolean cycleDetectionFlag) {
+        this.cycleDetectionFlag = cycleDetectionFlag;
+    }
+
+    /**
+     * Sets the interruptible flag. If true, the traversal is cancelled when the traversing thread is interrupted.
+     *
+     * @param interruptibleFlag the interruptible flag
+     */
+    public void setInterruptibleFlag(boolean interruptibleFlag) {
+        this.interruptibleFlag = interruptibleFlag;
+    }
+
+    /**
+     * Sets the number of threads traversing root subtrees, 1 for traversal in the calling thread.
+     *
+     * @param threadCount the thread count
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Cancel the traversal in progress, which then throws an InterruptedException. It can be called by the visitor
+     * or any other thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks if the traversal has been cancelled.
+     *
+     * @return true, if cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Checks if the ArchiveUnit has been visited by the last traversal.
+     *
+     * @param archiveUnit the ArchiveUnit
+     * @return true, if visited
+     */
+    public boolean isVisited(ArchiveUnit archiveUnit) {
+        return visited.get(dataObjectPackage.getElementIndex().indexOf(archiveUnit));
+    }
+
+    /**
+     * Gets the number of ArchiveUnits visited by the last traversal.
+     *
+     * @return the visited count
+     */
+    public int getVisitedCount() {
+        return visitedCount.get();
+    }
+
+    /**
+     * Traverse the whole ArchiveUnits graph, from the ghost root children.
+     *
+     * @param visitor the visitor
+     * @throws SEDALibException     if the visitor fails or a cycle is detected
+     * @throws InterruptedException if the traversal is cancelled or interrupted
+     */
+    public void traverse(ArchiveUnitVisitor visitor) throws SEDALibException, InterruptedException {
+        traverse(dataObjectPackage.getGhostRootAu().getChildrenAuList().getArchiveUnitList(), visitor);
+    }
+
+    /**
+     * Traverse the ArchiveUnits graph from the given roots, in their order.
+     *
+     * @param roots   the roots ArchiveUnits
+     * @param visitor the visitor
+     * @throws SEDALibException     if the visitor fails or a cycle is detected
+     * @throws InterruptedException if the traversal is cancelled or interrupted
+     */
+    public void traverse(List<ArchiveUnit> roots, ArchiveUnitVisitor visitor)
+            throws SEDALibException, InterruptedException {
+        cancelled = false;
+        visited = new BitSet(dataObjectPackage.getElementIndex().size());
+        visitedCount.set(0);
+        parallelFlag = (threadCount > 1) && !cycleDetectionFlag && (roots.size() > 1);
+        if (parallelFlag)
+            traverseInParallel(roots, visitor);
+        else
+            for (ArchiveUnit root : roots)
+                traverseSubtree(root, visitor);
+    }
+
+    /**
+     * Traverse root subtrees in threadCount threads. At most threadCount*LOOKAHEAD_BY_THREAD subtrees are in progress
+     * at the same time.
+     *
+     * @param roots   the roots ArchiveUnits
+     * @param visitor the visitor
+     * @throws SEDALibException     if the visitor fails
+     * @throws InterruptedException if the traversal is cancelled or interrupted
+     */
+    private void traverseInParallel(List<ArchiveUnit> roots, ArchiveUnitVisitor visitor)
+            throws SEDALibException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, r -> {
+            Thread t = new Thread(r, "sedalib-traversal-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<Void>> inProgressFutures = new ArrayDeque<Future<Void>>();
+        try {
+            for (ArchiveUnit root : roots) {
+                if (inProgressFutures.size() >= threadCount * LOOKAHEAD_BY_THREAD)
+                    waitFirstInProgress(inProgressFutures);
+                inProgressFutures.add(executor.submit(() -> {
+                    traverseSubtree(root, visitor);
+                    return null;
+                }));
+            }
+            while (!inProgressFutures.isEmpty())
+                waitFirstInProgress(inProgressFutures);
+        } finally {
+            // stop all subtrees traversals if any (exception or interruption)
+            if (!inProgressFutures.isEmpty())
+                cancelled = true;
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Wait for the first subtree traversal in progress and remove it from the in progress list.
+     *
+     * @param inProgressFutures the in progress traversal futures
+     * @throws SEDALibException     if the visitor fails
+     * @throws InterruptedException if the traversal is cancelled or interrupted
+     */
+    private void waitFirstInProgress(Deque<Future<Void>> inProgressFutures)
+            throws SEDALibException, InterruptedException {
+        try {
+            inProgressFutures.peek().get();
+            inProgressFutures.poll();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SEDALibException)
+                throw (SEDALibException) e.getCause();
+            if (e.getCause() instanceof InterruptedException)
+                throw (InterruptedException) e.getCause();
+            throw new SEDALibException("Erreur dans le parcours des ArchiveUnits", e.getCause());
+        } catch (CancellationException e) {
+            throw new InterruptedException("Parcours des ArchiveUnits annulé");
+        }
+    }
+
+    /**
+     * Check if the traversal has been cancelled or, if interruptible, the traversing thread interrupted.
+     *
+     * @throws InterruptedException if the traversal is cancelled or interrupted
+     */
+    private void checkCancelled() throws InterruptedException {
+        if (cancelled || (interruptibleFlag && Thread.interrupted()))
+            throw new InterruptedException("Parcours des ArchiveUnits annulé");
+    }
+
+    /**
+     * Mark the ArchiveUnit as visited if not already done.
+     *
+     * @param archiveUnit the ArchiveUnit
+     * @return true, if the ArchiveUnit was not already visited
+     */
+    private boolean markVisited(ArchiveUnit archiveUnit) {
+        if (parallelFlag) {
+            synchronized (this) {
+                return markVisitedByIndex(dataObjectPackage.getElementIndex().indexOf(archiveUnit));
+            }
+        }
+        return markVisitedByIndex(dataObjectPackage.getElementIndex().indexOf(archiveUnit));
+    }
+
+    /**
+     * Mark the ArchiveUnit dense index as visited if not already done.
+     *
+     * @param index the ArchiveUnit dense index
+     * @return true, if the index was not already visited
+     */
+    private boolean markVisitedByIndex(int index) {
+        if (visited.get(index))
+            return false;
+        visited.set(index);
+        visitedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Gets the ArchiveUnit children list, which may be resolved from ids at first access.
+     *
+     * @param archiveUnit the ArchiveUnit
+     * @return the children list
+     */
+    private List<ArchiveUnit> getChildren(ArchiveUnit archiveUnit) {
+        if (parallelFlag) {
+            synchronized (this) {
+                return archiveUnit.getChildrenAuList().getArchiveUnitList();
+            }
+        }
+        return archiveUnit.getChildrenAuList().getArchiveUnitList();
+    }
+
+    /**
+     * Visit the ArchiveUnit and push its frame on the stack.
+     *
+     * @param archiveUnit the ArchiveUnit
+     * @param stack       the explicit stack
+     * @param onPath      the ArchiveUnits in the current path, by dense index, or null if no cycle detection
+     * @param visitor     the visitor
+     * @throws SEDALibException     if the visitor fails
+     * @throws InterruptedException if the traversal is cancelled or interrupted
+     */
+    private void enter(ArchiveUnit archiveUnit, Deque<Frame> stack, BitSet onPath, ArchiveUnitVisitor visitor)
+            throws SEDALibException, InterruptedException {
+        boolean childrenFlag = visitor.preVisit(archiveUnit);
+        stack.push(new Frame(archiveUnit, childrenFlag ? getChildren(archiveUnit) : null));
+        if (onPath != null)
+            onPath.set(dataObjectPackage.getElementIndex().indexOf(archiveUnit));
+    }
+
+    /**
+     * Traverse the subtree of the root ArchiveUnit, with an explicit stack.
+     *
+     * @param root    the root ArchiveUnit
+     * @param visitor the visitor
+     * @throws SEDALibException     if the visitor fails or a cycle is detected
+     * @throws InterruptedException if the traversal is cancelled or interrupted
+     */
+    private void traverseSubtree(ArchiveUnit root, ArchiveUnitVisitor visitor)
+            throws SEDALibException, InterruptedException {
+        checkCancelled();
+        if (!markVisited(root))
+            return;
+        Deque<Frame> stack = new ArrayDeque<Frame>();
+        BitSet onPath = (cycleDetectionFlag ? new BitSet() : null);
+        enter(root, stack, onPath, visitor);
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if ((frame.children != null) && (frame.next < frame.children.size())) {
+                ArchiveUnit child = frame.children.get(frame.next++);
+                if ((onPath != null) && onPath.get(dataObjectPackage.getElementIndex().indexOf(child)))
+                    throw new SEDALibException("Cycle détecté " + pathToString(stack) + child.getInDataObjectPackageId());
+                checkCancelled();
+                if (markVisited(child))
+                    enter(child, stack, onPath, visitor);
+            } else {
+                stack.pop();
+                if (onPath != null)
+                    onPath.clear(dataObjectPackage.getElementIndex().indexOf(frame.archiveUnit));
+                visitor.postVisit(frame.archiveUnit);
+            }
+        }
+    }
+
+    /**
+     * ArchiveUnits path from root to string.
+     *
+     * @param stack the explicit stack
+     * @return the string representation
+     */
+    private static String pathToString(Deque<Frame> stack) {
+        StringBuilder result = new StringBuilder();
+        for (Iterator<Frame> it = stack.descendingIterator(); it.hasNext(); )
+            result.append(it.next().archiveUnit.getInDataObjectPackageId()).append("->");
+        return result.toString();
+    }
+}
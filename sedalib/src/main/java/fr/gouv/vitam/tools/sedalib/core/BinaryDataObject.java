@@ -29,6 +29,7 @@ package fr.gouv.vitam.tools.sedalib.core;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import fr.gouv.vitam.tools.sedalib.droid.DroidIdentifier;
+import fr.gouv.vitam.tools.sedalib.droid.ScannedFile;
 import fr.gouv.vitam.tools.sedalib.metadata.SEDAMetadata;
 import fr.gouv.vitam.tools.sedalib.metadata.data.FileInfo;
 import fr.gouv.vitam.tools.sedalib.metadata.data.FormatIdentification;
@@ -44,15 +45,11 @@ import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
 
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Formatter;
 import java.util.List;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.*;
@@ -279,80 +276,123 @@ public class BinaryDataObject extends DataObjectPackageIdElement implements Data
      * @throws SEDALibException if unable to get digest
      */
     static public String getDigestSha512(Path path) throws SEDALibException {
-        MessageDigest messageDigest;
-        try {
-            messageDigest = MessageDigest.getInstance("SHA-512");
-        } catch (NoSuchAlgorithmException e1) {
-            throw new SEDALibException("Impossible de mobiliser l'algorithme de hashage SHA-512", e1);
-        }
+        return ScannedFile.scan(path).getDigestSha512();
+    }
 
-        try (InputStream is = new BufferedInputStream(Files.newInputStream(path))) {
-            final byte[] buffer = new byte[4096];
-            for (int read; (read = is.read(buffer)) != -1; ) {
-                messageDigest.update(buffer, 0, read);
-            }
-        } catch (Exception e) {
-            throw new SEDALibException(
-                    "Impossible de calculer le hash du fichier [" + path.toString() + "]", e);
-        }
+    /**
+     * Gets the zip content source where the file is to be read from, if not on disk.
+     *
+     * @return the zip content source or null if the file has to be on disk
+     */
+    private ZipContentSource getNotExtractedZipContentSource() {
+        if ((onDiskPath == null) || (getDataObjectPackage() == null)
+                || (getDataObjectPackage().getZipContentSource() == null) || Files.exists(onDiskPath))
+            return null;
+        return getDataObjectPackage().getZipContentSource();
+    }
 
-        // Convert the byte to hex format
-        try (Formatter formatter = new Formatter()) {
-            for (final byte b : messageDigest.digest()) {
-                formatter.format("%02x", b);
-            }
-            return formatter.toString();
-        } catch (Exception e) {
-            throw new SEDALibException(
-                    "Impossible d'encoder le hash du fichier [" + path.toString() + "]", e);
+    /**
+     * Gets an input stream on the file, either on disk or, if not extracted, in the zip file it was imported from.
+     *
+     * @return the input stream
+     * @throws SEDALibException if the file can't be read
+     */
+    @JsonIgnore
+    public InputStream getInputStream() throws SEDALibException {
+        ZipContentSource zipContentSource = getNotExtractedZipContentSource();
+        if (zipContentSource != null)
+            return zipContentSource.getInputStream(onDiskPath);
+        if (onDiskPath == null)
+            throw new SEDALibException("Pas de fichier associé au BinaryDataObject [" + inDataPackageObjectId + "]");
+        try {
+            return Files.newInputStream(onDiskPath);
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible de lire le fichier [" + onDiskPath.toString() + "]", e);
         }
     }
 
+    /**
+     * Gets the disk path of the file, after extraction from the zip file it was imported from if not already done.
+     *
+     * @return the on disk path
+     * @throws SEDALibException if the file can't be extracted
+     */
+    @JsonIgnore
+    public Path getAvailableOnDiskPath() throws SEDALibException {
+        ZipContentSource zipContentSource = getNotExtractedZipContentSource();
+        if (zipContentSource != null)
+            return zipContentSource.extract(onDiskPath);
+        return onDiskPath;
+    }
+
     /**
      * Extract technical elements (lastmodified date, size, format, digest...) from
      * file and complete the BinaryDataObject metadata.
      *
      * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @return true, if the DROID identification has been done, even without matching format, false if it has
+     * failed and the format is then UNKNOWN
      * @throws SEDALibException if unable to get size or lastmodified date (probably
      *                          can't access file)
      */
-    public void extractTechnicalElements(SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException {
+    public boolean extractTechnicalElements(SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException {
         IdentificationResult ir = null;
-        String lfilename = null;
-        long lsize;
-        FileTime llastModified;
+        boolean identifiedFlag = true;
+        ScannedFile scannedFile;
 
-        if (fileInfo != null)
-            lfilename = fileInfo.getSimpleMetadata("Filename");
         try {
-            lsize = Files.size(onDiskPath);
-            if (lfilename == null)
-                lfilename = onDiskPath.getFileName().toString();
-            llastModified = Files.getLastModifiedTime(onDiskPath);
-        } catch (IOException e) {
+            scannedFile = ScannedFile.scan(getAvailableOnDiskPath());
+        } catch (SEDALibException e) {
             throw new SEDALibException("Impossible de générer les infos techniques pour le fichier ["
                     + onDiskPath.toString() + "]", e);
         }
 
-        messageDigest = new DigestType("MessageDigest", getDigestSha512(onDiskPath), "SHA-512");
-        size = new IntegerType("Size", lsize);
-
         try {
-            ir = DroidIdentifier.getInstance().getIdentificationResult(onDiskPath);
+            ir = DroidIdentifier.getInstance().getIdentificationResult(scannedFile);
         } catch (SEDALibException e) {
             doProgressLogWithoutInterruption(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_WARNINGS, "sedalib: impossible de faire l'identification Droid pour le fichier ["
                     + onDiskPath.toString() + "]", e);
+            identifiedFlag = false;
         }
         if (ir != null)
-            formatIdentification = new FormatIdentification(ir.getName(), ir.getMimeType(), ir.getPuid(), null);
+            setTechnicalElements(scannedFile.getDigestSha512(), scannedFile.getSize(),
+                    new FormatIdentification(ir.getName(), ir.getMimeType(), ir.getPuid(), null),
+                    scannedFile.getLastModified());
         else
-            formatIdentification = new FormatIdentification("Unknown", null, "UNKNOWN", null);
+            setTechnicalElements(scannedFile.getDigestSha512(), scannedFile.getSize(),
+                    new FormatIdentification("Unknown", null, "UNKNOWN", null),
+                    scannedFile.getLastModified());
+        return identifiedFlag;
+    }
+
+    /**
+     * Set technical elements (lastmodified date, size, format, digest...) already known, for example from a
+     * previous extraction, and complete the BinaryDataObject metadata.
+     *
+     * @param digestSha512         the SHA-512 digest of the file
+     * @param size                 the size of the file
+     * @param formatIdentification the format identification
+     * @param lastModified         the last modified time of the file
+     * @throws SEDALibException if unable to set file info metadata
+     */
+    public void setTechnicalElements(String digestSha512, long size, FormatIdentification formatIdentification,
+                                     FileTime lastModified) throws SEDALibException {
+        String lfilename = null;
+
+        if (fileInfo != null)
+            lfilename = fileInfo.getSimpleMetadata("Filename");
+        if (lfilename == null)
+            lfilename = onDiskPath.getFileName().toString();
+
+        messageDigest = new DigestType("MessageDigest", digestSha512, "SHA-512");
+        this.size = new IntegerType("Size", size);
+        this.formatIdentification = formatIdentification;
 
         if (fileInfo == null)
             fileInfo = new FileInfo();
         if (fileInfo.getSimpleMetadata("Filename") == null)
             fileInfo.addNewMetadata("Filename", lfilename);
-        fileInfo.addNewMetadata("LastModified", llastModified.toString());
+        fileInfo.addNewMetadata("LastModified", lastModified.toString());
     }
 
     /**
@@ -602,7 +642,7 @@ public class BinaryDataObject extends DataObjectPackageIdElement implements Data
                 bdo = new BinaryDataObject();
                 bdo.inDataPackageObjectId = tmp;
                 dataObjectPackage.addBinaryDataObject(bdo);
-                xmlReader.nextUsefullEvent();
+                xmlReader.skipNextUsefullEvent();
                 bdo.setFromXmlContent(xmlReader);
                 xmlReader.endBlockNamed("BinaryDataObject");
             }
@@ -657,10 +697,9 @@ public class BinaryDataObject extends DataObjectPackageIdElement implements Data
         try (ByteArrayInputStream bais = new ByteArrayInputStream(fragments.getBytes("UTF-8"));
              SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
             // jump StartDocument
-            xmlReader.nextUsefullEvent();
+            xmlReader.skipNextUsefullEvent();
             bdo.setFromXmlContent(xmlReader);
-            XMLEvent event = xmlReader.xmlReader.peek();
-            if (!event.isEndDocument())
+            if (!xmlReader.peekEndDocument())
                 throw new SEDALibException("Il y a des champs illégaux");
         } catch (XMLStreamException | SEDALibException | IOException e) {
             throw new SEDALibException("Erreur de lecture du BinaryDataObject", e);
@@ -117,7 +117,10 @@ public class DataObjectGroup extends DataObjectPackageIdElement implements DataO
         } else if (dataObject instanceof PhysicalDataObject) {
             physicalDataObjectList.add((PhysicalDataObject) dataObject);
             ((PhysicalDataObject) dataObject).setDataObjectGroup(this);
-        }
+        } else
+            return;
+        if (getDataObjectPackage() != null)
+            getDataObjectPackage().markDataObjectsChanged();
     }
 
     /**
@@ -133,8 +136,10 @@ public class DataObjectGroup extends DataObjectPackageIdElement implements DataO
             if (result) getDataObjectPackage().getBdoInDataObjectPackageIdMap().remove(zdo.getInDataObjectPackageId());
         } else if (zdo instanceof PhysicalDataObject) {
             result = physicalDataObjectList.remove(zdo);
-            if (result) getDataObjectPackage().getBdoInDataObjectPackageIdMap().remove(zdo.getInDataObjectPackageId());
+            if (result) getDataObjectPackage().getPdoInDataObjectPackageIdMap().remove(zdo.getInDataObjectPackageId());
         }
+        if (result)
+            getDataObjectPackage().markDataObjectsChanged();
         return result;
     }
 
@@ -247,7 +252,7 @@ public class DataObjectGroup extends DataObjectPackageIdElement implements DataO
                 dog = new DataObjectGroup();
                 dog.inDataPackageObjectId = tmp;
                 dataObjectPackage.addDataObjectGroup(dog);
-                xmlReader.nextUsefullEvent();
+                xmlReader.skipNextUsefullEvent();
                 loop = true;
                 while (loop) {
                     tmp = xmlReader.peekName();
@@ -306,7 +311,7 @@ public class DataObjectGroup extends DataObjectPackageIdElement implements DataO
         try (ByteArrayInputStream bais = new ByteArrayInputStream(fragments.getBytes("UTF-8"));
              SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
             // jump StartDocument
-            xmlReader.nextUsefullEvent();
+            xmlReader.skipNextUsefullEvent();
             String nextElementName = xmlReader.peekName();
             if ((nextElementName != null) && (nextElementName.equals("LogBook"))) {
                 dog.logBook = (LogBook) SEDAMetadata.fromSedaXml(xmlReader, LogBook.class);
@@ -31,16 +31,29 @@ import fr.gouv.vitam.tools.sedalib.metadata.content.Content;
 import fr.gouv.vitam.tools.sedalib.metadata.namedtype.IntegerType;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.xml.CompactXMLDataDiskStore;
+import fr.gouv.vitam.tools.sedalib.xml.CompactXMLDataManifestSource;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
 
 import javax.xml.stream.XMLStreamException;
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogIfStep;
 
 /**
  * The Class DataObjectPackage
@@ -57,24 +70,24 @@ public class DataObjectPackage {
 
     // SEDA elements
     /**
-     * The map of all the ArchiveUnits by inDataPackageObjectId.
+     * The map of all the ArchiveUnits by inDataPackageObjectId, view of the element index members.
      */
-    private HashMap<String, ArchiveUnit> auInDataObjectPackageIdMap;
+    private final DataObjectPackageIdMap<ArchiveUnit> auInDataObjectPackageIdMap;
 
     /**
-     * The map of all the DataObjectGroups by inDataPackageObjectId.
+     * The map of all the DataObjectGroups by inDataPackageObjectId, view of the element index members.
      */
-    private HashMap<String, DataObjectGroup> dogInDataObjectPackageIdMap;
+    private final DataObjectPackageIdMap<DataObjectGroup> dogInDataObjectPackageIdMap;
 
     /**
-     * The map of all the BinaryDataObjects by inDataPackageObjectId.
+     * The map of all the BinaryDataObjects by inDataPackageObjectId, view of the element index members.
      */
-    private HashMap<String, BinaryDataObject> bdoInDataObjectPackageIdMap;
+    private final DataObjectPackageIdMap<BinaryDataObject> bdoInDataObjectPackageIdMap;
 
     /**
-     * The map of all the PhysicalDataObjects by inDataPackageObjectId.
+     * The map of all the PhysicalDataObjects by inDataPackageObjectId, view of the element index members.
      */
-    private HashMap<String, PhysicalDataObject> pdoInDataObjectPackageIdMap;
+    private final DataObjectPackageIdMap<PhysicalDataObject> pdoInDataObjectPackageIdMap;
 
     /**
      * The management metadata xml data.
@@ -94,6 +107,22 @@ public class DataObjectPackage {
      */
     private List<String> exportMetadataList;
 
+    /**
+     * The number of threads rendering the ArchiveUnits in flat mode manifest export, 1 for rendering in the calling
+     * thread.
+     */
+    private int exportThreadCount;
+
+    /**
+     * The zip file source of the BinaryDataObjects files not extracted on disk, or null if all are on disk.
+     */
+    private ZipContentSource zipContentSource;
+
+    /**
+     * The manifest files sources where ArchiveUnit XML blocks are kept, open while the DataObjectPackage is used.
+     */
+    private List<CompactXMLDataManifestSource> manifestSourceList;
+
     /**
      * The counter used to generate inDataObjectPackageIds.
      */
@@ -110,12 +139,24 @@ public class DataObjectPackage {
     private int inOutCounter;
 
     /**
-     * The map used to accumulate the touched ArchiveUnits or DataObjects
-     * inDataObjectPackageIds during a treatment. It's useful to touch only one time
-     * all ArchiveUnits or DataObjects in the graph, or to count the time they are
+     * The dense int indexes of the ArchiveUnits and DataObjects, used by the
+     * references lists and the touched counts.
+     */
+    private DataObjectPackageIndex elementIndex;
+
+    /**
+     * The counts, by element index, used to accumulate the touched ArchiveUnits or
+     * DataObjects during a treatment. It's useful to touch only one time all
+     * ArchiveUnits or DataObjects in the graph, or to count the time they are
      * touched.
      */
-    private HashMap<String, Integer> touchedInDataObjectPackageIdMap;
+    private int[] touchedCounts;
+
+    /**
+     * The map used to accumulate the touched inDataObjectPackageIds which are not
+     * known in the DataObjectPackage.
+     */
+    private HashMap<String, Integer> touchedUnknownIdMap;
 
     /**
      * The Constant NORMALIZATION_STATUS_UNKNOWN.
@@ -137,17 +178,41 @@ public class DataObjectPackage {
      */
     private int vitamNormalizationStatus;
 
+    /**
+     * The flag indicating that the next Vitam normalization has to verify the whole graph, the changes since the last
+     * successful one being not known.
+     */
+    private boolean fullNormalizationFlag;
+
+    /**
+     * The ArchiveUnits, by element index, added or whose references lists changed since the last successful Vitam
+     * normalization.
+     */
+    private BitSet normalizationDirtyArchiveUnits;
+
+    /**
+     * The flag indicating that elements have been added to or removed from the DataObjectPackage maps, DataObjects
+     * moved in or out of a DataObjectGroup, or DataObjects references removed since the last successful Vitam
+     * normalization, so that some DataObjects may be unused.
+     */
+    private boolean normalizationDataObjectsChangedFlag;
+
     // Constructors
 
     /**
      * Instantiates a new archive transfer. Used for json deserialization.
      */
     public DataObjectPackage() {
-        this.auInDataObjectPackageIdMap = new HashMap<String, ArchiveUnit>();
-        this.dogInDataObjectPackageIdMap = new HashMap<String, DataObjectGroup>();
-
-        this.bdoInDataObjectPackageIdMap = new HashMap<String, BinaryDataObject>();
-        this.pdoInDataObjectPackageIdMap = new HashMap<String, PhysicalDataObject>();
+        this.elementIndex = new DataObjectPackageIndex(true);
+        this.auInDataObjectPackageIdMap = new DataObjectPackageIdMap<ArchiveUnit>(this,
+                DataObjectPackageIndex.ARCHIVE_UNIT_KIND, ArchiveUnit.class);
+        this.dogInDataObjectPackageIdMap = new DataObjectPackageIdMap<DataObjectGroup>(this,
+                DataObjectPackageIndex.DATA_OBJECT_GROUP_KIND, DataObjectGroup.class);
+
+        this.bdoInDataObjectPackageIdMap = new DataObjectPackageIdMap<BinaryDataObject>(this,
+                DataObjectPackageIndex.BINARY_DATA_OBJECT_KIND, BinaryDataObject.class);
+        this.pdoInDataObjectPackageIdMap = new DataObjectPackageIdMap<PhysicalDataObject>(this,
+                DataObjectPackageIndex.PHYSICAL_DATA_OBJECT_KIND, PhysicalDataObject.class);
         this.ghostRootAu = new ArchiveUnit();
         Content c = new Content();
         try {
@@ -157,11 +222,18 @@ public class DataObjectPackage {
         this.ghostRootAu.setDataObjectPackage(this);
 
         this.exportMetadataList = null;
+        this.exportThreadCount = 1;
+        this.zipContentSource = null;
+        this.manifestSourceList = new ArrayList<CompactXMLDataManifestSource>();
         this.resetIdCounter();
         this.resetRefIdCounter();
         this.resetInOutCounter();
-        this.touchedInDataObjectPackageIdMap = new HashMap<String, Integer>();
+        this.touchedCounts = new int[0];
+        this.touchedUnknownIdMap = new HashMap<String, Integer>();
         this.vitamNormalizationStatus = NORMALIZATION_STATUS_UNKNOWN;
+        this.fullNormalizationFlag = true;
+        this.normalizationDirtyArchiveUnits = new BitSet();
+        this.normalizationDataObjectsChangedFlag = false;
     }
 
     // Methods
@@ -173,16 +245,7 @@ public class DataObjectPackage {
      * @return true, if the id is used in DataObjectPackage
      */
     private boolean isInDataObjectPackageIdUsed(String inDataPackageObjectId) {
-        if (auInDataObjectPackageIdMap.containsKey(inDataPackageObjectId))
-            return true;
-        if (dogInDataObjectPackageIdMap.containsKey(inDataPackageObjectId))
-            return true;
-        if (bdoInDataObjectPackageIdMap.containsKey(inDataPackageObjectId))
-            return true;
-        //noinspection RedundantIfStatement
-        if (pdoInDataObjectPackageIdMap.containsKey(inDataPackageObjectId))
-            return true;
-        return false;
+        return elementIndex.findMember(inDataPackageObjectId, DataObjectPackageIndex.ANY_KIND) >= 0;
     }
 
     /**
@@ -271,12 +334,159 @@ public class DataObjectPackage {
         pdo.setDataObjectPackage(this);
     }
 
+    /**
+     * Gets the dense int indexes table of the ArchiveUnits and DataObjects.
+     *
+     * @return the element index
+     */
+    DataObjectPackageIndex getElementIndex() {
+        return elementIndex;
+    }
+
+    /**
+     * Compacts the dense int indexes table, keeping only the ArchiveUnits and DataObjects still in the
+     * DataObjectPackage or referenced by one of its ArchiveUnits, so that the removed ones are no more referenced.
+     * The references lists, the touched counts and the ArchiveUnits to normalize are remapped in the new table.
+     */
+    void compactElementIndex() {
+        int size = elementIndex.size();
+        List<ArchiveUnit> archiveUnits = new ArrayList<ArchiveUnit>(auInDataObjectPackageIdMap.size() + 1);
+        archiveUnits.add(ghostRootAu);
+        archiveUnits.addAll(auInDataObjectPackageIdMap.values());
+
+        BitSet kept = new BitSet(size);
+        for (ArchiveUnit au : archiveUnits) {
+            markKept(kept, au);
+            au.getChildrenAuList().markUsedIndexes(elementIndex, kept);
+            au.getDataObjectRefList().markUsedIndexes(elementIndex, kept);
+        }
+        for (DataObjectGroup dog : dogInDataObjectPackageIdMap.values())
+            markKept(kept, dog);
+        for (BinaryDataObject bdo : bdoInDataObjectPackageIdMap.values())
+            markKept(kept, bdo);
+        for (PhysicalDataObject pdo : pdoInDataObjectPackageIdMap.values())
+            markKept(kept, pdo);
+        if (kept.cardinality() == size)
+            return;
+
+        int[] remap = new int[size];
+        DataObjectPackageIndex compactedIndex = elementIndex.compact(kept, remap);
+        for (ArchiveUnit au : archiveUnits) {
+            au.getChildrenAuList().remapIndexes(elementIndex, compactedIndex, remap);
+            au.getDataObjectRefList().remapIndexes(elementIndex, compactedIndex, remap);
+        }
+        int[] compactedTouchedCounts = new int[compactedIndex.size()];
+        for (int i = 0; i < Math.min(size, touchedCounts.length); i++)
+            if (remap[i] >= 0)
+                compactedTouchedCounts[remap[i]] = touchedCounts[i];
+        BitSet compactedNormalizationDirtyArchiveUnits = new BitSet(compactedIndex.size());
+        for (int i = normalizationDirtyArchiveUnits.nextSetBit(0); (i >= 0) && (i < size);
+             i = normalizationDirtyArchiveUnits.nextSetBit(i + 1))
+            if (remap[i] >= 0)
+                compactedNormalizationDirtyArchiveUnits.set(remap[i]);
+        touchedCounts = compactedTouchedCounts;
+        normalizationDirtyArchiveUnits = compactedNormalizationDirtyArchiveUnits;
+        elementIndex = compactedIndex;
+    }
+
+    /**
+     * Marks the element index as kept, if the element is indexed.
+     *
+     * @param kept    the kept indexes bitset
+     * @param element the element
+     */
+    private void markKept(BitSet kept, DataObjectPackageIdElement element) {
+        int index = elementIndex.indexIfKnown(element);
+        if (index >= 0)
+            kept.set(index);
+    }
+
+    /**
+     * Gets the ArchiveUnit or DataObject by inDataPackageObjectId.
+     *
+     * @param inDataObjectPackageId the id in DataObjectPackage
+     * @return the element or null if not found
+     */
+    private DataObjectPackageIdElement getElementById(String inDataObjectPackageId) {
+        ArchiveUnit archiveUnit = auInDataObjectPackageIdMap.get(inDataObjectPackageId);
+        if (archiveUnit != null)
+            return archiveUnit;
+        return (DataObjectPackageIdElement) getDataObjectById(inDataObjectPackageId);
+    }
+
+    /**
+     * Gets the touched count of the element index.
+     *
+     * @param index the element index
+     * @return the touched count
+     */
+    private int getTouchedCountByIndex(int index) {
+        if ((index < 0) || (index >= touchedCounts.length))
+            return 0;
+        return touchedCounts[index];
+    }
+
+    /**
+     * Sets the touched count of the element index, growing the counts array if
+     * needed.
+     *
+     * @param index the element index
+     * @param count the touched count
+     */
+    private void setTouchedCountByIndex(int index, int count) {
+        if (index >= touchedCounts.length)
+            touchedCounts = Arrays.copyOf(touchedCounts, Math.max(index + 1, elementIndex.size()));
+        touchedCounts[index] = count;
+    }
+
     /**
      * Reset the touched ArchiveUnit or DataObject inDataPackageObjectId Map, the
      * Map is then empty and ready to use.
      */
     public void resetTouchedInDataObjectPackageIdMap() {
-        touchedInDataObjectPackageIdMap.clear();
+        Arrays.fill(touchedCounts, 0);
+        touchedUnknownIdMap.clear();
+    }
+
+    /**
+     * Checks if the ArchiveUnit or DataObject has been touched.
+     *
+     * @param element the ArchiveUnit or DataObject
+     * @return true, if has been touched
+     */
+    public boolean isTouched(DataObjectPackageIdElement element) {
+        return getTouchedCountByIndex(elementIndex.indexIfKnown(element)) > 0;
+    }
+
+    /**
+     * Adds the ArchiveUnit or DataObject in the touched ones, with a count value
+     * set to 1.
+     *
+     * @param element the ArchiveUnit or DataObject
+     */
+    public void addTouched(DataObjectPackageIdElement element) {
+        setTouchedCountByIndex(elementIndex.indexOf(element), 1);
+    }
+
+    /**
+     * Increment the ArchiveUnit or DataObject touched count, if touched for the
+     * first time the count value is set to 1.
+     *
+     * @param element the ArchiveUnit or DataObject
+     */
+    public void incTouched(DataObjectPackageIdElement element) {
+        int index = elementIndex.indexOf(element);
+        setTouchedCountByIndex(index, getTouchedCountByIndex(index) + 1);
+    }
+
+    /**
+     * Gets the touched count of the ArchiveUnit or DataObject.
+     *
+     * @param element the ArchiveUnit or DataObject
+     * @return the touched count, 0 if not touched
+     */
+    public int getTouchedCount(DataObjectPackageIdElement element) {
+        return getTouchedCountByIndex(elementIndex.indexIfKnown(element));
     }
 
     /**
@@ -287,7 +497,10 @@ public class DataObjectPackage {
      * @return true, if has been touched
      */
     public boolean isTouchedInDataObjectPackageId(String inDataObjectPackageId) {
-        return touchedInDataObjectPackageIdMap.containsKey(inDataObjectPackageId);
+        DataObjectPackageIdElement element = getElementById(inDataObjectPackageId);
+        if (element == null)
+            return touchedUnknownIdMap.containsKey(inDataObjectPackageId);
+        return isTouched(element);
     }
 
     /**
@@ -301,7 +514,11 @@ public class DataObjectPackage {
      * @param inDataObjectPackageId the id in DataObjectPackage
      */
     public void addTouchedInDataObjectPackageId(String inDataObjectPackageId) {
-        touchedInDataObjectPackageIdMap.put(inDataObjectPackageId, 1);
+        DataObjectPackageIdElement element = getElementById(inDataObjectPackageId);
+        if (element == null)
+            touchedUnknownIdMap.put(inDataObjectPackageId, 1);
+        else
+            addTouched(element);
     }
 
     /**
@@ -311,11 +528,11 @@ public class DataObjectPackage {
      * @param inDataObjectPackageId the id in DataObjectPackage
      */
     public void incTouchedInDataObjectPackageId(String inDataObjectPackageId) {
-        Integer value = touchedInDataObjectPackageIdMap.get(inDataObjectPackageId);
-        if (value == null)
-            touchedInDataObjectPackageIdMap.put(inDataObjectPackageId, 1);
+        DataObjectPackageIdElement element = getElementById(inDataObjectPackageId);
+        if (element == null)
+            touchedUnknownIdMap.merge(inDataObjectPackageId, 1, Integer::sum);
         else
-            touchedInDataObjectPackageIdMap.put(inDataObjectPackageId, value + 1);
+            incTouched(element);
     }
 
     /**
@@ -326,7 +543,11 @@ public class DataObjectPackage {
      * not touched
      */
     public Integer getTouchedInDataObjectPackageId(String inDataObjectPackageId) {
-        return touchedInDataObjectPackageIdMap.get(inDataObjectPackageId);
+        DataObjectPackageIdElement element = getElementById(inDataObjectPackageId);
+        if (element == null)
+            return touchedUnknownIdMap.get(inDataObjectPackageId);
+        int count = getTouchedCount(element);
+        return (count == 0 ? null : count);
     }
 
     /**
@@ -432,8 +653,7 @@ public class DataObjectPackage {
      */
     public String getNextInDataObjectPackageID() {
         String id = "ID" + Integer.toString(idCounter++);
-        while (auInDataObjectPackageIdMap.containsKey(id) || dogInDataObjectPackageIdMap.containsKey(id)
-                || bdoInDataObjectPackageIdMap.containsKey(id) || pdoInDataObjectPackageIdMap.containsKey(id))
+        while (isInDataObjectPackageIdUsed(id))
             id = "ID" + Integer.toString(idCounter++);
         return id;
     }
@@ -449,6 +669,18 @@ public class DataObjectPackage {
         return "RefID" + Integer.toString(refIdCounter++);
     }
 
+    /**
+     * Reserve a range of consecutive RefIDs to use in DataObjectPackage.
+     *
+     * @param count the number of RefIDs
+     * @return the number of the first reserved RefID, in the "RefIDxxx" form
+     */
+    public int reserveRefIDs(int count) {
+        int first = refIdCounter;
+        refIdCounter += count;
+        return first;
+    }
+
     /**
      * Reset refID counter to value 1.
      * <p>
@@ -531,6 +763,23 @@ public class DataObjectPackage {
     public void moveContentFromDataObjectPackage(DataObjectPackage childDataObjectPackage, ArchiveUnit targetAU) {
         childDataObjectPackage.setAllReferencesByObjects();
 
+        // files not extracted from the child zip are kept there if possible, extracted if not
+        if (childDataObjectPackage.getZipContentSource() != null) {
+            if (zipContentSource == null)
+                zipContentSource = childDataObjectPackage.getZipContentSource();
+            else
+                for (BinaryDataObject bdo : childDataObjectPackage.getBdoInDataObjectPackageIdMap().values())
+                    try {
+                        bdo.getAvailableOnDiskPath();
+                    } catch (SEDALibException ignored) {
+                        // reported when the file is used
+                    }
+            childDataObjectPackage.setZipContentSource(null);
+        }
+        // XML blocks kept in the child manifest files are still read from there
+        manifestSourceList.addAll(childDataObjectPackage.manifestSourceList);
+        childDataObjectPackage.manifestSourceList.clear();
+
         for (Map.Entry<String, ArchiveUnit> pair : childDataObjectPackage.getAuInDataObjectPackageIdMap().entrySet()) {
             pair.getValue().setInDataObjectPackageId(null);
             try {
@@ -573,10 +822,10 @@ public class DataObjectPackage {
         for (ArchiveUnit au : childDataObjectPackage.ghostRootAu.getChildrenAuList().getArchiveUnitList())
             targetAU.addChildArchiveUnit(au);
 
-        childDataObjectPackage.setAuInDataObjectPackageIdMap(new HashMap<String, ArchiveUnit>());
-        childDataObjectPackage.setDogInDataObjectPackageIdMap(new HashMap<String, DataObjectGroup>());
-        childDataObjectPackage.setBdoInDataObjectPackageIdMap(new HashMap<String, BinaryDataObject>());
-        childDataObjectPackage.setPdoInDataObjectPackageIdMap(new HashMap<String, PhysicalDataObject>());
+        childDataObjectPackage.getAuInDataObjectPackageIdMap().clear();
+        childDataObjectPackage.getDogInDataObjectPackageIdMap().clear();
+        childDataObjectPackage.getBdoInDataObjectPackageIdMap().clear();
+        childDataObjectPackage.getPdoInDataObjectPackageIdMap().clear();
         childDataObjectPackage.setGhostRootAu(new ArchiveUnit());
         Content c = new Content();
         try {
@@ -590,70 +839,30 @@ public class DataObjectPackage {
 
     // Test and normalization methods
 
-    /**
-     * ArchiveUnits path from root to string.
-     *
-     * @param path the ArchiveUnits path
-     * @return the string representation
-     */
-    private String ArchiveUnitPathToString(List<ArchiveUnit> path) {
-        String result = "";
-        if (path != null) {
-            for (ArchiveUnit au : path)
-                result += au.getInDataObjectPackageId() + "->";
-        }
-        return result;
-    }
-
-    /**
-     * Verify the ArchiveUnit is not in a cycle and recurse in his children
-     *
-     * @param au   the ArchiveUnit
-     * @param path the ArchiveUnits path
-     * @throws SEDALibException if the graph is cyclic
-     */
-    private void verifyAcyclicArchiveUnit(ArchiveUnit au, List<ArchiveUnit> path) throws SEDALibException {
-        if (path.contains(au))
-            throw new SEDALibException(
-                    "Cycle détecté " + ArchiveUnitPathToString(path) + au.getInDataObjectPackageId());
-        if (isTouchedInDataObjectPackageId(au.getInDataObjectPackageId()))
-            return;
-        path.add(au);
-        for (ArchiveUnit childAu : au.getChildrenAuList().getArchiveUnitList())
-            verifyAcyclicArchiveUnit(childAu, path);
-        path.remove(au);
-        addTouchedInDataObjectPackageId(au.getInDataObjectPackageId());
-    }
-
     /**
      * Verify if there's a cycle in the ArchiveUnits graph.
      *
      * @throws SEDALibException if the graph is cyclic
      */
     public void verifyAcyclic() throws SEDALibException {
-        List<ArchiveUnit> path = new ArrayList<ArchiveUnit>();
-        resetTouchedInDataObjectPackageIdMap();
-        for (ArchiveUnit childAu : ghostRootAu.getChildrenAuList().getArchiveUnitList())
-            verifyAcyclicArchiveUnit(childAu, path);
+        verifyAcyclic(ghostRootAu.getChildrenAuList().getArchiveUnitList());
     }
 
     /**
-     * Increment the number of references for each DataObjectGroup in this
-     * ArchiveUnit, and recurse in his children.
+     * Verify if there's a cycle in the ArchiveUnits graph reachable from the given ArchiveUnits.
      *
-     * @param archiveUnit the ArchiveUnit
+     * @param roots the ArchiveUnits from which the graph is verified
+     * @throws SEDALibException if the graph is cyclic
      */
-    private void countDogReferencesArchiveUnit(ArchiveUnit archiveUnit) {
-        if (isTouchedInDataObjectPackageId(archiveUnit.getInDataObjectPackageId()))
-            return;
-        for (DataObject zdo : archiveUnit.getDataObjectRefList().getDataObjectList()) {
-            if (zdo instanceof DataObjectGroup) {
-                incTouchedInDataObjectPackageId(zdo.getInDataObjectPackageId());
-            }
+    private void verifyAcyclic(List<ArchiveUnit> roots) throws SEDALibException {
+        ArchiveUnitTraversal traversal = new ArchiveUnitTraversal(this);
+        traversal.setCycleDetectionFlag(true);
+        traversal.setInterruptibleFlag(false);
+        try {
+            traversal.traverse(roots, au -> true);
+        } catch (InterruptedException ignored) {
+            // impossible
         }
-        for (ArchiveUnit childAu : archiveUnit.getChildrenAuList().getArchiveUnitList())
-            countDogReferencesArchiveUnit(childAu);
-        addTouchedInDataObjectPackageId(archiveUnit.getInDataObjectPackageId());
     }
 
     /**
@@ -664,24 +873,63 @@ public class DataObjectPackage {
      *                          a DataObjectGroup has a LogBook wrong format
      */
     public void verifyDogUnicityCapacity() throws SEDALibException {
-        resetTouchedInDataObjectPackageIdMap();
+        verifyDogUnicityCapacity(auInDataObjectPackageIdMap.values());
+    }
+
+    /**
+     * Verify if the DataObject lists of the given ArchiveUnits can be reduced to one DataObjectGroup.
+     * <p>
+     * The DataObjectGroups references are counted in the whole graph only if one of these lists mixes a
+     * DataObjectGroup with other DataObjects.
+     *
+     * @param archiveUnits the ArchiveUnits to verify
+     * @throws SEDALibException if one not reducible DataObject list is detected
+     */
+    private void verifyDogUnicityCapacity(Collection<ArchiveUnit> archiveUnits) throws SEDALibException {
+        List<ArchiveUnit> mixedArchiveUnits = new ArrayList<ArchiveUnit>();
+        for (ArchiveUnit au : archiveUnits) {
+            DataObjectRefList dorl = au.getDataObjectRefList();
+            if (dorl.getCount() > 1) {
+                for (DataObject zdo : dorl.getDataObjectList()) {
+                    if (zdo instanceof DataObjectGroup) {
+                        mixedArchiveUnits.add(au);
+                        break;
+                    }
+                }
+            }
+        }
+        if (mixedArchiveUnits.isEmpty())
+            return;
+
         // count all Dog declaration and reference
-        for (ArchiveUnit childAu : ghostRootAu.getChildrenAuList().getArchiveUnitList())
-            countDogReferencesArchiveUnit(childAu);
+        int[] dogReferenceCounts = new int[elementIndex.size()];
+        ArchiveUnitTraversal traversal = new ArchiveUnitTraversal(this);
+        traversal.setInterruptibleFlag(false);
+        try {
+            traversal.traverse(au -> {
+                for (DataObject zdo : au.getDataObjectRefList().getDataObjectList()) {
+                    if (zdo instanceof DataObjectGroup) {
+                        int index = elementIndex.indexOf((DataObjectGroup) zdo);
+                        if (index < dogReferenceCounts.length)
+                            dogReferenceCounts[index]++;
+                    }
+                }
+                return true;
+            });
+        } catch (InterruptedException ignored) {
+            // impossible
+        }
         // verify that there is no Dog with reference (count>1) to merge with other
         // elements in one ArchiveUnit
-        for (Entry<String, ArchiveUnit> pair : getAuInDataObjectPackageIdMap().entrySet()) {
-            DataObjectRefList dorl = pair.getValue().getDataObjectRefList();
-            boolean referencedDog = false;
-            for (DataObject zdo : dorl.getDataObjectList()) {
+        for (ArchiveUnit au : mixedArchiveUnits) {
+            for (DataObject zdo : au.getDataObjectRefList().getDataObjectList()) {
                 if (zdo instanceof DataObjectGroup) {
-                    if (getTouchedInDataObjectPackageId(zdo.getInDataObjectPackageId()) > 1)
-                        referencedDog = true;
+                    int index = elementIndex.indexOf((DataObjectGroup) zdo);
+                    if ((index < dogReferenceCounts.length) && (dogReferenceCounts[index] > 1))
+                        throw new SEDALibException("Regroupement des références de DataObject impossible sur " +
+                                "l'ArchiveUnit [" + au.getInDataObjectPackageId() + "]");
                 }
             }
-            if (referencedDog && (dorl.getCount() > 1))
-                throw new SEDALibException("Regroupement des références de DataObject impossible sur l'ArchiveUnit ["
-                        + pair.getValue().getInDataObjectPackageId() + "]");
         }
     }
 
@@ -715,46 +963,144 @@ public class DataObjectPackage {
      *                          in the DataObjectPackage.
      */
     public void normalizeUniqDataObjectGroup() throws SEDALibException {
-        verifyDogUnicityCapacity();
+        normalizeUniqDataObjectGroup(new ArrayList<ArchiveUnit>(auInDataObjectPackageIdMap.values()));
+    }
 
-        for (Entry<String, ArchiveUnit> pair : getAuInDataObjectPackageIdMap().entrySet()) {
-            DataObjectRefList dorl = pair.getValue().getDataObjectRefList();
+    /**
+     * Normalize each of the given ArchiveUnits to set a uniq DataObjectGroup with all the DataObjects inside.
+     *
+     * @param archiveUnits the ArchiveUnits to normalize
+     * @throws SEDALibException if one not reducible DataObject list is detected or one DataObjectGroup can't be merge
+     *                          due to LogBook wrong format. Important: nothing has been modified in the
+     *                          DataObjectPackage.
+     */
+    private void normalizeUniqDataObjectGroup(List<ArchiveUnit> archiveUnits) throws SEDALibException {
+        verifyDogUnicityCapacity(archiveUnits);
+
+        for (ArchiveUnit au : archiveUnits) {
+            DataObjectRefList dorl = au.getDataObjectRefList();
             if (((dorl.getCount() == 1) && !(dorl.getDataObjectList().get(0) instanceof DataObjectGroup))
                     || (dorl.getCount() > 1)) {
                 DataObjectGroup dog = new DataObjectGroup(this, null);
-                putAllInDog(dog, pair.getValue().getDataObjectRefList());
+                putAllInDog(dog, au.getDataObjectRefList());
                 dorl = new DataObjectRefList(this);
                 dorl.add(dog);
-                pair.getValue().setDataObjectRefList(dorl);
+                au.setDataObjectRefList(dorl);
             }
         }
     }
 
+    /**
+     * The minimum number of ArchiveUnits by thread to mark the used DataObjects in parallel.
+     */
+    private static final int MARK_ARCHIVE_UNITS_BY_THREAD = 10000;
+
+    /**
+     * The marking threads counter, used for thread names.
+     */
+    private static final AtomicInteger markThreadCounter = new AtomicInteger();
+
+    /**
+     * Mark, by element index, the DataObjects used by the ArchiveUnits in the given range.
+     *
+     * @param archiveUnits the ArchiveUnits array
+     * @param from         the first ArchiveUnit position, inclusive
+     * @param to           the last ArchiveUnit position, exclusive
+     * @return the used DataObjects bitset
+     */
+    private BitSet markUsedDataObjects(ArchiveUnit[] archiveUnits, int from, int to) {
+        BitSet used = new BitSet(elementIndex.size());
+        for (int i = from; i < to; i++) {
+            for (DataObject dataObject : archiveUnits[i].getDataObjectRefList().getDataObjectList()) {
+                markUsed(used, (DataObjectPackageIdElement) dataObject);
+                if (dataObject instanceof DataObjectGroup) {
+                    for (PhysicalDataObject pdo : ((DataObjectGroup) dataObject).getPhysicalDataObjectList())
+                        markUsed(used, pdo);
+                    for (BinaryDataObject bdo : ((DataObjectGroup) dataObject).getBinaryDataObjectList())
+                        markUsed(used, bdo);
+                }
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Mark the DataObject as used, if indexed. Not indexed DataObjects are not in the DataObjectPackage lists, and
+     * can be ignored.
+     *
+     * @param used    the used DataObjects bitset
+     * @param element the DataObject
+     */
+    private void markUsed(BitSet used, DataObjectPackageIdElement element) {
+        int index = elementIndex.indexIfKnown(element);
+        if (index >= 0)
+            used.set(index);
+    }
+
+    /**
+     * Mark, by element index, the DataObjects used by all the ArchiveUnits, in parallel ranges for big
+     * DataObjectPackages.
+     *
+     * @return the used DataObjects bitset
+     * @throws InterruptedException if interrupted
+     */
+    private BitSet markUsedDataObjects() throws InterruptedException {
+        ArchiveUnit[] archiveUnits = auInDataObjectPackageIdMap.values().toArray(new ArchiveUnit[0]);
+        int threadCount = Math.min(Runtime.getRuntime().availableProcessors(),
+                archiveUnits.length / MARK_ARCHIVE_UNITS_BY_THREAD);
+        if (threadCount <= 1)
+            return markUsedDataObjects(archiveUnits, 0, archiveUnits.length);
+
+        // pending references are resolved before concurrent reading, and all used elements are indexed
+        for (ArchiveUnit au : archiveUnits)
+            au.getDataObjectRefList().resolveReferences();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, r -> {
+            Thread t = new Thread(r, "sedalib-mark-" + markThreadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<BitSet>> futures = new ArrayList<Future<BitSet>>(threadCount);
+            int rangeLength = (archiveUnits.length + threadCount - 1) / threadCount;
+            for (int from = 0; from < archiveUnits.length; from += rangeLength) {
+                int rangeFrom = from;
+                int rangeTo = Math.min(from + rangeLength, archiveUnits.length);
+                futures.add(executor.submit(() -> markUsedDataObjects(archiveUnits, rangeFrom, rangeTo)));
+            }
+            BitSet used = new BitSet(elementIndex.size());
+            for (Future<BitSet> future : futures)
+                used.or(future.get());
+            return used;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Erreur de marquage des DataObjects utilisés", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
     /**
      * Remove from DataObjectPackage lists all DataObjects (DataObjectGroup, BinaryDataObject,
-     * PhysicalDataObject) not used by an ArchiveUnit
+     * PhysicalDataObject) not used by an ArchiveUnit.
+     * <p>
+     * The used DataObjects are marked in a bitset, in parallel for big DataObjectPackages, and the unused ones are
+     * then swept from the lists and from the element index.
      *
      * @param spl the SEDALib progress logger
      * @throws InterruptedException the interrupted exception
      */
     public void removeUnusedDataObjects(SEDALibProgressLogger spl) throws InterruptedException {
-        HashSet<DataObject> usedDataObjects = new HashSet<DataObject>(1000);
-        for (Entry<String, ArchiveUnit> pair : getAuInDataObjectPackageIdMap().entrySet()) {
-            DataObjectRefList dorl = pair.getValue().getDataObjectRefList();
-            for (DataObject dataObject : dorl.getDataObjectList()) {
-                usedDataObjects.add(dataObject);
-                if (dataObject instanceof DataObjectGroup) {
-                    usedDataObjects.addAll(((DataObjectGroup) dataObject).getPhysicalDataObjectList());
-                    usedDataObjects.addAll(((DataObjectGroup) dataObject).getBinaryDataObjectList());
-                }
-            }
-        }
+        BitSet used = markUsedDataObjects();
+        boolean removedFlag = false;
 
         Iterator<Entry<String, DataObjectGroup>> iteratorDog = getDogInDataObjectPackageIdMap().entrySet().iterator();
         while (iteratorDog.hasNext()) {
             Entry<String, DataObjectGroup> entry = iteratorDog.next();
-            if (!usedDataObjects.contains(entry.getValue())) {
+            if (!used.get(elementIndex.indexOf(entry.getValue()))) {
                 iteratorDog.remove();
+                removedFlag = true;
                 doProgressLog(spl, SEDALibProgressLogger.GLOBAL, "sedalib: un DataObjectGroup [" + entry.getKey() + "] déclaré n'est pas utilisé, il est déréférencé.", null);
             }
         }
@@ -762,8 +1108,9 @@ public class DataObjectPackage {
         Iterator<Entry<String, BinaryDataObject>> iteratorBdo = getBdoInDataObjectPackageIdMap().entrySet().iterator();
         while (iteratorBdo.hasNext()) {
             Entry<String, BinaryDataObject> entry = iteratorBdo.next();
-            if (!usedDataObjects.contains(entry.getValue())) {
+            if (!used.get(elementIndex.indexOf(entry.getValue()))) {
                 iteratorBdo.remove();
+                removedFlag = true;
                 doProgressLog(spl, SEDALibProgressLogger.GLOBAL, "sedalib: un BinaryDataObject [" + entry.getKey() + "] déclaré n'est pas utilisé, il est déréférencé.", null);
             }
         }
@@ -771,33 +1118,14 @@ public class DataObjectPackage {
         Iterator<Entry<String, PhysicalDataObject>> iteratorPdo = getPdoInDataObjectPackageIdMap().entrySet().iterator();
         while (iteratorPdo.hasNext()) {
             Entry<String, PhysicalDataObject> entry = iteratorPdo.next();
-            if (!usedDataObjects.contains(entry.getValue())) {
+            if (!used.get(elementIndex.indexOf(entry.getValue()))) {
                 iteratorPdo.remove();
+                removedFlag = true;
                 doProgressLog(spl, SEDALibProgressLogger.GLOBAL, "sedalib: un PhysicalDataObject [" + entry.getKey() + "] déclaré n'est pas utilisé, il est déréférencé.", null);
             }
         }
-    }
-
-    /**
-     * Regenerate ArchiveUnit id and maintain an ordered list of DataObjectGroup to
-     * reindex.
-     *
-     * @param archiveUnit                the archive unit
-     * @param orderedDataObjectGroupList the ordered data object group list
-     */
-    private void regenerateArchiveUnitId(ArchiveUnit archiveUnit, List<DataObjectGroup> orderedDataObjectGroupList) {
-        if (archiveUnit.inDataPackageObjectId == null) {
-            DataObjectGroup dog = archiveUnit.getDataObjectRefList().getNormalizedDataObjectGroup();
-            if (dog != null)
-                orderedDataObjectGroupList.add(dog);
-            try {
-                addArchiveUnit(archiveUnit);
-            } catch (SEDALibException ignored) {
-                // impossible
-            }
-            for (ArchiveUnit childAu : archiveUnit.getChildrenAuList().getArchiveUnitList())
-                regenerateArchiveUnitId(childAu, orderedDataObjectGroupList);
-        }
+        if (removedFlag)
+            compactElementIndex();
     }
 
     /**
@@ -846,24 +1174,42 @@ public class DataObjectPackage {
      * PhysicalDataObject in incremented IDxxx form.
      */
     public void regenerateContinuousIds() {
+        // the graph is not changed, only the ids
+        BitSet savedNormalizationDirtyArchiveUnits = (BitSet) normalizationDirtyArchiveUnits.clone();
+        boolean savedNormalizationDataObjectsChangedFlag = normalizationDataObjectsChangedFlag;
         setAllReferencesByObjects();
         removeArchiveUnitAndDataObjectGroupId();
         resetIdCounter();
 
-        auInDataObjectPackageIdMap = new HashMap<String, ArchiveUnit>();
-        dogInDataObjectPackageIdMap = new HashMap<String, DataObjectGroup>();
-        bdoInDataObjectPackageIdMap = new HashMap<String, BinaryDataObject>();
-        pdoInDataObjectPackageIdMap = new HashMap<String, PhysicalDataObject>();
+        auInDataObjectPackageIdMap.clear();
+        dogInDataObjectPackageIdMap.clear();
+        bdoInDataObjectPackageIdMap.clear();
+        pdoInDataObjectPackageIdMap.clear();
 
         resetInOutCounter();
         List<DataObjectGroup> orderedDataObjectGroupList = new ArrayList<DataObjectGroup>(
                 dogInDataObjectPackageIdMap.size());
-        for (ArchiveUnit root : ghostRootAu.getChildrenAuList().getArchiveUnitList())
-            regenerateArchiveUnitId(root, orderedDataObjectGroupList);
+        ArchiveUnitTraversal traversal = new ArchiveUnitTraversal(this);
+        traversal.setInterruptibleFlag(false);
+        try {
+            traversal.traverse(au -> {
+                DataObjectGroup dog = au.getDataObjectRefList().getNormalizedDataObjectGroup();
+                if (dog != null)
+                    orderedDataObjectGroupList.add(dog);
+                addArchiveUnit(au);
+                return true;
+            });
+        } catch (SEDALibException | InterruptedException ignored) {
+            // impossible
+        }
 
         resetInOutCounter();
         for (DataObjectGroup zdo : orderedDataObjectGroupList)
             regenerateDataObjectGroup(zdo);
+        normalizationDirtyArchiveUnits = savedNormalizationDirtyArchiveUnits;
+        normalizationDataObjectsChangedFlag = savedNormalizationDataObjectsChangedFlag;
+        // the elements no more in the graph are released
+        compactElementIndex();
     }
 
     /**
@@ -876,6 +1222,10 @@ public class DataObjectPackage {
      * inside</li>
      * </ul>
      * and set the vitamNormalizationStatus value.
+     * <p>
+     * After a first successful normalization, only the ArchiveUnits added or whose references lists changed since are
+     * verified and normalized, and the unused DataObjects are searched only if the DataObjectPackage maps, a
+     * DataObjectGroup content or DataObjects references changed.
      *
      * @param spl the SEDALib progress logger
      * @throws SEDALibException     if one verification fail. Important: nothing has                          been modified in the DataObjectPackage.
@@ -883,13 +1233,80 @@ public class DataObjectPackage {
      */
     public void vitamNormalize(SEDALibProgressLogger spl) throws SEDALibException, InterruptedException {
         vitamNormalizationStatus = NORMALIZATION_STATUS_KO;
-        verifyAcyclic();
-        normalizeUniqDataObjectGroup();
-        removeUnusedDataObjects(spl);
+        if (fullNormalizationFlag) {
+            verifyAcyclic();
+            normalizeUniqDataObjectGroup();
+            removeUnusedDataObjects(spl);
+        } else {
+            List<ArchiveUnit> dirtyArchiveUnits = getNormalizationDirtyArchiveUnits();
+            // a new cycle goes through a changed children list
+            verifyAcyclic(dirtyArchiveUnits);
+            normalizeUniqDataObjectGroup(dirtyArchiveUnits);
+            if (normalizationDataObjectsChangedFlag)
+                removeUnusedDataObjects(spl);
+        }
+        fullNormalizationFlag = false;
+        normalizationDirtyArchiveUnits.clear();
+        normalizationDataObjectsChangedFlag = false;
         vitamNormalizationStatus = NORMALIZATION_STATUS_OK;
     }
 
 
+    /**
+     * Records that the ArchiveUnit has been added or its references lists changed, so that it's verified by the next
+     * incremental Vitam normalization.
+     *
+     * @param archiveUnit            the ArchiveUnit
+     * @param dataObjectsRemovedFlag true if DataObjects references have been removed or replaced
+     */
+    void markNormalizationDirty(ArchiveUnit archiveUnit, boolean dataObjectsRemovedFlag) {
+        if (archiveUnit != ghostRootAu)
+            normalizationDirtyArchiveUnits.set(elementIndex.indexOf(archiveUnit));
+        if (dataObjectsRemovedFlag)
+            normalizationDataObjectsChangedFlag = true;
+    }
+
+    /**
+     * Records that DataObjects have been added to or removed from a DataObjectGroup, so that the next incremental
+     * Vitam normalization searches the unused DataObjects.
+     */
+    void markDataObjectsChanged() {
+        normalizationDataObjectsChangedFlag = true;
+    }
+
+    /**
+     * Records a change in one of the inDataPackageObjectId maps, made by the DataObjectPackage or directly by a
+     * caller. An added ArchiveUnit is verified by the next incremental Vitam normalization, and any other change
+     * may let DataObjects unused, so that they are then searched.
+     *
+     * @param kind        the changed map elements kind
+     * @param element     the added or removed element, or null if the map is cleared
+     * @param removalFlag true if elements have been removed
+     */
+    void idMapChanged(int kind, DataObjectPackageIdElement element, boolean removalFlag) {
+        if ((kind == DataObjectPackageIndex.ARCHIVE_UNIT_KIND) && !removalFlag)
+            markNormalizationDirty((ArchiveUnit) element, false);
+        else
+            normalizationDataObjectsChangedFlag = true;
+    }
+
+    /**
+     * Gets the ArchiveUnits, still in the DataObjectPackage, added or whose references lists changed since the last
+     * successful Vitam normalization.
+     *
+     * @return the ArchiveUnits list
+     */
+    private List<ArchiveUnit> getNormalizationDirtyArchiveUnits() {
+        List<ArchiveUnit> result = new ArrayList<ArchiveUnit>(normalizationDirtyArchiveUnits.cardinality());
+        for (int i = normalizationDirtyArchiveUnits.nextSetBit(0); i >= 0;
+             i = normalizationDirtyArchiveUnits.nextSetBit(i + 1)) {
+            DataObjectPackageIdElement element = elementIndex.get(i);
+            if ((element instanceof ArchiveUnit) && elementIndex.isMember(i))
+                result.add((ArchiveUnit) element);
+        }
+        return result;
+    }
+
     /**
      * Remove empty (no child archive unit, no data object) archive unit from all it's fathers and from the data object package.
      *
@@ -924,6 +1341,99 @@ public class DataObjectPackage {
         return ID1.compareTo(ID2);
     };
 
+    /**
+     * The number of ArchiveUnits rendered in advance by each thread, bounding the memory used by the fragments
+     * waiting to be written.
+     */
+    private static final int EXPORT_LOOKAHEAD_BY_THREAD = 16;
+
+    /**
+     * The rendering threads counter, used for thread names.
+     */
+    private static final AtomicInteger renderThreadCounter = new AtomicInteger();
+
+    /**
+     * Export the ArchiveUnits in flat mode, rendered in XML fragments by exportThreadCount threads and written in
+     * the given order. At most exportThreadCount*EXPORT_LOOKAHEAD_BY_THREAD fragments are in progress at the same
+     * time.
+     *
+     * @param xmlWriter             the SEDAXMLStreamWriter generating the SEDA manifest
+     * @param ids                   the ArchiveUnits inDataPackageObjectIds in export order
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the XML can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
+    private void exportFlatArchiveUnitsInParallel(SEDAXMLStreamWriter xmlWriter, String[] ids,
+                                                  SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        // references are resolved and RefIDs reserved in export order, before any concurrent rendering
+        int[] firstRefIds = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ArchiveUnit au = auInDataObjectPackageIdMap.get(ids[i]);
+            au.getChildrenAuList().getArchiveUnitList();
+            au.getDataObjectRefList().getDataObjectList();
+            firstRefIds[i] = reserveRefIDs(au.getChildrenAuList().getCount());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(exportThreadCount, r -> {
+            Thread t = new Thread(r, "sedalib-render-" + renderThreadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<byte[]>> inProgressFutures = new ArrayDeque<Future<byte[]>>();
+        Deque<String> inProgressIds = new ArrayDeque<String>();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                if (inProgressFutures.size() >= exportThreadCount * EXPORT_LOOKAHEAD_BY_THREAD)
+                    writeFirstInProgress(xmlWriter, inProgressFutures, inProgressIds, sedaLibProgressLogger);
+                ArchiveUnit au = auInDataObjectPackageIdMap.get(ids[i]);
+                int firstRefId = firstRefIds[i];
+                inProgressFutures.add(executor.submit(() ->
+                        au.toFlatSedaXmlFragment(xmlWriter, firstRefId, sedaLibProgressLogger)));
+                inProgressIds.add(ids[i]);
+            }
+            while (!inProgressFutures.isEmpty())
+                writeFirstInProgress(xmlWriter, inProgressFutures, inProgressIds, sedaLibProgressLogger);
+        } finally {
+            // cancel all pending renderings if any (exception or interruption)
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Wait for the first ArchiveUnit rendering in progress, write its fragment and remove it from in progress lists.
+     *
+     * @param xmlWriter             the SEDAXMLStreamWriter generating the SEDA manifest
+     * @param inProgressFutures     the in progress rendering futures
+     * @param inProgressIds         the in progress ArchiveUnits inDataPackageObjectIds, in the same order
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the XML can't be written
+     * @throws InterruptedException if export process is interrupted
+     */
+    private void writeFirstInProgress(SEDAXMLStreamWriter xmlWriter, Deque<Future<byte[]>> inProgressFutures,
+                                      Deque<String> inProgressIds, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        Future<byte[]> future = inProgressFutures.poll();
+        String id = inProgressIds.poll();
+        try {
+            xmlWriter.writeRawXMLFragment(future.get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SEDALibException)
+                throw (SEDALibException) e.getCause();
+            if (e.getCause() instanceof InterruptedException)
+                throw (InterruptedException) e.getCause();
+            throw new SEDALibException("Erreur d'écriture XML de l'ArchiveUnit [" + id + "]", e.getCause());
+        } catch (CancellationException e) {
+            throw new InterruptedException("Export des ArchiveUnits annulé");
+        } catch (XMLStreamException e) {
+            throw new SEDALibException("Erreur d'écriture XML de l'ArchiveUnit [" + id + "]", e);
+        }
+        int counter = getNextInOutCounter();
+        doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
+                "sedalib: " + counter + " métadonnées ArchiveUnit exportées");
+    }
+
     /**
      * Export data object package, DataObjects part, of SEDA DataObjectPackage XML.
      *
@@ -950,9 +1460,9 @@ public class DataObjectPackage {
                 dog = dogInDataObjectPackageIdMap.get(s);
                 dog.toSedaXml(xmlWriter, sedaLibProgressLogger);
                 for (BinaryDataObject b : dog.getBinaryDataObjectList())
-                    addTouchedInDataObjectPackageId(b.inDataPackageObjectId);
+                    addTouched(b);
                 for (PhysicalDataObject p : dog.getPhysicalDataObjectList())
-                    addTouchedInDataObjectPackageId(p.inDataPackageObjectId);
+                    addTouched(p);
             }
 
             // then all alone BinaryDataObject
@@ -961,7 +1471,7 @@ public class DataObjectPackage {
             Arrays.sort(tempArray);
             for (String s : tempArray) {
                 bdo = bdoInDataObjectPackageIdMap.get(s);
-                if (!isTouchedInDataObjectPackageId(bdo.inDataPackageObjectId))
+                if (!isTouched(bdo))
                     bdo.toSedaXml(xmlWriter, sedaLibProgressLogger);
             }
 
@@ -971,7 +1481,7 @@ public class DataObjectPackage {
             Arrays.sort(tempArray);
             for (String s : tempArray) {
                 pdo = pdoInDataObjectPackageIdMap.get(s);
-                if (!isTouchedInDataObjectPackageId(pdo.inDataPackageObjectId))
+                if (!isTouched(pdo))
                     pdo.toSedaXml(xmlWriter, sedaLibProgressLogger);
             }
         } catch (XMLStreamException e) {
@@ -1002,8 +1512,11 @@ public class DataObjectPackage {
                 Set<String> auSet = auInDataObjectPackageIdMap.keySet();
                 String[] tempArray = auSet.toArray(new String[0]);
                 Arrays.sort(tempArray, IDComparator);
-                for (String s : tempArray)
-                    auInDataObjectPackageIdMap.get(s).toSedaXml(xmlWriter, false, sedaLibProgressLogger);
+                if ((exportThreadCount > 1) && (tempArray.length > 1))
+                    exportFlatArchiveUnitsInParallel(xmlWriter, tempArray, sedaLibProgressLogger);
+                else
+                    for (String s : tempArray)
+                        auInDataObjectPackageIdMap.get(s).toSedaXml(xmlWriter, false, sedaLibProgressLogger);
             } else {
                 List<String> roots = ghostRootAu.getChildrenAuList().getInDataObjectPackageIdList();
                 if (roots != null) {
@@ -1168,16 +1681,16 @@ public class DataObjectPackage {
             tmp = pair.getValue();
             if ((tmp.getChildrenAuList() != null) && (tmp.getChildrenAuList().getInDataObjectPackageIdList() != null))
                 for (String inDataObjectPackageId : pair.getValue().getChildrenAuList().getInDataObjectPackageIdList()) {
-                    if (dataObjectPackage.getArchiveUnitById(inDataObjectPackageId) == null)
+                    ArchiveUnit childAu = dataObjectPackage.getArchiveUnitById(inDataObjectPackageId);
+                    if (childAu == null)
                         throw new SEDALibException(
                                 "Erreur de référence d'ArchiveUnit, [" + inDataObjectPackageId + "] n'existe pas");
-                    dataObjectPackage.addTouchedInDataObjectPackageId(inDataObjectPackageId);
+                    dataObjectPackage.addTouched(childAu);
                 }
         }
         for (Map.Entry<String, ArchiveUnit> pair : dataObjectPackage.auInDataObjectPackageIdMap.entrySet())
-            if (!dataObjectPackage.isTouchedInDataObjectPackageId(pair.getValue().inDataPackageObjectId))
-                dataObjectPackage
-                        .addRootAu(dataObjectPackage.getArchiveUnitById(pair.getValue().inDataPackageObjectId));
+            if (!dataObjectPackage.isTouched(pair.getValue()))
+                dataObjectPackage.addRootAu(pair.getValue());
 
         doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP, "sedalib: manifest importé", null);
 
@@ -1191,7 +1704,7 @@ public class DataObjectPackage {
      *
      * @return the BinaryDataObject in inDataPackageObjectId map
      */
-    public HashMap<String, BinaryDataObject> getBdoInDataObjectPackageIdMap() {
+    public Map<String, BinaryDataObject> getBdoInDataObjectPackageIdMap() {
         return bdoInDataObjectPackageIdMap;
     }
 
@@ -1201,8 +1714,11 @@ public class DataObjectPackage {
      * @param bdoInDataObjectPackageIdMap the BinaryDataObject in
      *                                    inDataPackageObjectId map
      */
-    public void setBdoInDataObjectPackageIdMap(HashMap<String, BinaryDataObject> bdoInDataObjectPackageIdMap) {
-        this.bdoInDataObjectPackageIdMap = bdoInDataObjectPackageIdMap;
+    public void setBdoInDataObjectPackageIdMap(Map<String, BinaryDataObject> bdoInDataObjectPackageIdMap) {
+        if (bdoInDataObjectPackageIdMap == this.bdoInDataObjectPackageIdMap)
+            return;
+        this.bdoInDataObjectPackageIdMap.clear();
+        this.bdoInDataObjectPackageIdMap.putAll(bdoInDataObjectPackageIdMap);
     }
 
     /**
@@ -1210,7 +1726,7 @@ public class DataObjectPackage {
      *
      * @return the PhysicalDataObject in inDataPackageObjectId map
      */
-    public HashMap<String, PhysicalDataObject> getPdoInDataObjectPackageIdMap() {
+    public Map<String, PhysicalDataObject> getPdoInDataObjectPackageIdMap() {
         return pdoInDataObjectPackageIdMap;
     }
 
@@ -1220,8 +1736,11 @@ public class DataObjectPackage {
      * @param pdoInDataObjectPackageIdMap the PhysicalDataObject in
      *                                    inDataPackageObjectId map
      */
-    public void setPdoInDataObjectPackageIdMap(HashMap<String, PhysicalDataObject> pdoInDataObjectPackageIdMap) {
-        this.pdoInDataObjectPackageIdMap = pdoInDataObjectPackageIdMap;
+    public void setPdoInDataObjectPackageIdMap(Map<String, PhysicalDataObject> pdoInDataObjectPackageIdMap) {
+        if (pdoInDataObjectPackageIdMap == this.pdoInDataObjectPackageIdMap)
+            return;
+        this.pdoInDataObjectPackageIdMap.clear();
+        this.pdoInDataObjectPackageIdMap.putAll(pdoInDataObjectPackageIdMap);
     }
 
     /**
@@ -1229,7 +1748,7 @@ public class DataObjectPackage {
      *
      * @return the DataObjectGroup in inDataPackageObjectId map
      */
-    public HashMap<String, DataObjectGroup> getDogInDataObjectPackageIdMap() {
+    public Map<String, DataObjectGroup> getDogInDataObjectPackageIdMap() {
         return dogInDataObjectPackageIdMap;
     }
 
@@ -1239,8 +1758,11 @@ public class DataObjectPackage {
      * @param dogInDataObjectPackageIdMap the DataObjectGroup in
      *                                    inDataPackageObjectId map
      */
-    public void setDogInDataObjectPackageIdMap(HashMap<String, DataObjectGroup> dogInDataObjectPackageIdMap) {
-        this.dogInDataObjectPackageIdMap = dogInDataObjectPackageIdMap;
+    public void setDogInDataObjectPackageIdMap(Map<String, DataObjectGroup> dogInDataObjectPackageIdMap) {
+        if (dogInDataObjectPackageIdMap == this.dogInDataObjectPackageIdMap)
+            return;
+        this.dogInDataObjectPackageIdMap.clear();
+        this.dogInDataObjectPackageIdMap.putAll(dogInDataObjectPackageIdMap);
     }
 
     /**
@@ -1248,7 +1770,7 @@ public class DataObjectPackage {
      *
      * @return the ArchiveUnit in inDataPackageObjectId map
      */
-    public HashMap<String, ArchiveUnit> getAuInDataObjectPackageIdMap() {
+    public Map<String, ArchiveUnit> getAuInDataObjectPackageIdMap() {
         return auInDataObjectPackageIdMap;
     }
 
@@ -1258,8 +1780,11 @@ public class DataObjectPackage {
      * @param auInDataObjectPackageIdMap the ArchiveUnit in inDataPackageObjectId
      *                                   map
      */
-    public void setAuInDataObjectPackageIdMap(HashMap<String, ArchiveUnit> auInDataObjectPackageIdMap) {
-        this.auInDataObjectPackageIdMap = auInDataObjectPackageIdMap;
+    public void setAuInDataObjectPackageIdMap(Map<String, ArchiveUnit> auInDataObjectPackageIdMap) {
+        if (auInDataObjectPackageIdMap == this.auInDataObjectPackageIdMap)
+            return;
+        this.auInDataObjectPackageIdMap.clear();
+        this.auInDataObjectPackageIdMap.putAll(auInDataObjectPackageIdMap);
     }
 
     /**
@@ -1337,6 +1862,8 @@ public class DataObjectPackage {
      */
     public void setVitamNormalizationStatus(int vitamNormalizationStatus) {
         this.vitamNormalizationStatus = vitamNormalizationStatus;
+        if (vitamNormalizationStatus != NORMALIZATION_STATUS_OK)
+            fullNormalizationFlag = true;
     }
 
     /**
@@ -1383,4 +1910,118 @@ public class DataObjectPackage {
     public void setExportMetadataList(List<String> exportMetadataList) {
         this.exportMetadataList = exportMetadataList;
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the number of threads rendering the ArchiveUnits in flat mode manifest export.
+     *
+     * @return the export thread count
+     */
+    public int getExportThreadCount() {
+        return exportThreadCount;
+    }
+
+    /**
+     * Sets the number of threads rendering the ArchiveUnits in flat mode manifest export, 1 for rendering in the
+     * calling thread. The manifest is the same whatever the number of threads.
+     *
+     * @param exportThreadCount the export thread count
+     */
+    public void setExportThreadCount(int exportThreadCount) {
+        this.exportThreadCount = Math.max(1, exportThreadCount);
+    }
+
+    /**
+     * Gets the zip file source of the BinaryDataObjects files not extracted on disk.
+     *
+     * @return the zip content source, or null if all files are on disk
+     */
+    public ZipContentSource getZipContentSource() {
+        return zipContentSource;
+    }
+
+    /**
+     * Sets the zip file source of the BinaryDataObjects files not extracted on disk.
+     *
+     * @param zipContentSource the zip content source, or null if all files are on disk
+     */
+    public void setZipContentSource(ZipContentSource zipContentSource) {
+        this.zipContentSource = zipContentSource;
+    }
+
+    /**
+     * Adds a manifest file source where ArchiveUnit XML blocks are kept, closed with the DataObjectPackage content
+     * sources.
+     *
+     * @param manifestSource the manifest source
+     */
+    public void addManifestSource(CompactXMLDataManifestSource manifestSource) {
+        manifestSourceList.add(manifestSource);
+    }
+
+    /**
+     * Gets the manifest files sources where ArchiveUnit XML blocks are kept.
+     *
+     * @return the manifest sources list
+     */
+    public List<CompactXMLDataManifestSource> getManifestSourceList() {
+        return manifestSourceList;
+    }
+
+    /**
+     * Checks if a file is a manifest file still read by this DataObjectPackage, and then must not be modified or
+     * deleted.
+     *
+     * @param path the file path
+     * @return true, if it is a used manifest file
+     */
+    public boolean isUsedManifestFile(Path path) {
+        Path normalizedPath = path.toAbsolutePath().normalize();
+        for (CompactXMLDataManifestSource manifestSource : manifestSourceList)
+            if (manifestSource.getManifestFile().toAbsolutePath().normalize().equals(normalizedPath))
+                return true;
+        return false;
+    }
+
+    /**
+     * Move the ArchiveUnits XML blocks kept in another disk store to the given one, so that the other store, still
+     * holding the blocks replaced by edits or those of a DataObjectPackage no more used, can be closed and its
+     * files deleted.
+     *
+     * @param diskStore the disk store
+     * @throws SEDALibException if the disk store can't store the blocks
+     */
+    public void moveXmlDataToDiskStore(CompactXMLDataDiskStore diskStore) throws SEDALibException {
+        try {
+            ghostRootAu.moveXmlDataToDiskStore(diskStore);
+            for (ArchiveUnit au : auInDataObjectPackageIdMap.values())
+                au.moveXmlDataToDiskStore(diskStore);
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible de déplacer les blocs XML dans le stockage disque", e);
+        }
+    }
+
+    /**
+     * Close the content sources, zip file and manifest files, still read by this DataObjectPackage. It has to be
+     * done when the DataObjectPackage is no more used, the files not extracted and the XML blocks kept in manifest
+     * files being then no more readable.
+     *
+     * @throws SEDALibException if a source can't be closed, all being closed anyway
+     */
+    public void closeContentSources() throws SEDALibException {
+        IOException exception = null;
+        List<Closeable> sources = new ArrayList<Closeable>(manifestSourceList);
+        if (zipContentSource != null)
+            sources.add(zipContentSource);
+        manifestSourceList.clear();
+        zipContentSource = null;
+        for (Closeable source : sources)
+            try {
+                source.close();
+            } catch (IOException e) {
+                if (exception == null)
+                    exception = e;
+            }
+        if (exception != null)
+            throw new SEDALibException("Impossible de fermer les fichiers sources du DataObjectPackage", exception);
+    }
+}
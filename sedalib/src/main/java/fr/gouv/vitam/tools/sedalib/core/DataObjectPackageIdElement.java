@@ -54,6 +54,11 @@ public class DataObjectPackageIdElement extends DataObjectPackageElement {
      */
     protected Path onDiskPath;
 
+    /**
+     * The dense index in the DataObjectPackage, cached for {@link DataObjectPackageIndex}, or -1 if not indexed.
+     */
+    int inDataObjectPackageIndex;
+
     /**
      * Instantiates a new DataObjectPackage id element.
      */
@@ -69,6 +74,7 @@ public class DataObjectPackageIdElement extends DataObjectPackageElement {
     public DataObjectPackageIdElement(DataObjectPackage dataObjectPackage) {
         super(dataObjectPackage);
         inDataPackageObjectId = null;
+        inDataObjectPackageIndex = -1;
     }
 
     /**
@@ -0,0 +1,290 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.core;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The Class DataObjectPackageIdMap.
+ * <p>
+ * Class for the inDataPackageObjectId maps of a DataObjectPackage, by element kind. It's a view, read through and
+ * written through, of the members of the DataObjectPackage {@link DataObjectPackageIndex}, so that there's no map
+ * entry by element. Null keys and values are not accepted, and an element is in the map under only one key.
+ * <p>
+ * All changes, including those made by callers directly on the map, are recorded for the incremental Vitam
+ * normalization of the DataObjectPackage.
+ * <p>
+ * The iteration follows the elements indexes order, which is the order in which they were first indexed.
+ *
+ * @param <E> the elements type
+ */
+final class DataObjectPackageIdMap<E extends DataObjectPackageIdElement> extends AbstractMap<String, E> {
+
+    /**
+     * The DataObjectPackage whose members are viewed.
+     */
+    private final DataObjectPackage dataObjectPackage;
+
+    /**
+     * The members kind.
+     */
+    private final int kind;
+
+    /**
+     * The elements class.
+     */
+    private final Class<E> elementClass;
+
+    /**
+     * The entry set view, created at first use.
+     */
+    private Set<Map.Entry<String, E>> entrySet;
+
+    /**
+     * Instantiates a new inDataPackageObjectId map view.
+     *
+     * @param dataObjectPackage the DataObjectPackage
+     * @param kind              the members kind
+     * @param elementClass      the elements class
+     */
+    DataObjectPackageIdMap(DataObjectPackage dataObjectPackage, int kind, Class<E> elementClass) {
+        this.dataObjectPackage = dataObjectPackage;
+        this.kind = kind;
+        this.elementClass = elementClass;
+        this.entrySet = null;
+    }
+
+    /**
+     * Gets the viewed index table, which is replaced when compacted.
+     *
+     * @return the index table
+     */
+    private DataObjectPackageIndex table() {
+        return dataObjectPackage.getElementIndex();
+    }
+
+    @Override
+    public int size() {
+        return table().getMemberCount(kind);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (key instanceof String) && (table().findMember((String) key, kind) >= 0);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (!elementClass.isInstance(value))
+            return false;
+        DataObjectPackageIndex table = table();
+        return table.isMember(table.indexIfKnown((DataObjectPackageIdElement) value));
+    }
+
+    @Override
+    public E get(Object key) {
+        if (!(key instanceof String))
+            return null;
+        DataObjectPackageIndex table = table();
+        return elementClass.cast(table.get(table.findMember((String) key, kind)));
+    }
+
+    @Override
+    public E put(String key, E value) {
+        E previous = elementClass.cast(table().putMember(key, value));
+        dataObjectPackage.idMapChanged(kind, value, false);
+        return previous;
+    }
+
+    @Override
+    public E remove(Object key) {
+        if (!(key instanceof String))
+            return null;
+        DataObjectPackageIndex table = table();
+        int index = table.findMember((String) key, kind);
+        if (index < 0)
+            return null;
+        E previous = elementClass.cast(table.get(index));
+        table.removeMemberAt(index);
+        dataObjectPackage.idMapChanged(kind, previous, true);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        table().clearMembers(kind);
+        dataObjectPackage.idMapChanged(kind, null, true);
+    }
+
+    @Override
+    public Set<Map.Entry<String, E>> entrySet() {
+        if (entrySet == null)
+            entrySet = new EntrySetView();
+        return entrySet;
+    }
+
+    /**
+     * The entry of a member, writing the value through the map.
+     */
+    private final class MemberEntry extends SimpleEntry<String, E> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Instantiates a new member entry.
+         *
+         * @param key   the key
+         * @param value the member
+         */
+        MemberEntry(String key, E value) {
+            super(key, value);
+        }
+
+        @Override
+        public E setValue(E value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * The entry set view.
+     */
+    private final class EntrySetView extends AbstractSet<Map.Entry<String, E>> {
+
+        @Override
+        public Iterator<Map.Entry<String, E>> iterator() {
+            return new MemberIterator();
+        }
+
+        @Override
+        public int size() {
+            return DataObjectPackageIdMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            DataObjectPackageIdMap.this.clear();
+        }
+    }
+
+    /**
+     * The members iterator, in index order.
+     */
+    private final class MemberIterator implements Iterator<Map.Entry<String, E>> {
+
+        /**
+         * The iterated table.
+         */
+        private final DataObjectPackageIndex table;
+
+        /**
+         * The expected members modifications count.
+         */
+        private int expectedModCount;
+
+        /**
+         * The next member index, or -1 at end.
+         */
+        private int next;
+
+        /**
+         * The last returned member index, or -1 if none or removed.
+         */
+        private int last;
+
+        /**
+         * Instantiates a new members iterator.
+         */
+        MemberIterator() {
+            this.table = table();
+            this.expectedModCount = table.getMemberModCount();
+            this.last = -1;
+            this.next = advance(0);
+        }
+
+        /**
+         * Gets the first member index of the kind from the position.
+         *
+         * @param position the position
+         * @return the member index, or -1 if none
+         */
+        private int advance(int position) {
+            for (int i = position; i < table.size(); i++)
+                if (table.isMember(i) && (DataObjectPackageIndex.kindOf(table.get(i)) == kind))
+                    return i;
+            return -1;
+        }
+
+        /**
+         * Verify that the members have not been modified but by this iterator.
+         */
+        private void checkModCount() {
+            if ((table != table()) || (table.getMemberModCount() != expectedModCount))
+                throw new ConcurrentModificationException();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public Map.Entry<String, E> next() {
+            checkModCount();
+            if (next < 0)
+                throw new NoSuchElementException();
+            last = next;
+            next = advance(next + 1);
+            return new MemberEntry(table.getMemberKey(last), elementClass.cast(table.get(last)));
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0)
+                throw new IllegalStateException();
+            checkModCount();
+            E removed = elementClass.cast(table.get(last));
+            table.removeMemberAt(last);
+            dataObjectPackage.idMapChanged(kind, removed, true);
+            expectedModCount = table.getMemberModCount();
+            last = -1;
+        }
+    }
+}
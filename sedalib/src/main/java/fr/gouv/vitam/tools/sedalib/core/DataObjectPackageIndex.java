@@ -0,0 +1,459 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The Class DataObjectPackageIndex.
+ * <p>
+ * Class for the dense int indexes given to the ArchiveUnits and DataObjects of a DataObjectPackage. Elements are
+ * appended in an array the first time they are indexed and keep their index for the life of the table, whatever the
+ * changes of their inDataPackageObjectId, so that the references lists and the touched counts can be kept in
+ * primitive int arrays.
+ * <p>
+ * The DataObjectPackage table is also the store of its elements: an element is a member of the DataObjectPackage
+ * under a key, its inDataPackageObjectId when added, and the members are found by key through an open addressing
+ * table of indexes, without entry object. The inDataPackageObjectId maps of the DataObjectPackage are views of
+ * these members, by element kind. Indexed elements which are not members, for example removed ones still
+ * referenced by a removed ArchiveUnit, are kept till the table is compacted.
+ * <p>
+ * As removed elements would otherwise stay referenced, the DataObjectPackage replaces its table by a compacted one
+ * with only the elements still used, see {@link #compact(BitSet, int[])}.
+ * <p>
+ * The DataObjectPackage table caches the index in the element for a constant time lookup. The tables used by
+ * references lists not yet attached to a DataObjectPackage, or replaced by a compacted one, are searched linearly, so
+ * that they don't overwrite this cached value.
+ */
+final class DataObjectPackageIndex {
+
+    /**
+     * The ArchiveUnit members kind.
+     */
+    static final int ARCHIVE_UNIT_KIND = 0;
+
+    /**
+     * The DataObjectGroup members kind.
+     */
+    static final int DATA_OBJECT_GROUP_KIND = 1;
+
+    /**
+     * The BinaryDataObject members kind.
+     */
+    static final int BINARY_DATA_OBJECT_KIND = 2;
+
+    /**
+     * The PhysicalDataObject members kind.
+     */
+    static final int PHYSICAL_DATA_OBJECT_KIND = 3;
+
+    /**
+     * The pseudo kind used to find a member whatever its kind.
+     */
+    static final int ANY_KIND = -1;
+
+    /**
+     * The initial capacity of the elements array.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The indexed elements, by index.
+     */
+    private DataObjectPackageIdElement[] elements;
+
+    /**
+     * The count of indexed elements.
+     */
+    private int count;
+
+    /**
+     * The flag indicating if the index is cached in the elements.
+     */
+    private boolean cachedInElements;
+
+    /**
+     * The members keys, by index, null for elements which are not members. Only allocated when members are added.
+     */
+    private String[] keys;
+
+    /**
+     * The open addressing lookup table, by key hash with linear probing, of the members indexes plus one, 0 for a
+     * free slot. Its length is a power of two.
+     */
+    private int[] slots;
+
+    /**
+     * The members count, by kind.
+     */
+    private final int[] memberCounts;
+
+    /**
+     * The members modifications count, used by the maps views to detect concurrent modifications.
+     */
+    private int memberModCount;
+
+    /**
+     * Instantiates a new DataObjectPackage index.
+     *
+     * @param cachedInElements the flag indicating if the index is cached in the elements, only for the
+     *                         DataObjectPackage table
+     */
+    DataObjectPackageIndex(boolean cachedInElements) {
+        this.elements = new DataObjectPackageIdElement[INITIAL_CAPACITY];
+        this.count = 0;
+        this.cachedInElements = cachedInElements;
+        this.keys = null;
+        this.slots = null;
+        this.memberCounts = new int[4];
+        this.memberModCount = 0;
+    }
+
+    /**
+     * Gets the members kind of an element.
+     *
+     * @param element the element
+     * @return the kind
+     */
+    static int kindOf(DataObjectPackageIdElement element) {
+        if (element instanceof ArchiveUnit)
+            return ARCHIVE_UNIT_KIND;
+        if (element instanceof DataObjectGroup)
+            return DATA_OBJECT_GROUP_KIND;
+        if (element instanceof BinaryDataObject)
+            return BINARY_DATA_OBJECT_KIND;
+        return PHYSICAL_DATA_OBJECT_KIND;
+    }
+
+    /**
+     * Gets the index of the element, giving it the next free index if not already indexed.
+     *
+     * @param element the element
+     * @return the index, or -1 if the element is null
+     */
+    int indexOf(DataObjectPackageIdElement element) {
+        if (element == null)
+            return -1;
+        if (cachedInElements) {
+            int index = element.inDataObjectPackageIndex;
+            if ((index >= 0) && (index < count) && (elements[index] == element))
+                return index;
+        } else {
+            for (int i = 0; i < count; i++)
+                if (elements[i] == element)
+                    return i;
+        }
+        if (count == elements.length)
+            elements = Arrays.copyOf(elements, count + (count >> 1));
+        elements[count] = element;
+        if (cachedInElements)
+            element.inDataObjectPackageIndex = count;
+        return count++;
+    }
+
+    /**
+     * Gets the index of the element if already indexed, without modifying the table, so that it can be called
+     * concurrently when the table is not modified.
+     *
+     * @param element the element
+     * @return the index, or -1 if the element is null or not indexed
+     */
+    int indexIfKnown(DataObjectPackageIdElement element) {
+        if (element == null)
+            return -1;
+        if (cachedInElements) {
+            int index = element.inDataObjectPackageIndex;
+            if ((index >= 0) && (index < count) && (elements[index] == element))
+                return index;
+            return -1;
+        }
+        for (int i = 0; i < count; i++)
+            if (elements[i] == element)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Gets the element by index.
+     *
+     * @param index the index
+     * @return the element, or null if index is -1
+     */
+    DataObjectPackageIdElement get(int index) {
+        if (index < 0)
+            return null;
+        return elements[index];
+    }
+
+    /**
+     * Gets the count of indexed elements, which is also the next index to be given.
+     *
+     * @return the count
+     */
+    int size() {
+        return count;
+    }
+
+    // Members
+
+    /**
+     * Gets the slot of the key hash in the lookup table.
+     *
+     * @param key the key
+     * @return the slot
+     */
+    private int homeSlot(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (slots.length - 1);
+    }
+
+    /**
+     * Gets the slot of the member index in the lookup table.
+     *
+     * @param index the member index
+     * @return the slot
+     */
+    private int slotOf(int index) {
+        int mask = slots.length - 1;
+        int slot = homeSlot(keys[index]);
+        while (slots[slot] != index + 1)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Rebuilds the lookup table of all the members, with a capacity for the given members count.
+     *
+     * @param memberTotal the members count
+     */
+    private void rebuildSlots(int memberTotal) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity * 3 < memberTotal * 4)
+            capacity <<= 1;
+        slots = new int[capacity << 1];
+        int mask = slots.length - 1;
+        if (keys == null)
+            return;
+        for (int i = 0; i < count; i++)
+            if ((i < keys.length) && (keys[i] != null)) {
+                int slot = homeSlot(keys[i]);
+                while (slots[slot] != 0)
+                    slot = (slot + 1) & mask;
+                slots[slot] = i + 1;
+            }
+    }
+
+    /**
+     * Gets the members count of all kinds.
+     *
+     * @return the members count
+     */
+    private int getMemberTotal() {
+        return memberCounts[0] + memberCounts[1] + memberCounts[2] + memberCounts[3];
+    }
+
+    /**
+     * Gets the index of the member by key and kind.
+     *
+     * @param key  the key
+     * @param kind the kind, or ANY_KIND
+     * @return the index, or -1 if not found
+     */
+    int findMember(String key, int kind) {
+        if ((key == null) || (slots == null))
+            return -1;
+        int mask = slots.length - 1;
+        for (int slot = homeSlot(key); slots[slot] != 0; slot = (slot + 1) & mask) {
+            int index = slots[slot] - 1;
+            if (key.equals(keys[index]) && ((kind == ANY_KIND) || (kindOf(elements[index]) == kind)))
+                return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if the element at the index is a member.
+     *
+     * @param index the index
+     * @return true, if it's a member
+     */
+    boolean isMember(int index) {
+        return (index >= 0) && (keys != null) && (index < keys.length) && (keys[index] != null);
+    }
+
+    /**
+     * Gets the key of the member at the index.
+     *
+     * @param index the index
+     * @return the key, or null if not a member
+     */
+    String getMemberKey(int index) {
+        return (isMember(index) ? keys[index] : null);
+    }
+
+    /**
+     * Gets the members count of a kind.
+     *
+     * @param kind the kind
+     * @return the members count
+     */
+    int getMemberCount(int kind) {
+        return memberCounts[kind];
+    }
+
+    /**
+     * Gets the members modifications count.
+     *
+     * @return the members modifications count
+     */
+    int getMemberModCount() {
+        return memberModCount;
+    }
+
+    /**
+     * Adds the element as member under the key, replacing the member of the same kind with this key if any. An
+     * element is a member under only one key, so it's first removed from its previous key if any.
+     *
+     * @param key     the key
+     * @param element the element
+     * @return the replaced member, or null if none
+     */
+    DataObjectPackageIdElement putMember(String key, DataObjectPackageIdElement element) {
+        if ((key == null) || (element == null))
+            throw new NullPointerException("Clé ou élément null dans le DataObjectPackage");
+        int kind = kindOf(element);
+        int index = indexOf(element);
+        int previousIndex = findMember(key, kind);
+        if (previousIndex == index)
+            return element;
+        if (isMember(index))
+            removeMemberAt(index);
+        DataObjectPackageIdElement previous = null;
+        if (previousIndex >= 0) {
+            previous = elements[previousIndex];
+            removeMemberAt(previousIndex);
+        }
+        if (keys == null)
+            keys = new String[elements.length];
+        else if (keys.length <= index)
+            keys = Arrays.copyOf(keys, elements.length);
+        if ((slots == null) || ((getMemberTotal() + 1) * 4 > slots.length * 3))
+            rebuildSlots(getMemberTotal() + 1);
+        keys[index] = key;
+        int mask = slots.length - 1;
+        int slot = homeSlot(key);
+        while (slots[slot] != 0)
+            slot = (slot + 1) & mask;
+        slots[slot] = index + 1;
+        memberCounts[kind]++;
+        memberModCount++;
+        return previous;
+    }
+
+    /**
+     * Removes the member at the index, the element staying indexed. The lookup table is kept without deleted marks
+     * by shifting back the following slots of the probe sequence.
+     *
+     * @param index the index
+     */
+    void removeMemberAt(int index) {
+        if (!isMember(index))
+            return;
+        int mask = slots.length - 1;
+        int free = slotOf(index);
+        slots[free] = 0;
+        for (int slot = (free + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int home = homeSlot(keys[slots[slot] - 1]);
+            // the slot entry can move to the free slot only if its home is not in (free, slot]
+            boolean inRange = (free <= slot) ? ((home > free) && (home <= slot)) : ((home > free) || (home <= slot));
+            if (!inRange) {
+                slots[free] = slots[slot];
+                slots[slot] = 0;
+                free = slot;
+            }
+        }
+        keys[index] = null;
+        memberCounts[kindOf(elements[index])]--;
+        memberModCount++;
+    }
+
+    /**
+     * Removes all the members of a kind, the elements staying indexed.
+     *
+     * @param kind the kind
+     */
+    void clearMembers(int kind) {
+        if ((keys == null) || (memberCounts[kind] == 0))
+            return;
+        for (int i = 0; i < count; i++)
+            if (isMember(i) && (kindOf(elements[i]) == kind))
+                keys[i] = null;
+        memberCounts[kind] = 0;
+        memberModCount++;
+        rebuildSlots(getMemberTotal());
+    }
+
+    /**
+     * Gets a new table with only the kept elements, in the same order, and filling the remap array with the new index
+     * of each old one, or -1 if not kept. The members, which have to be kept, stay members of the new table.
+     * <p>
+     * This table is then no more cached in the elements, so that the references lists not remapped, for example those
+     * of removed ArchiveUnits, still get their elements without disturbing the new table.
+     *
+     * @param kept  the kept elements indexes
+     * @param remap the remap array, of at least size length
+     * @return the compacted table
+     */
+    DataObjectPackageIndex compact(BitSet kept, int[] remap) {
+        DataObjectPackageIndex result = new DataObjectPackageIndex(cachedInElements);
+        result.elements = new DataObjectPackageIdElement[Math.max(INITIAL_CAPACITY, kept.cardinality())];
+        if (keys != null)
+            result.keys = new String[result.elements.length];
+        for (int i = 0; i < count; i++) {
+            if (kept.get(i)) {
+                result.elements[result.count] = elements[i];
+                if (isMember(i)) {
+                    result.keys[result.count] = keys[i];
+                    result.memberCounts[kindOf(elements[i])]++;
+                }
+                if (cachedInElements)
+                    elements[i].inDataObjectPackageIndex = result.count;
+                remap[i] = result.count++;
+            } else {
+                if (cachedInElements && (elements[i].inDataObjectPackageIndex == i))
+                    elements[i].inDataObjectPackageIndex = -1;
+                remap[i] = -1;
+            }
+        }
+        result.memberModCount = memberModCount + 1;
+        result.rebuildSlots(result.getMemberTotal());
+        cachedInElements = false;
+        return result;
+    }
+}
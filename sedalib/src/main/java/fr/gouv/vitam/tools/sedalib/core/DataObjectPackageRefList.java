@@ -0,0 +1,497 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.core;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The Class DataObjectPackageRefList.
+ * <p>
+ * Class for the common part of {@link ArchiveUnitRefList} and {@link DataObjectRefList}, managing a list of
+ * DataObjectPackage elements either by id or by dense index.
+ * <p>
+ * Once resolved, the references are kept as int indexes in the {@link DataObjectPackageIndex} of the
+ * DataObjectPackage, which don't change when the elements inDataPackageObjectIds are regenerated but only when the
+ * table is compacted. While the referenced elements are not all known, for example during an import where children
+ * are declared before being read, the references are kept as ids and resolved at the first access by objects.
+ * <p>
+ * Both the id and the object lists given to callers are views, backed by this references list.
+ * <p>
+ * Be aware that reading the references by objects resolves the pending ids, and so mutates the list and may append
+ * elements to the index table. This resolution is synchronized on the list and on the table, so that concurrent
+ * readers are safe, but changes of the list are not.
+ *
+ * @param <E> the referenced elements type, all implementations being DataObjectPackageIdElement
+ */
+abstract class DataObjectPackageRefList<E> extends DataObjectPackageElement {
+
+    /**
+     * The empty indexes array.
+     */
+    private static final int[] EMPTY_INDEXES = new int[0];
+
+    /**
+     * The index table in which the indexes are defined, or null if not yet defined.
+     */
+    private DataObjectPackageIndex index;
+
+    /**
+     * The references indexes.
+     */
+    private int[] indexes;
+
+    /**
+     * The references count, when kept by indexes.
+     */
+    private int size;
+
+    /**
+     * The references inDataPackageObjectIds, when not yet resolved, or null. Volatile as set to null last, once
+     * resolved, so that readers seeing null also see the indexes.
+     */
+    private volatile List<String> pendingIdList;
+
+    /**
+     * The ArchiveUnit owning this references list, whose changes are recorded for the incremental Vitam
+     * normalization, or null if not owned.
+     */
+    private ArchiveUnit owner;
+
+    /**
+     * Instantiates a new references list.
+     *
+     * @param dataObjectPackage the DataObjectPackage containing the referenced elements
+     */
+    DataObjectPackageRefList(DataObjectPackage dataObjectPackage) {
+        super(dataObjectPackage);
+        this.index = null;
+        this.indexes = EMPTY_INDEXES;
+        this.size = 0;
+        this.pendingIdList = null;
+        this.owner = null;
+    }
+
+    /**
+     * Sets the ArchiveUnit owning this references list.
+     *
+     * @param owner the owner ArchiveUnit
+     */
+    void setOwner(ArchiveUnit owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Records a change of the references in the DataObjectPackage, for the incremental Vitam normalization.
+     *
+     * @param removalFlag true if references have been removed or replaced
+     */
+    private void changed(boolean removalFlag) {
+        if ((owner != null) && (getDataObjectPackage() != null))
+            getDataObjectPackage().markNormalizationDirty(owner, removalFlag && (this instanceof DataObjectRefList));
+    }
+
+    /**
+     * Gets the referenced element by inDataPackageObjectId in the DataObjectPackage.
+     *
+     * @param inDataObjectPackageId the inDataPackageObjectId
+     * @return the element or null if not found
+     */
+    abstract E getElementById(String inDataObjectPackageId);
+
+    /**
+     * Gets the index table to use for new references, the DataObjectPackage one if any.
+     *
+     * @return the index table
+     */
+    private DataObjectPackageIndex getTargetIndex() {
+        if (getDataObjectPackage() != null)
+            return getDataObjectPackage().getElementIndex();
+        if (index == null)
+            index = new DataObjectPackageIndex(false);
+        return index;
+    }
+
+    /**
+     * Resolves the pending inDataPackageObjectIds, if any, in indexes.
+     * <p>
+     * This mutates the list and may append elements to the index table, even when called by reading methods, so it's
+     * synchronized with a double check of the pending ids, which are set to null only once the indexes are defined.
+     */
+    private void resolvePendingIds() {
+        if (pendingIdList == null)
+            return;
+        synchronized (this) {
+            List<String> idList = pendingIdList;
+            if (idList == null)
+                return;
+            DataObjectPackageIndex targetIndex = getTargetIndex();
+            int[] resolvedIndexes = (idList.isEmpty() ? EMPTY_INDEXES : new int[idList.size()]);
+            int resolvedSize = 0;
+            synchronized (targetIndex) {
+                for (String id : idList)
+                    resolvedIndexes[resolvedSize++] =
+                            targetIndex.indexOf((DataObjectPackageIdElement) getElementById(id));
+            }
+            index = targetIndex;
+            indexes = resolvedIndexes;
+            size = resolvedSize;
+            pendingIdList = null;
+        }
+    }
+
+    /**
+     * Resolves the references, so that they can then be read concurrently.
+     */
+    void resolveReferences() {
+        resolvePendingIds();
+    }
+
+    /**
+     * Marks the indexes referenced in the table, if the references are resolved in this table.
+     *
+     * @param table the index table
+     * @param used  the used indexes bitset
+     */
+    void markUsedIndexes(DataObjectPackageIndex table, BitSet used) {
+        if ((pendingIdList != null) || (index != table))
+            return;
+        for (int i = 0; i < size; i++)
+            if (indexes[i] >= 0)
+                used.set(indexes[i]);
+    }
+
+    /**
+     * Remaps the indexes in the compacted table, if the references are resolved in the replaced table.
+     *
+     * @param table          the replaced index table
+     * @param compactedTable the compacted index table
+     * @param remap          the new index of each index of the replaced table
+     */
+    void remapIndexes(DataObjectPackageIndex table, DataObjectPackageIndex compactedTable, int[] remap) {
+        if ((pendingIdList != null) || (index != table))
+            return;
+        for (int i = 0; i < size; i++)
+            if (indexes[i] >= 0)
+                indexes[i] = remap[indexes[i]];
+        index = compactedTable;
+    }
+
+    /**
+     * Switches the references to pending inDataPackageObjectIds.
+     */
+    private void switchToPendingIds() {
+        if (pendingIdList != null)
+            return;
+        List<String> idList = new ArrayList<String>(size + 1);
+        for (int i = 0; i < size; i++)
+            idList.add(getIdAt(i));
+        pendingIdList = idList;
+        indexes = EMPTY_INDEXES;
+        size = 0;
+    }
+
+    /**
+     * Verify the position is in the references list bounds.
+     *
+     * @param position the position
+     * @param limit    the maximum position
+     */
+    private static void checkPosition(int position, int limit) {
+        if ((position < 0) || (position > limit))
+            throw new IndexOutOfBoundsException("Position: " + position + ", Taille: " + limit);
+    }
+
+    /**
+     * Gets the referenced element at the position, the references being indexed.
+     *
+     * @param position the position
+     * @return the element
+     */
+    @SuppressWarnings("unchecked")
+    private E getElementAt(int position) {
+        return (E) index.get(indexes[position]);
+    }
+
+    /**
+     * Gets the referenced inDataPackageObjectId at the position, the references being indexed.
+     *
+     * @param position the position
+     * @return the inDataPackageObjectId
+     */
+    private String getIdAt(int position) {
+        E element = getElementAt(position);
+        return (element == null ? null : ((DataObjectPackageIdElement) element).getInDataObjectPackageId());
+    }
+
+    /**
+     * Inserts an index at the position, the references being indexed.
+     *
+     * @param position     the position
+     * @param elementIndex the element index
+     */
+    private void insertIndex(int position, int elementIndex) {
+        if (size == indexes.length)
+            indexes = Arrays.copyOf(indexes, size + (size >> 1) + 1);
+        System.arraycopy(indexes, position, indexes, position + 1, size - position);
+        indexes[position] = elementIndex;
+        size++;
+    }
+
+    /**
+     * Removes the index at the position, the references being indexed.
+     *
+     * @param position the position
+     */
+    private void removeIndex(int position) {
+        System.arraycopy(indexes, position + 1, indexes, position, size - position - 1);
+        size--;
+    }
+
+    /**
+     * Gets the index of the element in the references index table, defining it if needed.
+     *
+     * @param element the element
+     * @return the element index
+     */
+    private int indexOfElement(E element) {
+        if (index == null)
+            index = getTargetIndex();
+        return index.indexOf((DataObjectPackageIdElement) element);
+    }
+
+    /**
+     * Gets the references count.
+     *
+     * @return the count
+     */
+    int getReferencesCount() {
+        if (pendingIdList != null)
+            return pendingIdList.size();
+        return size;
+    }
+
+    /**
+     * Gets the references elements list view.
+     *
+     * @return the elements list
+     */
+    List<E> getElementListView() {
+        resolvePendingIds();
+        return new ElementListView();
+    }
+
+    /**
+     * Gets the references inDataPackageObjectIds list view.
+     *
+     * @return the inDataPackageObjectIds list
+     */
+    List<String> getIdListView() {
+        return new IdListView();
+    }
+
+    /**
+     * Sets the references by elements.
+     *
+     * @param elementList the elements list
+     */
+    void setElements(List<? extends E> elementList) {
+        pendingIdList = null;
+        index = getTargetIndex();
+        size = 0;
+        if ((elementList == null) || elementList.isEmpty())
+            indexes = EMPTY_INDEXES;
+        else {
+            indexes = new int[elementList.size()];
+            for (E element : elementList)
+                indexes[size++] = index.indexOf((DataObjectPackageIdElement) element);
+        }
+        changed(true);
+    }
+
+    /**
+     * Sets the references by inDataPackageObjectIds, resolved at the first access by objects.
+     *
+     * @param idList the inDataPackageObjectIds list
+     */
+    void setIds(List<String> idList) {
+        pendingIdList = (idList == null ? new ArrayList<String>(0) : idList);
+        index = null;
+        indexes = EMPTY_INDEXES;
+        size = 0;
+        changed(true);
+    }
+
+    /**
+     * Sets the DataObjectPackage, moving the references indexes in its index table if needed.
+     *
+     * @param dataObjectPackage the new DataObjectPackage
+     */
+    @Override
+    public void setDataObjectPackage(DataObjectPackage dataObjectPackage) {
+        super.setDataObjectPackage(dataObjectPackage);
+        if ((dataObjectPackage == null) || (pendingIdList != null) || (index == null)
+                || (index == dataObjectPackage.getElementIndex()))
+            return;
+        DataObjectPackageIndex newIndex = dataObjectPackage.getElementIndex();
+        for (int i = 0; i < size; i++)
+            indexes[i] = newIndex.indexOf(index.get(indexes[i]));
+        index = newIndex;
+    }
+
+    /**
+     * The elements list view.
+     */
+    private class ElementListView extends AbstractList<E> implements RandomAccess {
+
+        @Override
+        public E get(int position) {
+            resolvePendingIds();
+            checkPosition(position, size - 1);
+            return getElementAt(position);
+        }
+
+        @Override
+        public E set(int position, E element) {
+            resolvePendingIds();
+            checkPosition(position, size - 1);
+            E previous = getElementAt(position);
+            indexes[position] = indexOfElement(element);
+            changed(true);
+            return previous;
+        }
+
+        @Override
+        public void add(int position, E element) {
+            resolvePendingIds();
+            checkPosition(position, size);
+            insertIndex(position, indexOfElement(element));
+            modCount++;
+            changed(false);
+        }
+
+        @Override
+        public E remove(int position) {
+            resolvePendingIds();
+            checkPosition(position, size - 1);
+            E previous = getElementAt(position);
+            removeIndex(position);
+            modCount++;
+            changed(true);
+            return previous;
+        }
+
+        @Override
+        public int size() {
+            resolvePendingIds();
+            return size;
+        }
+    }
+
+    /**
+     * The inDataPackageObjectIds list view.
+     */
+    private class IdListView extends AbstractList<String> implements RandomAccess {
+
+        /**
+         * Gets the index of a known element by inDataPackageObjectId, switching to pending ids if not known.
+         *
+         * @param id the inDataPackageObjectId
+         * @return the element index or -1 if switched to pending ids
+         */
+        private int indexOfId(String id) {
+            if ((pendingIdList == null) && (getDataObjectPackage() != null)) {
+                E element = getElementById(id);
+                if (element != null)
+                    return indexOfElement(element);
+            }
+            switchToPendingIds();
+            return -1;
+        }
+
+        @Override
+        public String get(int position) {
+            if (pendingIdList != null)
+                return pendingIdList.get(position);
+            checkPosition(position, size - 1);
+            return getIdAt(position);
+        }
+
+        @Override
+        public String set(int position, String id) {
+            changed(true);
+            if (pendingIdList == null) {
+                checkPosition(position, size - 1);
+                String previous = getIdAt(position);
+                int elementIndex = indexOfId(id);
+                if (elementIndex >= 0) {
+                    indexes[position] = elementIndex;
+                    return previous;
+                }
+            }
+            return pendingIdList.set(position, id);
+        }
+
+        @Override
+        public void add(int position, String id) {
+            changed(false);
+            if (pendingIdList == null) {
+                checkPosition(position, size);
+                int elementIndex = indexOfId(id);
+                if (elementIndex >= 0) {
+                    insertIndex(position, elementIndex);
+                    modCount++;
+                    return;
+                }
+            }
+            pendingIdList.add(position, id);
+            modCount++;
+        }
+
+        @Override
+        public String remove(int position) {
+            modCount++;
+            changed(true);
+            if (pendingIdList != null)
+                return pendingIdList.remove(position);
+            checkPosition(position, size - 1);
+            String previous = getIdAt(position);
+            removeIndex(position);
+            return previous;
+        }
+
+        @Override
+        public int size() {
+            return getReferencesCount();
+        }
+    }
+}
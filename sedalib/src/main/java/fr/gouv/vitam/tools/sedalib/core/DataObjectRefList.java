@@ -29,7 +29,6 @@ package fr.gouv.vitam.tools.sedalib.core;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -39,23 +38,13 @@ import java.util.List;
  * reference. Those two modes are useful at different moments of process (import
  * -&lt; ID, DataObjectPackage fusion -&lt; objects...).
  * <p>
- * It keeps inner two lists, one of ids and one of DataObjects objects. At a
- * given moment only one list is defined the other one is null. So if you need
- * for example to change DataObjects ID, you have before to force all
- * DataObjectRefList in object reference mode by reading the object references list.
+ * The references are kept as int indexes in the DataObjectPackage, see {@link DataObjectPackageRefList}, and both
+ * the id list and the DataObject objects list are views on them. Ids referencing DataObjects not yet in the
+ * DataObjectPackage are kept as is till the first access by objects, so if you need for example to change
+ * DataObjects ID, you have before to force all DataObjectRefList in object reference mode by reading the object
+ * references list.
  */
-public class DataObjectRefList extends DataObjectPackageElement {
-
-    /**
-     * The DataObject list.
-     */
-    @JsonIgnore
-    private List<DataObject> dataObjectList;
-
-    /**
-     * The inDataPackageObjectId list.
-     */
-    private ArrayList<String> inDataObjectPackageIdList;
+public class DataObjectRefList extends DataObjectPackageRefList<DataObject> {
 
     /**
      * Instantiates a new DataObject reference list, used by deserialization.
@@ -71,7 +60,11 @@ public class DataObjectRefList extends DataObjectPackageElement {
      */
     public DataObjectRefList(DataObjectPackage dataObjectPackage) {
         super(dataObjectPackage);
-        inDataObjectPackageIdList = null;
+    }
+
+    @Override
+    DataObject getElementById(String inDataObjectPackageId) {
+        return getDataObjectPackage().getDataObjectById(inDataObjectPackageId);
     }
 
     /**
@@ -79,18 +72,8 @@ public class DataObjectRefList extends DataObjectPackageElement {
      *
      * @return the inDataPackageObjectId list
      */
-    public ArrayList<String> getInDataObjectPackageIdList() {
-        if (inDataObjectPackageIdList != null)
-            return inDataObjectPackageIdList;
-        if (dataObjectList == null)
-            inDataObjectPackageIdList = new ArrayList<String>(0);
-        else {
-            inDataObjectPackageIdList = new ArrayList<String>(dataObjectList.size());
-            for (DataObject dataObject : dataObjectList)
-                inDataObjectPackageIdList.add(dataObject.getInDataObjectPackageId());
-        }
-        dataObjectList = null;
-        return inDataObjectPackageIdList;
+    public List<String> getInDataObjectPackageIdList() {
+        return getIdListView();
     }
 
     /**
@@ -98,9 +81,8 @@ public class DataObjectRefList extends DataObjectPackageElement {
      *
      * @param inDataObjectPackageIdList the new inDataPackageObjectId list
      */
-    public void setInDataObjectPackageIdList(ArrayList<String> inDataObjectPackageIdList) {
-        this.inDataObjectPackageIdList = inDataObjectPackageIdList;
-        this.dataObjectList = null;
+    public void setInDataObjectPackageIdList(List<String> inDataObjectPackageIdList) {
+        setIds(inDataObjectPackageIdList);
     }
 
     /**
@@ -108,18 +90,9 @@ public class DataObjectRefList extends DataObjectPackageElement {
      *
      * @return the DataObject list
      */
+    @JsonIgnore
     public List<DataObject> getDataObjectList() {
-        if (dataObjectList != null)
-            return dataObjectList;
-        if (inDataObjectPackageIdList == null)
-            dataObjectList = new ArrayList<DataObject>(0);
-        else {
-            dataObjectList = new ArrayList<DataObject>(inDataObjectPackageIdList.size());
-            for (String inSipId : inDataObjectPackageIdList)
-                dataObjectList.add(getDataObjectPackage().getDataObjectById(inSipId));
-        }
-        inDataObjectPackageIdList = null;
-        return dataObjectList;
+        return getElementListView();
     }
 
     /**
@@ -127,9 +100,9 @@ public class DataObjectRefList extends DataObjectPackageElement {
      *
      * @param dataObjectList the new DataObject list
      */
+    @JsonIgnore
     public void setDataObjectList(List<DataObject> dataObjectList) {
-        this.dataObjectList = dataObjectList;
-        this.inDataObjectPackageIdList = null;
+        setElements(dataObjectList);
     }
 
     /**
@@ -175,11 +148,7 @@ public class DataObjectRefList extends DataObjectPackageElement {
      */
     @JsonIgnore
     public int getCount() {
-        if (inDataObjectPackageIdList != null)
-            return inDataObjectPackageIdList.size();
-        else if (dataObjectList != null)
-            return dataObjectList.size();
-        return 0;
+        return getReferencesCount();
     }
 
     /**
@@ -189,7 +158,7 @@ public class DataObjectRefList extends DataObjectPackageElement {
      */
     @JsonIgnore
     public DataObjectGroup getNormalizedDataObjectGroup() {
-        getDataObjectList();
+        List<DataObject> dataObjectList = getDataObjectList();
         if (dataObjectList.size() != 1)
             return null;
         if (dataObjectList.get(0) instanceof DataObjectGroup)
@@ -32,7 +32,6 @@ import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
 
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -221,10 +220,9 @@ public class GlobalMetadata {
         try (ByteArrayInputStream bais = new ByteArrayInputStream(fragments.getBytes("UTF-8"));
              SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
             // jump StartDocument
-            xmlReader.nextUsefullEvent();
+            xmlReader.skipNextUsefullEvent();
             gm.setFromXmlContent(xmlReader);
-            XMLEvent event = xmlReader.xmlReader.peek();
-            if (!event.isEndDocument())
+            if (!xmlReader.peekEndDocument())
                 throw new SEDALibException("Il y a des champs illégaux");
         } catch (XMLStreamException | SEDALibException | IOException e) {
             throw new SEDALibException("Erreur de lecture du GlobalMetadata", e);
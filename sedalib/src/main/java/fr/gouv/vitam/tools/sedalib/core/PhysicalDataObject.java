@@ -38,7 +38,6 @@ import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
 
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -328,7 +327,7 @@ public class PhysicalDataObject extends DataObjectPackageIdElement implements Da
                 pdo = new PhysicalDataObject();
                 pdo.inDataPackageObjectId = tmp;
                 dataObjectPackage.addPhysicalDataObject(pdo);
-                xmlReader.nextUsefullEvent();
+                xmlReader.skipNextUsefullEvent();
                 pdo.setFromXmlContent(xmlReader);
                 xmlReader.endBlockNamed("PhysicalDataObject");
             }
@@ -378,10 +377,9 @@ public class PhysicalDataObject extends DataObjectPackageIdElement implements Da
         try (ByteArrayInputStream bais = new ByteArrayInputStream(fragments.getBytes("UTF-8"));
              SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
             // jump StartDocument
-            xmlReader.nextUsefullEvent();
+            xmlReader.skipNextUsefullEvent();
             pdo.setFromXmlContent(xmlReader);
-            XMLEvent event = xmlReader.xmlReader.peek();
-            if (!event.isEndDocument())
+            if (!xmlReader.peekEndDocument())
                 throw new SEDALibException("Il y a des champs illégaux");
         } catch (XMLStreamException | SEDALibException | IOException e) {
             throw new SEDALibException("Erreur de lecture du PhysicalDataObject", e);
@@ -0,0 +1,276 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.core;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Class ZipContentSource.
+ * <p>
+ * Class for the files of a DataObjectPackage which stay in the zip file (SIP) they were imported from, and are read
+ * by random access through the zip central directory only when needed. Each file is identified by the path where it
+ * would have been extracted in the extraction directory, which is the BinaryDataObject onDiskPath, and can be either
+ * streamed from the zip or extracted on demand to this path.
+ */
+public class ZipContentSource implements Closeable {
+
+    /**
+     * The zip file path.
+     */
+    private Path zipFilePath;
+
+    /**
+     * The extraction directory path.
+     */
+    private Path extractionDirectoryPath;
+
+    /**
+     * The zip file, opened on first access.
+     */
+    private ZipFile zipFile;
+
+    /**
+     * The zip entries by normalized name, in central directory order.
+     */
+    private Map<String, ZipArchiveEntry> entryMap;
+
+    /**
+     * The closed flag.
+     */
+    private boolean closed;
+
+    /**
+     * Instantiates a new zip content source.
+     *
+     * @param zipFilePath             the zip file path
+     * @param extractionDirectoryPath the extraction directory path
+     */
+    public ZipContentSource(Path zipFilePath, Path extractionDirectoryPath) {
+        this.zipFilePath = zipFilePath.toAbsolutePath().normalize();
+        this.extractionDirectoryPath = extractionDirectoryPath.toAbsolutePath().normalize();
+        this.zipFile = null;
+        this.entryMap = null;
+        this.closed = false;
+    }
+
+    /**
+     * Gets the normalized name of a zip entry, the relative path where it is extracted. Any case "content" prefix
+     * is changed to lowercase "content" as in BinaryDataObject import.
+     *
+     * @param entryName the zip entry name
+     * @return the normalized name
+     */
+    public static String getNormalizedEntryName(String entryName) {
+        String result = entryName.trim();
+        if (result.toLowerCase().startsWith("content"))
+            result = "content" + result.substring(7);
+        return result;
+    }
+
+    /**
+     * Open the zip file, if not already done, and index its entries from the central directory. It has to be called
+     * with the lock held, as all the accesses to the zip file and entries map.
+     *
+     * @throws SEDALibException if the zip file can't be opened or the source is closed
+     */
+    private void open() throws SEDALibException {
+        if (closed)
+            throw new SEDALibException("Le fichier zip [" + zipFilePath.toString() + "] est fermé");
+        if (zipFile != null)
+            return;
+        try {
+            zipFile = new ZipFile(zipFilePath.toFile());
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible d'ouvrir le fichier zip [" + zipFilePath.toString() + "]", e);
+        }
+        entryMap = new LinkedHashMap<String, ZipArchiveEntry>();
+        Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+        while (entries.hasMoreElements()) {
+            ZipArchiveEntry entry = entries.nextElement();
+            if (!entry.isDirectory())
+                entryMap.put(getNormalizedEntryName(entry.getName()), entry);
+        }
+    }
+
+    /**
+     * Gets the normalized name from the path where the file would be extracted.
+     *
+     * @param onDiskPath the on disk path
+     * @return the normalized name, or null if the path is not in the extraction directory
+     */
+    private String getNormalizedName(Path onDiskPath) {
+        Path normalizedPath = onDiskPath.toAbsolutePath().normalize();
+        if (!normalizedPath.startsWith(extractionDirectoryPath))
+            return null;
+        return getNormalizedEntryName(extractionDirectoryPath.relativize(normalizedPath).toString()
+                .replace(File.separatorChar, '/'));
+    }
+
+    /**
+     * Gets the normalized names of all the files in the zip, in central directory order.
+     *
+     * @return the normalized names list
+     * @throws SEDALibException if the zip file can't be opened
+     */
+    public synchronized List<String> getNormalizedEntryNames() throws SEDALibException {
+        open();
+        return new ArrayList<String>(entryMap.keySet());
+    }
+
+    /**
+     * Checks if the file, defined by the path where it would be extracted, is in the zip.
+     *
+     * @param onDiskPath the on disk path
+     * @return true, if the file is in the zip
+     * @throws SEDALibException if the zip file can't be opened
+     */
+    public synchronized boolean contains(Path onDiskPath) throws SEDALibException {
+        open();
+        String name = getNormalizedName(onDiskPath);
+        return (name != null) && entryMap.containsKey(name);
+    }
+
+    /**
+     * Gets an input stream on a file in the zip, defined by its normalized name.
+     * <p>
+     * Streams can be read concurrently, but not after the source is closed.
+     *
+     * @param normalizedName the normalized name
+     * @return the input stream
+     * @throws SEDALibException if the file is not in the zip or can't be read, or the source is closed
+     */
+    public synchronized InputStream getInputStream(String normalizedName) throws SEDALibException {
+        open();
+        ZipArchiveEntry entry = entryMap.get(normalizedName);
+        if (entry == null)
+            throw new SEDALibException("Fichier [" + normalizedName + "] absent du fichier zip ["
+                    + zipFilePath.toString() + "]");
+        try {
+            return zipFile.getInputStream(entry);
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible de lire le fichier [" + normalizedName + "] dans le fichier zip ["
+                    + zipFilePath.toString() + "]", e);
+        }
+    }
+
+    /**
+     * Gets an input stream on a file in the zip, defined by the path where it would be extracted.
+     *
+     * @param onDiskPath the on disk path
+     * @return the input stream
+     * @throws SEDALibException if the file is not in the zip or can't be read
+     */
+    public InputStream getInputStream(Path onDiskPath) throws SEDALibException {
+        String name = getNormalizedName(onDiskPath);
+        if (name == null)
+            throw new SEDALibException("Le fichier [" + onDiskPath.toString()
+                    + "] n'est pas dans le répertoire d'extraction [" + extractionDirectoryPath.toString() + "]");
+        return getInputStream(name);
+    }
+
+    /**
+     * Extract, if not already done, a file from the zip to the path defined for it in the extraction directory.
+     * <p>
+     * The file is first extracted in a temporary file, then moved, so that a partially extracted file is never seen.
+     *
+     * @param onDiskPath the on disk path
+     * @return the on disk path
+     * @throws SEDALibException if the file is not in the zip or can't be extracted
+     */
+    public Path extract(Path onDiskPath) throws SEDALibException {
+        if (Files.exists(onDiskPath))
+            return onDiskPath;
+        Path tmpPath = null;
+        try (InputStream is = getInputStream(onDiskPath)) {
+            Files.createDirectories(onDiskPath.toAbsolutePath().getParent());
+            tmpPath = Files.createTempFile(onDiskPath.toAbsolutePath().getParent(), "extract", ".tmp");
+            Files.copy(is, tmpPath, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmpPath, onDiskPath, StandardCopyOption.REPLACE_EXISTING);
+            tmpPath = null;
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible d'extraire le fichier [" + onDiskPath.toString()
+                    + "] du fichier zip [" + zipFilePath.toString() + "]", e);
+        } finally {
+            if (tmpPath != null)
+                try {
+                    Files.deleteIfExists(tmpPath);
+                } catch (IOException ignored) {
+                    // best effort
+                }
+        }
+        return onDiskPath;
+    }
+
+    /**
+     * Gets the zip file path.
+     *
+     * @return the zip file path
+     */
+    public Path getZipFilePath() {
+        return zipFilePath;
+    }
+
+    /**
+     * Gets the extraction directory path.
+     *
+     * @return the extraction directory path
+     */
+    public Path getExtractionDirectoryPath() {
+        return extractionDirectoryPath;
+    }
+
+    /**
+     * Close the zip file. The files not extracted are then no more readable.
+     *
+     * @throws IOException if the zip file can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (zipFile != null) {
+            zipFile.close();
+            zipFile = null;
+            entryMap = null;
+        }
+    }
+}
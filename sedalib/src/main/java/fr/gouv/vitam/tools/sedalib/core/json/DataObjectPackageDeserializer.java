@@ -36,6 +36,7 @@ import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibJsonProcessingException;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * The Class DataObjectPackageDeserializer.
@@ -72,6 +73,8 @@ public class DataObjectPackageDeserializer extends StdDeserializer<DataObjectPac
     public DataObjectPackage deserialize(JsonParser parser, DeserializationContext deserializer)
             throws IOException {
         DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        String zipContentFile = null;
+        String zipContentDirectory = null;
 
         parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
         try {
@@ -103,11 +106,20 @@ public class DataObjectPackageDeserializer extends StdDeserializer<DataObjectPac
                         int status = parser.readValueAs(Integer.class);
                         dataObjectPackage.setVitamNormalizationStatus(status);
                         break;
+                    case "zipContentFile":
+                        zipContentFile = parser.getText();
+                        break;
+                    case "zipContentDirectory":
+                        zipContentDirectory = parser.getText();
+                        break;
                 }
             }
         } catch (SEDALibException e) {
             throw new SEDALibJsonProcessingException("Erreur dans la deserialisation de l'ArchiveTransfer\n->" + e.getMessage());
         }
+        if ((zipContentFile != null) && (zipContentDirectory != null))
+            dataObjectPackage.setZipContentSource(new ZipContentSource(Paths.get(zipContentFile),
+                    Paths.get(zipContentDirectory)));
 
         return dataObjectPackage;
     }
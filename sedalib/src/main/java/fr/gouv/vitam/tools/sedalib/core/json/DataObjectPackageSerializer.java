@@ -101,6 +101,14 @@ public class DataObjectPackageSerializer extends StdSerializer<DataObjectPackage
 
             jGen.writeObjectField("vitamNormalizationStatus", dataObjectPackage.getVitamNormalizationStatus());
 
+            // files not extracted from their zip
+            if (dataObjectPackage.getZipContentSource() != null) {
+                jGen.writeStringField("zipContentFile",
+                        dataObjectPackage.getZipContentSource().getZipFilePath().toString());
+                jGen.writeStringField("zipContentDirectory",
+                        dataObjectPackage.getZipContentSource().getExtractionDirectoryPath().toString());
+            }
+
             jGen.writeEndObject();
         }
     }
@@ -88,13 +88,28 @@ public class ContainerDroidIdentifier {
      */
     public IdentificationResultCollection getContainerIdentification(final InputStream inputStream,
                                                                      final IdentificationResultCollection identificationResults) throws IOException {
+        return getContainerIdentification(inputStream, identificationResults, -1);
+    }
+
+    /**
+     * Gets the container format identification if any, scanning no more than maxBytesToScan bytes of each
+     * container entry.
+     *
+     * @param inputStream the inputStream to identify
+     * @param identificationResults the identification results list to be completed
+     * @param maxBytesToScan the max bytes to scan, -1 for no limit
+     * @return the identification results list completed, if a new format have been identified, or the original list
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public IdentificationResultCollection getContainerIdentification(final InputStream inputStream,
+                                                                     final IdentificationResultCollection identificationResults,
+                                                                     final long maxBytesToScan) throws IOException {
 
         final IdentificationRequest<InputStream> request = new ContainerFileIdentificationRequest(null);
 
         try {
             request.open(inputStream);
 
-            int maxBytesToScan = -1;
             ContainerSignatureMatchCollection matches = new ContainerSignatureMatchCollection(
                     getContainerIdentifierInit().getContainerSignatures(),
                     getContainerIdentifierInit().getUniqueFileEntries(), maxBytesToScan);
@@ -29,30 +29,19 @@ package fr.gouv.vitam.tools.sedalib.droid;
 
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
-import uk.gov.nationalarchives.droid.container.ContainerFileIdentificationRequestFactory;
-import uk.gov.nationalarchives.droid.container.ContainerSignatureDefinitions;
-import uk.gov.nationalarchives.droid.container.ContainerSignatureSaxParser;
 import uk.gov.nationalarchives.droid.container.TriggerPuid;
-import uk.gov.nationalarchives.droid.container.ole2.Ole2IdentifierEngine;
-import uk.gov.nationalarchives.droid.container.zip.ZipIdentifierEngine;
-import uk.gov.nationalarchives.droid.core.BinarySignatureIdentifier;
-import uk.gov.nationalarchives.droid.core.SignatureParseException;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
-import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
-import uk.gov.nationalarchives.droid.core.interfaces.archive.IdentificationRequestFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
-import uk.gov.nationalarchives.droid.core.signature.FileFormat;
-import uk.gov.nationalarchives.droid.core.signature.FileFormatCollection;
-import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogWithoutInterruption;
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.getAllJavaStackString;
@@ -60,27 +49,56 @@ import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.getAllJava
 /**
  * The Class DroidIdentifier.
  * <p>
- * Singleton class for managing the DROID identifications
+ * Singleton class for managing the DROID identifications.
+ * <p>
+ * The identification methods can be called from any number of threads. The DROID structures, which are not
+ * guaranteed to be thread safe, are held by a pool of engines, each used by one thread at a time. Engines are
+ * created on demand, up to the pool size, so that a single thread use costs only one engine. When all engines are
+ * in use, the calling thread waits for a free one.
+ * <p>
+ * The last identification duration is kept for each thread (see {@link #getLastIdentificationNanos()}), and global
+ * counters give the identification count and cumulated duration.
  */
 public class DroidIdentifier {
 
+    /** The default engines pool size. */
+    public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
     /** Singleton. */
-    private static DroidIdentifier instance = null;
+    private static volatile DroidIdentifier instance = null;
 
     /** The config directory. */
     private String configDir;
 
-    /** DROID structures used for format identification. */
-    private FFSignatureFile binarySignatureFile;
+    /** The binary signature file name. */
+    private String binarySignatureFileName;
+
+    /** The container signature file name. */
+    private String containerSignatureFileName;
+
+    /** The binary signature file version. */
+    private String binarySignatureVersion;
+
+    /** The idle engines. */
+    private LinkedBlockingQueue<DroidIdentifierEngine> idleEngines;
+
+    /** The number of created engines. */
+    private int engineCount;
 
-    /** The container signature definitions. */
-    private ContainerSignatureDefinitions containerSignatureDefinitions;
+    /** The engines pool size. */
+    private volatile int poolSize;
 
-    /** The binary signature identifier. */
-    private BinarySignatureIdentifier binarySignatureIdentifier;
+    /** The max bytes to scan from the beginning and the end of files, -1 for no limit. */
+    private volatile long maxBytesToScan;
 
-    /** The container content identifier map. */
-    private HashMap<String, ContainerDroidIdentifier> containerContentIdentierMap;
+    /** The identification counter. */
+    private AtomicLong identificationCount;
+
+    /** The cumulated identification duration in nanoseconds. */
+    private AtomicLong identificationNanos;
+
+    /** The last identification duration in nanoseconds by thread. */
+    private ThreadLocal<Long> lastIdentificationNanos;
 
     /**
      * Instantiates a new DROID identifier.
@@ -91,8 +109,20 @@ public class DroidIdentifier {
      */
     private DroidIdentifier(SEDALibProgressLogger sedaLibProgressLogger, String configDir) throws SEDALibException {
         this.configDir = configDir;
-        initSignatureDroid(sedaLibProgressLogger);
-        initContainerDroid(sedaLibProgressLogger);
+        this.binarySignatureFileName = getBinarySignatureFileName(sedaLibProgressLogger);
+        this.containerSignatureFileName = getContainerSignatureFileName(sedaLibProgressLogger);
+        this.idleEngines = new LinkedBlockingQueue<DroidIdentifierEngine>();
+        this.poolSize = DEFAULT_POOL_SIZE;
+        this.maxBytesToScan = -1;
+        this.identificationCount = new AtomicLong();
+        this.identificationNanos = new AtomicLong();
+        this.lastIdentificationNanos = new ThreadLocal<Long>();
+
+        // create the first engine to check signatures files
+        DroidIdentifierEngine engine = new DroidIdentifierEngine(binarySignatureFileName, containerSignatureFileName);
+        binarySignatureVersion = engine.getBinarySignatureVersion();
+        engineCount = 1;
+        idleEngines.add(engine);
     }
 
     /**
@@ -103,7 +133,7 @@ public class DroidIdentifier {
      * @return single instance of DroidIdentifier
      * @throws SEDALibException if the identifier can't be initialised, may be due to wrong signatures files
      */
-    static public DroidIdentifier init(SEDALibProgressLogger sedaLibProgressLogger, String configDir) throws SEDALibException {
+    static synchronized public DroidIdentifier init(SEDALibProgressLogger sedaLibProgressLogger, String configDir) throws SEDALibException {
         instance = new DroidIdentifier(sedaLibProgressLogger, configDir);
         return instance;
     }
@@ -114,14 +144,20 @@ public class DroidIdentifier {
      * @return single instance of DroidIdentifier
      */
     static public DroidIdentifier getInstance() {
-        if (instance == null)
-            try {
-                instance = new DroidIdentifier(null, "./config");
-            } catch (SEDALibException e) {
-                System.err.println(getAllJavaStackString(e));
-                System.exit(1);
+        DroidIdentifier result = instance;
+        if (result == null) {
+            synchronized (DroidIdentifier.class) {
+                if (instance == null)
+                    try {
+                        instance = new DroidIdentifier(null, "./config");
+                    } catch (SEDALibException e) {
+                        System.err.println(getAllJavaStackString(e));
+                        System.exit(1);
+                    }
+                result = instance;
             }
-        return instance;
+        }
+        return result;
     }
 
     /**
@@ -184,24 +220,6 @@ public class DroidIdentifier {
         return "." + File.separator + "config" + File.separator + result;
     }
 
-    /**
-     * Inits the signature identifier context.
-     *
-     * @throws SEDALibException if unable to parse the signature file
-     */
-    private void initSignatureDroid(SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException {
-        binarySignatureIdentifier = new BinarySignatureIdentifier();
-
-        String sigFileName = getBinarySignatureFileName(sedaLibProgressLogger);
-        binarySignatureIdentifier.setSignatureFile(sigFileName);
-        try {
-            binarySignatureIdentifier.init();
-        } catch (SignatureParseException x) {
-            System.err.println("Panic: Can't parse file: '" + sigFileName + "'");
-            System.exit(1);
-        }
-        binarySignatureFile = binarySignatureIdentifier.getSigFile();
-    }
 
     /**
      * Gets the container signature file name.
@@ -261,51 +279,53 @@ public class DroidIdentifier {
         return "." + File.separator + "config" + File.separator + result;
     }
 
-    /** The Constant OLE2_CONTAINER. */
-    private static final String OLE2_CONTAINER = "OLE2";
-
-    /** The Constant ZIP_CONTAINER. */
-    private static final String ZIP_CONTAINER = "ZIP";
 
     /**
-     * Inits the container signature identifier context.
+     * Take an engine from the pool, creating one if none is idle and the pool is not full, or waiting for one
+     * otherwise.
      *
-     * @throws SEDALibException if unable to parse the container file
+     * @return the engine
+     * @throws SEDALibException if a new engine can't be initialised or the wait is interrupted
      */
-    @SuppressWarnings("rawtypes")
-    private void initContainerDroid(SEDALibProgressLogger sedaLibProgressLogger) throws SEDALibException {
-        // get container signature definitions
-        String containerSigFileName = getContainerSignatureFileName(sedaLibProgressLogger);
-        try {
-            InputStream in = new FileInputStream(containerSigFileName);
-            ContainerSignatureSaxParser parser = new ContainerSignatureSaxParser();
-            containerSignatureDefinitions = parser.parse(in);
-        } catch (SignatureParseException e) {
-            throw new SEDALibException("Panic! Can't parse container signature file",e);
-        } catch (Exception e) {
-            throw new SEDALibException("Panic! Can't open container signature file",e);
+    private DroidIdentifierEngine takeEngine() throws SEDALibException {
+        DroidIdentifierEngine engine = idleEngines.poll();
+        if (engine == null) {
+            boolean create = false;
+            synchronized (this) {
+                if (engineCount < poolSize) {
+                    engineCount++;
+                    create = true;
+                }
+            }
+            if (create) {
+                try {
+                    engine = new DroidIdentifierEngine(binarySignatureFileName, containerSignatureFileName);
+                } catch (SEDALibException | RuntimeException e) {
+                    synchronized (this) {
+                        engineCount--;
+                    }
+                    throw e;
+                }
+            } else {
+                try {
+                    engine = idleEngines.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SEDALibException("Attente d'un moteur d'identification Droid interrompue", e);
+                }
+            }
         }
+        engine.setMaxBytesToScan(maxBytesToScan);
+        return engine;
+    }
 
-        containerContentIdentierMap = new HashMap<String, ContainerDroidIdentifier>();
-
-        // create container content identifier for OLE2
-        IdentificationRequestFactory ole2RequestFactory = new ContainerFileIdentificationRequestFactory();
-        ContainerDroidIdentifier ole2Identifier = new ContainerDroidIdentifier(containerSignatureDefinitions,
-                binarySignatureFile, OLE2_CONTAINER);
-        Ole2IdentifierEngine ole2IdentifierEngine = new Ole2IdentifierEngine();
-        ole2IdentifierEngine.setRequestFactory(ole2RequestFactory);
-        ole2Identifier.setIdentifierEngine(ole2IdentifierEngine);
-        containerContentIdentierMap.put(OLE2_CONTAINER, ole2Identifier);
-
-        // create container content identifier for ZIP
-        IdentificationRequestFactory zipRequestFactory = new ContainerFileIdentificationRequestFactory();
-        ContainerDroidIdentifier zipIdentifier = new ContainerDroidIdentifier(containerSignatureDefinitions,
-                binarySignatureFile, ZIP_CONTAINER);
-        ZipIdentifierEngine zipIdentifierEngine = new ZipIdentifierEngine();
-        zipIdentifierEngine.setRequestFactory(zipRequestFactory);
-        zipIdentifier.setIdentifierEngine(zipIdentifierEngine);
-        containerContentIdentierMap.put(ZIP_CONTAINER, zipIdentifier);
-
+    /**
+     * Give back an engine to the pool.
+     *
+     * @param engine the engine
+     */
+    private void releaseEngine(DroidIdentifierEngine engine) {
+        idleEngines.add(engine);
     }
 
     /**
@@ -316,24 +336,41 @@ public class DroidIdentifier {
      *
      * @param puid the puid
      * @return the TriggerPuid by puid
+     * @throws SEDALibException if no engine is available
      */
-// get the container ID for the given PUID if any
-    public TriggerPuid getTriggerPuidByPuid(final String puid) {
-        for (final TriggerPuid tp : containerSignatureDefinitions.getTiggerPuids()) {
-            if (tp.getPuid().equals(puid)) {
-                return tp;
-            }
+    public TriggerPuid getTriggerPuidByPuid(final String puid) throws SEDALibException {
+        DroidIdentifierEngine engine = takeEngine();
+        try {
+            return engine.getTriggerPuidByPuid(puid);
+        } finally {
+            releaseEngine(engine);
         }
-        return null;
+    }
+
+    /**
+     * Gets the signatures version, identifying both the binary signature file and the container signature file used.
+     * <p>
+     * This can be used to invalidate identifications done with other signature files.
+     *
+     * @return the signatures version
+     */
+    public String getSignaturesVersion() {
+        return "V" + binarySignatureVersion + "/" + new File(containerSignatureFileName).getName();
     }
 
     /**
      * Can use container identification.
      *
      * @return true, if successful
+     * @throws SEDALibException if no engine is available
      */
-    public boolean canAnalyzeContainer() {
-        return containerSignatureDefinitions != null;
+    public boolean canAnalyzeContainer() throws SEDALibException {
+        DroidIdentifierEngine engine = takeEngine();
+        try {
+            return engine.canAnalyzeContainer();
+        } finally {
+            releaseEngine(engine);
+        }
     }
 
     /**
@@ -344,7 +381,6 @@ public class DroidIdentifier {
      * @throws SEDALibException if the file can't be read
      */
     public IdentificationResult getIdentificationResult(Path path) throws SEDALibException {
-        List<IdentificationResult> irl;
         String filename = path.normalize().toString();
         FileSystemIdentificationRequest request;
 
@@ -359,170 +395,129 @@ public class DroidIdentifier {
             throw new SEDALibException("Impossible d'accéder au fichier [" + filename + "]");
         }
 
-        IdentificationResultCollection resultsSignatureCollection = getSignatureResults(request);
-        IdentificationResultCollection resultsContainerCollection;
+        return getIdentificationResult(request, filename);
+    }
+
+    /**
+     * Gets the identification result of an already scanned file.
+     * <p>
+     * The binary signatures are matched on the header and trailer bytes kept during the scan, so that the file is
+     * not read again, unless a signature needs bytes in the middle of the file or the format is a container.
+     *
+     * @param scannedFile the scanned file to identify
+     * @return the identification result
+     * @throws SEDALibException if the file can't be read
+     */
+    public IdentificationResult getIdentificationResult(ScannedFile scannedFile) throws SEDALibException {
+        String filename = scannedFile.getPath().normalize().toString();
+
+        RequestMetaData metaData = new RequestMetaData(scannedFile.getSize(),
+                scannedFile.getLastModified().toMillis(), filename);
+        RequestIdentifier identifier = new RequestIdentifier(scannedFile.getPath().toUri());
+        identifier.setParentId(1L);
+        ScannedFileIdentificationRequest request = new ScannedFileIdentificationRequest(metaData, identifier);
+        request.open(scannedFile);
+
+        return getIdentificationResult(request, filename);
+    }
+
+    /**
+     * Gets the identification result for an opened request with a pool engine, and close it.
+     *
+     * @param request  the opened request
+     * @param filename the file name
+     * @return the identification result
+     * @throws SEDALibException if the file can't be read
+     */
+    private IdentificationResult getIdentificationResult(@SuppressWarnings("rawtypes") IdentificationRequest request,
+                                                         String filename) throws SEDALibException {
+        DroidIdentifierEngine engine;
         try {
-            resultsContainerCollection = getContainerResults(resultsSignatureCollection, request);
+            engine = takeEngine();
         } catch (SEDALibException e) {
             try {
                 request.close();
             } catch (IOException e1) {
                 //ignored
             }
-            throw new SEDALibException("Erreur dans l'identification par container du fichier [" + filename + "]");
-        }
-
-        if ((resultsContainerCollection != null) && !resultsContainerCollection.getResults().isEmpty()) {
-            irl = resultsContainerCollection.getResults();
-        } else if (!resultsSignatureCollection.getResults().isEmpty()) {
-            irl = resultsSignatureCollection.getResults();
-        } else {
-            irl = getExtensionResults(request).getResults();
+            throw e;
         }
-
+        long start = System.nanoTime();
         try {
-            request.close();
-        } catch (IOException e) {
-            throw new SEDALibException("Erreur dans l'identification droid du fichier [" + filename + "], impossible de fermer la requête");
+            return engine.getIdentificationResult(request, filename);
+        } finally {
+            releaseEngine(engine);
+            long duration = System.nanoTime() - start;
+            lastIdentificationNanos.set(duration);
+            identificationCount.incrementAndGet();
+            identificationNanos.addAndGet(duration);
         }
-
-        if ((irl != null) && (!irl.isEmpty())) {
-            String fileExtension = "";
-            if (filename.lastIndexOf('.') != -1)
-                fileExtension = filename.substring(filename.lastIndexOf('.') + 1);
-            return selectBestResult(irl, fileExtension);
-        } else
-            return null;
     }
 
     /**
-     * Gets the signature (no container) format identification if any.
+     * Gets the duration of the last identification done by the calling thread.
      *
-     * @param request the request
-     * @return the signature results
+     * @return the duration in nanoseconds, or -1 if no identification has been done by this thread
      */
-    IdentificationResultCollection getSignatureResults(
-            @SuppressWarnings("rawtypes") final IdentificationRequest request) {
-
-        IdentificationResultCollection results = binarySignatureIdentifier.matchBinarySignatures(request);
-        binarySignatureIdentifier.checkForExtensionsMismatches(results, request.getExtension());
-        return results;
+    public long getLastIdentificationNanos() {
+        Long result = lastIdentificationNanos.get();
+        return result == null ? -1 : result;
     }
 
     /**
-     * Gets the extension format identification if any.
+     * Gets the number of identifications done.
      *
-     * @param request the request
-     * @return the extension results
+     * @return the identification count
      */
-    IdentificationResultCollection getExtensionResults(
-            @SuppressWarnings("rawtypes") final IdentificationRequest request) {
-
-        return binarySignatureIdentifier.matchExtensions(request, true);
+    public long getIdentificationCount() {
+        return identificationCount.get();
     }
 
     /**
-     * Gets the container format identification if any, for any type of container.
+     * Gets the cumulated duration of identifications done, by all threads.
      *
-     * @param signatureResults the signature results
-     * @param request          the request
-     * @return the container results
-     * @throws SEDALibException the SEDALibException
+     * @return the duration in nanoseconds
      */
-    IdentificationResultCollection getContainerResults(final IdentificationResultCollection signatureResults,
-                                                       @SuppressWarnings("rawtypes") final IdentificationRequest request) throws SEDALibException {
-        IdentificationResultCollection containerResults = new IdentificationResultCollection(request);
-
-        if (!signatureResults.getResults().isEmpty() && canAnalyzeContainer()) {
-            for (IdentificationResult identResult : signatureResults.getResults()) {
-                String filePuid = identResult.getPuid();
-                if (filePuid != null) {
-                    TriggerPuid containerPuid = getTriggerPuidByPuid(filePuid);
-                    if (containerPuid != null) {
-
-                        String containerType = containerPuid.getContainerType();
-
-                        ContainerDroidIdentifier cci = containerContentIdentierMap.get(containerType);
-                        if (cci != null) {
-                            try {
-                                containerResults = cci.getContainerIdentification(request.getSourceInputStream(),
-                                        containerResults);
-                            } catch (IOException e) { // go on after problems
-                                throw new SEDALibException(
-                                        "Impossible d'analyser en conteneur le format du fichier [" + request.getFileName() + "]");
-                            }
-                        }
-                    }
-                }
-            }
-        }
-        return containerResults;
+    public long getIdentificationNanos() {
+        return identificationNanos.get();
     }
 
     /**
-     * Select best identification result.
-     * <p>
-     * Use the signature file priorities to sort the different formats, and the
-     * extension to select the best format if there are more than one with no
-     * priority at the higher level.
+     * Gets the engines pool size, max number of concurrent identifications.
      *
-     * @param irl           the list of all identification results
-     * @param fileExtension the file extension of original file
-     * @return the best identification result, or null if the list was empty
+     * @return the pool size
      */
-// use the signature file priorities and the extension to select the best format
-    protected IdentificationResult selectBestResult(List<IdentificationResult> irl, String fileExtension) {
-        // special quick return cases
-        int numResults = irl.size();
-        if (numResults == 0)
-            return null;
-        else if (numResults == 1) {
-            return irl.get(0);
-        }
-
-        // Build a set of format ids the results have priority over:
-        FileFormatCollection allFormats = binarySignatureFile.getFileFormatCollection();
-        Set<Integer> lowerPriorityIDs = new HashSet<Integer>();
-        for (int i = 0; i < numResults; i++) {
-            final IdentificationResult result = irl.get(i);
-            final String resultPUID = result.getPuid();
-            final FileFormat format = allFormats.getFormatForPUID(resultPUID);
-            lowerPriorityIDs.addAll(format.getFormatIdsHasPriorityOver());
-        }
+    public int getPoolSize() {
+        return poolSize;
+    }
 
-        // if a result has an id in this set, add it to the remove list
-        List<IdentificationResult> lowerPriorityResults = new ArrayList<IdentificationResult>();
-        for (int i = 0; i < numResults; i++) {
-            final IdentificationResult tmp = irl.get(i);
-            final String resultPUID = tmp.getPuid();
-            final FileFormat format = allFormats.getFormatForPUID(resultPUID);
-            if (lowerPriorityIDs.contains(format.getID())) {
-                lowerPriorityResults.add(tmp);
-            }
-        }
+    /**
+     * Sets the engines pool size, max number of concurrent identifications. Already created engines are kept even
+     * if the pool size is reduced.
+     *
+     * @param poolSize the pool size
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = Math.max(1, poolSize);
+    }
 
-        // now remove any lower priority results from the list
-        numResults = lowerPriorityResults.size();
-        for (int i = 0; i < numResults; i++) {
-            irl.remove(lowerPriorityResults.get(i));
-        }
+    /**
+     * Gets the max bytes to scan from the beginning and the end of files.
+     *
+     * @return the max bytes to scan, -1 for no limit
+     */
+    public long getMaxBytesToScan() {
+        return maxBytesToScan;
+    }
 
-        // different return cases
-        numResults = irl.size();
-        if (numResults == 0)
-            return null;
-        else if (numResults == 1) {
-            return irl.get(0);
-        } else {
-            // if multiple results use extension to choose
-            for (int i = 0; i < numResults; i++) {
-                final FileFormat format = allFormats.getFormatForPUID(irl.get(i).getPuid());
-                if (format.hasMatchingExtension(fileExtension)) {
-                    return irl.get(i);
-                }
-            }
-            // if no matching extension choose the first in the list
-            return irl.get(0);
-        }
+    /**
+     * Sets the max bytes to scan from the beginning and the end of files, and of container entries. Limiting it
+     * speeds up the identification of big files, but may miss some formats with signatures at variable
+     * positions.
+     *
+     * @param maxBytesToScan the max bytes to scan, -1 for no limit
+     */
+    public void setMaxBytesToScan(long maxBytesToScan) {
+        this.maxBytesToScan = (maxBytesToScan < 0 ? -1 : maxBytesToScan);
     }
 }
@@ -0,0 +1,384 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.droid;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import uk.gov.nationalarchives.droid.container.ContainerFileIdentificationRequestFactory;
+import uk.gov.nationalarchives.droid.container.ContainerSignatureDefinitions;
+import uk.gov.nationalarchives.droid.container.ContainerSignatureSaxParser;
+import uk.gov.nationalarchives.droid.container.TriggerPuid;
+import uk.gov.nationalarchives.droid.container.ole2.Ole2IdentifierEngine;
+import uk.gov.nationalarchives.droid.container.zip.ZipIdentifierEngine;
+import uk.gov.nationalarchives.droid.core.BinarySignatureIdentifier;
+import uk.gov.nationalarchives.droid.core.SignatureParseException;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.IdentificationRequestFactory;
+import uk.gov.nationalarchives.droid.core.signature.FileFormat;
+import uk.gov.nationalarchives.droid.core.signature.FileFormatCollection;
+import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * The Class DroidIdentifierEngine.
+ * <p>
+ * Class for one set of DROID structures (binary signatures and container signatures identifiers) used for format
+ * identification. These structures are not guaranteed to be thread safe, so an engine is used by only one thread
+ * at a time, the {@link DroidIdentifier} managing a pool of engines.
+ */
+class DroidIdentifierEngine {
+
+    /** DROID structures used for format identification. */
+    private FFSignatureFile binarySignatureFile;
+
+    /** The container signature definitions. */
+    private ContainerSignatureDefinitions containerSignatureDefinitions;
+
+    /** The binary signature identifier. */
+    private BinarySignatureIdentifier binarySignatureIdentifier;
+
+    /** The container content identifier map. */
+    private HashMap<String, ContainerDroidIdentifier> containerContentIdentierMap;
+
+    /** The max bytes to scan, -1 for no limit. */
+    private long maxBytesToScan;
+
+    /**
+     * Instantiates a new DROID identifier engine.
+     *
+     * @param sigFileName          the binary signature file name
+     * @param containerSigFileName the container signature file name
+     * @throws SEDALibException if the engine can't be initialised, may be due to wrong signatures files
+     */
+    DroidIdentifierEngine(String sigFileName, String containerSigFileName) throws SEDALibException {
+        initSignatureDroid(sigFileName);
+        initContainerDroid(containerSigFileName);
+        this.maxBytesToScan = -1;
+    }
+
+    /**
+     * Inits the signature identifier context.
+     *
+     * @param sigFileName the binary signature file name
+     * @throws SEDALibException if unable to parse the signature file
+     */
+    private void initSignatureDroid(String sigFileName) throws SEDALibException {
+        binarySignatureIdentifier = new BinarySignatureIdentifier();
+
+        binarySignatureIdentifier.setSignatureFile(sigFileName);
+        try {
+            binarySignatureIdentifier.init();
+        } catch (SignatureParseException x) {
+            System.err.println("Panic: Can't parse file: '" + sigFileName + "'");
+            System.exit(1);
+        }
+        binarySignatureFile = binarySignatureIdentifier.getSigFile();
+    }
+
+
+    /** The Constant OLE2_CONTAINER. */
+    private static final String OLE2_CONTAINER = "OLE2";
+
+    /** The Constant ZIP_CONTAINER. */
+    private static final String ZIP_CONTAINER = "ZIP";
+
+    /**
+     * Inits the container signature identifier context.
+     *
+     * @param containerSigFileName the container signature file name
+     * @throws SEDALibException if unable to parse the container file
+     */
+    @SuppressWarnings("rawtypes")
+    private void initContainerDroid(String containerSigFileName) throws SEDALibException {
+        // get container signature definitions
+        try (InputStream in = new FileInputStream(containerSigFileName)) {
+            ContainerSignatureSaxParser parser = new ContainerSignatureSaxParser();
+            containerSignatureDefinitions = parser.parse(in);
+        } catch (SignatureParseException e) {
+            throw new SEDALibException("Panic! Can't parse container signature file",e);
+        } catch (Exception e) {
+            throw new SEDALibException("Panic! Can't open container signature file",e);
+        }
+
+        containerContentIdentierMap = new HashMap<String, ContainerDroidIdentifier>();
+
+        // create container content identifier for OLE2
+        IdentificationRequestFactory ole2RequestFactory = new ContainerFileIdentificationRequestFactory();
+        ContainerDroidIdentifier ole2Identifier = new ContainerDroidIdentifier(containerSignatureDefinitions,
+                binarySignatureFile, OLE2_CONTAINER);
+        Ole2IdentifierEngine ole2IdentifierEngine = new Ole2IdentifierEngine();
+        ole2IdentifierEngine.setRequestFactory(ole2RequestFactory);
+        ole2Identifier.setIdentifierEngine(ole2IdentifierEngine);
+        containerContentIdentierMap.put(OLE2_CONTAINER, ole2Identifier);
+
+        // create container content identifier for ZIP
+        IdentificationRequestFactory zipRequestFactory = new ContainerFileIdentificationRequestFactory();
+        ContainerDroidIdentifier zipIdentifier = new ContainerDroidIdentifier(containerSignatureDefinitions,
+                binarySignatureFile, ZIP_CONTAINER);
+        ZipIdentifierEngine zipIdentifierEngine = new ZipIdentifierEngine();
+        zipIdentifierEngine.setRequestFactory(zipRequestFactory);
+        zipIdentifier.setIdentifierEngine(zipIdentifierEngine);
+        containerContentIdentierMap.put(ZIP_CONTAINER, zipIdentifier);
+
+    }
+
+
+    /**
+     * Gets the binary signature file version.
+     *
+     * @return the binary signature file version
+     */
+    String getBinarySignatureVersion() {
+        return binarySignatureFile.getVersion();
+    }
+
+    /**
+     * Sets the max bytes to scan from the beginning and the end of files, -1 for no limit.
+     *
+     * @param maxBytesToScan the max bytes to scan
+     */
+    void setMaxBytesToScan(long maxBytesToScan) {
+        if (this.maxBytesToScan != maxBytesToScan) {
+            this.maxBytesToScan = maxBytesToScan;
+            binarySignatureIdentifier.setMaxBytesToScan(maxBytesToScan);
+        }
+    }
+
+    /**
+     * Gets the TriggerPuid by puid, or null if no match.
+     * <p>
+     * TriggerPuid gives the link between container identifier and puid of outer
+     * format
+     *
+     * @param puid the puid
+     * @return the TriggerPuid by puid
+     */
+// get the container ID for the given PUID if any
+    public TriggerPuid getTriggerPuidByPuid(final String puid) {
+        for (final TriggerPuid tp : containerSignatureDefinitions.getTiggerPuids()) {
+            if (tp.getPuid().equals(puid)) {
+                return tp;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Can use container identification.
+     *
+     * @return true, if successful
+     */
+    public boolean canAnalyzeContainer() {
+        return containerSignatureDefinitions != null;
+    }
+
+
+    /**
+     * Gets the identification result for an opened request, and close it.
+     *
+     * @param request  the opened request
+     * @param filename the file name
+     * @return the identification result
+     * @throws SEDALibException if the file can't be read
+     */
+    IdentificationResult getIdentificationResult(@SuppressWarnings("rawtypes") IdentificationRequest request,
+                                                 String filename) throws SEDALibException {
+        List<IdentificationResult> irl;
+
+        IdentificationResultCollection resultsSignatureCollection = getSignatureResults(request);
+        IdentificationResultCollection resultsContainerCollection;
+        try {
+            resultsContainerCollection = getContainerResults(resultsSignatureCollection, request);
+        } catch (SEDALibException e) {
+            try {
+                request.close();
+            } catch (IOException e1) {
+                //ignored
+            }
+            throw new SEDALibException("Erreur dans l'identification par container du fichier [" + filename + "]");
+        }
+
+        if ((resultsContainerCollection != null) && !resultsContainerCollection.getResults().isEmpty()) {
+            irl = resultsContainerCollection.getResults();
+        } else if (!resultsSignatureCollection.getResults().isEmpty()) {
+            irl = resultsSignatureCollection.getResults();
+        } else {
+            irl = getExtensionResults(request).getResults();
+        }
+
+        try {
+            request.close();
+        } catch (IOException e) {
+            throw new SEDALibException("Erreur dans l'identification droid du fichier [" + filename + "], impossible de fermer la requête");
+        }
+
+        if ((irl != null) && (!irl.isEmpty())) {
+            String fileExtension = "";
+            if (filename.lastIndexOf('.') != -1)
+                fileExtension = filename.substring(filename.lastIndexOf('.') + 1);
+            return selectBestResult(irl, fileExtension);
+        } else
+            return null;
+    }
+
+    /**
+     * Gets the signature (no container) format identification if any.
+     *
+     * @param request the request
+     * @return the signature results
+     */
+    IdentificationResultCollection getSignatureResults(
+            @SuppressWarnings("rawtypes") final IdentificationRequest request) {
+
+        IdentificationResultCollection results = binarySignatureIdentifier.matchBinarySignatures(request);
+        binarySignatureIdentifier.checkForExtensionsMismatches(results, request.getExtension());
+        return results;
+    }
+
+    /**
+     * Gets the extension format identification if any.
+     *
+     * @param request the request
+     * @return the extension results
+     */
+    IdentificationResultCollection getExtensionResults(
+            @SuppressWarnings("rawtypes") final IdentificationRequest request) {
+
+        return binarySignatureIdentifier.matchExtensions(request, true);
+    }
+
+    /**
+     * Gets the container format identification if any, for any type of container.
+     *
+     * @param signatureResults the signature results
+     * @param request          the request
+     * @return the container results
+     * @throws SEDALibException the SEDALibException
+     */
+    IdentificationResultCollection getContainerResults(final IdentificationResultCollection signatureResults,
+                                                       @SuppressWarnings("rawtypes") final IdentificationRequest request) throws SEDALibException {
+        IdentificationResultCollection containerResults = new IdentificationResultCollection(request);
+
+        if (!signatureResults.getResults().isEmpty() && canAnalyzeContainer()) {
+            for (IdentificationResult identResult : signatureResults.getResults()) {
+                String filePuid = identResult.getPuid();
+                if (filePuid != null) {
+                    TriggerPuid containerPuid = getTriggerPuidByPuid(filePuid);
+                    if (containerPuid != null) {
+
+                        String containerType = containerPuid.getContainerType();
+
+                        ContainerDroidIdentifier cci = containerContentIdentierMap.get(containerType);
+                        if (cci != null) {
+                            try {
+                                containerResults = cci.getContainerIdentification(request.getSourceInputStream(),
+                                        containerResults, maxBytesToScan);
+                            } catch (IOException e) { // go on after problems
+                                throw new SEDALibException(
+                                        "Impossible d'analyser en conteneur le format du fichier [" + request.getFileName() + "]");
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return containerResults;
+    }
+
+    /**
+     * Select best identification result.
+     * <p>
+     * Use the signature file priorities to sort the different formats, and the
+     * extension to select the best format if there are more than one with no
+     * priority at the higher level.
+     *
+     * @param irl           the list of all identification results
+     * @param fileExtension the file extension of original file
+     * @return the best identification result, or null if the list was empty
+     */
+// use the signature file priorities and the extension to select the best format
+    protected IdentificationResult selectBestResult(List<IdentificationResult> irl, String fileExtension) {
+        // special quick return cases
+        int numResults = irl.size();
+        if (numResults == 0)
+            return null;
+        else if (numResults == 1) {
+            return irl.get(0);
+        }
+
+        // Build a set of format ids the results have priority over:
+        FileFormatCollection allFormats = binarySignatureFile.getFileFormatCollection();
+        Set<Integer> lowerPriorityIDs = new HashSet<Integer>();
+        for (int i = 0; i < numResults; i++) {
+            final IdentificationResult result = irl.get(i);
+            final String resultPUID = result.getPuid();
+            final FileFormat format = allFormats.getFormatForPUID(resultPUID);
+            lowerPriorityIDs.addAll(format.getFormatIdsHasPriorityOver());
+        }
+
+        // if a result has an id in this set, add it to the remove list
+        List<IdentificationResult> lowerPriorityResults = new ArrayList<IdentificationResult>();
+        for (int i = 0; i < numResults; i++) {
+            final IdentificationResult tmp = irl.get(i);
+            final String resultPUID = tmp.getPuid();
+            final FileFormat format = allFormats.getFormatForPUID(resultPUID);
+            if (lowerPriorityIDs.contains(format.getID())) {
+                lowerPriorityResults.add(tmp);
+            }
+        }
+
+        // now remove any lower priority results from the list
+        numResults = lowerPriorityResults.size();
+        for (int i = 0; i < numResults; i++) {
+            irl.remove(lowerPriorityResults.get(i));
+        }
+
+        // different return cases
+        numResults = irl.size();
+        if (numResults == 0)
+            return null;
+        else if (numResults == 1) {
+            return irl.get(0);
+        } else {
+            // if multiple results use extension to choose
+            for (int i = 0; i < numResults; i++) {
+                final FileFormat format = allFormats.getFormatForPUID(irl.get(i).getPuid());
+                if (format.hasMatchingExtension(fileExtension)) {
+                    return irl.get(i);
+                }
+            }
+            // if no matching extension choose the first in the list
+            return irl.get(0);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.droid;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Formatter;
+
+/**
+ * The Class ScannedFile.
+ * <p>
+ * Class for the result of a single pass read of a file. The file is streamed once through a large NIO buffer to
+ * compute its SHA-512 digest, while keeping in memory the header and trailer bytes used by DROID binary signature
+ * identification, so that the format identification does not need to read the file again.
+ */
+public class ScannedFile {
+
+    /** The Constant READ_BUFFER_SIZE used to stream the file. */
+    public static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+    /** The Constant HEADER_CAPACITY, max number of bytes kept from the beginning of the file. */
+    public static final int HEADER_CAPACITY = 256 * 1024;
+
+    /** The Constant TRAILER_CAPACITY, max number of bytes kept from the end of the file. */
+    public static final int TRAILER_CAPACITY = 64 * 1024;
+
+    /** The path. */
+    private Path path;
+
+    /** The size. */
+    private long size;
+
+    /** The last modified time. */
+    private FileTime lastModified;
+
+    /** The SHA-512 digest in hexadecimal form. */
+    private String digestSha512;
+
+    /** The header bytes. */
+    private byte[] header;
+
+    /** The trailer bytes. */
+    private byte[] trailer;
+
+    /**
+     * Instantiates a new scanned file.
+     *
+     * @param path         the path
+     * @param size         the size
+     * @param lastModified the last modified time
+     * @param digestSha512 the SHA-512 digest in hexadecimal form
+     * @param header       the header bytes
+     * @param trailer      the trailer bytes
+     */
+    private ScannedFile(Path path, long size, FileTime lastModified, String digestSha512, byte[] header, byte[] trailer) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.digestSha512 = digestSha512;
+        this.header = header;
+        this.trailer = trailer;
+    }
+
+    /**
+     * Scan a file in one pass to get its size, SHA-512 digest, and header and trailer bytes.
+     *
+     * @param path the path
+     * @return the scanned file
+     * @throws SEDALibException if the file can't be read or has been modified during the read
+     */
+    public static ScannedFile scan(Path path) throws SEDALibException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-512");
+        } catch (NoSuchAlgorithmException e1) {
+            throw new SEDALibException("Impossible de mobiliser l'algorithme de hashage SHA-512", e1);
+        }
+
+        long size;
+        FileTime lastModified;
+        byte[] header;
+        byte[] trailer;
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+            lastModified = Files.getLastModifiedTime(path);
+            size = fc.size();
+            header = new byte[(int) Math.min(size, HEADER_CAPACITY)];
+            trailer = new byte[(int) Math.max(0, Math.min(size - header.length, TRAILER_CAPACITY))];
+            long trailerStart = size - trailer.length;
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(1, Math.min(size, READ_BUFFER_SIZE)));
+            byte[] array = buffer.array();
+            long position = 0;
+            for (int read; (read = fc.read(buffer)) != -1; ) {
+                if (read == 0)
+                    continue;
+                if (position + read > size)
+                    throw new SEDALibException("Le fichier [" + path.toString() + "] a été modifié pendant sa lecture");
+                messageDigest.update(array, 0, read);
+                if (position < header.length)
+                    System.arraycopy(array, 0, header, (int) position,
+                            (int) Math.min(read, header.length - position));
+                if (position + read > trailerStart) {
+                    int from = (int) Math.max(0, trailerStart - position);
+                    System.arraycopy(array, from, trailer, (int) (position + from - trailerStart), read - from);
+                }
+                position += read;
+                buffer.clear();
+            }
+            if (position != size)
+                throw new SEDALibException("Le fichier [" + path.toString() + "] a été modifié pendant sa lecture");
+        } catch (IOException e) {
+            throw new SEDALibException(
+                    "Impossible de calculer le hash du fichier [" + path.toString() + "]", e);
+        }
+
+        // Convert the byte to hex format
+        String digestSha512;
+        try (Formatter formatter = new Formatter()) {
+            for (final byte b : messageDigest.digest()) {
+                formatter.format("%02x", b);
+            }
+            digestSha512 = formatter.toString();
+        } catch (Exception e) {
+            throw new SEDALibException(
+                    "Impossible d'encoder le hash du fichier [" + path.toString() + "]", e);
+        }
+
+        return new ScannedFile(path, size, lastModified, digestSha512, header, trailer);
+    }
+
+    /**
+     * Gets the path.
+     *
+     * @return the path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the size.
+     *
+     * @return the size
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the last modified time, as read before the scan.
+     *
+     * @return the last modified time
+     */
+    public FileTime getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Gets the SHA-512 digest in hexadecimal form.
+     *
+     * @return the SHA-512 digest
+     */
+    public String getDigestSha512() {
+        return digestSha512;
+    }
+
+    /**
+     * Gets the header bytes, the first bytes of the file up to HEADER_CAPACITY.
+     *
+     * @return the header bytes
+     */
+    public byte[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Gets the trailer bytes, the last bytes of the file not in the header up to TRAILER_CAPACITY.
+     *
+     * @return the trailer bytes
+     */
+    public byte[] getTrailer() {
+        return trailer;
+    }
+
+    /**
+     * Checks if all the file content is kept in header and trailer bytes.
+     *
+     * @return true, if the whole file is in memory
+     */
+    public boolean isFullyInMemory() {
+        return header.length + trailer.length == size;
+    }
+}
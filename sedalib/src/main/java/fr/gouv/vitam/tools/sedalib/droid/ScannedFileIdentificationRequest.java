@@ -0,0 +1,251 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.droid;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import net.byteseek.io.reader.AbstractReader;
+import net.byteseek.io.reader.WindowReader;
+import net.byteseek.io.reader.cache.LeastRecentlyUsedCache;
+import net.byteseek.io.reader.windows.HardWindow;
+import net.byteseek.io.reader.windows.Window;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.ResourceUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The Class ScannedFileIdentificationRequest.
+ * <p>
+ * Class for DROID identification request on an already {@link ScannedFile}. Bytes are served from the header and
+ * trailer kept in memory during the scan, and the file is only read again for the few signatures needing bytes
+ * in the middle of the file, or for the container identification of files not fully kept in memory.
+ */
+public class ScannedFileIdentificationRequest implements IdentificationRequest<Path> {
+
+    /** The Constant WINDOW_SIZE. */
+    private static final int WINDOW_SIZE = 4096;
+
+    /** The Constant CACHED_WINDOWS, number of windows read from disk kept in memory. */
+    private static final int CACHED_WINDOWS = 64;
+
+    /** The scanned file. */
+    private ScannedFile scannedFile;
+
+    /** The request meta data. */
+    private RequestMetaData requestMetaData;
+
+    /** The request identifier. */
+    private RequestIdentifier identifier;
+
+    /** The extension. */
+    private String extension;
+
+    /** The window reader. */
+    private ScannedFileReader reader;
+
+    /**
+     * The Class ScannedFileReader.
+     * <p>
+     * Window reader giving access to the scanned file content, using header and trailer in memory when possible.
+     */
+    private static class ScannedFileReader extends AbstractReader {
+
+        /** The scanned file. */
+        private ScannedFile scannedFile;
+
+        /** The trailer start position in file. */
+        private long trailerStart;
+
+        /** The file channel, opened only if needed. */
+        private FileChannel fileChannel;
+
+        /**
+         * Instantiates a new scanned file reader.
+         *
+         * @param scannedFile the scanned file
+         */
+        ScannedFileReader(ScannedFile scannedFile) {
+            super(WINDOW_SIZE, new LeastRecentlyUsedCache(CACHED_WINDOWS));
+            this.scannedFile = scannedFile;
+            this.trailerStart = scannedFile.getSize() - scannedFile.getTrailer().length;
+        }
+
+        @Override
+        protected Window createWindow(long windowStart) throws IOException {
+            if ((windowStart < 0) || (windowStart >= scannedFile.getSize()))
+                return null;
+            int length = (int) Math.min(windowSize, scannedFile.getSize() - windowStart);
+            byte[] bytes = new byte[length];
+            byte[] header = scannedFile.getHeader();
+            long windowEnd = windowStart + length;
+            if (windowEnd <= header.length)
+                System.arraycopy(header, (int) windowStart, bytes, 0, length);
+            else if (windowStart >= trailerStart)
+                System.arraycopy(scannedFile.getTrailer(), (int) (windowStart - trailerStart), bytes, 0, length);
+            else if ((windowStart < header.length) && (windowEnd > trailerStart) && (header.length == trailerStart)) {
+                int headerPart = (int) (header.length - windowStart);
+                System.arraycopy(header, (int) windowStart, bytes, 0, headerPart);
+                System.arraycopy(scannedFile.getTrailer(), 0, bytes, headerPart, length - headerPart);
+            } else
+                readFromFile(windowStart, bytes);
+            return new HardWindow(bytes, windowStart, length);
+        }
+
+        /**
+         * Read bytes from file when not in memory.
+         *
+         * @param position the position in file
+         * @param bytes    the bytes to fill
+         * @throws IOException if the file can't be read
+         */
+        private void readFromFile(long position, byte[] bytes) throws IOException {
+            if (fileChannel == null)
+                fileChannel = FileChannel.open(scannedFile.getPath(), StandardOpenOption.READ);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (fileChannel.read(buffer, position + buffer.position()) == -1)
+                    throw new IOException("Fin de fichier inattendue dans [" + scannedFile.getPath().toString() + "]");
+            }
+        }
+
+        @Override
+        public long length() {
+            return scannedFile.getSize();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (fileChannel != null)
+                    fileChannel.close();
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    /**
+     * Instantiates a new scanned file identification request.
+     *
+     * @param metaData   the request meta data
+     * @param identifier the request identifier
+     */
+    public ScannedFileIdentificationRequest(RequestMetaData metaData, RequestIdentifier identifier) {
+        this.requestMetaData = metaData;
+        this.identifier = identifier;
+        this.extension = ResourceUtils.getExtension(metaData.getName());
+    }
+
+    /**
+     * Open the request on a scanned file.
+     *
+     * @param scannedFile the scanned file
+     */
+    public void open(ScannedFile scannedFile) {
+        this.scannedFile = scannedFile;
+        this.reader = new ScannedFileReader(scannedFile);
+    }
+
+    /**
+     * Open the request on a file path, scanning the file.
+     *
+     * @param path the path
+     * @throws IOException if the file can't be scanned
+     */
+    @Override
+    public void open(Path path) throws IOException {
+        try {
+            open(ScannedFile.scan(path));
+        } catch (SEDALibException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte getByte(long position) throws IOException {
+        int result = reader.readByte(position);
+        if (result < 0)
+            throw new IOException("Pas d'octet à la position " + position + " dans ["
+                    + scannedFile.getPath().toString() + "]");
+        return (byte) result;
+    }
+
+    @Override
+    public WindowReader getWindowReader() {
+        return reader;
+    }
+
+    @Override
+    public String getFileName() {
+        return requestMetaData.getName();
+    }
+
+    @Override
+    public long size() {
+        return scannedFile.getSize();
+    }
+
+    @Override
+    public String getExtension() {
+        return extension;
+    }
+
+    @Override
+    public InputStream getSourceInputStream() throws IOException {
+        if (scannedFile.isFullyInMemory())
+            return new SequenceInputStream(new ByteArrayInputStream(scannedFile.getHeader()),
+                    new ByteArrayInputStream(scannedFile.getTrailer()));
+        return Files.newInputStream(scannedFile.getPath());
+    }
+
+    @Override
+    public RequestMetaData getRequestMetaData() {
+        return requestMetaData;
+    }
+
+    @Override
+    public RequestIdentifier getIdentifier() {
+        return identifier;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null)
+            reader.close();
+    }
+}
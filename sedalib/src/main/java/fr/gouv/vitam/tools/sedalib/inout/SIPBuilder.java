@@ -34,6 +34,7 @@ import fr.gouv.vitam.tools.sedalib.core.GlobalMetadata;
 import fr.gouv.vitam.tools.sedalib.inout.exporter.ArchiveTransferToSIPExporter;
 import fr.gouv.vitam.tools.sedalib.inout.importer.CSVMetadataToDataObjectPackageImporter;
 import fr.gouv.vitam.tools.sedalib.inout.importer.DiskToDataObjectPackageImporter;
+import fr.gouv.vitam.tools.sedalib.inout.importer.TechnicalElementsExtractor;
 import fr.gouv.vitam.tools.sedalib.metadata.ArchiveUnitProfile;
 import fr.gouv.vitam.tools.sedalib.metadata.ManagementMetadata;
 import fr.gouv.vitam.tools.sedalib.metadata.content.Content;
@@ -77,6 +78,11 @@ public class SIPBuilder implements AutoCloseable {
      */
     private String sipPathString;
 
+    /**
+     * The extractor used for BinaryDataObjects technical elements in sub tree imports.
+     */
+    private TechnicalElementsExtractor technicalElementsExtractor;
+
     /**
      * Instantiates a new SIP builder.
      *
@@ -84,12 +90,26 @@ public class SIPBuilder implements AutoCloseable {
      * @param sedaLibProgressLogger the progress logger
      */
     public SIPBuilder(String sipPathString, SEDALibProgressLogger sedaLibProgressLogger) {
-        GlobalMetadata gm = new GlobalMetadata();
         ManagementMetadata mm = new ManagementMetadata();
 
         this.sipPathString = sipPathString;
         this.archiveTransfer = new ArchiveTransfer();
-        gm.comment = "SIPBuilder generated";
+        this.archiveTransfer.setGlobalMetadata(createDefaultGlobalMetadata("SIPBuilder generated"));
+        this.sedaLibProgressLogger = sedaLibProgressLogger;
+        this.managementMetadata = mm;
+        this.technicalElementsExtractor = new TechnicalElementsExtractor();
+    }
+
+    /**
+     * Creates the default global metadata of a generated SIP.
+     *
+     * @param comment the comment
+     * @return the global metadata
+     */
+    static GlobalMetadata createDefaultGlobalMetadata(String comment) {
+        GlobalMetadata gm = new GlobalMetadata();
+
+        gm.comment = comment;
         gm.messageIdentifier = "SIP " + java.util.UUID.randomUUID().toString();
         gm.setNowFlag(true);
         gm.archivalAgreement = null;
@@ -115,9 +135,17 @@ public class SIPBuilder implements AutoCloseable {
                 + "    <AuthorizationReasonCodeListVersion>AuthorizationReasonCodeListVersion</AuthorizationReasonCodeListVersion>\n"
                 + "    <RelationshipCodeListVersion>RelationshipCodeListVersion</RelationshipCodeListVersion>\n"
                 + "  </CodeListVersions>";
-        this.archiveTransfer.setGlobalMetadata(gm);
-        this.sedaLibProgressLogger = sedaLibProgressLogger;
-        this.managementMetadata = mm;
+        return gm;
+    }
+
+    /**
+     * Sets the extractor used for BinaryDataObjects technical elements when adding disk or csv sub trees, to define
+     * the number of threads used to analyse files.
+     *
+     * @param technicalElementsExtractor the technical elements extractor
+     */
+    public void setTechnicalElementsExtractor(TechnicalElementsExtractor technicalElementsExtractor) {
+        this.technicalElementsExtractor = technicalElementsExtractor;
     }
 
     /**
@@ -424,6 +452,7 @@ public class SIPBuilder implements AutoCloseable {
 
         for (String ip : ignorePatterString)
             di.addIgnorePattern(ip);
+        di.setTechnicalElementsExtractor(technicalElementsExtractor);
         try {
             di.doImport();
         } catch (InterruptedException ignored) {
@@ -448,6 +477,7 @@ public class SIPBuilder implements AutoCloseable {
         if (parentAU == null)
             throw new SEDALibException("Pas d'ArchiveUnit avec l'identifiant [" + archiveUnitID + "]");
         CSVMetadataToDataObjectPackageImporter cmi = new CSVMetadataToDataObjectPackageImporter(onDiskPathString, encoding, separator, sedaLibProgressLogger);
+        cmi.setTechnicalElementsExtractor(technicalElementsExtractor);
 
         try {
             cmi.doImport();
@@ -719,6 +749,34 @@ public class SIPBuilder implements AutoCloseable {
      * @throws SEDALibException     the SEDA lib exception
      */
     public void generateSIP(boolean hierarchicalArchiveUnitsFlag, boolean indentedFlag) throws SEDALibException {
+        generateSIP(hierarchicalArchiveUnitsFlag, indentedFlag, false, null);
+    }
+
+    /**
+     * Generate SIP, validating the manifest while it is written, in the same serialization pass, with the SEDA 2.1
+     * schema or a profile. The generation fails as soon as the manifest is found not valid.
+     *
+     * @param hierarchicalArchiveUnitsFlag the hierarchical archive units flag
+     * @param indentedFlag                 the indented flag
+     * @param profileFileName              the profile file name, either RNG or XSD, or null for SEDA 2.1 validation
+     * @throws SEDALibException     the SEDA lib exception
+     */
+    public void generateValidatedSIP(boolean hierarchicalArchiveUnitsFlag, boolean indentedFlag, String profileFileName)
+            throws SEDALibException {
+        generateSIP(hierarchicalArchiveUnitsFlag, indentedFlag, true, profileFileName);
+    }
+
+    /**
+     * Generate SIP, validated or not.
+     *
+     * @param hierarchicalArchiveUnitsFlag the hierarchical archive units flag
+     * @param indentedFlag                 the indented flag
+     * @param validatedFlag                the validated flag
+     * @param profileFileName              the profile file name, or null for SEDA 2.1 validation
+     * @throws SEDALibException     the SEDA lib exception
+     */
+    private void generateSIP(boolean hierarchicalArchiveUnitsFlag, boolean indentedFlag, boolean validatedFlag,
+                             String profileFileName) throws SEDALibException {
         doProgressLogWithoutInterruption(sedaLibProgressLogger, SEDALibProgressLogger.GLOBAL, "sedalib: lancement de la génération du SIP", null);
         try {
             archiveTransfer.getDataObjectPackage().vitamNormalize(sedaLibProgressLogger);
@@ -728,6 +786,8 @@ public class SIPBuilder implements AutoCloseable {
             throw new SEDALibException("Le paquet SIP n'est pas constructible", e);
         }
         ArchiveTransferToSIPExporter sm = new ArchiveTransferToSIPExporter(archiveTransfer, sedaLibProgressLogger);
+        if (validatedFlag)
+            sm.setManifestValidation(profileFileName);
         try {
             sm.doExportToSEDASIP(sipPathString, hierarchicalArchiveUnitsFlag, indentedFlag);
         } catch (InterruptedException e) {
@@ -0,0 +1,675 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.inout;
+
+import fr.gouv.vitam.tools.sedalib.core.ArchiveTransfer;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.core.GlobalMetadata;
+import fr.gouv.vitam.tools.sedalib.inout.exporter.ZipCompressionPolicy;
+import fr.gouv.vitam.tools.sedalib.metadata.ArchiveUnitProfile;
+import fr.gouv.vitam.tools.sedalib.metadata.ManagementMetadata;
+import fr.gouv.vitam.tools.sedalib.metadata.content.Content;
+import fr.gouv.vitam.tools.sedalib.metadata.management.Management;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogIfStep;
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogWithoutInterruption;
+
+/**
+ * The Class StreamingSIPBuilder.
+ * <p>
+ * Class for constructing SIP from any java application, when the SIP is too big
+ * to be kept in memory as a whole DataObjectPackage, as {@link SIPBuilder} does.
+ * <p>
+ * DataObjectGroups and ArchiveUnits are appended one by one, and each one is
+ * written as soon as appended: its manifest XML fragment is spilled in a temporary
+ * file and its BinaryDataObjects files are directly written in the SIP zip. Only
+ * the ids are kept in memory, so that an ArchiveUnit id can't be appended twice
+ * and that the SIP is not generated while references to ArchiveUnits or
+ * DataObjectGroups are still not appended. When the SIP is generated, the
+ * manifest is assembled from the header, the spilled fragments and the footer and
+ * added to the zip. ArchiveUnits are always in the flat (non hierarchical)
+ * manifest layout.
+ * <p>
+ * As a write failure, or an interruption, may leave a truncated fragment, the
+ * SIP can't be completed after it: the next appends and the SIP generation fail.
+ * <p>
+ * The DataObjectGroup and BinaryDataObject ids are generated in the "IDxxx" form,
+ * and ArchiveUnit references in the "RefIDxxx" form, so these forms can't be used
+ * for the ArchiveUnit ids.
+ */
+public class StreamingSIPBuilder implements AutoCloseable {
+
+    /**
+     * The forbidden ArchiveUnit id pattern, as used for generated ids.
+     */
+    private static final Pattern GENERATED_ID_PATTERN = Pattern.compile("(Ref)?ID[0-9]+");
+
+    /**
+     * The max number of not appended references ids listed in the error message.
+     */
+    private static final int MAX_LISTED_IDS = 10;
+
+    /**
+     * The progress logger.
+     */
+    private SEDALibProgressLogger sedaLibProgressLogger;
+
+    /**
+     * The archive transfer, only used for global metadata, ids generation and
+     * manifest header and footer.
+     */
+    private ArchiveTransfer archiveTransfer;
+
+    /**
+     * The management metadata.
+     */
+    private ManagementMetadata managementMetadata;
+
+    /**
+     * The sip path string.
+     */
+    private String sipPathString;
+
+    /**
+     * The zip compression policy, deciding which BinaryDataObject files are
+     * compressed.
+     */
+    private ZipCompressionPolicy zipCompressionPolicy;
+
+    /**
+     * The temporary work directory, where the manifest fragments are spilled.
+     */
+    private Path workDir;
+
+    /**
+     * The DataObjects manifest fragments output stream.
+     */
+    private OutputStream objectsOutputStream;
+
+    /**
+     * The DataObjects manifest fragments writer.
+     */
+    private SEDAXMLStreamWriter objectsWriter;
+
+    /**
+     * The ArchiveUnits manifest fragments output stream.
+     */
+    private OutputStream archiveUnitsOutputStream;
+
+    /**
+     * The ArchiveUnits manifest fragments writer.
+     */
+    private SEDAXMLStreamWriter archiveUnitsWriter;
+
+    /**
+     * The SIP zip output stream.
+     */
+    private ZipArchiveOutputStream zipOutputStream;
+
+    /**
+     * The appended ArchiveUnit count.
+     */
+    private long archiveUnitCount;
+
+    /**
+     * The appended DataObjectGroup count.
+     */
+    private long dataObjectGroupCount;
+
+    /**
+     * The appended BinaryDataObject count.
+     */
+    private long binaryDataObjectCount;
+
+    /**
+     * The generated flag, true when the SIP is complete.
+     */
+    private boolean generatedFlag;
+
+    /**
+     * The write failure, latched when a manifest fragment or the SIP zip may have been left truncated, so that the
+     * SIP can't be completed anymore.
+     */
+    private SEDALibException writeFailure;
+
+    /**
+     * The appended ArchiveUnits ids.
+     */
+    private Set<String> archiveUnitIdSet;
+
+    /**
+     * The appended DataObjectGroups ids.
+     */
+    private Set<String> dataObjectGroupIdSet;
+
+    /**
+     * The referenced ArchiveUnits ids, not yet appended.
+     */
+    private Set<String> pendingArchiveUnitIdSet;
+
+    /**
+     * The referenced DataObjectGroups ids, not yet appended.
+     */
+    private Set<String> pendingDataObjectGroupIdSet;
+
+    /**
+     * Instantiates a new streaming SIP builder, opening the SIP file and the
+     * temporary manifest fragments files.
+     *
+     * @param sipPathString         the sip path string
+     * @param sedaLibProgressLogger the progress logger
+     * @throws SEDALibException if the SIP file or the temporary files can't be created
+     */
+    public StreamingSIPBuilder(String sipPathString, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException {
+        this.sipPathString = sipPathString;
+        this.sedaLibProgressLogger = sedaLibProgressLogger;
+        this.archiveTransfer = new ArchiveTransfer();
+        this.archiveTransfer.setGlobalMetadata(SIPBuilder.createDefaultGlobalMetadata("StreamingSIPBuilder generated"));
+        this.managementMetadata = new ManagementMetadata();
+        this.zipCompressionPolicy = new ZipCompressionPolicy();
+        this.archiveTransfer.getDataObjectPackage().resetIdCounter();
+        this.archiveTransfer.getDataObjectPackage().resetRefIdCounter();
+        this.archiveTransfer.getDataObjectPackage().resetInOutCounter();
+        this.archiveUnitIdSet = new HashSet<String>();
+        this.dataObjectGroupIdSet = new HashSet<String>();
+        this.pendingArchiveUnitIdSet = new HashSet<String>();
+        this.pendingDataObjectGroupIdSet = new HashSet<String>();
+
+        Path sipPath = Paths.get(sipPathString).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(sipPath.getParent());
+            workDir = Files.createTempDirectory(sipPath.getParent(), "sedalib-streaming");
+            objectsOutputStream = new BufferedOutputStream(Files.newOutputStream(workDir.resolve("objects.xml")));
+            objectsWriter = new SEDAXMLStreamWriter(objectsOutputStream, 0, true);
+            archiveUnitsOutputStream = new BufferedOutputStream(
+                    Files.newOutputStream(workDir.resolve("archiveunits.xml")));
+            archiveUnitsWriter = new SEDAXMLStreamWriter(archiveUnitsOutputStream, 0, true);
+            zipOutputStream = new ZipArchiveOutputStream(sipPath.toFile());
+        } catch (IOException e) {
+            SEDALibException sedaLibException = new SEDALibException("Impossible de créer le SIP ["
+                    + sipPathString + "]", e);
+            try {
+                close();
+            } catch (SEDALibException closeException) {
+                sedaLibException.addSuppressed(closeException);
+            }
+            throw sedaLibException;
+        }
+        doProgressLogWithoutInterruption(sedaLibProgressLogger, SEDALibProgressLogger.GLOBAL,
+                "sedalib: lancement de la construction en flux du SIP [" + sipPathString + "]", null);
+    }
+
+    /**
+     * Sets the zip compression policy, deciding which BinaryDataObject files are
+     * compressed in the SIP.
+     *
+     * @param zipCompressionPolicy the zip compression policy
+     */
+    public void setZipCompressionPolicy(ZipCompressionPolicy zipCompressionPolicy) {
+        this.zipCompressionPolicy = zipCompressionPolicy;
+    }
+
+    /**
+     * Sets the comment.
+     *
+     * @param comment the new comment
+     */
+    public void setComment(String comment) {
+        this.archiveTransfer.getGlobalMetadata().comment = comment;
+    }
+
+    /**
+     * Sets the message identifier.
+     *
+     * @param messageIdentifier the new message identifier
+     */
+    public void setMessageIdentifier(String messageIdentifier) {
+        this.archiveTransfer.getGlobalMetadata().messageIdentifier = messageIdentifier;
+    }
+
+    /**
+     * Sets all the agencies.
+     *
+     * @param archivalAgencyIdentifier     the archival agency identifier
+     * @param transferringAgencyIdentifier the transferring agency identifier
+     * @param originatingAgencyIdentifier  the originating agency identifier
+     * @param submissionAgencyIdentifier   the submission agency identifier
+     */
+    public void setAgencies(String archivalAgencyIdentifier, String transferringAgencyIdentifier,
+                            String originatingAgencyIdentifier, String submissionAgencyIdentifier) {
+        GlobalMetadata gm = archiveTransfer.getGlobalMetadata();
+        gm.archivalAgencyIdentifier = archivalAgencyIdentifier;
+        gm.transferringAgencyIdentifier = transferringAgencyIdentifier;
+        try {
+            managementMetadata.addNewMetadata("OriginatingAgencyIdentifier", originatingAgencyIdentifier);
+            managementMetadata.addNewMetadata("SubmissionAgencyIdentifier", submissionAgencyIdentifier);
+        } catch (SEDALibException ignored) {
+        }
+        archiveTransfer.getDataObjectPackage().setManagementMetadataXmlData(managementMetadata.toString());
+    }
+
+    /**
+     * Sets the archival agreement.
+     *
+     * @param archivalAgreement the new archival agreement
+     */
+    public void setArchivalAgreement(String archivalAgreement) {
+        this.archiveTransfer.getGlobalMetadata().archivalAgreement = archivalAgreement;
+    }
+
+    /**
+     * Verify that the SIP is still in construction.
+     *
+     * @throws SEDALibException if the SIP is already generated or closed, or a previous write has failed
+     */
+    private void verifyOpen() throws SEDALibException {
+        if (generatedFlag || (zipOutputStream == null))
+            throw new SEDALibException("Le SIP [" + sipPathString + "] n'est plus en construction");
+        if (writeFailure != null)
+            throw new SEDALibException("Le SIP [" + sipPathString + "] est inutilisable après un échec d'écriture",
+                    writeFailure);
+    }
+
+    /**
+     * Latch the write failure, the SIP being then unusable.
+     *
+     * @param failure the write failure
+     * @return the write failure
+     */
+    private SEDALibException latchWriteFailure(SEDALibException failure) {
+        if (writeFailure == null)
+            writeFailure = failure;
+        return failure;
+    }
+
+    /**
+     * Appends a DataObjectGroup with one file.
+     *
+     * @param onDiskPathString the file path string
+     * @param usageVersion     the usageVersion metadata in "usage_version" format
+     * @return the generated DataObjectGroup id, to be referenced by ArchiveUnits
+     * @throws SEDALibException     if file access problem or the SIP can't be written
+     * @throws InterruptedException if interrupted
+     */
+    public String appendFileDataObjectGroup(String onDiskPathString, String usageVersion)
+            throws SEDALibException, InterruptedException {
+        Map<String, String> files = new LinkedHashMap<String, String>();
+        files.put(usageVersion, onDiskPathString);
+        return appendDataObjectGroup(files);
+    }
+
+    /**
+     * Appends a DataObjectGroup with one BinaryDataObject by file. The
+     * BinaryDataObjects technical elements are extracted, the DataObjectGroup
+     * manifest fragment is spilled and the files are written in the SIP zip.
+     *
+     * @param filesByUsageVersion the files path strings by usageVersion metadata in
+     *                            "usage_version" format
+     * @return the generated DataObjectGroup id, to be referenced by ArchiveUnits
+     * @throws SEDALibException     if file access problem or the SIP can't be written
+     * @throws InterruptedException if interrupted
+     */
+    public String appendDataObjectGroup(Map<String, String> filesByUsageVersion)
+            throws SEDALibException, InterruptedException {
+        verifyOpen();
+        DataObjectPackage dataObjectPackage = archiveTransfer.getDataObjectPackage();
+        DataObjectGroup dog = new DataObjectGroup();
+        dog.setDataObjectPackage(dataObjectPackage);
+        dog.setInDataObjectPackageId(dataObjectPackage.getNextInDataObjectPackageID());
+        for (Map.Entry<String, String> file : filesByUsageVersion.entrySet()) {
+            Path path = Paths.get(file.getValue());
+            BinaryDataObject bdo = new BinaryDataObject(null, path, path.getFileName().toString(), file.getKey());
+            bdo.setDataObjectPackage(dataObjectPackage);
+            bdo.setInDataObjectPackageId(dataObjectPackage.getNextInDataObjectPackageID());
+            bdo.extractTechnicalElements(sedaLibProgressLogger);
+            dog.addDataObject(bdo);
+        }
+
+        boolean writtenFlag = false;
+        try {
+            // the manifest fragment first, as it defines the BinaryDataObjects uri
+            dog.toSedaXml(objectsWriter, sedaLibProgressLogger);
+            objectsWriter.flush();
+            for (BinaryDataObject bdo : dog.getBinaryDataObjectList()) {
+                ZipArchiveEntry e = new ZipArchiveEntry(bdo.uri.getValue());
+                e.setMethod(zipCompressionPolicy.isCompressible(bdo) ? ZipArchiveEntry.DEFLATED :
+                        ZipArchiveEntry.STORED);
+                zipOutputStream.putArchiveEntry(e);
+                try (InputStream is = bdo.getInputStream()) {
+                    IOUtils.copy(is, zipOutputStream);
+                }
+                zipOutputStream.closeArchiveEntry();
+                binaryDataObjectCount++;
+            }
+            writtenFlag = true;
+        } catch (XMLStreamException | IOException e) {
+            throw latchWriteFailure(new SEDALibException("Echec de l'écriture du DataObjectGroup ["
+                    + dog.getInDataObjectPackageId() + "] dans le SIP", e));
+        } finally {
+            // also when interrupted or failing in the middle of the manifest fragment
+            if (!writtenFlag)
+                latchWriteFailure(new SEDALibException("Ecriture interrompue du DataObjectGroup ["
+                        + dog.getInDataObjectPackageId() + "] dans le SIP"));
+        }
+        dataObjectGroupIdSet.add(dog.getInDataObjectPackageId());
+        pendingDataObjectGroupIdSet.remove(dog.getInDataObjectPackageId());
+        dataObjectGroupCount++;
+        doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, (int) dataObjectGroupCount,
+                "sedalib: " + dataObjectGroupCount + " DataObjectGroup ajoutés au SIP");
+        return dog.getInDataObjectPackageId();
+    }
+
+    /**
+     * Appends an ArchiveUnit, with a Content constructed with given description
+     * level, title and description.
+     *
+     * @param archiveUnitID       the archive unit ID
+     * @param descriptionLevel    the description level
+     * @param title               the title
+     * @param description         the description, or null
+     * @param childArchiveUnitIDs the child archive units IDs, or null
+     * @param dataObjectGroupIDs  the referenced DataObjectGroups IDs, or null
+     * @throws SEDALibException     if the ArchiveUnit id is not allowed or the SIP can't be written
+     * @throws InterruptedException if interrupted
+     */
+    public void appendArchiveUnit(String archiveUnitID, String descriptionLevel, String title, String description,
+                                  List<String> childArchiveUnitIDs, List<String> dataObjectGroupIDs)
+            throws SEDALibException, InterruptedException {
+        Content c = new Content();
+        c.addNewMetadata("DescriptionLevel", descriptionLevel);
+        c.addNewMetadata("Title", title);
+        if (description != null)
+            c.addNewMetadata("Description", description);
+        appendArchiveUnit(archiveUnitID, null, null, c, childArchiveUnitIDs, dataObjectGroupIDs);
+    }
+
+    /**
+     * Appends an ArchiveUnit, its manifest fragment being spilled at once. Its
+     * children ArchiveUnits and DataObjectGroups may be appended before or after.
+     *
+     * @param archiveUnitID       the archive unit ID
+     * @param archiveUnitProfile  the archive unit profile, or null
+     * @param management          the management metadata, or null
+     * @param content             the content metadata
+     * @param childArchiveUnitIDs the child archive units IDs, or null
+     * @param dataObjectGroupIDs  the referenced DataObjectGroups IDs, or null
+     * @throws SEDALibException     if the ArchiveUnit id is not allowed or already appended, there's no content or
+     *                              the SIP can't be written
+     * @throws InterruptedException if interrupted
+     */
+    public void appendArchiveUnit(String archiveUnitID, ArchiveUnitProfile archiveUnitProfile, Management management,
+                                  Content content, List<String> childArchiveUnitIDs, List<String> dataObjectGroupIDs)
+            throws SEDALibException, InterruptedException {
+        verifyOpen();
+        if ((archiveUnitID == null) || GENERATED_ID_PATTERN.matcher(archiveUnitID).matches())
+            throw new SEDALibException("L'identifiant d'ArchiveUnit [" + archiveUnitID + "] n'est pas utilisable");
+        if (content == null)
+            throw new SEDALibException("La partie <Content> de l'ArchiveUnit est obligatoire");
+        if (childArchiveUnitIDs == null)
+            childArchiveUnitIDs = Collections.emptyList();
+        if (dataObjectGroupIDs == null)
+            dataObjectGroupIDs = Collections.emptyList();
+        if (!archiveUnitIdSet.add(archiveUnitID))
+            throw new SEDALibException("L'identifiant d'ArchiveUnit [" + archiveUnitID + "] est déjà utilisé");
+        pendingArchiveUnitIdSet.remove(archiveUnitID);
+        for (String childArchiveUnitID : childArchiveUnitIDs)
+            if (!archiveUnitIdSet.contains(childArchiveUnitID))
+                pendingArchiveUnitIdSet.add(childArchiveUnitID);
+        for (String dataObjectGroupID : dataObjectGroupIDs)
+            if (!dataObjectGroupIdSet.contains(dataObjectGroupID))
+                pendingDataObjectGroupIdSet.add(dataObjectGroupID);
+
+        try {
+            archiveUnitsWriter.writeStartElement("ArchiveUnit");
+            archiveUnitsWriter.writeAttribute("id", archiveUnitID);
+            if (archiveUnitProfile != null)
+                archiveUnitsWriter.writeRawXMLBlockIfNotEmpty(archiveUnitProfile.toString());
+            if (management != null)
+                archiveUnitsWriter.writeRawXMLBlockIfNotEmpty(management.toString());
+            archiveUnitsWriter.writeRawXMLBlockIfNotEmpty(content.toString());
+            for (String childArchiveUnitID : childArchiveUnitIDs) {
+                archiveUnitsWriter.writeStartElement("ArchiveUnit");
+                archiveUnitsWriter.writeAttribute("id", archiveTransfer.getDataObjectPackage().getNextRefID());
+                archiveUnitsWriter.writeElementValue("ArchiveUnitRefId", childArchiveUnitID);
+                archiveUnitsWriter.writeEndElement();
+            }
+            for (String dataObjectGroupID : dataObjectGroupIDs) {
+                archiveUnitsWriter.writeStartElement("DataObjectReference");
+                archiveUnitsWriter.writeElementValue("DataObjectGroupReferenceId", dataObjectGroupID);
+                archiveUnitsWriter.writeEndElement();
+            }
+            archiveUnitsWriter.writeEndElement();
+            archiveUnitsWriter.flush();
+        } catch (XMLStreamException e) {
+            throw latchWriteFailure(new SEDALibException("Erreur d'écriture XML de l'ArchiveUnit ["
+                    + archiveUnitID + "]", e));
+        }
+        archiveUnitCount++;
+        doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, (int) archiveUnitCount,
+                "sedalib: " + archiveUnitCount + " ArchiveUnit ajoutées au SIP");
+    }
+
+    /**
+     * Verify context.
+     *
+     * @throws SEDALibException the SEDA lib exception
+     */
+    private void verifyContext() throws SEDALibException {
+        if (archiveTransfer.getGlobalMetadata().archivalAgencyIdentifier == null)
+            throw new SEDALibException("Element ArchivalAgencyIdentifier non défini");
+        if (archiveTransfer.getGlobalMetadata().transferringAgencyIdentifier == null)
+            throw new SEDALibException("Element TransferringAgencyIdentifier non défini");
+        if (managementMetadata.isMetadataLacking("OriginatingAgencyIdentifier"))
+            throw new SEDALibException("Element OriginatingAgencyIdentifier non défini");
+        if (managementMetadata.isMetadataLacking("SubmissionAgencyIdentifier"))
+            throw new SEDALibException("Element SubmissionAgencyIdentifier non défini");
+        if (archiveTransfer.getGlobalMetadata().archivalAgreement == null)
+            throw new SEDALibException("Element ArchivalAgreement non défini");
+        if (archiveUnitCount == 0)
+            throw new SEDALibException("Aucune ArchiveUnit dans le SIP");
+        if (!pendingArchiveUnitIdSet.isEmpty())
+            throw new SEDALibException("ArchiveUnits référencées mais non ajoutées au SIP "
+                    + listIds(pendingArchiveUnitIdSet));
+        if (!pendingDataObjectGroupIdSet.isEmpty())
+            throw new SEDALibException("DataObjectGroups référencés mais non ajoutés au SIP "
+                    + listIds(pendingDataObjectGroupIdSet));
+    }
+
+    /**
+     * List the ids, in a limited length string, for error messages.
+     *
+     * @param idSet the ids set
+     * @return the ids list string
+     */
+    private static String listIds(Set<String> idSet) {
+        StringBuilder sb = new StringBuilder("[");
+        Iterator<String> iterator = idSet.iterator();
+        for (int i = 0; (i < MAX_LISTED_IDS) && iterator.hasNext(); i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(iterator.next());
+        }
+        if (iterator.hasNext())
+            sb.append(", ... (").append(idSet.size()).append(" au total)");
+        return sb.append("]").toString();
+    }
+
+    /**
+     * Generate SIP, assembling the manifest from the spilled fragments and closing
+     * the SIP zip.
+     *
+     * @throws SEDALibException if the context is not complete, some referenced ArchiveUnits or DataObjectGroups are
+     *                          not appended, or the SIP can't be written
+     */
+    public void generateSIP() throws SEDALibException {
+        verifyOpen();
+        verifyContext();
+        doProgressLogWithoutInterruption(sedaLibProgressLogger, SEDALibProgressLogger.GLOBAL,
+                "sedalib: assemblage du manifest de " + archiveUnitCount + " ArchiveUnits et "
+                        + dataObjectGroupCount + " DataObjectGroups", null);
+        try {
+            objectsWriter.close();
+            objectsOutputStream.close();
+            objectsOutputStream = null;
+            archiveUnitsWriter.close();
+            archiveUnitsOutputStream.close();
+            archiveUnitsOutputStream = null;
+
+            ZipArchiveEntry e = new ZipArchiveEntry("manifest.xml");
+            e.setMethod(ZipArchiveEntry.DEFLATED);
+            zipOutputStream.putArchiveEntry(e);
+            try (SEDAXMLStreamWriter xmlWriter = new SEDAXMLStreamWriter(zipOutputStream, 0)) {
+                archiveTransfer.exportStartDocument(xmlWriter);
+                archiveTransfer.exportHeader(xmlWriter);
+                xmlWriter.writeStartElement("DataObjectPackage");
+                xmlWriter.writeRawXMLFile(workDir.resolve("objects.xml"));
+                xmlWriter.writeStartElement("DescriptiveMetadata");
+                xmlWriter.writeRawXMLFile(workDir.resolve("archiveunits.xml"));
+                xmlWriter.writeEndElement();
+                xmlWriter.writeRawXMLBlockIfNotEmpty(archiveTransfer.getDataObjectPackage()
+                        .getManagementMetadataXmlData());
+                xmlWriter.writeEndElement();
+                archiveTransfer.exportFooter(xmlWriter);
+                archiveTransfer.exportEndDocument(xmlWriter);
+            }
+            zipOutputStream.closeArchiveEntry();
+            zipOutputStream.close();
+            zipOutputStream = null;
+        } catch (XMLStreamException | IOException e) {
+            throw latchWriteFailure(new SEDALibException("Echec de l'assemblage du SIP [" + sipPathString + "]", e));
+        }
+        generatedFlag = true;
+        close();
+        doProgressLogWithoutInterruption(sedaLibProgressLogger, SEDALibProgressLogger.GLOBAL,
+                "sedalib: fichier sauvegardé (" + SEDALibProgressLogger.readableFileSize(
+                        new File(sipPathString).length()) + ") avec " + binaryDataObjectCount + " fichiers", null);
+    }
+
+    /**
+     * Gets the appended ArchiveUnit count.
+     *
+     * @return the ArchiveUnit count
+     */
+    public long getArchiveUnitCount() {
+        return archiveUnitCount;
+    }
+
+    /**
+     * Gets the appended DataObjectGroup count.
+     *
+     * @return the DataObjectGroup count
+     */
+    public long getDataObjectGroupCount() {
+        return dataObjectGroupCount;
+    }
+
+    /**
+     * Gets the appended BinaryDataObject count.
+     *
+     * @return the BinaryDataObject count
+     */
+    public long getBinaryDataObjectCount() {
+        return binaryDataObjectCount;
+    }
+
+    /**
+     * Close the stream, if any, keeping the first close error and adding the next ones as suppressed.
+     *
+     * @param closeable      the stream, or null
+     * @param firstException the first close error, or null if none
+     * @return the first close error, or null if none
+     */
+    private static IOException closeStream(Closeable closeable, IOException firstException) {
+        if (closeable == null)
+            return firstException;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            if (firstException == null)
+                return e;
+            firstException.addSuppressed(e);
+        }
+        return firstException;
+    }
+
+    /**
+     * Release the temporary files, and remove the incomplete SIP if not generated.
+     * All the files are released even if some can't be closed.
+     *
+     * @throws SEDALibException if some files can't be closed
+     */
+    @Override
+    public void close() throws SEDALibException {
+        IOException exception = closeStream(objectsOutputStream, null);
+        objectsOutputStream = null;
+        exception = closeStream(archiveUnitsOutputStream, exception);
+        archiveUnitsOutputStream = null;
+        if (zipOutputStream != null) {
+            exception = closeStream(zipOutputStream, exception);
+            zipOutputStream = null;
+            if (!generatedFlag)
+                //noinspection ResultOfMethodCallIgnored
+                new File(sipPathString).delete();
+        }
+        if (workDir != null) {
+            FileUtils.deleteQuietly(workDir.toFile());
+            workDir = null;
+        }
+        if (exception != null)
+            throw new SEDALibException("Echec de la fermeture des fichiers du SIP [" + sipPathString + "]", exception);
+    }
+}
@@ -30,24 +30,40 @@ package fr.gouv.vitam.tools.sedalib.inout.exporter;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveTransfer;
 import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
 import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
 import fr.gouv.vitam.tools.sedalib.xml.IndentXMLTool;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLValidatingOutputStream;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLValidator;
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.parallel.FileBasedScatterGatherBackingStore;
 import org.apache.commons.io.IOUtils;
 
 import javax.xml.stream.XMLStreamException;
+import javax.xml.validation.Schema;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DateFormat;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogIfStep;
@@ -60,6 +76,18 @@ import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgress
  */
 public class ArchiveTransferToSIPExporter {
 
+    /**
+     * The digest verification modes of BinaryDataObject files during SIP export.
+     */
+    public enum DigestVerificationMode {
+        /** No digest verification. */
+        NONE,
+        /** Digest verification, with a warning for each mismatch. */
+        WARN,
+        /** Digest verification, failing at first mismatch. */
+        FAIL
+    }
+
     /** The archiveTransfer. */
     protected ArchiveTransfer archiveTransfer;
 
@@ -81,6 +109,39 @@ public class ArchiveTransferToSIPExporter {
     /** The export mode. */
     private boolean manifestOnly;
 
+    /** The default number of threads compressing files in SIP export. */
+    public static final int DEFAULT_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+    /** The compressing threads counter, used for thread names. */
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    /**
+     * The number of threads compressing files in SIP export and rendering the flat manifest ArchiveUnits, 1 for
+     * doing it in the calling thread.
+     */
+    private int threadCount;
+
+    /** The zip compression policy, choosing files to compress or only store. */
+    private ZipCompressionPolicy zipCompressionPolicy;
+
+    /** The digest verification mode. */
+    private DigestVerificationMode digestVerificationMode;
+
+    /** The digest verification report of the last SIP export, null if not verified. */
+    private DigestVerificationReport digestVerificationReport;
+
+    /**
+     * The first digest mismatch error of the current SIP export in FAIL mode, shared with the compressing threads
+     * to abort all the pending files, null if not in FAIL mode.
+     */
+    private AtomicReference<IOException> digestFailure;
+
+    /** The schema the manifest is validated with while exported, null if not validated. */
+    private Schema validationSchema;
+
+    /** The RNG flag of the validation schema, false for a XSD one. */
+    private boolean validationRNGFlag;
+
     /**
      * Instantiates a new ArchiveTransfer to SIP exporter.
      *
@@ -90,24 +151,170 @@ public class ArchiveTransferToSIPExporter {
     public ArchiveTransferToSIPExporter(ArchiveTransfer archiveTransfer, SEDALibProgressLogger sedaLibProgressLogger) {
         this.archiveTransfer = archiveTransfer;
         this.sedaLibProgressLogger = sedaLibProgressLogger;
+        this.threadCount = DEFAULT_THREAD_COUNT;
+        this.zipCompressionPolicy = new ZipCompressionPolicy();
+        this.digestVerificationMode = DigestVerificationMode.NONE;
+        this.digestVerificationReport = null;
+        this.digestFailure = null;
+        this.validationSchema = null;
+        this.validationRNGFlag = false;
+    }
+
+    /**
+     * Sets the number of threads compressing files in SIP export and rendering the flat manifest ArchiveUnits, 1 for
+     * doing it in the calling thread.
+     *
+     * @param threadCount the thread count
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * Sets the zip compression policy, choosing files to compress or only store in SIP export.
+     *
+     * @param zipCompressionPolicy the zip compression policy
+     */
+    public void setZipCompressionPolicy(ZipCompressionPolicy zipCompressionPolicy) {
+        this.zipCompressionPolicy = zipCompressionPolicy;
     }
 
     /**
-     * Export SEDA XML manifest output stream.
+     * Sets the digest verification mode.
+     * <p>
+     * When verified, the digest of each BinaryDataObject file is computed, with the algorithm of its MessageDigest,
+     * while the file is written in the SIP, and compared to the MessageDigest value. In FAIL mode, the export is
+     * aborted as soon as a mismatch is found, even by a compressing thread.
+     *
+     * @param digestVerificationMode the digest verification mode
+     */
+    public void setDigestVerificationMode(DigestVerificationMode digestVerificationMode) {
+        this.digestVerificationMode = digestVerificationMode;
+    }
+
+    /**
+     * Gets the digest verification report of the last SIP export.
+     *
+     * @return the digest verification report, or null if digests were not verified
+     */
+    public DigestVerificationReport getDigestVerificationReport() {
+        return digestVerificationReport;
+    }
+
+    /**
+     * Sets the schema the manifest is validated with while exported, null for no validation.
+     * <p>
+     * The manifest is validated by another thread as it is written, in the same serialization pass, and the export
+     * fails as soon as the manifest is found not valid.
+     *
+     * @param validationSchema  the validation schema, or null
+     * @param validationRNGFlag true for a RNG schema, false for a XSD one
+     */
+    public void setManifestValidation(Schema validationSchema, boolean validationRNGFlag) {
+        this.validationSchema = validationSchema;
+        this.validationRNGFlag = validationRNGFlag;
+    }
+
+    /**
+     * Sets the profile, either RNG or XSD file, the manifest is validated with while exported, or the SEDA 2.1
+     * schema if the profile file name is null.
+     *
+     * @param profileFileName the profile file name, or null for SEDA 2.1 validation
+     * @throws SEDALibException if the schema can't be loaded
+     */
+    public void setManifestValidation(String profileFileName) throws SEDALibException {
+        SEDAXMLValidator sedaXMLValidator = new SEDAXMLValidator();
+        if (profileFileName == null)
+            setManifestValidation(sedaXMLValidator.getSEDASchema(), false);
+        else
+            setManifestValidation(sedaXMLValidator.getSchemaFromProfileFile(profileFileName),
+                    SEDAXMLValidator.isRNGProfile(profileFileName));
+    }
+
+    /**
+     * Open the BinaryDataObject file stream, verifying its digest when read if needed.
+     *
+     * @param bo the BinaryDataObject
+     * @return the input stream
+     * @throws IOException if the file can't be opened
+     */
+    private InputStream openBinaryDataObjectStream(BinaryDataObject bo) throws IOException {
+        checkDigestFailure();
+        InputStream is;
+        try {
+            is = bo.getInputStream();
+        } catch (SEDALibException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (digestVerificationReport == null)
+            return is;
+        String uri = bo.uri.getValue();
+        if ((bo.messageDigest == null) || (bo.messageDigest.getValue() == null)
+                || (bo.messageDigest.getAlgorithm() == null)) {
+            digestVerificationReport.addUnverified(uri);
+            return is;
+        }
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(bo.messageDigest.getAlgorithm());
+        } catch (NoSuchAlgorithmException e) {
+            digestVerificationReport.addUnverified(uri);
+            return is;
+        }
+        return new DigestVerifyingInputStream(is, uri, messageDigest, bo.messageDigest.getValue(),
+                digestVerificationReport, digestFailure);
+    }
+
+    /**
+     * Throw the first digest mismatch error, if any has been found in FAIL mode.
+     *
+     * @throws IOException the first digest mismatch error
+     */
+    private void checkDigestFailure() throws IOException {
+        if ((digestFailure != null) && (digestFailure.get() != null))
+            throw digestFailure.get();
+    }
+
+    /**
+     * Export SEDA XML manifest output stream, validating it at the same time if a validation schema is set.
+     * <p>
+     * In flat mode, the ArchiveUnits are rendered by threadCount threads and written in the same order, so the
+     * manifest is the same whatever the number of threads.
      *
      * @param os               the OutputStream
      * @param hierarchicalFlag the hierarchical flag
      * @param indentedFlag         the indentedFlag
-     * @throws SEDALibException     if writing has failed
+     * @throws SEDALibException     if writing has failed or the manifest is not valid
      * @throws InterruptedException if export process is interrupted
      */
     public void exportManifestOutputStream(OutputStream os, boolean hierarchicalFlag, boolean indentedFlag)
             throws SEDALibException, InterruptedException {
-        try (SEDAXMLStreamWriter ixsw = new SEDAXMLStreamWriter(os, (indentedFlag ? IndentXMLTool.STANDARD_INDENT : 0))) {
-            xmlWriter = ixsw;
-            archiveTransfer.toSedaXml(xmlWriter, hierarchicalFlag, sedaLibProgressLogger);
-        } catch (XMLStreamException e) {
-            throw new SEDALibException("Echec d'écriture XML du manifest", e);
+        SEDAXMLValidatingOutputStream vos = (validationSchema == null ? null :
+                new SEDAXMLValidatingOutputStream(os, validationSchema, validationRNGFlag));
+        DataObjectPackage dataObjectPackage = archiveTransfer.getDataObjectPackage();
+        int previousExportThreadCount = dataObjectPackage.getExportThreadCount();
+        dataObjectPackage.setExportThreadCount(threadCount);
+        try {
+            try (SEDAXMLStreamWriter ixsw = new SEDAXMLStreamWriter((vos == null ? os : vos),
+                    (indentedFlag ? IndentXMLTool.STANDARD_INDENT : 0))) {
+                xmlWriter = ixsw;
+                archiveTransfer.toSedaXml(xmlWriter, hierarchicalFlag, sedaLibProgressLogger);
+            }
+            if (vos != null) {
+                vos.finish();
+                doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP, "sedalib: manifest validé", null);
+            }
+        } catch (XMLStreamException | SEDALibException e) {
+            // a write failure may come from the validation abort
+            if ((vos != null) && (vos.getValidationException() != null))
+                throw vos.getValidationException();
+            if (e instanceof XMLStreamException)
+                throw new SEDALibException("Echec d'écriture XML du manifest", e);
+            throw (SEDALibException) e;
+        } finally {
+            dataObjectPackage.setExportThreadCount(previousExportThreadCount);
+            if (vos != null)
+                vos.abort();
         }
     }
 
@@ -180,6 +387,14 @@ public class ArchiveTransferToSIPExporter {
 
     /**
      * Do export the ArchiveTransfer to SEDA Submission Information Packet (SIP).
+     * <p>
+     * Files in incompressible formats, according to the zip compression policy, are stored as is. The others are
+     * compressed in parallel by threadCount threads, in temporary files in the export directory, and appended to
+     * the SIP after the stored ones.
+     * <p>
+     * If a digest verification mode is set, each file digest is verified while written, and the result is available
+     * in the digest verification report. In FAIL mode, the first mismatch, either in the calling thread or in a
+     * compressing one, aborts all the files still to be written.
      *
      * @param fileName         the file name
      * @param hierarchicalFlag the hierarchical flag
@@ -201,32 +416,69 @@ public class ArchiveTransferToSIPExporter {
         this.hierarchicalFlag = hierarchicalFlag;
         this.indentedFlag = indentedFlag;
         this.manifestOnly = false;
+        this.digestVerificationReport = (digestVerificationMode == DigestVerificationMode.NONE ? null :
+                new DigestVerificationReport());
+        this.digestFailure = (digestVerificationMode == DigestVerificationMode.FAIL ?
+                new AtomicReference<IOException>() : null);
 
         try {
             Files.createDirectories(Paths.get(fileName).toAbsolutePath().getParent());
         } catch (IOException e1) {
             throw new SEDALibException("Impossible de créer le répertoire [" + Paths.get(fileName).toAbsolutePath().getParent().toString() + "]", e1);
         }
-        try (ZipOutputStream zipout = new ZipOutputStream(new FileOutputStream(fileName))) {
-            ZipEntry e = new ZipEntry("manifest.xml");
+        File exportDir = Paths.get(fileName).toAbsolutePath().getParent().toFile();
+        ExecutorService executor = null;
+        ParallelScatterZipCreator scatterZipCreator = null;
+        List<File> scatterFiles = Collections.synchronizedList(new ArrayList<File>());
+        int compressedCounter = 0;
+        try (ZipArchiveOutputStream zipout = new ZipArchiveOutputStream(new File(fileName))) {
+            ZipArchiveEntry e = new ZipArchiveEntry("manifest.xml");
             // manifest
-            zipout.putNextEntry(e);
+            e.setMethod(ZipArchiveEntry.DEFLATED);
+            zipout.putArchiveEntry(e);
             exportManifestOutputStream(zipout, hierarchicalFlag, indentedFlag);
-            zipout.closeEntry();
+            zipout.closeArchiveEntry();
             doProgressLog(sedaLibProgressLogger,SEDALibProgressLogger.GLOBAL, "sedalib: manifest exporté", null);
-            // all binary objects
+            // all binary objects, stored ones directly written, compressed ones in parallel and appended at the end
+            if (threadCount > 1) {
+                executor = Executors.newFixedThreadPool(threadCount, r -> {
+                    Thread t = new Thread(r, "sedalib-zip-" + threadCounter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+                scatterZipCreator = new ParallelScatterZipCreator(executor, () -> {
+                    File scatterFile = File.createTempFile("sedalib-scatter", ".tmp", exportDir);
+                    scatterFiles.add(scatterFile);
+                    return new FileBasedScatterGatherBackingStore(scatterFile);
+                });
+            }
             if (archiveTransfer.getDataObjectPackage().getDataObjectGroupCount() > 0) {
                 for (Map.Entry<String, DataObjectGroup> pair : archiveTransfer.getDataObjectPackage()
                         .getDogInDataObjectPackageIdMap().entrySet()) {
                     DataObjectGroup og = pair.getValue();
                     if (og.getBinaryDataObjectList() != null) {
                         for (BinaryDataObject bo : og.getBinaryDataObjectList()) {
-                            e = new ZipEntry(bo.uri.getValue());
-                            zipout.putNextEntry(e);
-                            FileInputStream fis = new FileInputStream(bo.getOnDiskPath().toFile());
-                            IOUtils.copy(fis, zipout);
-                            fis.close();
-                            zipout.closeEntry();
+                            e = new ZipArchiveEntry(bo.uri.getValue());
+                            boolean compressible = zipCompressionPolicy.isCompressible(bo);
+                            e.setMethod(compressible ? ZipArchiveEntry.DEFLATED : ZipArchiveEntry.STORED);
+                            if (compressible && (scatterZipCreator != null)) {
+                                scatterZipCreator.addArchiveEntry(e, () -> {
+                                    try {
+                                        return openBinaryDataObjectStream(bo);
+                                    } catch (IOException ex) {
+                                        throw new UncheckedIOException(ex);
+                                    }
+                                });
+                                compressedCounter++;
+                            } else {
+                                zipout.putArchiveEntry(e);
+                                try (InputStream is = openBinaryDataObjectStream(bo)) {
+                                    IOUtils.copy(is, zipout);
+                                }
+                                zipout.closeArchiveEntry();
+                            }
+                            // stop at first mismatch, even found by a compressing thread
+                            checkDigestFailure();
                             counter++;
                             doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
                                     "sedalib: " + counter + " fichiers BinaryDataObject exportés");
@@ -234,8 +486,35 @@ public class ArchiveTransferToSIPExporter {
                     }
                 }
             }
+            if (scatterZipCreator != null) {
+                if (compressedCounter > 0)
+                    doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP,
+                            "sedalib: finalisation de la compression de " + compressedCounter + " fichiers BinaryDataObject", null);
+                scatterZipCreator.writeTo(zipout);
+            }
+        } catch (ExecutionException e) {
+            // the first mismatch is reported rather than the abort of the following files
+            Throwable cause = ((digestFailure != null) && (digestFailure.get() != null) ? digestFailure.get() :
+                    e.getCause());
+            throw new SEDALibException("Echec de l'export du SIP dans le fichier [" + fileName + "]", cause);
         } catch (IOException | SEDALibException e) {
             throw new SEDALibException("Echec de l'export du SIP dans le fichier [" + fileName + "]", e);
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
+            // remove temporary files left if export failed
+            for (File scatterFile : scatterFiles)
+                //noinspection ResultOfMethodCallIgnored
+                scatterFile.delete();
+        }
+
+        if (digestVerificationReport != null) {
+            for (DigestVerificationReport.Mismatch mismatch : digestVerificationReport.getMismatches())
+                doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_WARNINGS,
+                        "sedalib: empreinte non conforme du fichier " + mismatch.toString(), null);
+            doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP,
+                    "sedalib: " + digestVerificationReport.getVerifiedCount() + " empreintes de fichiers vérifiées dont "
+                            + digestVerificationReport.getMismatches().size() + " non conformes", null);
         }
 
         doProgressLog(sedaLibProgressLogger,SEDALibProgressLogger.GLOBAL, "sedalib: export d'un ArchiveTransfer dans un SIP terminé", null);
@@ -265,6 +544,8 @@ public class ArchiveTransferToSIPExporter {
 
         if ((start != null) && (end != null))
             result += "effectué en " + Duration.between(start, end).toString().substring(2) + "\n";
+        if (!manifestOnly && (digestVerificationReport != null))
+            result += digestVerificationReport.getSummary();
         return result;
     }
 }
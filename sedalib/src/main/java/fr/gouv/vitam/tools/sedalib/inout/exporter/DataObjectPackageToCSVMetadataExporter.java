@@ -631,7 +631,7 @@ public class DataObjectPackageToCSVMetadataExporter {
             for (BinaryDataObject bdo : objectList) {
                 filename = constructObjectFileName(auRelativePath, bdo, objectList.size() == 1);
                 if (fileExportFlag)
-                    copyFile(bdo.getOnDiskPath(), auRelativePath.resolve(filename));
+                    copyFile(bdo.getAvailableOnDiskPath(), auRelativePath.resolve(filename));
             }
         }
         return filename;
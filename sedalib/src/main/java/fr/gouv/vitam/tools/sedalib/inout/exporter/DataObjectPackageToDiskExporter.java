@@ -35,6 +35,7 @@ import mslinks.ShellLink;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.file.*;
@@ -281,10 +282,10 @@ public class DataObjectPackageToDiskExporter {
         for (DataObject zdo : archiveUnit.getDataObjectRefList().getDataObjectList()) {
             if (zdo instanceof DataObjectGroup) {
                 if (complexDataObjectRefList
-                        || (dataObjectPackage.isTouchedInDataObjectPackageId(zdo.getInDataObjectPackageId())))
+                        || (dataObjectPackage.isTouched((DataObjectGroup) zdo)))
                     dogPathStringMap.put((DataObjectGroup) zdo, emptyPath);
                 else
-                    dataObjectPackage.addTouchedInDataObjectPackageId(zdo.getInDataObjectPackageId());
+                    dataObjectPackage.addTouched((DataObjectGroup) zdo);
             }
         }
         for (ArchiveUnit childAu : archiveUnit.getChildrenAuList().getArchiveUnitList()) {
@@ -317,8 +318,8 @@ public class DataObjectPackageToDiskExporter {
             throw new SEDALibException("Collision de fichiers de représentation [" + targetOnDiskPath.toString()
                     + "] détectée sur le BinaryDataObject [" + bdo.getInDataObjectPackageId() + "]");
         filesPathSet.add(targetOnDiskPath);
-        try {
-            Files.copy(bdo.getOnDiskPath(), targetOnDiskPath, StandardCopyOption.REPLACE_EXISTING);
+        try (InputStream is = bdo.getInputStream()) {
+            Files.copy(is, targetOnDiskPath, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
             throw new SEDALibException("Ecriture du BinaryDataObject [" + bdo.getInDataObjectPackageId()
                     + "] impossible\n->" + e.getMessage());
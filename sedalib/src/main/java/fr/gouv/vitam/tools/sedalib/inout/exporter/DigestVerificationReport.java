@@ -0,0 +1,221 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.inout.exporter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Class DigestVerificationReport.
+ * <p>
+ * Class collecting the results of the BinaryDataObject files digest verification done while they are written in a
+ * SIP. Each file is either verified, with a computed digest equal or not to the one in the MessageDigest metadata,
+ * or unverified when it has no MessageDigest or an unknown digest algorithm.
+ * <p>
+ * Results can be added concurrently by compressing threads.
+ */
+public class DigestVerificationReport {
+
+    /**
+     * The Class Mismatch.
+     * <p>
+     * Class for one BinaryDataObject file which computed digest is not the one in its MessageDigest metadata.
+     */
+    public static class Mismatch {
+
+        /** The BinaryDataObject uri in the SIP. */
+        private final String uri;
+
+        /** The digest algorithm. */
+        private final String algorithm;
+
+        /** The expected digest, from MessageDigest metadata. */
+        private final String expectedDigest;
+
+        /** The digest computed on the file. */
+        private final String computedDigest;
+
+        /**
+         * Instantiates a new mismatch.
+         *
+         * @param uri            the BinaryDataObject uri
+         * @param algorithm      the digest algorithm
+         * @param expectedDigest the expected digest
+         * @param computedDigest the computed digest
+         */
+        public Mismatch(String uri, String algorithm, String expectedDigest, String computedDigest) {
+            this.uri = uri;
+            this.algorithm = algorithm;
+            this.expectedDigest = expectedDigest;
+            this.computedDigest = computedDigest;
+        }
+
+        /**
+         * Gets the BinaryDataObject uri in the SIP.
+         *
+         * @return the uri
+         */
+        public String getUri() {
+            return uri;
+        }
+
+        /**
+         * Gets the digest algorithm.
+         *
+         * @return the algorithm
+         */
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        /**
+         * Gets the expected digest.
+         *
+         * @return the expected digest
+         */
+        public String getExpectedDigest() {
+            return expectedDigest;
+        }
+
+        /**
+         * Gets the computed digest.
+         *
+         * @return the computed digest
+         */
+        public String getComputedDigest() {
+            return computedDigest;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return "[" + uri + "] empreinte " + algorithm + " attendue=" + expectedDigest + " calculée=" + computedDigest;
+        }
+    }
+
+    /** The verified files count. */
+    private int verifiedCount;
+
+    /** The unverified files uris. */
+    private final List<String> unverifiedUris;
+
+    /** The mismatches. */
+    private final List<Mismatch> mismatches;
+
+    /**
+     * Instantiates a new empty digest verification report.
+     */
+    public DigestVerificationReport() {
+        this.verifiedCount = 0;
+        this.unverifiedUris = new ArrayList<String>();
+        this.mismatches = new ArrayList<Mismatch>();
+    }
+
+    /**
+     * Adds a verified file, with or without digest mismatch.
+     *
+     * @param uri            the BinaryDataObject uri
+     * @param algorithm      the digest algorithm
+     * @param expectedDigest the expected digest
+     * @param computedDigest the computed digest
+     * @return the mismatch, or null if digests are equal
+     */
+    public synchronized Mismatch addVerified(String uri, String algorithm, String expectedDigest, String computedDigest) {
+        verifiedCount++;
+        if (computedDigest.equalsIgnoreCase(expectedDigest))
+            return null;
+        Mismatch mismatch = new Mismatch(uri, algorithm, expectedDigest, computedDigest);
+        mismatches.add(mismatch);
+        return mismatch;
+    }
+
+    /**
+     * Adds an unverified file.
+     *
+     * @param uri the BinaryDataObject uri
+     */
+    public synchronized void addUnverified(String uri) {
+        unverifiedUris.add(uri);
+    }
+
+    /**
+     * Gets the verified files count, mismatches included.
+     *
+     * @return the verified count
+     */
+    public synchronized int getVerifiedCount() {
+        return verifiedCount;
+    }
+
+    /**
+     * Gets the unverified files uris.
+     *
+     * @return the unverified uris list
+     */
+    public synchronized List<String> getUnverifiedUris() {
+        return Collections.unmodifiableList(new ArrayList<String>(unverifiedUris));
+    }
+
+    /**
+     * Gets the mismatches.
+     *
+     * @return the mismatches list
+     */
+    public synchronized List<Mismatch> getMismatches() {
+        return Collections.unmodifiableList(new ArrayList<Mismatch>(mismatches));
+    }
+
+    /**
+     * Checks if no verified file has a digest mismatch.
+     *
+     * @return true, if no mismatch
+     */
+    public synchronized boolean isConform() {
+        return mismatches.isEmpty();
+    }
+
+    /**
+     * Gets the summary of the digest verification.
+     *
+     * @return the summary String
+     */
+    public synchronized String getSummary() {
+        String result = "Vérification des empreintes: " + verifiedCount + " fichiers vérifiés dont "
+                + mismatches.size() + " non conformes, " + unverifiedUris.size() + " non vérifiables\n";
+        for (Mismatch mismatch : mismatches)
+            result += "  non conforme " + mismatch.toString() + "\n";
+        for (String uri : unverifiedUris)
+            result += "  non vérifiable [" + uri + "]\n";
+        return result;
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.inout.exporter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Formatter;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The Class DigestVerifyingInputStream.
+ * <p>
+ * Input stream computing the digest of the bytes read from the underlying stream, and comparing it, when the end of
+ * stream is reached, to the expected one. The result is added to the digest verification report and, in fail mode,
+ * a mismatch is thrown as an IOException on the read reaching the end of stream. In fail mode, the first mismatch
+ * is also shared by all the streams of the same export, so that the reads of the other files fail at once.
+ * <p>
+ * Used to verify BinaryDataObject files while they are written in a SIP, without any additional read.
+ */
+class DigestVerifyingInputStream extends FilterInputStream {
+
+    /** The BinaryDataObject uri in the SIP. */
+    private final String uri;
+
+    /** The message digest. */
+    private final MessageDigest messageDigest;
+
+    /** The expected digest in hexadecimal form. */
+    private final String expectedDigest;
+
+    /** The digest verification report. */
+    private final DigestVerificationReport digestVerificationReport;
+
+    /** The first mismatch error shared by the streams of the same export, or null if not in fail mode. */
+    private final AtomicReference<IOException> firstFailure;
+
+    /** The verified flag, set when the end of stream is reached. */
+    private boolean verifiedFlag;
+
+    /**
+     * Instantiates a new digest verifying input stream.
+     *
+     * @param in                       the underlying input stream
+     * @param uri                      the BinaryDataObject uri
+     * @param messageDigest            the message digest, for the expected digest algorithm
+     * @param expectedDigest           the expected digest in hexadecimal form
+     * @param digestVerificationReport the digest verification report
+     * @param firstFailure             the first mismatch error shared by the streams of the same export, or null if
+     *                                 not in fail mode
+     */
+    DigestVerifyingInputStream(InputStream in, String uri, MessageDigest messageDigest, String expectedDigest,
+                               DigestVerificationReport digestVerificationReport,
+                               AtomicReference<IOException> firstFailure) {
+        super(in);
+        this.uri = uri;
+        this.messageDigest = messageDigest;
+        this.expectedDigest = expectedDigest;
+        this.digestVerificationReport = digestVerificationReport;
+        this.firstFailure = firstFailure;
+        this.verifiedFlag = false;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.FilterInputStream#read()
+     */
+    @Override
+    public int read() throws IOException {
+        checkNoFailure();
+        int b = in.read();
+        if (b == -1)
+            verify();
+        else
+            messageDigest.update((byte) b);
+        return b;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.FilterInputStream#read(byte[], int, int)
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkNoFailure();
+        int count = in.read(b, off, len);
+        if (count == -1)
+            verify();
+        else
+            messageDigest.update(b, off, count);
+        return count;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.FilterInputStream#skip(long)
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        // skipped bytes have to be digested too
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int count = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+            if (count == -1)
+                break;
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.FilterInputStream#markSupported()
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Throw the first mismatch error, if any has been found by a stream of the same export in fail mode.
+     *
+     * @throws IOException the first mismatch error
+     */
+    private void checkNoFailure() throws IOException {
+        if ((firstFailure != null) && (firstFailure.get() != null))
+            throw new IOException("Export du fichier " + uri + " interrompu", firstFailure.get());
+    }
+
+    /**
+     * Compare, only once, the computed digest to the expected one and add the result to the report.
+     *
+     * @throws IOException if digests are different in fail mode
+     */
+    private void verify() throws IOException {
+        if (verifiedFlag)
+            return;
+        verifiedFlag = true;
+        String computedDigest;
+        try (Formatter formatter = new Formatter()) {
+            for (final byte b : messageDigest.digest()) {
+                formatter.format("%02x", b);
+            }
+            computedDigest = formatter.toString();
+        }
+        DigestVerificationReport.Mismatch mismatch = digestVerificationReport.addVerified(uri,
+                messageDigest.getAlgorithm(), expectedDigest, computedDigest);
+        if ((mismatch != null) && (firstFailure != null)) {
+            IOException failure = new IOException("Empreinte non conforme du fichier " + mismatch.toString());
+            firstFailure.compareAndSet(null, failure);
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.inout.exporter;
+
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The Class ZipCompressionPolicy.
+ * <p>
+ * Class for choosing, from the format identification of a BinaryDataObject, if its file has to be compressed in a
+ * ZIP container (DEFLATED entry) or only stored (STORED entry). Files in already compressed formats (JPEG, PNG,
+ * MP4, MP3, ZIP, Office Open XML...) gain almost nothing from compression, which is the main CPU cost of a SIP
+ * export.
+ * <p>
+ * PDF and OpenDocument files are compressed by default, as they often keep significant uncompressed parts (fonts,
+ * content streams, XML) and still gain 10 to 40% from compression.
+ * <p>
+ * A format is considered as incompressible if its PUID is in the PUID list, or if its MIME type is in the MIME type
+ * list or begins with one of the MIME type prefixes.
+ */
+public class ZipCompressionPolicy {
+
+    /** The default incompressible PUIDs. */
+    public static final List<String> DEFAULT_INCOMPRESSIBLE_PUIDS = Arrays.asList(
+            // JPEG, JPEG 2000
+            "fmt/41", "fmt/42", "fmt/43", "fmt/44", "fmt/645", "x-fmt/390", "x-fmt/391", "x-fmt/398", "fmt/392",
+            // PNG, GIF, WebP
+            "fmt/11", "fmt/12", "fmt/13", "fmt/3", "fmt/4", "fmt/566", "fmt/567", "fmt/568",
+            // MPEG-4, QuickTime, Matroska, MPEG audio and video, OGG
+            "fmt/199", "x-fmt/384", "fmt/569", "fmt/134", "fmt/649", "fmt/640", "fmt/946", "fmt/947",
+            // ZIP, GZIP, 7z, RAR, BZIP2
+            "x-fmt/263", "x-fmt/266", "fmt/484", "x-fmt/264", "fmt/411", "x-fmt/268",
+            // Office Open XML (ZIP based)
+            "fmt/189", "fmt/412", "fmt/214", "fmt/215");
+
+    /** The default incompressible MIME types. */
+    public static final List<String> DEFAULT_INCOMPRESSIBLE_MIME_TYPES = Arrays.asList(
+            "image/jpeg", "image/jp2", "image/png", "image/gif", "image/webp",
+            "application/zip", "application/gzip", "application/x-gzip",
+            "application/x-7z-compressed", "application/x-rar-compressed", "application/vnd.rar",
+            "application/x-bzip2", "application/epub+zip",
+            "audio/mpeg", "audio/mp4", "audio/aac", "audio/ogg", "audio/flac");
+
+    /** The default incompressible MIME type prefixes. */
+    public static final List<String> DEFAULT_INCOMPRESSIBLE_MIME_TYPE_PREFIXES = Arrays.asList(
+            "video/", "application/vnd.openxmlformats-officedocument.");
+
+    /** The incompressible PUIDs. */
+    private Set<String> incompressiblePuids;
+
+    /** The incompressible MIME types. */
+    private Set<String> incompressibleMimeTypes;
+
+    /** The incompressible MIME type prefixes. */
+    private List<String> incompressibleMimeTypePrefixes;
+
+    /**
+     * Instantiates a new zip compression policy with default incompressible formats.
+     */
+    public ZipCompressionPolicy() {
+        this(DEFAULT_INCOMPRESSIBLE_PUIDS, DEFAULT_INCOMPRESSIBLE_MIME_TYPES, DEFAULT_INCOMPRESSIBLE_MIME_TYPE_PREFIXES);
+    }
+
+    /**
+     * Instantiates a new zip compression policy.
+     *
+     * @param incompressiblePuids            the incompressible PUIDs
+     * @param incompressibleMimeTypes        the incompressible MIME types
+     * @param incompressibleMimeTypePrefixes the incompressible MIME type prefixes
+     */
+    public ZipCompressionPolicy(List<String> incompressiblePuids, List<String> incompressibleMimeTypes,
+                                List<String> incompressibleMimeTypePrefixes) {
+        this.incompressiblePuids = new HashSet<String>(incompressiblePuids);
+        this.incompressibleMimeTypes = new HashSet<String>(incompressibleMimeTypes);
+        this.incompressibleMimeTypePrefixes = incompressibleMimeTypePrefixes;
+    }
+
+    /**
+     * Gets a zip compression policy compressing all files, as done before format-aware export.
+     *
+     * @return the zip compression policy
+     */
+    public static ZipCompressionPolicy compressAll() {
+        return new ZipCompressionPolicy(Collections.<String>emptyList(), Collections.<String>emptyList(),
+                Collections.<String>emptyList());
+    }
+
+    /**
+     * Checks if a BinaryDataObject file is worth compressing, according to its format identification.
+     *
+     * @param bdo the BinaryDataObject
+     * @return true, if the file has to be compressed
+     */
+    public boolean isCompressible(BinaryDataObject bdo) {
+        if (bdo.formatIdentification == null)
+            return true;
+        String puid = bdo.formatIdentification.getSimpleMetadata("FormatId");
+        if ((puid != null) && incompressiblePuids.contains(puid))
+            return false;
+        String mimeType = bdo.formatIdentification.getSimpleMetadata("MimeType");
+        if (mimeType == null)
+            return true;
+        mimeType = mimeType.toLowerCase();
+        if (incompressibleMimeTypes.contains(mimeType))
+            return false;
+        for (String prefix : incompressibleMimeTypePrefixes)
+            if (mimeType.startsWith(prefix))
+                return false;
+        return true;
+    }
+}
@@ -34,6 +34,9 @@ import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
 import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
 import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.metadata.SEDAMetadata;
+import fr.gouv.vitam.tools.sedalib.metadata.content.Content;
+import fr.gouv.vitam.tools.sedalib.metadata.management.Management;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
 
@@ -46,8 +49,10 @@ import java.nio.file.Paths;
 import java.text.DateFormat;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
@@ -149,6 +154,16 @@ public class CSVMetadataToDataObjectPackageImporter {
 
     private Map<String, Line> linesMap;
 
+    /**
+     * The BinaryDataObjects created from csv lines, whose technical elements are to be extracted.
+     */
+    private List<BinaryDataObject> bdoToExtractList;
+
+    /**
+     * The extractor used for BinaryDataObjects technical elements.
+     */
+    private TechnicalElementsExtractor technicalElementsExtractor;
+
     /**
      * The progress logger.
      */
@@ -173,6 +188,17 @@ public class CSVMetadataToDataObjectPackageImporter {
         this.sedaLibProgressLogger = sedaLibProgressLogger;
         this.encoding = encoding;
         this.separator = separator;
+        this.technicalElementsExtractor = new TechnicalElementsExtractor();
+    }
+
+    /**
+     * Sets the extractor used for BinaryDataObjects technical elements, to define the number of threads used to
+     * analyse files.
+     *
+     * @param technicalElementsExtractor the technical elements extractor
+     */
+    public void setTechnicalElementsExtractor(TechnicalElementsExtractor technicalElementsExtractor) {
+        this.technicalElementsExtractor = technicalElementsExtractor;
     }
 
     /**
@@ -224,17 +250,14 @@ public class CSVMetadataToDataObjectPackageImporter {
         au.setInDataObjectPackageId(line.guid);
         dataObjectPackage.addArchiveUnit(au);
 
-        au.setContentXmlData(line.contentXMLMetadata);
-        au.getContent();
-        if (!line.managementXMLMetadata.isEmpty()) {
-            au.setManagementXmlData(line.managementXMLMetadata);
-            au.getManagement();
-        }
+        au.setContent((Content) SEDAMetadata.fromString(line.contentXMLMetadata, Content.class));
+        if (!line.managementXMLMetadata.isEmpty())
+            au.setManagement((Management) SEDAMetadata.fromString(line.managementXMLMetadata, Management.class));
         Path path = Paths.get(line.file);
         if (Files.isRegularFile(path)) {
             bdo = new BinaryDataObject(dataObjectPackage, path, path.getFileName().toString(),
                     "BinaryMaster_1");
-            bdo.extractTechnicalElements(sedaLibProgressLogger);
+            bdoToExtractList.add(bdo);
             au.addDataObjectById(bdo.getInDataObjectPackageId());
         }
         return au;
@@ -281,6 +304,7 @@ public class CSVMetadataToDataObjectPackageImporter {
 
         boolean needIdRegeneration = readCSVFile();
         dataObjectPackage = new DataObjectPackage();
+        bdoToExtractList = new ArrayList<BinaryDataObject>();
 
         int lineCount=0;
         for (Map.Entry<String, Line> e : linesMap.entrySet()) {
@@ -289,6 +313,8 @@ public class CSVMetadataToDataObjectPackageImporter {
             lineCount++;
             doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, lineCount, "sedalib: "+ lineCount + " ArchiveUnit importées");
         }
+        technicalElementsExtractor.extractTechnicalElements(bdoToExtractList, sedaLibProgressLogger);
+        bdoToExtractList = null;
 
         dataObjectPackage.vitamNormalize(sedaLibProgressLogger);
         if (needIdRegeneration)
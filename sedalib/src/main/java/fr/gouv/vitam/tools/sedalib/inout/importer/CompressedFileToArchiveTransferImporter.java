@@ -126,6 +126,11 @@ public class CompressedFileToArchiveTransferImporter {
      */
     private SEDALibProgressLogger sedaLibProgressLogger;
 
+    /**
+     * The zip file extractor, used for zip containers.
+     */
+    private ZipFileExtractor zipFileExtractor;
+
     /**
      * The constant ZIP.
      */
@@ -169,12 +174,9 @@ public class CompressedFileToArchiveTransferImporter {
         }
     }
 
-    private ArchiveInputStream createArchiveInputStream(String filename)
-            throws SEDALibException, InterruptedException {
+    private String getMimeType(String filename) throws SEDALibException, InterruptedException {
         Path onDiskPath = null;
         String mimeType;
-        FileInputStream fis;
-        ArchiveInputStream ais;
 
         try {
             onDiskPath = Paths.get(filename);
@@ -184,6 +186,15 @@ public class CompressedFileToArchiveTransferImporter {
             throw new SEDALibException("Impossible de faire l'identification de format Droid pour le fichier compressé ["
                     + onDiskPath.toString() + "]", e);
         }
+        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.GLOBAL,"mimetype=" + mimeType, null);
+        return mimeType;
+    }
+
+    private ArchiveInputStream createArchiveInputStream(String filename, String mimeType)
+            throws SEDALibException {
+        Path onDiskPath = Paths.get(filename);
+        FileInputStream fis;
+        ArchiveInputStream ais;
 
         try {
             fis = new FileInputStream(filename);
@@ -208,15 +219,31 @@ public class CompressedFileToArchiveTransferImporter {
             throw new SEDALibException("Impossible d'ouvrir le fichier compressé ["
                     + onDiskPath.toString() + "]", e);
         }
-        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.GLOBAL,"mimetype=" + mimeType, null);
         return ais;
     }
 
     private void unCompressContainer(String containerFile, String outputFolder)
             throws SEDALibException, InterruptedException {
         int counter = 0;
+        String mimeType = getMimeType(containerFile);
+
+        // zip entries are extracted concurrently through the central directory
+        if (ZIP.equals(mimeType)) {
+            List<String> renamedEntryNames = new ArrayList<String>();
+            zipFileExtractor.extract(containerFile, encoding, outputFolder, entryName -> {
+                if (entryName.contains("?")) {
+                    entryName = entryName.replace("?", "_");
+                    renamedEntryNames.add(entryName);
+                }
+                return entryName;
+            }, sedaLibProgressLogger);
+            for (String entryName : renamedEntryNames)
+                doProgressLog(sedaLibProgressLogger,SEDALibProgressLogger.GLOBAL,
+                        "Le nom du fichier [" + entryName + "] a un problème d'encodage, le(s) caratère(s) problématique à été rempalcé par _ ", null);
+            return;
+        }
 
-        try (final ArchiveInputStream archiveInputStream = createArchiveInputStream(containerFile)) {
+        try (final ArchiveInputStream archiveInputStream = createArchiveInputStream(containerFile, mimeType)) {
             ArchiveEntry entry;
 
             outputFolder = Paths.get(outputFolder).toAbsolutePath().normalize().toString();
@@ -277,6 +304,7 @@ public class CompressedFileToArchiveTransferImporter {
         this.encoding=encoding;
         this.ignorePatternStrings = new ArrayList<String>();
         this.onDiskRootPaths = new ArrayList<Path>();
+        this.zipFileExtractor = new ZipFileExtractor();
 
         zipFilePath = Paths.get(zipFile);
         if (!Files.isRegularFile(zipFilePath, java.nio.file.LinkOption.NOFOLLOW_LINKS))
@@ -293,6 +321,15 @@ public class CompressedFileToArchiveTransferImporter {
             throw new SEDALibException("Le chemin [" + unCompressDirectory + "] pointant le répertoire d'extraction ne désigne pas un répertoire");
     }
 
+    /**
+     * Sets the number of threads extracting the files of zip containers, 1 for extraction in the calling thread.
+     *
+     * @param threadCount the thread count
+     */
+    public void setThreadCount(int threadCount) {
+        this.zipFileExtractor = new ZipFileExtractor(threadCount, ZipFileExtractor.DEFAULT_QUEUE_SIZE);
+    }
+
     /**
      * Adds the ignore pattern string.
      *
@@ -392,6 +429,8 @@ public class CompressedFileToArchiveTransferImporter {
             if (start != null)
                 result += "chargé en "
                         + Duration.between(start, end).toString().substring(2) + "\n";
+            if (zipFileExtractor.getDuration() != null)
+                result += zipFileExtractor.getSummary() + "\n";
         }
         return result;
     }
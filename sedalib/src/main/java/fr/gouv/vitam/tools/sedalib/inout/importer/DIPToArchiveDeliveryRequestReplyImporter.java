@@ -30,6 +30,7 @@ package fr.gouv.vitam.tools.sedalib.inout.importer;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveDeliveryRequestReply;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.xml.CompactXMLDataManifestSource;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
@@ -40,6 +41,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -85,6 +87,11 @@ public class DIPToArchiveDeliveryRequestReplyImporter {
      */
     private SEDALibProgressLogger sedaLibProgressLogger;
 
+    /**
+     * The metadata in manifest flag, true if the ArchiveUnit metadata are kept as byte ranges in the manifest file.
+     */
+    private boolean metadataInManifestFlag;
+
     /**
      * Unzip file.
      *
@@ -184,6 +191,17 @@ public class DIPToArchiveDeliveryRequestReplyImporter {
         this.sedaLibProgressLogger = sedaLibProgressLogger;
     }
 
+    /**
+     * Sets the metadata in manifest flag. If true, the ArchiveUnit metadata are not copied in memory during import
+     * but kept as byte ranges in the manifest file, and only read when needed. The manifest file has then to stay
+     * unchanged in the uncompress directory while the ArchiveDeliveryRequestReply is used.
+     *
+     * @param metadataInManifestFlag the metadata in manifest flag
+     */
+    public void setMetadataInManifestFlag(boolean metadataInManifestFlag) {
+        this.metadataInManifestFlag = metadataInManifestFlag;
+    }
+
     /**
      * Do import the SEDA DIP to ArchiveDeliveryRequestReply.
      *
@@ -203,19 +221,46 @@ public class DIPToArchiveDeliveryRequestReplyImporter {
 
         manifest = unZipDip(zipFile, unCompressDirectory);
 
-        try (FileInputStream fis = new FileInputStream(unCompressDirectory + File.separator + manifest);
-             SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(fis)) {
+        Path manifestPath = Paths.get(unCompressDirectory + File.separator + manifest);
+        // the source stays open with the DataObjectPackage which blocks are kept in the manifest
+        CompactXMLDataManifestSource manifestSource = (metadataInManifestFlag ?
+                new CompactXMLDataManifestSource(manifestPath) : null);
+        try (InputStream is = (manifestSource != null ? null : Files.newInputStream(manifestPath));
+             SEDAXMLEventReader xmlReader = (is == null ?
+                     new SEDAXMLEventReader(manifestSource) :
+                     new SEDAXMLEventReader(is))) {
             archiveDeliveryRequestReply = ArchiveDeliveryRequestReply.fromSedaXml(xmlReader, unCompressDirectory,
                     sedaLibProgressLogger);
+            if (manifestSource != null)
+                archiveDeliveryRequestReply.getDataObjectPackage().addManifestSource(manifestSource);
         } catch (XMLStreamException | IOException e) {
+            closeManifestSource(manifestSource, e);
             throw new SEDALibException(
                     "Impossible d'importer le fichier [" + manifest + "] comme manifest du DIP", e);
+        } catch (SEDALibException | InterruptedException | RuntimeException e) {
+            closeManifestSource(manifestSource, e);
+            throw e;
         }
 
         end = Instant.now();
         doProgressLog(sedaLibProgressLogger,SEDALibProgressLogger.GLOBAL, "sedalib: import du DIP terminé", null);
     }
 
+    /**
+     * Close the manifest source after an import failure.
+     *
+     * @param manifestSource the manifest source, or null if none
+     * @param e              the import failure, to which the close failure is added
+     */
+    private static void closeManifestSource(CompactXMLDataManifestSource manifestSource, Exception e) {
+        if (manifestSource != null)
+            try {
+                manifestSource.close();
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+    }
+
     /**
      * Gets the ArchiveDeliveryRequestReply.
      *
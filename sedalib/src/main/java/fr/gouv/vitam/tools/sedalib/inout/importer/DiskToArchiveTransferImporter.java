@@ -223,6 +223,16 @@ public class DiskToArchiveTransferImporter {
         diskToDataObjectPackageImporter.addIgnorePattern(patternString);
     }
 
+    /**
+     * Sets the extractor used for BinaryDataObjects technical elements, to define the number of threads used to
+     * analyse files.
+     *
+     * @param technicalElementsExtractor the technical elements extractor
+     */
+    public void setTechnicalElementsExtractor(TechnicalElementsExtractor technicalElementsExtractor) {
+        diskToDataObjectPackageImporter.setTechnicalElementsExtractor(technicalElementsExtractor);
+    }
+
     /**
      * Process the GlobalMetadata file.
      *
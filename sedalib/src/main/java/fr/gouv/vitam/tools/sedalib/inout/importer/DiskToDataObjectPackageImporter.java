@@ -215,6 +215,11 @@ public class DiskToDataObjectPackageImporter {
      */
     private SEDALibProgressLogger sedaLibProgressLogger;
 
+    /**
+     * The extractor used for BinaryDataObjects technical elements.
+     */
+    private TechnicalElementsExtractor technicalElementsExtractor;
+
     private DiskToDataObjectPackageImporter(boolean noLinkFlag, Function<String, String> extractTitleFromFileNameFunction,
                                             SEDALibProgressLogger sedaLibProgressLogger) {
         this.onDiskRootPaths = new ArrayList<Path>();
@@ -232,6 +237,7 @@ public class DiskToDataObjectPackageImporter {
 
         this.inCounter = 0;
         this.sedaLibProgressLogger = sedaLibProgressLogger;
+        this.technicalElementsExtractor = new TechnicalElementsExtractor();
     }
 
     /**
@@ -312,6 +318,16 @@ public class DiskToDataObjectPackageImporter {
         dataObjectPackage = new DataObjectPackage();
     }
 
+    /**
+     * Sets the extractor used for BinaryDataObjects technical elements, to define the number of threads used to
+     * analyse files.
+     *
+     * @param technicalElementsExtractor the technical elements extractor
+     */
+    public void setTechnicalElementsExtractor(TechnicalElementsExtractor technicalElementsExtractor) {
+        this.technicalElementsExtractor = technicalElementsExtractor;
+    }
+
     /**
      * Adds the ignore pattern.
      *
@@ -388,7 +404,7 @@ public class DiskToDataObjectPackageImporter {
 
         try (FileInputStream bais = new FileInputStream(path.toFile());
              SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
-            xmlReader.nextUsefullEvent();
+            xmlReader.skipNextUsefullEvent();
             xmlData = xmlReader.nextBlockAsStringIfNamed("ManagementMetadata");
         } catch (XMLStreamException | SEDALibException | IOException e) {
             throw new SEDALibException("Lecture des métadonnées globales à partir du fichier [" + path
@@ -891,14 +907,7 @@ public class DiskToDataObjectPackageImporter {
                     + nextPath.toString() + "]",e);
         }
 
-        inCounter = 0;
-        for (Map.Entry<String, BinaryDataObject> pair : dataObjectPackage.getBdoInDataObjectPackageIdMap().entrySet()) {
-            if (pair.getValue().fileInfo.getSimpleMetadata("LastModified") == null)
-                pair.getValue().extractTechnicalElements(sedaLibProgressLogger);
-            inCounter++;
-            doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, inCounter, "sedalib: " + inCounter +
-                        " fichiers BinaryDataObject analysés");
-        }
+        inCounter = technicalElementsExtractor.extractTechnicalElements(dataObjectPackage, sedaLibProgressLogger);
         doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP, "sedalib: "+ inCounter + " fichiers BinaryDataObject analysés et importés dans le DataObjectPackage", null);
         end = Instant.now();
     }
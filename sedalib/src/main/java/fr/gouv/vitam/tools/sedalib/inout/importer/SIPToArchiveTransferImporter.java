@@ -28,18 +28,16 @@
 package fr.gouv.vitam.tools.sedalib.inout.importer;
 
 import fr.gouv.vitam.tools.sedalib.core.ArchiveTransfer;
+import fr.gouv.vitam.tools.sedalib.core.ZipContentSource;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import fr.gouv.vitam.tools.sedalib.xml.CompactXMLDataManifestSource;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
-import org.apache.commons.compress.archivers.ArchiveEntry;
-import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
-import org.apache.commons.io.IOUtils;
 
 import javax.xml.stream.XMLStreamException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -47,9 +45,9 @@ import java.text.DateFormat;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
+import java.util.List;
 
 import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
-import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogIfStep;
 
 /**
  * The Class SIPToArchiveTransferImporter.
@@ -84,6 +82,26 @@ public class SIPToArchiveTransferImporter {
      */
     private SEDALibProgressLogger sedaLibProgressLogger;
 
+    /**
+     * The lazy extraction flag, true if BinaryDataObject files stay in the SIP and are extracted only when needed.
+     */
+    private boolean lazyExtractionFlag;
+
+    /**
+     * The metadata objects flag, true if the ArchiveUnit metadata are directly read as objects from the manifest.
+     */
+    private boolean metadataObjectsFlag;
+
+    /**
+     * The metadata in manifest flag, true if the ArchiveUnit metadata are kept as byte ranges in the manifest file.
+     */
+    private boolean metadataInManifestFlag;
+
+    /**
+     * The zip file extractor.
+     */
+    private ZipFileExtractor zipFileExtractor;
+
     /**
      * Unzip file.
      *
@@ -96,59 +114,43 @@ public class SIPToArchiveTransferImporter {
      */
     public String unZipSip(String zipFile, String outputFolder) throws SEDALibException, InterruptedException {
         String manifest = null;
-        int counter = 0;
-        try (FileInputStream fis = new FileInputStream(zipFile);
-             ZipArchiveInputStream zais = new ZipArchiveInputStream(fis)) {
-            // create output directory is not exists
-            File folder = new File(outputFolder);
-            if (!folder.exists()) {
-                //noinspection ResultOfMethodCallIgnored
-                folder.mkdir();
+        // change any case ConTenT to lowercase content on import as in fromSEDA in
+        // BinaryDataObject
+        List<String> fileNames = zipFileExtractor.extract(zipFile, "UTF-8", outputFolder,
+                ZipContentSource::getNormalizedEntryName, sedaLibProgressLogger);
+        for (String fileName : fileNames) {
+            if (fileName.toLowerCase().matches("[^/\\\\]*manifest.*\\.xml")) {
+                if (manifest != null)
+                    throw new SEDALibException("SIP mal formé, plusieurs fichiers manifest potentiels");
+                manifest = fileName;
             }
-            // get the zipped file list entry
-            ArchiveEntry ze;
-            while ((ze = zais.getNextEntry()) != null) {
-                String fileName = ze.getName().trim();
-                // change any case ConTenT to lowercase content on import as in fromSEDA in
-                // BinaryDataObject
-                if (fileName.toLowerCase().startsWith("content"))
-                    fileName = "content" + fileName.substring(7);
-
-                Path newPath = Paths.get(outputFolder + File.separator + fileName);
-
-                if (fileName.endsWith("/")) {
-                    if (!Files.exists(newPath))
-                        Files.createDirectories(newPath);
-                } else {
-                    if (fileName.toLowerCase().matches("[^/\\\\]*manifest.*\\.xml")) {
-                        if (manifest != null)
-                            throw new SEDALibException("SIP mal formé, plusieurs fichiers manifest potentiels");
-                        manifest = fileName;
-                        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS, "sedalib: unzip manifest [" + zipFile + "]",null);
-                    } else
-                        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS, "sedalib: unzip fichier [" + zipFile + "]", null);
-
-                    // create all non exists folders
-                    // else you will hit FileNotFoundException for compressed folder
-                    if (!Files.exists(newPath.getParent()))
-                        Files.createDirectories(newPath.getParent());
-
-                    FileOutputStream fos = new FileOutputStream(newPath.toFile());
-                    IOUtils.copy(zais, fos);
-                    counter++;
-                    doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter, Integer.toString(counter) +
-                            " fichiers extraits");
-                    fos.close();
-                }
+        }
+        if (manifest == null)
+            throw new SEDALibException("SIP mal formé, pas de manifest");
+        return manifest;
+    }
+
+    /**
+     * Find the manifest in the SIP central directory, without extracting anything.
+     *
+     * @param zipContentSource the SIP zip content source
+     * @return the manifest normalized name
+     * @throws SEDALibException     zip reading problem or lack of manifest file
+     *                              (name has to begin by manifest in any case)
+     * @throws InterruptedException if import process is interrupted
+     */
+    private String findManifest(ZipContentSource zipContentSource) throws SEDALibException, InterruptedException {
+        String manifest = null;
+        for (String fileName : zipContentSource.getNormalizedEntryNames()) {
+            if (fileName.toLowerCase().matches("[^/\\\\]*manifest.*\\.xml")) {
+                if (manifest != null)
+                    throw new SEDALibException("SIP mal formé, plusieurs fichiers manifest potentiels");
+                manifest = fileName;
             }
-        } catch (IOException ex) {
-            throw new SEDALibException("Impossible de décompresser le fichier [" + zipFile + "] dans le répertoire ["
-                    + outputFolder + "]", ex);
         }
-        doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter, "sedalib: "+ counter +
-                " fichiers extraits");
         if (manifest == null)
             throw new SEDALibException("SIP mal formé, pas de manifest");
+        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS, "sedalib: lecture directe du manifest [" + zipFile + "]", null);
         return manifest;
     }
 
@@ -179,6 +181,88 @@ public class SIPToArchiveTransferImporter {
         this.zipFile = zipFile;
         this.unCompressDirectory = unCompressDirectoryPath.normalize().toString();
         this.sedaLibProgressLogger = sedaLibProgressLogger;
+        this.lazyExtractionFlag = false;
+        this.zipFileExtractor = new ZipFileExtractor();
+    }
+
+    /**
+     * Sets the number of threads extracting the SIP files, 1 for extraction in the calling thread.
+     *
+     * @param threadCount the thread count
+     */
+    public void setThreadCount(int threadCount) {
+        this.zipFileExtractor = new ZipFileExtractor(threadCount, ZipFileExtractor.DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Sets the lazy extraction flag. If true, the manifest is read directly in the SIP and the BinaryDataObject
+     * files are not extracted during import, but stay in the SIP and are extracted or streamed only when needed
+     * (export, technical elements extraction...). In both cases the BinaryDataObject onDiskPath is the path in the
+     * uncompress directory.
+     *
+     * @param lazyExtractionFlag the lazy extraction flag
+     */
+    public void setLazyExtractionFlag(boolean lazyExtractionFlag) {
+        this.lazyExtractionFlag = lazyExtractionFlag;
+    }
+
+    /**
+     * Sets the metadata objects flag. If true, the ArchiveUnit metadata are directly read as objects while reading
+     * the manifest, instead of being kept as raw XML and parsed again when first used. The import then fails on any
+     * not SEDA compliant metadata.
+     *
+     * @param metadataObjectsFlag the metadata objects flag
+     */
+    public void setMetadataObjectsFlag(boolean metadataObjectsFlag) {
+        this.metadataObjectsFlag = metadataObjectsFlag;
+    }
+
+    /**
+     * Sets the metadata in manifest flag. If true, the ArchiveUnit metadata are not copied in memory during import
+     * but kept as byte ranges in the manifest file, and only read when needed. The ones not modified are then copied
+     * byte for byte in export. In lazy extraction mode, the manifest file alone is extracted from the SIP.
+     * <p>
+     * The manifest file has then to stay unchanged in the uncompress directory while the ArchiveTransfer is used.
+     *
+     * @param metadataInManifestFlag the metadata in manifest flag
+     */
+    public void setMetadataInManifestFlag(boolean metadataInManifestFlag) {
+        this.metadataInManifestFlag = metadataInManifestFlag;
+    }
+
+    /**
+     * Read the ArchiveTransfer from the manifest file on disk.
+     *
+     * @param manifestPath the manifest path
+     * @throws SEDALibException     if the XML manifest can't be read or is not in expected form
+     * @throws InterruptedException if export process is interrupted
+     * @throws XMLStreamException   if the XML manifest can't be closed
+     * @throws IOException          if the manifest file can't be opened
+     */
+    private void readManifestFile(Path manifestPath)
+            throws SEDALibException, InterruptedException, XMLStreamException, IOException {
+        if (metadataInManifestFlag) {
+            // the source stays open with the DataObjectPackage which blocks are kept in the manifest
+            CompactXMLDataManifestSource manifestSource = new CompactXMLDataManifestSource(manifestPath);
+            try (SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(manifestSource)) {
+                xmlReader.setMetadataObjectsFlag(metadataObjectsFlag);
+                archiveTransfer = ArchiveTransfer.fromSedaXml(xmlReader, unCompressDirectory, sedaLibProgressLogger);
+                archiveTransfer.getDataObjectPackage().addManifestSource(manifestSource);
+            } catch (SEDALibException | InterruptedException | XMLStreamException | RuntimeException e) {
+                try {
+                    manifestSource.close();
+                } catch (IOException closeException) {
+                    e.addSuppressed(closeException);
+                }
+                throw e;
+            }
+        } else {
+            try (InputStream is = Files.newInputStream(manifestPath);
+                 SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(is)) {
+                xmlReader.setMetadataObjectsFlag(metadataObjectsFlag);
+                archiveTransfer = ArchiveTransfer.fromSedaXml(xmlReader, unCompressDirectory, sedaLibProgressLogger);
+            }
+        }
     }
 
     /**
@@ -198,14 +282,44 @@ public class SIPToArchiveTransferImporter {
         log += " date=" + DateFormat.getDateTimeInstance().format(d);
         doProgressLog(sedaLibProgressLogger,SEDALibProgressLogger.GLOBAL, log, null);
 
-        manifest = unZipSip(zipFile, unCompressDirectory);
+        if (lazyExtractionFlag) {
+            ZipContentSource zipContentSource = new ZipContentSource(Paths.get(zipFile), Paths.get(unCompressDirectory));
+            boolean successFlag = false;
+            try {
+                manifest = findManifest(zipContentSource);
+                try {
+                    if (metadataInManifestFlag)
+                        readManifestFile(zipContentSource.extract(Paths.get(unCompressDirectory).resolve(manifest)));
+                    else
+                        try (InputStream is = zipContentSource.getInputStream(manifest);
+                             SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(is)) {
+                            xmlReader.setMetadataObjectsFlag(metadataObjectsFlag);
+                            archiveTransfer = ArchiveTransfer.fromSedaXml(xmlReader, unCompressDirectory,
+                                    sedaLibProgressLogger);
+                        }
+                } catch (XMLStreamException | IOException | SEDALibException e) {
+                    throw new SEDALibException("Impossible d'importer le fichier [" + manifest
+                            + "] comme manifest du SIP", e);
+                }
+                archiveTransfer.getDataObjectPackage().setZipContentSource(zipContentSource);
+                successFlag = true;
+            } finally {
+                if (!successFlag)
+                    try {
+                        zipContentSource.close();
+                    } catch (IOException ignored) {
+                        // already failing
+                    }
+            }
+        } else {
+            manifest = unZipSip(zipFile, unCompressDirectory);
 
-        try (FileInputStream fis = new FileInputStream(unCompressDirectory + File.separator + manifest);
-             SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(fis)) {
-            archiveTransfer = ArchiveTransfer.fromSedaXml(xmlReader, unCompressDirectory, sedaLibProgressLogger);
-        } catch (XMLStreamException | IOException e) {
-            throw new SEDALibException("Impossible d'importer le fichier [" + manifest
-                    + "] comme manifest du SIP", e);
+            try {
+                readManifestFile(Paths.get(unCompressDirectory + File.separator + manifest));
+            } catch (XMLStreamException | IOException e) {
+                throw new SEDALibException("Impossible d'importer le fichier [" + manifest
+                        + "] comme manifest du SIP", e);
+            }
         }
 
         end = Instant.now();
@@ -233,6 +347,8 @@ public class SIPToArchiveTransferImporter {
         if (start != null)
             result += "chargé en "
                     + Duration.between(start, end).toString().substring(2) + "\n";
+        if (!lazyExtractionFlag && (zipFileExtractor.getDuration() != null))
+            result += zipFileExtractor.getSummary() + "\n";
         return result;
     }
 
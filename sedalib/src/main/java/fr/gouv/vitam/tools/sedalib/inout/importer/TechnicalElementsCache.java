@@ -0,0 +1,317 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.inout.importer;
+
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.droid.DroidIdentifier;
+import fr.gouv.vitam.tools.sedalib.metadata.data.FormatIdentification;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Class TechnicalElementsCache.
+ * <p>
+ * Class for a persistent cache of BinaryDataObjects technical elements (digest, size, format identification), so that
+ * re-importing an unchanged disk hierarchy doesn't need to read again all the files.
+ * <p>
+ * Entries are keyed by file absolute path, and are only used if the file size and last modified time are the same
+ * as when extracted, and if the DROID signatures version is the same, so that a DROID signature update invalidates
+ * previous format identifications. The cache can be shared between threads.
+ */
+public class TechnicalElementsCache {
+
+    /** The Constant MAGIC at the beginning of cache file. */
+    private static final String MAGIC = "SEDALIB-TECHNICAL-ELEMENTS-CACHE";
+
+    /** The Constant FORMAT_VERSION of cache file. */
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * The Class Entry.
+     * <p>
+     * Class for technical elements of one file.
+     */
+    private static class Entry {
+
+        /** The size. */
+        long size;
+
+        /** The last modified time, in full precision FileTime string form. */
+        String lastModified;
+
+        /** The SHA-512 digest. */
+        String digestSha512;
+
+        /** The format litteral. */
+        String formatLitteral;
+
+        /** The mime type. */
+        String mimeType;
+
+        /** The format id. */
+        String formatId;
+
+        /** The DROID signatures version. */
+        String signaturesVersion;
+    }
+
+    /** The cache file path. */
+    private Path cacheFile;
+
+    /** The entries by absolute path. */
+    private Map<String, Entry> entryMap;
+
+    /** The modified flag, true if some entries have to be saved. */
+    private volatile boolean modified;
+
+    /** The hits counter. */
+    private int hitCount;
+
+    /** The misses counter. */
+    private int missCount;
+
+    /**
+     * Instantiates a new technical elements cache, loading the cache file if it exists.
+     * <p>
+     * If the cache file can't be read, for example if it has been written by an incompatible version, the cache
+     * starts empty and the file will be replaced at next save.
+     *
+     * @param cacheFile the cache file path
+     */
+    public TechnicalElementsCache(Path cacheFile) {
+        this.cacheFile = cacheFile;
+        this.entryMap = new ConcurrentHashMap<String, Entry>();
+        this.modified = false;
+        if (Files.isRegularFile(cacheFile)) {
+            try {
+                load();
+            } catch (IOException e) {
+                entryMap.clear();
+            }
+        }
+    }
+
+    /**
+     * Load entries from cache file.
+     *
+     * @throws IOException if the cache file can't be read or is not a compatible cache file
+     */
+    private void load() throws IOException {
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (!MAGIC.equals(dis.readUTF()) || (dis.readInt() != FORMAT_VERSION))
+                throw new IOException("Fichier cache d'infos techniques incompatible");
+            int count = dis.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = dis.readUTF();
+                Entry entry = new Entry();
+                entry.size = dis.readLong();
+                entry.lastModified = dis.readUTF();
+                entry.digestSha512 = dis.readUTF();
+                entry.formatLitteral = readNullableUTF(dis);
+                entry.mimeType = readNullableUTF(dis);
+                entry.formatId = readNullableUTF(dis);
+                entry.signaturesVersion = dis.readUTF();
+                entryMap.put(path, entry);
+            }
+        }
+    }
+
+    /**
+     * Read a string which may be null.
+     *
+     * @param dis the data input stream
+     * @return the string or null
+     * @throws IOException if the string can't be read
+     */
+    private static String readNullableUTF(DataInputStream dis) throws IOException {
+        return dis.readBoolean() ? dis.readUTF() : null;
+    }
+
+    /**
+     * Write a string which may be null.
+     *
+     * @param dos   the data output stream
+     * @param value the string or null
+     * @throws IOException if the string can't be written
+     */
+    private static void writeNullableUTF(DataOutputStream dos, String value) throws IOException {
+        dos.writeBoolean(value != null);
+        if (value != null)
+            dos.writeUTF(value);
+    }
+
+    /**
+     * Save the entries in the cache file, if there are new ones.
+     * <p>
+     * The file is written in a temporary file and then moved, so that an interrupted save doesn't corrupt the cache.
+     *
+     * @throws SEDALibException if the cache file can't be written
+     */
+    public synchronized void save() throws SEDALibException {
+        if (!modified)
+            return;
+        modified = false;
+        Path tmpFile = cacheFile.resolveSibling(cacheFile.getFileName().toString() + ".tmp");
+        try {
+            if (cacheFile.getParent() != null)
+                Files.createDirectories(cacheFile.getParent());
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                Map<String, Entry> snapshot = new HashMap<String, Entry>(entryMap);
+                dos.writeUTF(MAGIC);
+                dos.writeInt(FORMAT_VERSION);
+                dos.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> pair : snapshot.entrySet()) {
+                    Entry entry = pair.getValue();
+                    dos.writeUTF(pair.getKey());
+                    dos.writeLong(entry.size);
+                    dos.writeUTF(entry.lastModified);
+                    dos.writeUTF(entry.digestSha512);
+                    writeNullableUTF(dos, entry.formatLitteral);
+                    writeNullableUTF(dos, entry.mimeType);
+                    writeNullableUTF(dos, entry.formatId);
+                    dos.writeUTF(entry.signaturesVersion);
+                }
+            }
+            Files.move(tmpFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            modified = true;
+            throw new SEDALibException("Impossible de sauvegarder le cache d'infos techniques ["
+                    + cacheFile.toString() + "]", e);
+        }
+    }
+
+    /**
+     * Extract technical elements of a BinaryDataObject, using the cache if the file is unchanged, or extracting them
+     * from the file and keeping them in cache otherwise.
+     *
+     * @param bdo                   the BinaryDataObject
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException if unable to get technical elements
+     */
+    public void extractTechnicalElements(BinaryDataObject bdo, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException {
+        Path path = bdo.getAvailableOnDiskPath();
+        if (path == null)
+            throw new SEDALibException("Pas de fichier associé au BinaryDataObject [" + bdo.getInDataObjectPackageId()
+                    + "]");
+        String key = path.toAbsolutePath().normalize().toString();
+        String signaturesVersion = DroidIdentifier.getInstance().getSignaturesVersion();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible de générer les infos techniques pour le fichier ["
+                    + path.toString() + "]", e);
+        }
+        // full precision, as in FileInfo/LastModified of a real extraction
+        String lastModified = attributes.lastModifiedTime().toString();
+
+        Entry entry = entryMap.get(key);
+        if ((entry != null) && (entry.size == attributes.size()) && entry.lastModified.equals(lastModified)
+                && entry.signaturesVersion.equals(signaturesVersion)) {
+            bdo.setTechnicalElements(entry.digestSha512, entry.size,
+                    new FormatIdentification(entry.formatLitteral, entry.mimeType, entry.formatId, null),
+                    attributes.lastModifiedTime());
+            countHit(true);
+            return;
+        }
+
+        boolean identifiedFlag = bdo.extractTechnicalElements(sedaLibProgressLogger);
+        countHit(false);
+        // a changed file or a failed DROID identification, which may be transient, is not kept
+        if ((bdo.size.getValue() != attributes.size()) || !identifiedFlag)
+            return;
+        entry = new Entry();
+        entry.size = attributes.size();
+        entry.lastModified = lastModified;
+        entry.digestSha512 = bdo.messageDigest.getValue();
+        entry.formatLitteral = bdo.formatIdentification.getSimpleMetadata("FormatLitteral");
+        entry.mimeType = bdo.formatIdentification.getSimpleMetadata("MimeType");
+        entry.formatId = bdo.formatIdentification.getSimpleMetadata("FormatId");
+        entry.signaturesVersion = signaturesVersion;
+        entryMap.put(key, entry);
+        modified = true;
+    }
+
+    /**
+     * Count a cache hit or miss.
+     *
+     * @param hit true if hit
+     */
+    private synchronized void countHit(boolean hit) {
+        if (hit)
+            hitCount++;
+        else
+            missCount++;
+    }
+
+    /**
+     * Gets the cache file path.
+     *
+     * @return the cache file path
+     */
+    public Path getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Gets the number of entries in cache.
+     *
+     * @return the entry count
+     */
+    public int getEntryCount() {
+        return entryMap.size();
+    }
+
+    /**
+     * Gets the number of extractions done from cache since creation.
+     *
+     * @return the hit count
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of extractions done from file since creation.
+     *
+     * @return the miss count
+     */
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+}
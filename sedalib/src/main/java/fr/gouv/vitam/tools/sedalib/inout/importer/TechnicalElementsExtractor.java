@@ -0,0 +1,311 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.inout.importer;
+
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.droid.DroidIdentifier;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogIfStep;
+
+/**
+ * The Class TechnicalElementsExtractor.
+ * <p>
+ * Class for extracting technical elements (size, digest, format identification...) of a set of BinaryDataObjects
+ * with a pool of worker threads.
+ * <p>
+ * The BinaryDataObjects are submitted in the given order, no more than threadCount+queueSize of them being in progress
+ * at the same time, and the results are collected in this same order. So the progress log and the error reporting
+ * are the same whatever the number of threads:
+ * <ul>
+ * <li>if one extraction fails, the SEDALibException of the first failed BinaryDataObject in the given order is
+ * thrown and all pending extractions are cancelled,</li>
+ * <li>if the calling thread is interrupted, all pending extractions are cancelled and the InterruptedException is
+ * thrown.</li>
+ * </ul>
+ * With a threadCount of 1 the extraction is done sequentially in the calling thread.
+ * <p>
+ * If a {@link TechnicalElementsCache} is defined, unchanged files technical elements are taken from it, and the cache
+ * is saved at the end of each extraction, even interrupted or failed, to keep the work done.
+ */
+public class TechnicalElementsExtractor {
+
+    /**
+     * The default number of worker threads, the default DroidIdentifier engines pool size, as format identifications
+     * are only thread-safe through this pool and can't be more concurrent than its size.
+     */
+    public static final int DEFAULT_THREAD_COUNT = DroidIdentifier.DEFAULT_POOL_SIZE;
+
+    /**
+     * The default number of BinaryDataObjects waiting for a worker thread.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    /**
+     * The worker threads counter, used for thread names.
+     */
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    /**
+     * The number of worker threads.
+     */
+    private int threadCount;
+
+    /**
+     * The max number of BinaryDataObjects waiting for a worker thread.
+     */
+    private int queueSize;
+
+    /**
+     * The technical elements cache, or null if none.
+     */
+    private TechnicalElementsCache technicalElementsCache;
+
+    /**
+     * Instantiates a new technical elements extractor with default thread count and queue size.
+     */
+    public TechnicalElementsExtractor() {
+        this(DEFAULT_THREAD_COUNT, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Instantiates a new technical elements extractor.
+     *
+     * @param threadCount the number of worker threads, 1 for sequential extraction in the calling thread
+     * @param queueSize   the max number of BinaryDataObjects waiting for a worker thread
+     */
+    public TechnicalElementsExtractor(int threadCount, int queueSize) {
+        this.threadCount = Math.max(1, threadCount);
+        this.queueSize = Math.max(0, queueSize);
+    }
+
+    /**
+     * Checks if the BinaryDataObject technical elements have still to be extracted, that is to say if there's an on
+     * disk file and if the file LastModified metadata is not already defined.
+     *
+     * @param bdo the BinaryDataObject
+     * @return true, if technical elements have to be extracted
+     */
+    public static boolean isExtractionNeeded(BinaryDataObject bdo) {
+        return (bdo.getOnDiskPath() != null) &&
+                ((bdo.fileInfo == null) || (bdo.fileInfo.getSimpleMetadata("LastModified") == null));
+    }
+
+    /**
+     * Extract technical elements of all the BinaryDataObjects of the DataObjectPackage which still need it (see
+     * {@link #isExtractionNeeded(BinaryDataObject)}).
+     *
+     * @param dataObjectPackage     the DataObjectPackage
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @return the number of BinaryDataObjects analysed
+     * @throws SEDALibException     if one extraction has failed
+     * @throws InterruptedException if extraction process is interrupted
+     */
+    public int extractTechnicalElements(DataObjectPackage dataObjectPackage, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        List<BinaryDataObject> bdoList = new ArrayList<BinaryDataObject>();
+        for (Map.Entry<String, BinaryDataObject> pair : dataObjectPackage.getBdoInDataObjectPackageIdMap().entrySet()) {
+            if (isExtractionNeeded(pair.getValue()))
+                bdoList.add(pair.getValue());
+        }
+        return extractTechnicalElements(bdoList, sedaLibProgressLogger);
+    }
+
+    /**
+     * Extract technical elements of all the BinaryDataObjects in list.
+     *
+     * @param bdoList               the BinaryDataObjects list
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @return the number of BinaryDataObjects analysed
+     * @throws SEDALibException     if one extraction has failed
+     * @throws InterruptedException if extraction process is interrupted
+     */
+    public int extractTechnicalElements(List<BinaryDataObject> bdoList, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        if (technicalElementsCache == null)
+            return doExtractTechnicalElements(bdoList, sedaLibProgressLogger);
+
+        int counter;
+        try {
+            counter = doExtractTechnicalElements(bdoList, sedaLibProgressLogger);
+        } catch (SEDALibException | InterruptedException | RuntimeException e) {
+            try {
+                technicalElementsCache.save();
+            } catch (SEDALibException ignored) {
+                // the extraction exception is the one to report
+            }
+            throw e;
+        }
+        technicalElementsCache.save();
+        return counter;
+    }
+
+    /**
+     * Extract technical elements of all the BinaryDataObjects in list, without saving the cache.
+     *
+     * @param bdoList               the BinaryDataObjects list
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @return the number of BinaryDataObjects analysed
+     * @throws SEDALibException     if one extraction has failed
+     * @throws InterruptedException if extraction process is interrupted
+     */
+    private int doExtractTechnicalElements(List<BinaryDataObject> bdoList, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        int counter = 0;
+
+        if ((threadCount == 1) || (bdoList.size() <= 1)) {
+            for (BinaryDataObject bdo : bdoList) {
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                extractTechnicalElements(bdo, sedaLibProgressLogger);
+                counter++;
+                doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
+                        "sedalib: " + counter + " fichiers BinaryDataObject analysés");
+            }
+            return counter;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, r -> {
+            Thread t = new Thread(r, "sedalib-extractor-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<?>> inProgressFutures = new ArrayDeque<Future<?>>();
+        Deque<BinaryDataObject> inProgressBdos = new ArrayDeque<BinaryDataObject>();
+        try {
+            for (BinaryDataObject bdo : bdoList) {
+                if (inProgressFutures.size() >= threadCount + queueSize) {
+                    waitFirstInProgress(inProgressFutures, inProgressBdos);
+                    counter++;
+                    doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
+                            "sedalib: " + counter + " fichiers BinaryDataObject analysés");
+                }
+                inProgressFutures.add(executor.submit(() -> {
+                    extractTechnicalElements(bdo, sedaLibProgressLogger);
+                    return null;
+                }));
+                inProgressBdos.add(bdo);
+            }
+            while (!inProgressFutures.isEmpty()) {
+                waitFirstInProgress(inProgressFutures, inProgressBdos);
+                counter++;
+                doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, counter,
+                        "sedalib: " + counter + " fichiers BinaryDataObject analysés");
+            }
+        } finally {
+            // cancel all pending extractions if any (exception or interruption)
+            executor.shutdownNow();
+        }
+        return counter;
+    }
+
+    /**
+     * Extract technical elements of one BinaryDataObject, through the cache if any.
+     *
+     * @param bdo                   the BinaryDataObject
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException if the extraction has failed
+     */
+    private void extractTechnicalElements(BinaryDataObject bdo, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException {
+        if (technicalElementsCache == null)
+            bdo.extractTechnicalElements(sedaLibProgressLogger);
+        else
+            technicalElementsCache.extractTechnicalElements(bdo, sedaLibProgressLogger);
+    }
+
+    /**
+     * Wait for the end of the first BinaryDataObject extraction in progress and remove it from in progress lists.
+     *
+     * @param inProgressFutures the in progress extraction futures
+     * @param inProgressBdos    the in progress BinaryDataObjects, in the same order
+     * @throws SEDALibException     if the extraction has failed
+     * @throws InterruptedException if extraction process is interrupted
+     */
+    private void waitFirstInProgress(Deque<Future<?>> inProgressFutures, Deque<BinaryDataObject> inProgressBdos)
+            throws SEDALibException, InterruptedException {
+        Future<?> future = inProgressFutures.poll();
+        BinaryDataObject bdo = inProgressBdos.poll();
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SEDALibException)
+                throw (SEDALibException) e.getCause();
+            throw new SEDALibException("Impossible d'extraire les infos techniques du BinaryDataObject ["
+                    + bdo.getInDataObjectPackageId() + "]", e.getCause());
+        } catch (CancellationException e) {
+            throw new InterruptedException("Extraction des infos techniques annulée");
+        }
+    }
+
+    /**
+     * Gets the number of worker threads.
+     *
+     * @return the thread count
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Gets the max number of BinaryDataObjects waiting for a worker thread.
+     *
+     * @return the queue size
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Gets the technical elements cache.
+     *
+     * @return the technical elements cache, or null if none
+     */
+    public TechnicalElementsCache getTechnicalElementsCache() {
+        return technicalElementsCache;
+    }
+
+    /**
+     * Sets the technical elements cache.
+     *
+     * @param technicalElementsCache the technical elements cache, or null if none
+     */
+    public void setTechnicalElementsCache(TechnicalElementsCache technicalElementsCache) {
+        this.technicalElementsCache = technicalElementsCache;
+    }
+}
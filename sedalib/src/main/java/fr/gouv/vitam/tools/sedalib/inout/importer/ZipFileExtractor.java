@@ -0,0 +1,415 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.inout.importer;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLog;
+import static fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger.doProgressLogIfStep;
+
+/**
+ * The Class ZipFileExtractor.
+ * <p>
+ * Class for extracting all the files of a zip file in a directory with a pool of worker threads. The zip central
+ * directory is read first, all the needed directories are created, and then the entries are inflated independently
+ * and concurrently, each worker reading its entry by random access in the zip file.
+ * <p>
+ * As for {@link TechnicalElementsExtractor}, entries are submitted in the central directory order, no more than
+ * threadCount+queueSize of them being in progress at the same time, the first failure in this order is the one
+ * thrown and all pending extractions are cancelled on failure or interruption. With a threadCount of 1 the
+ * extraction is done sequentially in the calling thread. Entries with the same target path are extracted one after
+ * the other, in central directory order, so that the last one is kept as in a sequential extraction.
+ * <p>
+ * Throughput metrics (files and bytes extracted, duration) of the last extraction are kept, to size the thread count.
+ */
+public class ZipFileExtractor {
+
+    /**
+     * The default number of worker threads.
+     */
+    public static final int DEFAULT_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The default number of entries waiting for a worker thread.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    /**
+     * The worker threads counter, used for thread names.
+     */
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    /**
+     * The number of worker threads.
+     */
+    private int threadCount;
+
+    /**
+     * The max number of entries waiting for a worker thread.
+     */
+    private int queueSize;
+
+    /**
+     * The number of files extracted by the last extraction.
+     */
+    private int extractedFileCount;
+
+    /**
+     * The number of bytes extracted by the last extraction.
+     */
+    private long extractedByteCount;
+
+    /**
+     * The start and end instants of the last extraction.
+     */
+    private Instant start, end;
+
+    /**
+     * Instantiates a new zip file extractor with default thread count and queue size.
+     */
+    public ZipFileExtractor() {
+        this(DEFAULT_THREAD_COUNT, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Instantiates a new zip file extractor.
+     *
+     * @param threadCount the number of worker threads, 1 for sequential extraction in the calling thread
+     * @param queueSize   the max number of entries waiting for a worker thread
+     */
+    public ZipFileExtractor(int threadCount, int queueSize) {
+        this.threadCount = Math.max(1, threadCount);
+        this.queueSize = Math.max(0, queueSize);
+    }
+
+    /**
+     * Extract all the readable files of the zip file in the output folder. The entries which data can't be read,
+     * being encrypted or compressed with an unsupported method, are not extracted and a warning is logged for each.
+     * <p>
+     * Each entry name is transformed by the target name function, in the calling thread and in central directory
+     * order, to get the relative path where it is extracted, or null if it has not to be extracted. When several
+     * entries have the same target path, a warning is logged and they are extracted one after the other, the last
+     * one replacing the others.
+     *
+     * @param zipFile               the zip file
+     * @param encoding              the entry names encoding, or null for the platform default
+     * @param outputFolder          the output folder
+     * @param targetNameFunction    the function giving the relative target name from the entry name, or null
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @return the relative target names of the extracted files, in central directory order
+     * @throws SEDALibException     if the zip file can't be read or one extraction has failed
+     * @throws InterruptedException if extraction process is interrupted
+     */
+    public List<String> extract(String zipFile, String encoding, String outputFolder,
+                                Function<String, String> targetNameFunction,
+                                SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        List<String> targetNames = new ArrayList<String>();
+        List<ZipArchiveEntry> fileEntries = new ArrayList<ZipArchiveEntry>();
+        List<Path> filePaths = new ArrayList<Path>();
+        Map<Path, String> entryNameByFilePath = new HashMap<Path, String>();
+        BitSet sameTargetEntries = new BitSet();
+        Path outputPath = Paths.get(outputFolder).toAbsolutePath().normalize();
+
+        start = Instant.now();
+        end = null;
+        extractedFileCount = 0;
+        extractedByteCount = 0;
+        try (ZipFile zf = new ZipFile(new File(zipFile), encoding)) {
+            // plan all extractions and create directory structure before any inflation
+            Set<Path> directories = new HashSet<Path>();
+            Enumeration<ZipArchiveEntry> entries = zf.getEntries();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                if (!zf.canReadEntryData(entry)) {
+                    doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_WARNINGS,
+                            "sedalib: le fichier [" + entry.getName() + "] du zip n'est pas lisible (chiffré ou " +
+                                    "compressé par une méthode non supportée), il n'est pas extrait", null);
+                    continue;
+                }
+                String targetName = (targetNameFunction == null ? entry.getName() :
+                        targetNameFunction.apply(entry.getName()));
+                if (targetName == null)
+                    continue;
+                Path target = outputPath.resolve(targetName).normalize();
+                if (!target.startsWith(outputPath))
+                    throw new SEDALibException("Le fichier [" + entry.getName()
+                            + "] est extrait hors du répertoire d'extraction");
+                if (entry.isDirectory())
+                    directories.add(target);
+                else {
+                    if (target.getParent() != null)
+                        directories.add(target.getParent());
+                    String previousEntryName = entryNameByFilePath.put(target, entry.getName());
+                    if (previousEntryName != null) {
+                        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_WARNINGS,
+                                "sedalib: le fichier [" + entry.getName() + "] du zip est extrait au même " +
+                                        "emplacement que le fichier [" + previousEntryName + "] qu'il remplace", null);
+                        sameTargetEntries.set(fileEntries.size());
+                    }
+                    fileEntries.add(entry);
+                    filePaths.add(target);
+                    targetNames.add(targetName);
+                }
+            }
+            for (Path directory : directories)
+                Files.createDirectories(directory);
+
+            doExtract(zf, fileEntries, filePaths, sameTargetEntries, sedaLibProgressLogger);
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible d'extraire le fichier zip [" + zipFile + "] dans le répertoire ["
+                    + outputFolder + "]", e);
+        }
+        end = Instant.now();
+        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.STEP, "sedalib: " + getSummary(), null);
+        return targetNames;
+    }
+
+    /**
+     * Extract the planned entries to their target paths.
+     *
+     * @param zf                    the opened zip file
+     * @param fileEntries           the file entries
+     * @param filePaths             the target paths, in the same order
+     * @param sameTargetEntries     the indexes of the entries with the same target path as a previous one
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if one extraction has failed
+     * @throws InterruptedException if extraction process is interrupted
+     */
+    private void doExtract(ZipFile zf, List<ZipArchiveEntry> fileEntries, List<Path> filePaths,
+                           BitSet sameTargetEntries, SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        if ((threadCount == 1) || (fileEntries.size() <= 1)) {
+            for (int i = 0; i < fileEntries.size(); i++) {
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                extractedByteCount += extractEntry(zf, fileEntries.get(i), filePaths.get(i));
+                accountExtracted(fileEntries.get(i), sedaLibProgressLogger);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, r -> {
+            Thread t = new Thread(r, "sedalib-unzip-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<Long>> inProgressFutures = new ArrayDeque<Future<Long>>();
+        Deque<ZipArchiveEntry> inProgressEntries = new ArrayDeque<ZipArchiveEntry>();
+        try {
+            for (int i = 0; i < fileEntries.size(); i++) {
+                if (inProgressFutures.size() >= threadCount + queueSize)
+                    waitFirstInProgress(inProgressFutures, inProgressEntries, sedaLibProgressLogger);
+                // the previous entries with the same target must be written before, as in sequential extraction
+                if (sameTargetEntries.get(i))
+                    while (!inProgressFutures.isEmpty())
+                        waitFirstInProgress(inProgressFutures, inProgressEntries, sedaLibProgressLogger);
+                ZipArchiveEntry entry = fileEntries.get(i);
+                Path target = filePaths.get(i);
+                inProgressFutures.add(executor.submit(() -> extractEntry(zf, entry, target)));
+                inProgressEntries.add(entry);
+            }
+            while (!inProgressFutures.isEmpty())
+                waitFirstInProgress(inProgressFutures, inProgressEntries, sedaLibProgressLogger);
+        } finally {
+            // cancel all pending extractions if any (exception or interruption)
+            executor.shutdownNow();
+            // wait for running ones, as the zip file is to be closed
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Extract one entry.
+     *
+     * @param zf     the opened zip file
+     * @param entry  the entry
+     * @param target the target path
+     * @return the number of bytes extracted
+     * @throws SEDALibException if the extraction has failed
+     */
+    private static long extractEntry(ZipFile zf, ZipArchiveEntry entry, Path target) throws SEDALibException {
+        try (InputStream is = zf.getInputStream(entry)) {
+            return Files.copy(is, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible d'extraire le fichier [" + entry.getName() + "]", e);
+        }
+    }
+
+    /**
+     * Account an extracted entry, in the calling thread and in central directory order, and log it.
+     *
+     * @param entry                 the extracted entry
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws InterruptedException if extraction process is interrupted
+     */
+    private void accountExtracted(ZipArchiveEntry entry, SEDALibProgressLogger sedaLibProgressLogger)
+            throws InterruptedException {
+        extractedFileCount++;
+        doProgressLog(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS,
+                "sedalib: unzip fichier [" + entry.getName() + "]", null);
+        doProgressLogIfStep(sedaLibProgressLogger, SEDALibProgressLogger.OBJECTS_GROUP, extractedFileCount,
+                "sedalib: " + extractedFileCount + " fichiers extraits");
+    }
+
+    /**
+     * Wait for the end of the first entry extraction in progress, remove it from in progress lists and account it.
+     *
+     * @param inProgressFutures     the in progress extraction futures
+     * @param inProgressEntries     the in progress entries, in the same order
+     * @param sedaLibProgressLogger the progress logger or null if no progress log expected
+     * @throws SEDALibException     if the extraction has failed
+     * @throws InterruptedException if extraction process is interrupted
+     */
+    private void waitFirstInProgress(Deque<Future<Long>> inProgressFutures, Deque<ZipArchiveEntry> inProgressEntries,
+                                     SEDALibProgressLogger sedaLibProgressLogger)
+            throws SEDALibException, InterruptedException {
+        Future<Long> future = inProgressFutures.poll();
+        ZipArchiveEntry entry = inProgressEntries.poll();
+        try {
+            extractedByteCount += future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SEDALibException)
+                throw (SEDALibException) e.getCause();
+            throw new SEDALibException("Impossible d'extraire le fichier [" + entry.getName() + "]", e.getCause());
+        } catch (CancellationException e) {
+            throw new InterruptedException("Extraction du fichier zip annulée");
+        }
+        accountExtracted(entry, sedaLibProgressLogger);
+    }
+
+    /**
+     * Gets the number of worker threads.
+     *
+     * @return the thread count
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Gets the max number of entries waiting for a worker thread.
+     *
+     * @return the queue size
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Gets the number of files extracted by the last extraction.
+     *
+     * @return the extracted file count
+     */
+    public int getExtractedFileCount() {
+        return extractedFileCount;
+    }
+
+    /**
+     * Gets the number of bytes extracted by the last extraction.
+     *
+     * @return the extracted byte count
+     */
+    public long getExtractedByteCount() {
+        return extractedByteCount;
+    }
+
+    /**
+     * Gets the duration of the last extraction.
+     *
+     * @return the duration, or null if no extraction completed
+     */
+    public Duration getDuration() {
+        if ((start == null) || (end == null))
+            return null;
+        return Duration.between(start, end);
+    }
+
+    /**
+     * Gets the throughput of the last extraction in MB (10^6 bytes) per second.
+     *
+     * @return the throughput in MB/s, or 0 if no extraction completed
+     */
+    public double getMegaBytesPerSecond() {
+        Duration duration = getDuration();
+        if ((duration == null) || duration.isZero())
+            return 0;
+        return extractedByteCount / 1e6 / (duration.toNanos() / 1e9);
+    }
+
+    /**
+     * Gets the throughput of the last extraction in files per second.
+     *
+     * @return the throughput in files/s, or 0 if no extraction completed
+     */
+    public double getFilesPerSecond() {
+        Duration duration = getDuration();
+        if ((duration == null) || duration.isZero())
+            return 0;
+        return extractedFileCount / (duration.toNanos() / 1e9);
+    }
+
+    /**
+     * Gets the summary of the last extraction, with throughput metrics.
+     *
+     * @return the summary String
+     */
+    public String getSummary() {
+        Duration duration = getDuration();
+        return extractedFileCount + " fichiers extraits (" + String.format("%.1f", extractedByteCount / 1e6)
+                + " Mo) avec " + threadCount + " threads"
+                + (duration == null ? "" : " en " + duration.toString().substring(2)
+                + String.format(" soit %.1f Mo/s et %.1f fichiers/s", getMegaBytesPerSecond(), getFilesPerSecond()));
+    }
+}
@@ -35,17 +35,15 @@ import fr.gouv.vitam.tools.sedalib.metadata.data.FileInfo;
 import fr.gouv.vitam.tools.sedalib.metadata.data.Weight;
 import fr.gouv.vitam.tools.sedalib.metadata.namedtype.*;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.xml.CompactXMLData;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
-import org.apache.commons.lang3.reflect.ConstructorUtils;
 
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.LinkedHashMap;
 
 /**
@@ -129,22 +127,11 @@ public abstract class SEDAMetadata {
      */
     static public SEDAMetadata fromSedaXml(SEDAXMLEventReader xmlReader, Class<?> target) throws SEDALibException {
         try {
-            boolean needName = target.getName().contains(".namedtype.");
-            SEDAMetadata sm;
-            if (needName) {
-                XMLEvent event = xmlReader.peekUsefullEvent();
-                sm = (SEDAMetadata) ConstructorUtils.invokeConstructor(target, event.asStartElement().getName().getLocalPart());
-            } else
-                sm = (SEDAMetadata) ConstructorUtils.invokeConstructor(target, (Object[])null);
+            SEDAMetadataFactory factory = SEDAMetadataFactory.getFactory(target);
+            SEDAMetadata sm = factory.newEmptyMetadata(factory.isNamedType() ? xmlReader.peekName() : null);
             if (sm.fillFromSedaXml(xmlReader))
                 return sm;
-            Method method = target.getMethod("fromSedaXml", SEDAXMLEventReader.class);
-            return (SEDAMetadata) method.invoke(null, xmlReader);
-        } catch (IllegalAccessException | IllegalArgumentException | NoSuchMethodException
-                | SecurityException | InstantiationException e) {
-            throw new SEDALibException("Erreur de construction du " + target.getSimpleName(), e);
-        } catch (InvocationTargetException te) {
-            throw new SEDALibException("Erreur de construction du " + target.getSimpleName(), te.getTargetException());
+            return factory.staticFromSedaXml(xmlReader);
         } catch (XMLStreamException e) {
             throw new SEDALibException("Erreur de lecture XML dans un élément de type "+target.getSimpleName(), e);
         }
@@ -159,15 +146,39 @@ public abstract class SEDAMetadata {
      * @throws SEDALibException if XML read exception or inappropriate sub-class
      */
     static public SEDAMetadata fromString(String xmlData, Class<?> target) throws SEDALibException {
+        return fromReader(new StringReader(xmlData), target);
+    }
+
+    /**
+     * Return the SEDAMetadata object from an XML compact form, reading directly the stored UTF-8 bytes when it's
+     * not kept as a String.
+     *
+     * @param xmlData the xml data
+     * @param target  the target sub-class of SEDAMetadata
+     * @return the SEDAMetadata object
+     * @throws SEDALibException if XML read exception or inappropriate sub-class
+     */
+    static public SEDAMetadata fromCompactXMLData(CompactXMLData xmlData, Class<?> target) throws SEDALibException {
+        return fromReader(xmlData.getReader(), target);
+    }
+
+    /**
+     * Return the SEDAMetadata object from an XML characters reader.
+     *
+     * @param reader the reader
+     * @param target the target sub-class of SEDAMetadata
+     * @return the SEDAMetadata object
+     * @throws SEDALibException if XML read exception or inappropriate sub-class
+     */
+    static private SEDAMetadata fromReader(Reader reader, Class<?> target) throws SEDALibException {
         SEDAMetadata result;
 
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(xmlData.getBytes("UTF-8"));
-             SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
+        try (Reader r = reader;
+             SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(r, true)) {
             // jump StartDocument
-            xmlReader.nextUsefullEvent();
+            xmlReader.skipNextUsefullEvent();
             result = fromSedaXml(xmlReader, target);
-            XMLEvent event = xmlReader.xmlReader.peek();
-            if (!event.isEndDocument())
+            if (!xmlReader.peekEndDocument())
                 throw new SEDALibException("Il y a des champs illégaux");
         } catch (XMLStreamException | SEDALibException | IOException e) {
             throw new SEDALibException("Erreur de lecture de " + target.getSimpleName(), e);
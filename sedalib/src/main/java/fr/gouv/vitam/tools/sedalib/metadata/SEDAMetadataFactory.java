@@ -0,0 +1,371 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.metadata;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.reflect.ConstructorUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Class SEDAMetadataFactory.
+ * <p>
+ * Registry of the ways to build each SEDAMetadata sub-class, either empty before filling from SEDA XML or from the
+ * flexible args used by {@link fr.gouv.vitam.tools.sedalib.metadata.namedtype.ComplexListType#addNewMetadata}.
+ * The reflective constructor resolution is done once per class and per args classes shape, and the result is kept
+ * as a {@link MethodHandle}, so that building a metadata is then a simple handle invocation.
+ */
+public final class SEDAMetadataFactory {
+
+    /**
+     * The factories by metadata class.
+     */
+    private static final ClassValue<SEDAMetadataFactory> FACTORIES = new ClassValue<SEDAMetadataFactory>() {
+        @Override
+        protected SEDAMetadataFactory computeValue(Class<?> type) {
+            return new SEDAMetadataFactory(type);
+        }
+    };
+
+    /**
+     * The construction modes of an args constructor.
+     */
+    private static final int DIRECT_ARGS = 0;
+    private static final int WRAPPED_ARGS = 1;
+    private static final int NAME_AND_WRAPPED_ARGS = 2;
+
+    /**
+     * The Class ArgsConstructor, the resolved constructor for one args classes shape.
+     */
+    private static final class ArgsConstructor {
+
+        /**
+         * The constructor handle, taking an Object[] and returning an Object.
+         */
+        final MethodHandle handle;
+
+        /**
+         * The construction mode.
+         */
+        final int mode;
+
+        /**
+         * The primitive parameter types, or null if there is no primitive parameter.
+         */
+        final Class<?>[] primitiveTypes;
+
+        /**
+         * Instantiates a new args constructor.
+         *
+         * @param handle         the handle
+         * @param mode           the mode
+         * @param primitiveTypes the primitive types
+         */
+        ArgsConstructor(MethodHandle handle, int mode, Class<?>[] primitiveTypes) {
+            this.handle = handle;
+            this.mode = mode;
+            this.primitiveTypes = primitiveTypes;
+        }
+    }
+
+    /**
+     * The metadata class.
+     */
+    private final Class<?> metadataClass;
+
+    /**
+     * The need name flag, true for named types which constructors take the element name first.
+     */
+    private final boolean needName;
+
+    /**
+     * The empty constructor handle, (String)Object for named types or ()Object for others, null if none.
+     */
+    private final MethodHandle emptyConstructor;
+
+    /**
+     * The static fromSedaXml(SEDAXMLEventReader) method handle, lazily resolved.
+     */
+    private volatile MethodHandle fromSedaXmlMethod;
+
+    /**
+     * The fromSedaXml method resolved flag.
+     */
+    private volatile boolean fromSedaXmlMethodResolved;
+
+    /**
+     * The args constructors by args classes shape.
+     */
+    private final ConcurrentHashMap<List<Class<?>>, ArgsConstructor> argsConstructorMap;
+
+    /**
+     * Instantiates a new SEDA metadata factory.
+     *
+     * @param metadataClass the metadata class
+     */
+    private SEDAMetadataFactory(Class<?> metadataClass) {
+        this.metadataClass = metadataClass;
+        this.needName = metadataClass.getName().contains(".namedtype.");
+        MethodHandle constructor;
+        try {
+            if (needName)
+                constructor = MethodHandles.publicLookup().findConstructor(metadataClass,
+                        MethodType.methodType(void.class, String.class))
+                        .asType(MethodType.methodType(Object.class, String.class));
+            else
+                constructor = MethodHandles.publicLookup().findConstructor(metadataClass,
+                        MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            constructor = null;
+        }
+        this.emptyConstructor = constructor;
+        this.argsConstructorMap = new ConcurrentHashMap<List<Class<?>>, ArgsConstructor>();
+    }
+
+    /**
+     * Gets the factory of a SEDAMetadata sub-class.
+     *
+     * @param metadataClass the metadata class
+     * @return the factory
+     */
+    public static SEDAMetadataFactory getFactory(Class<?> metadataClass) {
+        return FACTORIES.get(metadataClass);
+    }
+
+    /**
+     * Gets the metadata class.
+     *
+     * @return the metadata class
+     */
+    public Class<?> getMetadataClass() {
+        return metadataClass;
+    }
+
+    /**
+     * Checks if the metadata class is a named type, which constructors take the element name first.
+     *
+     * @return true, if it is a named type
+     */
+    public boolean isNamedType() {
+        return needName;
+    }
+
+    /**
+     * Construct a new empty metadata, to be filled from SEDA XML.
+     *
+     * @param elementName the element name, used only for named types
+     * @return the SEDA metadata
+     * @throws SEDALibException if there is no convenient constructor or if the construction failed
+     */
+    public SEDAMetadata newEmptyMetadata(String elementName) throws SEDALibException {
+        if (emptyConstructor == null)
+            throw new SEDALibException("Erreur de construction du " + metadataClass.getSimpleName());
+        try {
+            if (needName)
+                return (SEDAMetadata) (Object) emptyConstructor.invokeExact(elementName);
+            else
+                return (SEDAMetadata) (Object) emptyConstructor.invokeExact();
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SEDALibException("Erreur de construction du " + metadataClass.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Return the metadata from an XML event reader, using the static fromSedaXml(SEDAXMLEventReader) method of the
+     * metadata class, when the fillFromSedaXml of an empty metadata is not enough.
+     *
+     * @param xmlReader the xml reader
+     * @return the read SEDAMetadata object
+     * @throws SEDALibException if there is no such method or if the read failed
+     */
+    public SEDAMetadata staticFromSedaXml(SEDAXMLEventReader xmlReader) throws SEDALibException {
+        if (!fromSedaXmlMethodResolved) {
+            try {
+                Method method = metadataClass.getMethod("fromSedaXml", SEDAXMLEventReader.class);
+                fromSedaXmlMethod = MethodHandles.publicLookup().unreflect(method)
+                        .asType(MethodType.methodType(Object.class, SEDAXMLEventReader.class));
+            } catch (NoSuchMethodException | IllegalAccessException | SecurityException | IllegalArgumentException e) {
+                fromSedaXmlMethod = null;
+            }
+            fromSedaXmlMethodResolved = true;
+        }
+        if (fromSedaXmlMethod == null)
+            throw new SEDALibException("Erreur de construction du " + metadataClass.getSimpleName());
+        try {
+            return (SEDAMetadata) (Object) fromSedaXmlMethod.invokeExact(xmlReader);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SEDALibException("Erreur de construction du " + metadataClass.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Construct a new metadata from the flexible args, with the same constructor choice as the public constructors
+     * matching the args classes, completed by the (String, Object[]) or (Object[]) constructors if none matches.
+     *
+     * @param elementName the element name, used only for named types
+     * @param args        the args
+     * @return the SEDA metadata
+     * @throws SEDALibException if there is no convenient constructor or if the construction failed
+     */
+    public SEDAMetadata newMetadata(String elementName, Object[] args) throws SEDALibException {
+        Object[] newArgs;
+        args = ArrayUtils.nullToEmpty(args);
+        if (needName) {
+            newArgs = new Object[args.length + 1];
+            newArgs[0] = elementName;
+            System.arraycopy(args, 0, newArgs, 1, args.length);
+        } else
+            newArgs = args;
+        Class<?>[] parameterTypes = ClassUtils.toClass(newArgs);
+        List<Class<?>> shape = Arrays.asList(parameterTypes);
+        ArgsConstructor argsConstructor = argsConstructorMap.get(shape);
+        if (argsConstructor == null) {
+            argsConstructor = resolveArgsConstructor(elementName, parameterTypes);
+            argsConstructorMap.putIfAbsent(shape, argsConstructor);
+        }
+
+        Object[] invokeArgs;
+        switch (argsConstructor.mode) {
+            case WRAPPED_ARGS:
+                invokeArgs = new Object[]{args};
+                break;
+            case NAME_AND_WRAPPED_ARGS:
+                invokeArgs = new Object[]{elementName, args};
+                break;
+            default:
+                if (argsConstructor.primitiveTypes != null)
+                    invokeArgs = convertPrimitiveArgs(newArgs, argsConstructor.primitiveTypes);
+                else
+                    invokeArgs = newArgs;
+        }
+        try {
+            return (SEDAMetadata) (Object) argsConstructor.handle.invokeExact(invokeArgs);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SEDALibException("Impossible de construire l'élément [" + elementName + "]", e);
+        }
+    }
+
+    /**
+     * Resolve the constructor for an args classes shape.
+     *
+     * @param elementName    the element name, used for error message
+     * @param parameterTypes the args classes, with the element name class first for named types
+     * @return the args constructor
+     * @throws SEDALibException if there is no convenient constructor
+     */
+    private ArgsConstructor resolveArgsConstructor(String elementName, Class<?>[] parameterTypes)
+            throws SEDALibException {
+        Constructor<?> theConstructor = ConstructorUtils.getMatchingAccessibleConstructor(metadataClass, parameterTypes);
+        int mode;
+        try {
+            if (theConstructor == null) {
+                try {
+                    if (needName) {
+                        theConstructor = metadataClass.getConstructor(String.class, Object[].class);
+                        mode = NAME_AND_WRAPPED_ARGS;
+                    } else {
+                        theConstructor = metadataClass.getConstructor(Object[].class);
+                        mode = WRAPPED_ARGS;
+                    }
+                } catch (NoSuchMethodException e) {
+                    throw new SEDALibException("Pas de constructeur de l'élément [" + elementName + "]", e);
+                }
+            } else {
+                Type[] types = theConstructor.getGenericParameterTypes();
+                if ((types.length != 1) || (!types[0].equals(Object[].class)))
+                    mode = DIRECT_ARGS;
+                else
+                    mode = WRAPPED_ARGS;
+            }
+            Class<?>[] constructorTypes = theConstructor.getParameterTypes();
+            MethodHandle handle = MethodHandles.publicLookup().unreflectConstructor(theConstructor)
+                    .asFixedArity()
+                    .asSpreader(Object[].class, constructorTypes.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+            Class<?>[] primitiveTypes = null;
+            for (Class<?> constructorType : constructorTypes)
+                if (constructorType.isPrimitive()) {
+                    primitiveTypes = constructorTypes;
+                    break;
+                }
+            return new ArgsConstructor(handle, mode, primitiveTypes);
+        } catch (IllegalAccessException | SecurityException | IllegalArgumentException e) {
+            throw new SEDALibException("Impossible de construire l'élément [" + elementName + "]", e);
+        }
+    }
+
+    /**
+     * Convert the numeric args to the primitive types of the constructor parameters, to keep the widening
+     * conversions that reflective construction allows (for example an Integer given for a long parameter).
+     *
+     * @param args           the args
+     * @param primitiveTypes the constructor parameter types
+     * @return the converted args, the same array if no conversion is needed
+     */
+    private static Object[] convertPrimitiveArgs(Object[] args, Class<?>[] primitiveTypes) {
+        Object[] result = args;
+        for (int i = 0; i < args.length && i < primitiveTypes.length; i++) {
+            Class<?> type = primitiveTypes[i];
+            Object arg = args[i];
+            if (!type.isPrimitive() || !(arg instanceof Number) || ClassUtils.primitiveToWrapper(type).isInstance(arg))
+                continue;
+            if (result == args)
+                result = args.clone();
+            Number number = (Number) arg;
+            if (type == long.class)
+                result[i] = number.longValue();
+            else if (type == int.class)
+                result[i] = number.intValue();
+            else if (type == double.class)
+                result[i] = number.doubleValue();
+            else if (type == float.class)
+                result[i] = number.floatValue();
+            else if (type == short.class)
+                result[i] = number.shortValue();
+        }
+        return result;
+    }
+}
@@ -116,7 +116,7 @@ public class DescriptionLevel extends NamedTypeMetadata {
     public boolean fillFromSedaXml(SEDAXMLEventReader xmlReader) throws SEDALibException {
         try {
             if (xmlReader.peekBlockIfNamed(elementName)) {
-                xmlReader.nextUsefullEvent();
+                xmlReader.skipNextUsefullEvent();
                 XMLEvent event = xmlReader.nextUsefullEvent();
                 if (event.isCharacters()) {
                     value = event.asCharacters().getData();
@@ -139,7 +139,7 @@ public class Weight extends NamedTypeMetadata {
         try {
             if (xmlReader.peekBlockIfNamed(elementName)) {
                 unit = xmlReader.peekAttribute("unit");
-                xmlReader.nextUsefullEvent();
+                xmlReader.skipNextUsefullEvent();
                 XMLEvent event = xmlReader.nextUsefullEvent();
                 if (event.isCharacters()) {
                     value = Double.parseDouble(event.asCharacters().getData());
@@ -32,7 +32,6 @@ import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.LinkedHashMap;
@@ -83,15 +82,14 @@ public class AnyXMLListType extends ComplexListType {
         try (ByteArrayInputStream bais = new ByteArrayInputStream(rawXmlList.getBytes("UTF-8"));
              SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
             // jump StartDocument
-            xmlReader.nextUsefullEvent();
+            xmlReader.skipNextUsefullEvent();
             String tmp = xmlReader.peekName();
             while (tmp != null) {
                 SEDAMetadata sm = (AnyXMLType) SEDAMetadata.fromSedaXml(xmlReader, AnyXMLType.class);
                 addMetadata(sm);
                 tmp = xmlReader.peekName();
             }
-            XMLEvent event = xmlReader.xmlReader.peek();
-            if (!event.isEndDocument())
+            if (!xmlReader.peekEndDocument())
                 throw new SEDALibException("Il y a des champs illégaux");
         } catch (XMLStreamException | SEDALibException | IOException e) {
             throw new SEDALibException("Erreur de lecture de [" + elementName + "]", e);
@@ -121,7 +121,7 @@ public class BooleanType extends NamedTypeMetadata {
         String tmp;
         try {
             if (xmlReader.peekBlockIfNamed(elementName)) {
-                xmlReader.nextUsefullEvent();
+                xmlReader.skipNextUsefullEvent();
                 XMLEvent event = xmlReader.nextUsefullEvent();
                 if (event.isCharacters()) {
                     tmp = event.asCharacters().getData();
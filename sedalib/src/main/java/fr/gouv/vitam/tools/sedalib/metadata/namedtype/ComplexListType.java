@@ -29,26 +29,22 @@ package fr.gouv.vitam.tools.sedalib.metadata.namedtype;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import fr.gouv.vitam.tools.sedalib.metadata.SEDAMetadata;
+import fr.gouv.vitam.tools.sedalib.metadata.SEDAMetadataFactory;
 import fr.gouv.vitam.tools.sedalib.metadata.content.Gps;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.ClassUtils;
-import org.apache.commons.lang3.reflect.ConstructorUtils;
 import org.apache.commons.lang3.reflect.FieldUtils;
 
 import javax.xml.stream.XMLStreamException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The Class ComplexListType.
@@ -60,17 +56,24 @@ public abstract class ComplexListType extends NamedTypeMetadata {
     /**
      * The Sub type metadata ordered list map.
      */
-    static protected HashMap<Class, List<String>> subTypeMetadataOrderedListMap = new HashMap<Class, List<String>>();
+    static protected ConcurrentHashMap<Class, List<String>> subTypeMetadataOrderedListMap =
+            new ConcurrentHashMap<Class, List<String>>();
     /**
      * The Sub type metadata map map.
      */
-    static protected HashMap<Class, LinkedHashMap<String, ComplexListMetadataKind>> subTypeMetadataMapMap =
-            new HashMap<Class, LinkedHashMap<String, ComplexListMetadataKind>>();
+    static protected ConcurrentHashMap<Class, LinkedHashMap<String, ComplexListMetadataKind>> subTypeMetadataMapMap =
+            new ConcurrentHashMap<Class, LinkedHashMap<String, ComplexListMetadataKind>>();
+    /**
+     * The Sub type metadata rank map map, which link for each sub type the xml element name with its rank in the
+     * ordered list.
+     */
+    static protected ConcurrentHashMap<Class, HashMap<String, Integer>> subTypeMetadataRankMapMap =
+            new ConcurrentHashMap<Class, HashMap<String, Integer>>();
     /**
      * The Sub type expandable map.
      */
-    static protected HashMap<Class, Boolean> subTypeNotExpandableMap =
-            new HashMap<Class, Boolean>();
+    static protected ConcurrentHashMap<Class, Boolean> subTypeNotExpandableMap =
+            new ConcurrentHashMap<Class, Boolean>();
 
     /**
      * The metadata list.
@@ -87,52 +90,6 @@ public abstract class ComplexListType extends NamedTypeMetadata {
         this.metadataList = new ArrayList<SEDAMetadata>();
     }
 
-    /**
-     * Gets convenient constructor for args.
-     *
-     * @param metadataClass the metadata class
-     * @param args          the args
-     * @return the convenient constructor for args
-     * @throws SEDALibException the seda lib exception
-     */
-    private static SEDAMetadata getClassMemberConstructedFromArgs(Class<?> metadataClass, String elementName, Object[] args) throws SEDALibException, IllegalAccessException, InvocationTargetException, InstantiationException {
-        Object[] newArgs;
-        boolean needName = metadataClass.getName().contains(".namedtype.");
-        SEDAMetadata sm;
-        args = ArrayUtils.nullToEmpty(args);
-        if (needName) {
-            newArgs = new Object[args.length + 1];
-            newArgs[0] = elementName;
-            System.arraycopy(args, 0, newArgs, 1, args.length);
-        } else
-            newArgs = args;
-        Class<?>[] parameterTypes = ClassUtils.toClass(newArgs);
-        Constructor theConstructor = ConstructorUtils.getMatchingAccessibleConstructor(metadataClass, parameterTypes);
-        if (theConstructor == null) {
-            try {
-                if (metadataClass.getName().contains(".namedtype."))
-                    sm = (SEDAMetadata) metadataClass.getConstructor(String.class, Object[].class).newInstance(elementName, args);
-                else {
-                    newArgs = new Object[1];
-                    newArgs[0] = args;
-                    sm = (SEDAMetadata) metadataClass.getConstructor(Object[].class).newInstance(newArgs);
-                }
-            } catch (NoSuchMethodException e) {
-                throw new SEDALibException("Pas de constructeur de l'élément [" + elementName + "]", e);
-            }
-        } else {
-            Type[] types = theConstructor.getGenericParameterTypes();
-            if ((types.length != 1) || (!types[0].equals(Object[].class)))
-                sm = (SEDAMetadata) theConstructor.newInstance(newArgs);
-            else {
-                newArgs = new Object[1];
-                newArgs[0] = args;
-                sm = (SEDAMetadata) theConstructor.newInstance(newArgs);
-            }
-        }
-        return sm;
-    }
-
     /**
      * Construct a new SEDA metadata.
      *
@@ -143,24 +100,15 @@ public abstract class ComplexListType extends NamedTypeMetadata {
      */
     private SEDAMetadata newSEDAMetadata(String elementName, Object[] args) throws SEDALibException {
         ComplexListMetadataKind mi = getMetadataMap().get(elementName);
-        Constructor<?> constructor;
-        int i;
-        try {
-            Class metadataClass;
-            if (mi == null)
-                metadataClass = AnyXMLType.class;
-            else
-                metadataClass = mi.metadataClass;
-            SEDAMetadata sm = getClassMemberConstructedFromArgs(metadataClass, elementName, args);
-            if (sm == null)
-                throw new SEDALibException("Impossible de construire l'élément [" + elementName + "]");
-            return sm;
-        } catch (SecurityException | InstantiationException | IllegalAccessException
-                | IllegalArgumentException e) {
-            throw new SEDALibException("Impossible de construire l'élément [" + elementName + "]", e);
-        } catch (InvocationTargetException te) {
-            throw new SEDALibException("Impossible de construire l'élément [" + elementName + "]", te.getTargetException());
-        }
+        Class<?> metadataClass;
+        if (mi == null)
+            metadataClass = AnyXMLType.class;
+        else
+            metadataClass = mi.metadataClass;
+        SEDAMetadata sm = SEDAMetadataFactory.getFactory(metadataClass).newMetadata(elementName, args);
+        if (sm == null)
+            throw new SEDALibException("Impossible de construire l'élément [" + elementName + "]");
+        return sm;
     }
 
     /**
@@ -183,47 +131,12 @@ public abstract class ComplexListType extends NamedTypeMetadata {
      * @throws SEDALibException if construction is not possible, most of the time wrong args
      */
     public void addNewMetadata(String elementName, Object... args) throws SEDALibException {
-        int addOrderIndex, curOrderIndex, i;
-        boolean manyFlag, setFlag;
         if (args.length > 0) {
-            addOrderIndex = getMetadataOrderedList().indexOf(elementName);
-            i = 0;
-            setFlag = false;
-            if (addOrderIndex == -1) {
-                if (isNotExpendable())
-                    throw new SEDALibException(
-                            "Impossible d'étendre le schéma avec des métadonnées non prévues ["
-                                    + elementName + "]");
-                manyFlag = true;
-                boolean noBeforeEqual = true;
-                for (SEDAMetadata sm : metadataList) {
-                    if ((sm.getXmlElementName().equals(elementName)) && noBeforeEqual)
-                        noBeforeEqual = false;
-                    if (!(sm.getXmlElementName().equals(elementName)) && !noBeforeEqual)
-                        break;
-                    i++;
-                }
-            } else {
-                manyFlag = getMetadataMap().get(elementName).many;
-                for (SEDAMetadata sm : metadataList) {
-                    curOrderIndex = getMetadataOrderedList().indexOf(sm.getXmlElementName());
-                    if ((!manyFlag) && (curOrderIndex == addOrderIndex)) {
-                        setFlag = true;
-                        break;
-                    }
-                    if ((curOrderIndex == -1) || (curOrderIndex > addOrderIndex))
-                        break;
-                    i++;
-                }
-            }
-            if (manyFlag)
+            int i = getInsertionIndex(elementName, elementName);
+            if (isReplacedAt(i, elementName))
+                metadataList.set(i, newSEDAMetadata(elementName, args));
+            else
                 metadataList.add(i, newSEDAMetadata(elementName, args));
-            else {
-                if (setFlag)
-                    metadataList.set(i, newSEDAMetadata(elementName, args));
-                else
-                    metadataList.add(i, newSEDAMetadata(elementName, args));
-            }
         }
     }
 
@@ -235,46 +148,117 @@ public abstract class ComplexListType extends NamedTypeMetadata {
      * @throws SEDALibException if try to add an unknown metadata in a not                          expandable type
      */
     public void addMetadata(SEDAMetadata sedaMetadata) throws SEDALibException {
-        int addOrderIndex, curOrderIndex, i;
-        boolean manyFlag, setFlag;
-        addOrderIndex = getMetadataOrderedList().indexOf(sedaMetadata.getXmlElementName());
-        i = 0;
-        setFlag = false;
-        if (addOrderIndex == -1) {
+        int i = getInsertionIndex(sedaMetadata.getXmlElementName(), elementName);
+        if (isReplacedAt(i, sedaMetadata.getXmlElementName()))
+            metadataList.set(i, sedaMetadata);
+        else
+            metadataList.add(i, sedaMetadata);
+    }
+
+    /**
+     * Gets the rank of a metadata in the ordered list, or Integer.MAX_VALUE for a metadata not in the ordered list,
+     * as those are always kept after the known ones.
+     *
+     * @param rankMap the rank map
+     * @param name    the metadata xml element name
+     * @return the rank
+     */
+    private static int getRank(HashMap<String, Integer> rankMap, String name) {
+        Integer rank = rankMap.get(name);
+        return (rank == null ? Integer.MAX_VALUE : rank);
+    }
+
+    /**
+     * Search by dichotomy, in the metadata list sorted by rank, the first index of a metadata with a rank greater or
+     * equal (or strictly greater if strict) than the given rank.
+     *
+     * @param rankMap the rank map
+     * @param rank    the rank
+     * @param strict  the strict flag
+     * @return the index, which is the list size if there is no such metadata
+     */
+    private int searchRankIndex(HashMap<String, Integer> rankMap, int rank, boolean strict) {
+        int low = 0;
+        int high = metadataList.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int midRank = getRank(rankMap, metadataList.get(mid).getXmlElementName());
+            if ((midRank < rank) || (strict && (midRank == rank)))
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Gets the index where a metadata has to be inserted, or replaced if it can't have many values and already
+     * exists, to keep the metadata list in the ordered list order.
+     *
+     * @param name      the metadata xml element name
+     * @param errorName the name used in the error message
+     * @return the index
+     * @throws SEDALibException if try to add an unknown metadata in a not expandable type
+     */
+    private int getInsertionIndex(String name, String errorName) throws SEDALibException {
+        HashMap<String, Integer> rankMap = getMetadataRankMap();
+        Integer rank = rankMap.get(name);
+        if (rank == null) {
             if (isNotExpendable())
                 throw new SEDALibException(
                         "Impossible d'étendre le schéma avec des métadonnées non prévues ["
-                                + elementName + "]");
-            manyFlag = true;
-            boolean noBeforeEqual = true;
-            for (SEDAMetadata sm : metadataList) {
-                if ((sm.getXmlElementName().equals(sedaMetadata.getXmlElementName())) && noBeforeEqual)
-                    noBeforeEqual = false;
-                if (!(sm.getXmlElementName().equals(sedaMetadata.getXmlElementName())) && !noBeforeEqual)
-                    break;
-                i++;
-            }
-        } else {
-            manyFlag = getMetadataMap().get(sedaMetadata.getXmlElementName()).many;
-            for (SEDAMetadata sm : metadataList) {
-                curOrderIndex = getMetadataOrderedList().indexOf(sm.getXmlElementName());
-                if ((!manyFlag) && (curOrderIndex == addOrderIndex)) {
-                    setFlag = true;
+                                + errorName + "]");
+            // after the same name metadata, if any, else at the end
+            int i = searchRankIndex(rankMap, Integer.MAX_VALUE, false);
+            boolean found = false;
+            for (; i < metadataList.size(); i++) {
+                if (metadataList.get(i).getXmlElementName().equals(name))
+                    found = true;
+                else if (found)
                     break;
-                }
-                if ((curOrderIndex == -1) || (curOrderIndex > addOrderIndex))
-                    break;
-                i++;
             }
+            return i;
         }
-        if (manyFlag)
-            metadataList.add(i, sedaMetadata);
-        else {
-            if (setFlag)
-                metadataList.set(i, sedaMetadata);
-            else
-                metadataList.add(i, sedaMetadata);
+        return searchRankIndex(rankMap, rank, getMetadataMap().get(name).many);
+    }
+
+    /**
+     * Checks if the metadata at insertion index has to be replaced, because it has the same name and can't have many
+     * values.
+     *
+     * @param i    the insertion index
+     * @param name the metadata xml element name
+     * @return true, if it has to be replaced
+     */
+    private boolean isReplacedAt(int i, String name) {
+        return (i < metadataList.size()) && !isAMultiValuedMetadata(name)
+                && metadataList.get(i).getXmlElementName().equals(name);
+    }
+
+    /**
+     * Gets the index of the first metadata with this name, or -1 if there is none.
+     *
+     * @param name the metadata xml element name
+     * @return the index
+     */
+    private int getFirstMetadataIndex(String name) {
+        HashMap<String, Integer> rankMap;
+        try {
+            rankMap = getMetadataRankMap();
+        } catch (SEDALibException e) {
+            rankMap = null;
+        }
+        int i = 0;
+        if (rankMap != null) {
+            Integer rank = rankMap.get(name);
+            i = searchRankIndex(rankMap, (rank == null ? Integer.MAX_VALUE : rank), false);
+            if (rank != null)
+                return ((i < metadataList.size()) && metadataList.get(i).getXmlElementName().equals(name) ? i : -1);
         }
+        for (; i < metadataList.size(); i++)
+            if (metadataList.get(i).getXmlElementName().equals(name))
+                return i;
+        return -1;
     }
 
     /**
@@ -284,11 +268,7 @@ public abstract class ComplexListType extends NamedTypeMetadata {
      * @return true, if metadata is lacking
      */
     public boolean isMetadataLacking(String elementName) {
-        for (SEDAMetadata sm : metadataList) {
-            if (sm.getXmlElementName().equals(elementName))
-                return false;
-        }
-        return true;
+        return getFirstMetadataIndex(elementName) == -1;
     }
 
     /*
@@ -385,7 +365,7 @@ public abstract class ComplexListType extends NamedTypeMetadata {
         try (ByteArrayInputStream bais = new ByteArrayInputStream(xmlData.getBytes("UTF-8"));
              SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
             // jump document start
-            xmlReader.nextUsefullEvent();
+            xmlReader.skipNextUsefullEvent();
             String tmp = xmlReader.peekName();
             while (tmp != null) {
                 ComplexListMetadataKind mi = getMetadataMap().get(tmp);
@@ -407,7 +387,7 @@ public abstract class ComplexListType extends NamedTypeMetadata {
         }
     }
 
-    private static void getNewComplexListSubType(Class subClass) throws SEDALibException {
+    private static synchronized void getNewComplexListSubType(Class subClass) throws SEDALibException {
         List<Field> fields = FieldUtils.getFieldsListWithAnnotation(subClass, ComplexListMetadataMap.class);
         if (fields.isEmpty())
             throw new SEDALibException("Le type " + subClass + " n'a pas de variable annotée @ComplexListMetadataMap accessible");
@@ -428,7 +408,13 @@ public abstract class ComplexListType extends NamedTypeMetadata {
         }
         subTypeMetadataMapMap.put(subClass, metadataMap);
         subTypeMetadataOrderedListMap.put(subClass, new ArrayList(metadataMap.keySet()));
+        HashMap<String, Integer> rankMap = new HashMap<String, Integer>();
+        for (String name : metadataMap.keySet())
+            rankMap.put(name, rankMap.size());
+        subTypeMetadataRankMapMap.put(subClass, rankMap);
         subTypeNotExpandableMap.put(subClass, !fields.get(0).getAnnotation(ComplexListMetadataMap.class).isExpandable());
+        for (ComplexListMetadataKind kind : metadataMap.values())
+            SEDAMetadataFactory.getFactory(kind.metadataClass);
     }
 
     /**
@@ -447,6 +433,22 @@ public abstract class ComplexListType extends NamedTypeMetadata {
         return metadataOrderedList;
     }
 
+    /**
+     * Gets the metadata rank map, which link xml element name with its rank in the metadata ordered list.
+     *
+     * @return the metadata rank map
+     * @throws SEDALibException if the @ComplexListMetadataMap annotated static variable doesn't exist or is badly formed
+     */
+    @JsonIgnore
+    public HashMap<String, Integer> getMetadataRankMap() throws SEDALibException {
+        HashMap<String, Integer> metadataRankMap = subTypeMetadataRankMapMap.get(this.getClass());
+        if (metadataRankMap == null) {
+            getNewComplexListSubType(this.getClass());
+            metadataRankMap = subTypeMetadataRankMapMap.get(this.getClass());
+        }
+        return metadataRankMap;
+    }
+
     /**
      * Gets the metadata map, which link xml element name with metadata class and
      * cardinality.
@@ -511,20 +513,23 @@ public abstract class ComplexListType extends NamedTypeMetadata {
      */
     public String getSimpleMetadata(String metadataName) {
         String langText = null;
-        for (SEDAMetadata sm : metadataList) {
-            if (sm.getXmlElementName().equals(metadataName)) {
-                if (sm instanceof StringType)
-                    return ((StringType) sm).getValue();
-                else if ((sm instanceof TextType) && (((TextType) sm).getLang() == null))
-                    return ((TextType) sm).getValue();
-                else if ((sm instanceof TextType) && (((TextType) sm).getLang().equals("fr")))
-                    langText = ((TextType) sm).getValue();
-                else if (sm instanceof DateTimeType) {
-                    if (((DateTimeType) sm).getValue()==null)
-                        return "";
-                    else
-                        return SEDAXMLStreamWriter.getStringFromDateTime(((DateTimeType) sm).getValue());
-                }
+        int first = getFirstMetadataIndex(metadataName);
+        if (first == -1)
+            return null;
+        for (SEDAMetadata sm : metadataList.subList(first, metadataList.size())) {
+            if (!sm.getXmlElementName().equals(metadataName))
+                break;
+            if (sm instanceof StringType)
+                return ((StringType) sm).getValue();
+            else if ((sm instanceof TextType) && (((TextType) sm).getLang() == null))
+                return ((TextType) sm).getValue();
+            else if ((sm instanceof TextType) && (((TextType) sm).getLang().equals("fr")))
+                langText = ((TextType) sm).getValue();
+            else if (sm instanceof DateTimeType) {
+                if (((DateTimeType) sm).getValue()==null)
+                    return "";
+                else
+                    return SEDAXMLStreamWriter.getStringFromDateTime(((DateTimeType) sm).getValue());
             }
         }
         return langText;
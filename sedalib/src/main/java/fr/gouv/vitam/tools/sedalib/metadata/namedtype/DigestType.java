@@ -138,7 +138,7 @@ public class DigestType extends NamedTypeMetadata {
         try {
             if (xmlReader.peekBlockIfNamed(elementName)) {
                 algorithm = xmlReader.peekAttribute("algorithm");
-                xmlReader.nextUsefullEvent();
+                xmlReader.skipNextUsefullEvent();
                 XMLEvent event = xmlReader.nextUsefullEvent();
                 if (event.isCharacters()) {
                     value = event.asCharacters().getData();
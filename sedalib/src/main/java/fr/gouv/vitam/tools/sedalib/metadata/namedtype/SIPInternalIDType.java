@@ -32,7 +32,6 @@ import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLEventReader;
 import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
 
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
 import java.util.LinkedHashMap;
 
 /**
@@ -110,16 +109,11 @@ public class SIPInternalIDType extends NamedTypeMetadata {
     public boolean fillFromSedaXml(SEDAXMLEventReader xmlReader) throws SEDALibException {
         try {
             if (xmlReader.peekBlockIfNamed(elementName)) {
-                xmlReader.nextUsefullEvent();
-                XMLEvent event = xmlReader.nextUsefullEvent();
-                if (event.isCharacters()) {
-                    value = event.asCharacters().getData();
-                    event = xmlReader.nextUsefullEvent();
-                } else
+                xmlReader.skipNextUsefullEvent();
+                value = xmlReader.nextCharactersIfAny();
+                if (value == null)
                     value = "";
-                if ((!event.isEndElement())
-                        || (!elementName.equals(event.asEndElement().getName().getLocalPart())))
-                    throw new SEDALibException("Elément " + elementName + " mal terminé");
+                xmlReader.endBlockNamed(elementName);
             } else
                 return false;
         } catch (XMLStreamException | IllegalArgumentException | SEDALibException e) {
@@ -33,7 +33,6 @@ import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
 
 import javax.xml.XMLConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
 import java.util.LinkedHashMap;
 
 /**
@@ -139,15 +138,11 @@ public class TextType extends NamedTypeMetadata {
         try {
             if (xmlReader.peekBlockIfNamed(elementName)) {
                 lang = xmlReader.peekAttribute(XMLConstants.XML_NS_URI,"lang");
-                xmlReader.nextUsefullEvent();
-                XMLEvent event = xmlReader.nextUsefullEvent();
-                if (event.isCharacters()) {
-                    value = event.asCharacters().getData();
-                    event = xmlReader.nextUsefullEvent();
-                } else
+                xmlReader.skipNextUsefullEvent();
+                value = xmlReader.nextCharactersIfAny();
+                if (value == null)
                     value = "";
-                if ((!event.isEndElement()) || (!elementName.equals(event.asEndElement().getName().getLocalPart())))
-                    throw new SEDALibException("Elément " + elementName + " mal terminé");
+                xmlReader.endBlockNamed(elementName);
             } else
                 return false;
         } catch (XMLStreamException | IllegalArgumentException | SEDALibException e) {
@@ -0,0 +1,420 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The Class CompactXMLData.
+ * <p>
+ * Class for keeping an unparsed XML block, as ArchiveUnit Content or Management, with a memory footprint depending
+ * on the storage mode:
+ * <ul>
+ * <li>STRING_STORAGE: the String as is, which is the default,</li>
+ * <li>UTF8_STORAGE: the UTF-8 bytes,</li>
+ * <li>DEFLATED_STORAGE: the UTF-8 bytes deflated with a dictionary of the common SEDA tags, if smaller,</li>
+ * <li>DISK_STORAGE: the deflated bytes kept in a {@link CompactXMLDataDiskStore}, only the location being kept
+ * on heap.</li>
+ * </ul>
+ * A block can also be kept as its byte range in the manifest file it was read from, when read through a
+ * {@link CompactXMLDataManifestSource}, whatever the storage mode.
+ * <p>
+ * The storage mode is chosen at creation according to the mode defined for all blocks, see
+ * {@link #setStorageMode(int)}. The bytes forms can be written as is in an UTF-8 stream, see
+ * {@link SEDAXMLStreamWriter#writeRawXMLBlockIfNotEmpty(CompactXMLData)}.
+ */
+public final class CompactXMLData {
+
+    /**
+     * The Constant STRING_STORAGE.
+     */
+    public static final int STRING_STORAGE = 0;
+
+    /**
+     * The Constant UTF8_STORAGE.
+     */
+    public static final int UTF8_STORAGE = 1;
+
+    /**
+     * The Constant DEFLATED_STORAGE.
+     */
+    public static final int DEFLATED_STORAGE = 2;
+
+    /**
+     * The Constant DISK_STORAGE.
+     */
+    public static final int DISK_STORAGE = 3;
+
+    /**
+     * The dictionary shared by all deflated blocks, the most frequent strings being at the end.
+     */
+    private static final byte[] DICTIONARY = ("<ArchiveUnitProfile></ArchiveUnitProfile><Management>" +
+            "<AccessRule><Rule></Rule><StartDate></StartDate></AccessRule><AppraisalRule><FinalAction>" +
+            "</FinalAction></AppraisalRule></Management><CustodialHistory><CustodialHistoryItem>" +
+            "</CustodialHistoryItem></CustodialHistory><OriginatingAgency><Identifier></Identifier>" +
+            "</OriginatingAgency><SubmissionAgency></SubmissionAgency><Writer><FullName></FullName>" +
+            "<FirstName></FirstName><BirthName></BirthName></Writer><Addressee></Addressee><Recipient></Recipient>" +
+            "<Keyword><KeywordContent></KeywordContent><KeywordType></KeywordType></Keyword><Tag></Tag>" +
+            "<OriginatingSystemId></OriginatingSystemId><DocumentType></DocumentType><Language></Language>" +
+            "<Status></Status><Version></Version><Event><EventDateTime></EventDateTime><EventType></EventType>" +
+            "</Event><CreatedDate></CreatedDate><TransactedDate></TransactedDate><ReceivedDate></ReceivedDate>" +
+            "<SentDate></SentDate><StartDate></StartDate><EndDate></EndDate><Description></Description>" +
+            "<Title></Title><Content>\n<DescriptionLevel>Item</DescriptionLevel><DescriptionLevel>RecordGrp" +
+            "</DescriptionLevel>\n          <Title>").getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The storage mode used for new blocks.
+     */
+    private static volatile int storageMode = STRING_STORAGE;
+
+    /**
+     * The disk store used for new blocks in DISK_STORAGE mode.
+     */
+    private static volatile CompactXMLDataDiskStore diskStore = null;
+
+    /**
+     * The deflater of each thread, reused between blocks.
+     */
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+
+    /**
+     * The inflater of each thread, reused between blocks.
+     */
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    /**
+     * The XML String, in STRING_STORAGE mode.
+     */
+    private final String xmlString;
+
+    /**
+     * The XML UTF-8 bytes, possibly deflated.
+     */
+    private final byte[] bytes;
+
+    /**
+     * The UTF-8 length, if deflated, or -1.
+     */
+    private final int inflatedLength;
+
+    /**
+     * The disk store, in DISK_STORAGE mode, or the manifest source, or null.
+     */
+    private final CompactXMLDataStorage store;
+
+    /**
+     * The location in the disk store or the manifest source.
+     */
+    private final long location;
+
+    /**
+     * The length in the disk store or the manifest source.
+     */
+    private final int storedLength;
+
+    /**
+     * Instantiates a new compact XML data.
+     *
+     * @param xmlString      the xml string
+     * @param bytes          the bytes
+     * @param inflatedLength the inflated length
+     */
+    private CompactXMLData(String xmlString, byte[] bytes, int inflatedLength) {
+        this.xmlString = xmlString;
+        this.bytes = bytes;
+        this.inflatedLength = inflatedLength;
+        this.store = null;
+        this.location = -1;
+        this.storedLength = 0;
+    }
+
+    /**
+     * Instantiates a new compact XML data kept in a disk store or a manifest source.
+     *
+     * @param store          the disk store or the manifest source
+     * @param location       the location in the disk store or the manifest source
+     * @param storedLength   the length in the disk store or the manifest source
+     * @param inflatedLength the inflated length
+     */
+    private CompactXMLData(CompactXMLDataStorage store, long location, int storedLength, int inflatedLength) {
+        this.xmlString = null;
+        this.bytes = null;
+        this.inflatedLength = inflatedLength;
+        this.store = store;
+        this.location = location;
+        this.storedLength = storedLength;
+    }
+
+    /**
+     * Gets the storage mode used for new blocks.
+     *
+     * @return the storage mode
+     */
+    public static int getStorageMode() {
+        return storageMode;
+    }
+
+    /**
+     * Sets the storage mode used for new blocks, the existing ones being kept as they are.
+     *
+     * @param storageMode the storage mode STRING_STORAGE, UTF8_STORAGE, DEFLATED_STORAGE or DISK_STORAGE
+     */
+    public static void setStorageMode(int storageMode) {
+        if ((storageMode < STRING_STORAGE) || (storageMode > DISK_STORAGE))
+            throw new IllegalArgumentException("Mode de stockage XML inconnu [" + storageMode + "]");
+        if ((storageMode == DISK_STORAGE) && (diskStore == null))
+            throw new IllegalArgumentException("Pas de stockage disque défini pour les blocs XML");
+        CompactXMLData.storageMode = storageMode;
+    }
+
+    /**
+     * Gets the disk store used for new blocks in DISK_STORAGE mode.
+     *
+     * @return the disk store or null
+     */
+    public static CompactXMLDataDiskStore getDiskStore() {
+        return diskStore;
+    }
+
+    /**
+     * Sets the disk store used for new blocks in DISK_STORAGE mode. If set to null
+     * in DISK_STORAGE mode, the mode falls back to DEFLATED_STORAGE.
+     *
+     * @param diskStore the disk store
+     */
+    public static void setDiskStore(CompactXMLDataDiskStore diskStore) {
+        CompactXMLData.diskStore = diskStore;
+        if ((diskStore == null) && (storageMode == DISK_STORAGE))
+            storageMode = DEFLATED_STORAGE;
+    }
+
+    /**
+     * Creates the compact XML data in the current storage mode.
+     *
+     * @param xmlString the xml string
+     * @return the compact XML data or null if xmlString is null
+     */
+    public static CompactXMLData of(String xmlString) {
+        if (xmlString == null)
+            return null;
+        int mode = storageMode;
+        if ((mode == STRING_STORAGE) || xmlString.isEmpty())
+            return new CompactXMLData(xmlString, null, -1);
+        byte[] utf8 = xmlString.getBytes(StandardCharsets.UTF_8);
+        if (mode == UTF8_STORAGE)
+            return new CompactXMLData(null, utf8, -1);
+        byte[] deflated = deflate(utf8);
+        CompactXMLDataDiskStore store = diskStore;
+        if ((mode == DISK_STORAGE) && (store != null)) {
+            try {
+                if (deflated == null)
+                    return new CompactXMLData(store, store.store(utf8), utf8.length, -1);
+                return new CompactXMLData(store, store.store(deflated), deflated.length, utf8.length);
+            } catch (IOException | IllegalStateException ignored) {
+                // kept in memory if the store is not usable
+            }
+        }
+        if (deflated == null)
+            return new CompactXMLData(null, utf8, -1);
+        return new CompactXMLData(null, deflated, utf8.length);
+    }
+
+    /**
+     * Create a compact XML data kept as a byte range in a manifest source.
+     *
+     * @param source     the manifest source
+     * @param byteOffset the block first byte offset in the manifest
+     * @param length     the block length in bytes
+     * @return the compact XML data
+     */
+    static CompactXMLData ofManifestRange(CompactXMLDataManifestSource source, long byteOffset, int length) {
+        return new CompactXMLData(source, byteOffset, length, -1);
+    }
+
+    /**
+     * Deflate the bytes with the shared dictionary.
+     *
+     * @param utf8 the UTF-8 bytes
+     * @return the deflated bytes, or null if not smaller
+     */
+    private static byte[] deflate(byte[] utf8) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(utf8);
+        deflater.finish();
+        byte[] buffer = new byte[utf8.length];
+        int length = 0;
+        while (!deflater.finished() && (length < buffer.length))
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        if (!deflater.finished())
+            return null;
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Gets the UTF-8 bytes, inflated if needed.
+     *
+     * @return the UTF-8 bytes
+     */
+    private byte[] getUTF8Bytes() {
+        byte[] stored = (store == null ? bytes : store.load(location, storedLength));
+        if (inflatedLength < 0)
+            return stored;
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(stored);
+        byte[] result = new byte[inflatedLength];
+        int length = 0;
+        try {
+            while (length < inflatedLength) {
+                int n = inflater.inflate(result, length, inflatedLength - length);
+                if (n == 0) {
+                    if (inflater.needsDictionary())
+                        inflater.setDictionary(DICTIONARY);
+                    else if (inflater.finished() || inflater.needsInput())
+                        break;
+                }
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Bloc XML compressé corrompu", e);
+        }
+        if (length != inflatedLength)
+            throw new IllegalStateException("Bloc XML compressé tronqué");
+        return result;
+    }
+
+    /**
+     * Gets this block kept in the given disk store. When kept in another disk store, the stored bytes are copied, as
+     * they are, in the given one, so that the other store can be closed once all its living blocks are moved.
+     *
+     * @param target the disk store
+     * @return the compact XML data kept in the target store, or this one if not kept in another disk store
+     * @throws IOException if the target store can't store the bytes
+     */
+    public CompactXMLData moveToDiskStore(CompactXMLDataDiskStore target) throws IOException {
+        if (!(store instanceof CompactXMLDataDiskStore) || (store == target))
+            return this;
+        return new CompactXMLData(target, target.store(store.load(location, storedLength)), storedLength,
+                inflatedLength);
+    }
+
+    /**
+     * Gets the stored size in bytes, on heap or on disk, without the object overhead.
+     *
+     * @return the stored size
+     */
+    public int getStoredSize() {
+        if (xmlString != null)
+            return 2 * xmlString.length();
+        if (store != null)
+            return storedLength;
+        return bytes.length;
+    }
+
+    /**
+     * Checks if the XML block is kept in a disk store or in the manifest file it was read from.
+     *
+     * @return true, if on disk
+     */
+    public boolean isOnDisk() {
+        return store != null;
+    }
+
+    /**
+     * Checks if the XML block is empty.
+     *
+     * @return true, if empty
+     */
+    public boolean isEmpty() {
+        if (xmlString != null)
+            return xmlString.isEmpty();
+        if (store != null)
+            return storedLength == 0;
+        return bytes.length == 0;
+    }
+
+    /**
+     * Write the XML block UTF-8 bytes in the output stream.
+     *
+     * @param os the output stream
+     * @throws IOException if writing fails
+     */
+    public void writeUTF8To(OutputStream os) throws IOException {
+        if (xmlString != null)
+            os.write(xmlString.getBytes(StandardCharsets.UTF_8));
+        else
+            os.write(getUTF8Bytes());
+    }
+
+    /**
+     * Gets a reader on the XML block characters, decoding the UTF-8 bytes on the fly when not kept as a String.
+     *
+     * @return the reader
+     */
+    public Reader getReader() {
+        if (xmlString != null)
+            return new StringReader(xmlString);
+        if (store != null) {
+            String cached = store.getCached(location);
+            if (cached != null)
+                return new StringReader(cached);
+        }
+        return new InputStreamReader(new ByteArrayInputStream(getUTF8Bytes()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the XML block in String form.
+     *
+     * @return the XML string
+     */
+    @Override
+    public String toString() {
+        if (xmlString != null)
+            return xmlString;
+        if (store == null)
+            return new String(getUTF8Bytes(), StandardCharsets.UTF_8);
+        String result = store.getCached(location);
+        if (result == null) {
+            result = new String(getUTF8Bytes(), StandardCharsets.UTF_8);
+            store.putCached(location, result);
+        }
+        return result;
+    }
+}
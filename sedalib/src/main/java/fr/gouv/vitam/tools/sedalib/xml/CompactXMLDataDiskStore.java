@@ -0,0 +1,219 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.xml;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Class CompactXMLDataDiskStore.
+ * <p>
+ * Class for the on disk store of the {@link CompactXMLData} blocks in DISK_STORAGE mode. The blocks bytes are
+ * appended in memory-mapped segment files created in a temporary directory of the work directory, so that only
+ * their location is kept on heap. The last decoded blocks are kept in a LRU cache.
+ * <p>
+ * Blocks are never rewritten in place: a new value of an ArchiveUnit XML block is appended and the replaced block
+ * space is only reclaimed when the store is closed, all the segment files being then deleted. So repeated edits of
+ * the same ArchiveUnits make the segment files grow for the life of the store. The living blocks can be moved to a
+ * new store, see {@link fr.gouv.vitam.tools.sedalib.core.DataObjectPackage#moveXmlDataToDiskStore}, before closing
+ * this one, which resip does each time the current work is replaced.
+ */
+public class CompactXMLDataDiskStore extends CompactXMLDataStorage implements Closeable {
+
+    /**
+     * The Constant DEFAULT_SEGMENT_SIZE, in bytes.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The store directory.
+     */
+    private final Path storeDir;
+
+    /**
+     * The segment files size.
+     */
+    private final int segmentSize;
+
+    /**
+     * The mapped segments, the last one being the one where blocks are appended.
+     */
+    private final List<MappedByteBuffer> segments;
+
+    /**
+     * The segment files.
+     */
+    private final List<Path> segmentFiles;
+
+    /**
+     * Instantiates a new disk store with default segment and cache sizes.
+     *
+     * @param workDir the work directory in which the store directory is created
+     * @throws SEDALibException if the store directory can't be created
+     */
+    public CompactXMLDataDiskStore(Path workDir) throws SEDALibException {
+        this(workDir, DEFAULT_SEGMENT_SIZE, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Instantiates a new disk store.
+     *
+     * @param workDir     the work directory in which the store directory is created
+     * @param segmentSize the segment files size in bytes, blocks bigger than this size having their own segment
+     * @param cacheSize   the number of decoded blocks kept in cache
+     * @throws SEDALibException if the store directory can't be created
+     */
+    public CompactXMLDataDiskStore(Path workDir, int segmentSize, int cacheSize) throws SEDALibException {
+        super(cacheSize);
+        try {
+            Files.createDirectories(workDir);
+            this.storeDir = Files.createTempDirectory(workDir, "sedalib-store");
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible de créer le répertoire de stockage [" + workDir + "]", e);
+        }
+        this.segmentSize = segmentSize;
+        this.segments = new ArrayList<MappedByteBuffer>();
+        this.segmentFiles = new ArrayList<Path>();
+    }
+
+    /**
+     * Verify the store is not closed.
+     */
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("Le stockage disque des blocs XML est fermé");
+    }
+
+    /**
+     * Adds a new mapped segment.
+     *
+     * @param size the segment size
+     * @throws IOException if the segment file can't be created or mapped
+     */
+    private void addSegment(int size) throws IOException {
+        Path segmentFile = storeDir.resolve("segment" + segments.size());
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+        segmentFiles.add(segmentFile);
+    }
+
+    /**
+     * Store the bytes.
+     *
+     * @param bytes the bytes
+     * @return the location in store
+     * @throws IOException if a new segment can't be created
+     */
+    synchronized long store(byte[] bytes) throws IOException {
+        checkOpen();
+        MappedByteBuffer segment = (segments.isEmpty() ? null : segments.get(segments.size() - 1));
+        if ((segment == null) || (segment.remaining() < bytes.length)) {
+            addSegment(Math.max(segmentSize, bytes.length));
+            segment = segments.get(segments.size() - 1);
+        }
+        long location = (((long) (segments.size() - 1)) << 32) | segment.position();
+        segment.put(bytes);
+        return location;
+    }
+
+    /**
+     * Load the bytes.
+     *
+     * @param location the location in store
+     * @param length   the length
+     * @return the bytes
+     */
+    @Override
+    synchronized byte[] load(long location, int length) {
+        checkOpen();
+        ByteBuffer segment = segments.get((int) (location >>> 32)).duplicate();
+        segment.position((int) location);
+        byte[] bytes = new byte[length];
+        segment.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Gets the store directory.
+     *
+     * @return the store directory
+     */
+    public Path getStoreDir() {
+        return storeDir;
+    }
+
+    /**
+     * Gets the total size of the segment files.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getStoreSize() {
+        long size = 0;
+        for (MappedByteBuffer segment : segments)
+            size += segment.capacity();
+        return size;
+    }
+
+    /**
+     * Close the store, deleting the segment files. The blocks kept in this store are then no more readable.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        segments.clear();
+        clearCache();
+        // registered first to be deleted after the segment files if they can't be deleted now
+        storeDir.toFile().deleteOnExit();
+        for (Path segmentFile : segmentFiles)
+            try {
+                Files.delete(segmentFile);
+            } catch (IOException e) {
+                // mapped files can't be deleted on some systems till garbage collected
+                segmentFile.toFile().deleteOnExit();
+            }
+        try {
+            Files.delete(storeDir);
+        } catch (IOException ignored) {
+            // deleted on exit
+        }
+    }
+}
@@ -0,0 +1,412 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.xml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The Class CompactXMLDataManifestSource.
+ * <p>
+ * Manifest file on disk used as storage of the {@link CompactXMLData} blocks read in it. When a
+ * {@link SEDAXMLEventReader} reads the manifest through this source, the blocks can be kept as byte ranges in the
+ * manifest file, and are only loaded when needed. Exported without modification, they are copied byte for byte.
+ * <p>
+ * As the XML parser only gives character offsets, the UTF-8 decoding of the manifest is done by this source, which
+ * keeps the last decoded chunks to convert the character offsets of the blocks to byte offsets.
+ * <p>
+ * The manifest file must not be modified or deleted while blocks are kept in it.
+ */
+public class CompactXMLDataManifestSource extends CompactXMLDataStorage implements Closeable {
+
+    /**
+     * The Constant CHUNK_SIZE, in bytes read and decoded at once.
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The manifest file.
+     */
+    private final Path manifestFile;
+
+    /**
+     * The channel used to load blocks, opened on first load.
+     */
+    private FileChannel channel;
+
+    /**
+     * The last decoded chunks bytes, the current one being the last read.
+     */
+    private byte[] previousChunk, currentChunk;
+
+    /**
+     * The last decoded chunks lengths in bytes.
+     */
+    private int previousChunkLength, currentChunkLength;
+
+    /**
+     * The last decoded chunks first character offsets.
+     */
+    private long previousChunkChar, currentChunkChar;
+
+    /**
+     * The last decoded chunks first byte offsets.
+     */
+    private long previousChunkByte, currentChunkByte;
+
+    /**
+     * The Class TrackingReader.
+     * <p>
+     * UTF-8 Reader on the manifest file, decoding it by chunks cut on characters limits, and keeping the last two
+     * chunks in the source.
+     */
+    private class TrackingReader extends Reader {
+
+        /**
+         * The input stream.
+         */
+        private final InputStream is;
+
+        /**
+         * The bytes buffer, with the incomplete last character bytes of previous chunk at start.
+         */
+        private final byte[] buffer;
+
+        /**
+         * The number of bytes carried from previous chunk.
+         */
+        private int carry;
+
+        /**
+         * The UTF-8 strict decoder.
+         */
+        private final CharsetDecoder decoder;
+
+        /**
+         * The decoded characters not yet read.
+         */
+        private CharBuffer chars;
+
+        /**
+         * The total number of decoded characters and bytes before the current chunk.
+         */
+        private long charCount, byteCount;
+
+        /**
+         * The first chunk and end of stream flags.
+         */
+        private boolean first, eof;
+
+        /**
+         * Instantiates a new tracking reader.
+         *
+         * @param is the input stream
+         */
+        TrackingReader(InputStream is) {
+            this.is = is;
+            this.buffer = new byte[CHUNK_SIZE];
+            this.carry = 0;
+            this.decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            this.chars = CharBuffer.allocate(0);
+            this.charCount = 0;
+            this.byteCount = 0;
+            this.first = true;
+            this.eof = false;
+        }
+
+        /**
+         * Read and decode the next chunk.
+         *
+         * @return false if at end of stream
+         * @throws IOException if the file can't be read or is not UTF-8
+         */
+        private boolean nextChunk() throws IOException {
+            if (eof)
+                return false;
+            int length = carry;
+            int n = 0;
+            while ((length < buffer.length) && ((n = is.read(buffer, length, buffer.length - length)) != -1))
+                length += n;
+            if (n == -1)
+                eof = true;
+            int start = 0;
+            if (first && (length >= 3) && ((buffer[0] & 0xFF) == 0xEF) && ((buffer[1] & 0xFF) == 0xBB)
+                    && ((buffer[2] & 0xFF) == 0xBF)) {
+                start = 3;
+                byteCount = 3;
+            }
+            first = false;
+            int cut = length;
+            if (!eof) {
+                // cut before the last character if its bytes are not all read
+                int lead = length - 1;
+                while ((lead > start) && ((buffer[lead] & 0xC0) == 0x80))
+                    lead--;
+                if (lead + utf8SequenceLength(buffer[lead]) > length)
+                    cut = lead;
+            }
+            if ((cut == start) && eof && (length == start))
+                return false;
+            previousChunk = currentChunk;
+            previousChunkLength = currentChunkLength;
+            previousChunkChar = currentChunkChar;
+            previousChunkByte = currentChunkByte;
+            currentChunk = Arrays.copyOfRange(buffer, start, cut);
+            currentChunkLength = cut - start;
+            currentChunkChar = charCount;
+            currentChunkByte = byteCount;
+            chars = decoder.decode(ByteBuffer.wrap(buffer, start, cut - start));
+            charCount += chars.remaining();
+            byteCount += cut - start;
+            carry = length - cut;
+            System.arraycopy(buffer, cut, buffer, 0, carry);
+            return true;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.io.Reader#read(char[], int, int)
+         */
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            while (!chars.hasRemaining())
+                if (!nextChunk())
+                    return -1;
+            int n = Math.min(len, chars.remaining());
+            chars.get(cbuf, off, n);
+            return n;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.io.Reader#close()
+         */
+        @Override
+        public void close() throws IOException {
+            is.close();
+        }
+    }
+
+    /**
+     * Instantiates a new manifest source.
+     *
+     * @param manifestFile the manifest file
+     */
+    public CompactXMLDataManifestSource(Path manifestFile) {
+        super(DEFAULT_CACHE_SIZE);
+        this.manifestFile = manifestFile;
+        this.channel = null;
+    }
+
+    /**
+     * Gets the number of bytes of an UTF-8 sequence from its lead byte.
+     *
+     * @param lead the lead byte
+     * @return the sequence length
+     */
+    private static int utf8SequenceLength(byte lead) {
+        if ((lead & 0x80) == 0)
+            return 1;
+        if ((lead & 0xE0) == 0xC0)
+            return 2;
+        if ((lead & 0xF0) == 0xE0)
+            return 3;
+        return 4;
+    }
+
+    /**
+     * Gets the number of UTF-16 characters of an UTF-8 sequence from its lead byte.
+     *
+     * @param lead the lead byte
+     * @return the characters count
+     */
+    private static int utf8SequenceChars(byte lead) {
+        return ((lead & 0xF8) == 0xF0 ? 2 : 1);
+    }
+
+    /**
+     * Gets the offset in bytes of a character offset in a chunk, or -1 if not in it.
+     *
+     * @param chunk      the chunk bytes
+     * @param length     the chunk length
+     * @param chunkChar  the chunk first character offset
+     * @param chunkByte  the chunk first byte offset
+     * @param charOffset the character offset
+     * @return the byte offset
+     */
+    private static long getByteOffsetInChunk(byte[] chunk, int length, long chunkChar, long chunkByte,
+                                             long charOffset) {
+        if ((chunk == null) || (charOffset < chunkChar))
+            return -1;
+        long chars = chunkChar;
+        int i = 0;
+        while ((chars < charOffset) && (i < length)) {
+            chars += utf8SequenceChars(chunk[i]);
+            i += utf8SequenceLength(chunk[i]);
+        }
+        if (chars != charOffset)
+            return -1;
+        return chunkByte + i;
+    }
+
+    /**
+     * Create a new UTF-8 reader on the manifest file, which decoded chunks are tracked by this source.
+     *
+     * @return the reader
+     * @throws IOException if the manifest file can't be opened
+     */
+    Reader newTrackingReader() throws IOException {
+        previousChunk = null;
+        currentChunk = null;
+        return new TrackingReader(Files.newInputStream(manifestFile));
+    }
+
+    /**
+     * Gets the byte offset in the manifest file of a character offset in the last decoded chunks.
+     *
+     * @param charOffset the character offset
+     * @return the byte offset, or -1 if not in the last decoded chunks
+     */
+    long getByteOffset(long charOffset) {
+        long result = getByteOffsetInChunk(currentChunk, currentChunkLength, currentChunkChar, currentChunkByte,
+                charOffset);
+        if (result == -1)
+            result = getByteOffsetInChunk(previousChunk, previousChunkLength, previousChunkChar, previousChunkByte,
+                    charOffset);
+        return result;
+    }
+
+    /**
+     * Scan the manifest file to get the byte offset of the character at a given number of characters after a known
+     * byte offset.
+     *
+     * @param fromByte  the known byte offset, at a character start
+     * @param charCount the number of characters after
+     * @return the byte offset
+     * @throws IOException if the manifest file can't be read
+     */
+    long scanByteOffset(long fromByte, long charCount) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(CHUNK_SIZE);
+        long position = fromByte;
+        long chars = 0;
+        while (true) {
+            bb.clear();
+            if (getChannel().read(bb, position) <= 0) {
+                if (chars == charCount)
+                    return position;
+                throw new IOException("Fin de fichier inattendue dans le manifest [" + manifestFile + "]");
+            }
+            bb.flip();
+            while (bb.hasRemaining()) {
+                byte b = bb.get();
+                // only lead bytes start characters
+                if ((b & 0xC0) != 0x80) {
+                    if (chars >= charCount)
+                        return position;
+                    chars += utf8SequenceChars(b);
+                }
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Gets the channel used to load blocks, opening it if needed.
+     *
+     * @return the channel
+     * @throws IOException if the manifest file can't be opened
+     */
+    private synchronized FileChannel getChannel() throws IOException {
+        if (closed)
+            throw new IllegalStateException("La source manifest des blocs XML est fermée");
+        if (channel == null)
+            channel = FileChannel.open(manifestFile, StandardOpenOption.READ);
+        return channel;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see fr.gouv.vitam.tools.sedalib.xml.CompactXMLDataStorage#load(long, int)
+     */
+    @Override
+    byte[] load(long location, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer bb = ByteBuffer.wrap(bytes);
+        try {
+            FileChannel fc = getChannel();
+            while (bb.hasRemaining())
+                if (fc.read(bb, location + bb.position()) < 0)
+                    throw new IOException("Fin de fichier inattendue");
+        } catch (IOException e) {
+            throw new IllegalStateException("Impossible de lire un bloc XML dans le manifest [" + manifestFile + "]", e);
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the manifest file.
+     *
+     * @return the manifest file
+     */
+    public Path getManifestFile() {
+        return manifestFile;
+    }
+
+    /**
+     * Close the source. The blocks kept in the manifest are then no more readable.
+     *
+     * @throws IOException if the channel can't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        clearCache();
+        if (channel != null)
+            channel.close();
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.xml;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The Class CompactXMLDataStorage.
+ * <p>
+ * Common part of the storages out of heap of {@link CompactXMLData} blocks, addressed by a location and a length,
+ * with a LRU cache of decoded blocks.
+ */
+abstract class CompactXMLDataStorage {
+
+    /**
+     * The Constant DEFAULT_CACHE_SIZE, in number of decoded blocks.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+
+    /**
+     * The LRU cache of decoded blocks by location.
+     */
+    private final Map<Long, String> cache;
+
+    /**
+     * The closed flag.
+     */
+    protected boolean closed;
+
+    /**
+     * Instantiates a new storage.
+     *
+     * @param cacheSize the number of decoded blocks kept in cache
+     */
+    CompactXMLDataStorage(final int cacheSize) {
+        this.cache = new LinkedHashMap<Long, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.closed = false;
+    }
+
+    /**
+     * Load the bytes.
+     *
+     * @param location the location in storage
+     * @param length   the length
+     * @return the bytes
+     */
+    abstract byte[] load(long location, int length);
+
+    /**
+     * Gets the decoded block in cache.
+     *
+     * @param location the location in storage
+     * @return the decoded block or null if not in cache
+     */
+    synchronized String getCached(long location) {
+        return cache.get(location);
+    }
+
+    /**
+     * Put the decoded block in cache.
+     *
+     * @param location the location in storage
+     * @param xmlData  the decoded block
+     */
+    synchronized void putCached(long location, String xmlData) {
+        if (!closed)
+            cache.put(location, xmlData);
+    }
+
+    /**
+     * Clear the decoded blocks cache.
+     */
+    synchronized void clearCache() {
+        cache.clear();
+    }
+}
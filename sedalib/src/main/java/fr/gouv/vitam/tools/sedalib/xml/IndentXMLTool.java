@@ -97,9 +97,9 @@ public class IndentXMLTool {
     String indentElement;
 
     /**
-     * The instance.
+     * The instance of each thread, as the XML tools used are not thread-safe.
      */
-    static IndentXMLTool instance;
+    static final ThreadLocal<IndentXMLTool> instance = new ThreadLocal<IndentXMLTool>();
 
     /**
      * Instantiates a new indent XML tool.
@@ -128,16 +128,19 @@ public class IndentXMLTool {
     }
 
     /**
-     * Gets the single instance of IndentXMLTool convenient for a given indent
+     * Gets the single instance of IndentXMLTool, in the calling thread, convenient for a given indent
      * length.
      *
      * @param indentLength the indent length
      * @return single instance of IndentXMLTool
      */
     static public IndentXMLTool getInstance(int indentLength) {
-        if ((instance == null) || (instance.indentLength != indentLength))
-            instance = new IndentXMLTool(indentLength);
-        return instance;
+        IndentXMLTool threadInstance = instance.get();
+        if ((threadInstance == null) || (threadInstance.indentLength != indentLength)) {
+            threadInstance = new IndentXMLTool(indentLength);
+            instance.set(threadInstance);
+        }
+        return threadInstance;
     }
 
     /**
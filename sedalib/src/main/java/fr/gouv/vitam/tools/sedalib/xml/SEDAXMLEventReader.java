@@ -29,20 +29,22 @@ package fr.gouv.vitam.tools.sedalib.xml;
 
 import com.ctc.wstx.api.WstxInputProperties;
 import com.ctc.wstx.api.WstxOutputProperties;
+import com.ctc.wstx.evt.DefaultEventAllocator;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import org.codehaus.stax2.XMLInputFactory2;
 import org.codehaus.stax2.XMLOutputFactory2;
+import org.codehaus.stax2.XMLStreamReader2;
+import org.codehaus.stax2.XMLStreamWriter2;
 
-import javax.xml.namespace.QName;
 import javax.xml.stream.*;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.EndElement;
-import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.util.XMLEventAllocator;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
+import java.util.NoSuchElementException;
 
 import static java.time.format.DateTimeFormatter.ISO_DATE;
 import static java.time.format.DateTimeFormatter.ISO_DATE_TIME;
@@ -50,9 +52,17 @@ import static java.time.format.DateTimeFormatter.ISO_DATE_TIME;
 /**
  * The Class SEDAXMLEventReader.
  * <p>
- * Wrapper class for XMLEventReader for high level functions used in all SEDA
- * metadata readers. It can read either XML document, either XML fragments. It's
- * based on WoodStox STAX objects.
+ * Wrapper class for high level functions used in all SEDA metadata readers. It
+ * can read either XML document, either XML fragments. It's based on WoodStox
+ * STAX objects.
+ * <p>
+ * The reader is built on a {@link XMLStreamReader} cursor and all the high level
+ * functions (peekName, nextBlockIfNamed, nextValueIfNamed,
+ * nextBlockAsStringIfNamed...) work directly on this cursor, without creating any
+ * {@link XMLEvent} object, so that tokenizing very large manifests stays cheap.
+ * XMLEvent objects are only created, from the cursor current token, when they are
+ * explicitly asked for by {@link #peekUsefullEvent()}, {@link #nextUsefullEvent()}
+ * or through the {@link #xmlReader} event view.
  */
 public class SEDAXMLEventReader implements AutoCloseable {
 
@@ -68,6 +78,9 @@ public class SEDAXMLEventReader implements AutoCloseable {
     /** The XMLOutputFactory for fragments. */
     private static XMLOutputFactory xmlofFragments;
 
+    /** The XMLEventAllocator used to create events from the cursor, when needed. */
+    private static XMLEventAllocator xmlEventAllocator;
+
     static {
         try {
             xmlif = XMLInputFactory.newInstance();
@@ -75,9 +88,13 @@ public class SEDAXMLEventReader implements AutoCloseable {
             // Warning it's a Woodstox specific mode
             xmlifFragments.setProperty(WstxInputProperties.P_INPUT_PARSING_MODE,
                     WstxInputProperties.PARSING_MODE_FRAGMENT);
+            // Warning it's a Woodstox specific property, to have text in one token as with an event reader
+            xmlif.setProperty(WstxInputProperties.P_MIN_TEXT_SEGMENT, Integer.MAX_VALUE);
+            xmlifFragments.setProperty(WstxInputProperties.P_MIN_TEXT_SEGMENT, Integer.MAX_VALUE);
             xmlof = XMLOutputFactory.newInstance();
             xmlofFragments = XMLOutputFactory2.newInstance();
             xmlofFragments.setProperty(WstxOutputProperties.P_OUTPUT_VALIDATE_STRUCTURE, false);
+            xmlEventAllocator = DefaultEventAllocator.getDefaultInstance();
             // XML objects initialization
         } catch (Exception e) {
             System.err.println("Erreur fatale, impossible de créer les outils de manipulation Xml et/ou Droid");
@@ -85,9 +102,166 @@ public class SEDAXMLEventReader implements AutoCloseable {
         }
     }
 
-    /** The xml reader. */
+    /**
+     * The xml reader, event view on the cursor for the callers that need XMLEvent
+     * objects.
+     */
     public XMLEventReader xmlReader;
 
+    /**
+     * The xml cursor, whose current token is always the next one to be read.
+     */
+    private XMLStreamReader2 xmlCursor;
+
+    /** The XMLEvent created for the current token, if already asked for. */
+    private XMLEvent currentEvent;
+
+    /** The end of document flag, true when the EndDocument has been read. */
+    private boolean endOfDocument;
+
+    /**
+     * The metadata objects flag, true if the ArchiveUnit metadata blocks are directly read as objects instead of
+     * being kept as raw XML.
+     */
+    private boolean metadataObjectsFlag;
+
+    /**
+     * The manifest source this reader reads, when blocks can be kept as byte ranges in it, or null.
+     */
+    private CompactXMLDataManifestSource manifestSource;
+
+    /**
+     * The reader opened by this reader on the manifest source, to be closed with it, or null.
+     */
+    private Reader ownedReader;
+
+    /**
+     * The Class CursorEventReader.
+     * <p>
+     * XMLEventReader view on the cursor, creating XMLEvent objects only when they
+     * are read.
+     */
+    private class CursorEventReader implements XMLEventReader {
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.xml.stream.XMLEventReader#nextEvent()
+         */
+        @Override
+        public XMLEvent nextEvent() throws XMLStreamException {
+            if (endOfDocument)
+                throw new NoSuchElementException();
+            XMLEvent result = getCurrentEvent();
+            advance();
+            return result;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.xml.stream.XMLEventReader#hasNext()
+         */
+        @Override
+        public boolean hasNext() {
+            return !endOfDocument;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.xml.stream.XMLEventReader#peek()
+         */
+        @Override
+        public XMLEvent peek() throws XMLStreamException {
+            if (endOfDocument)
+                return null;
+            return getCurrentEvent();
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.xml.stream.XMLEventReader#getElementText()
+         */
+        @Override
+        public String getElementText() throws XMLStreamException {
+            StringBuilder sb = new StringBuilder();
+            while (!endOfDocument) {
+                switch (xmlCursor.getEventType()) {
+                    case XMLStreamConstants.END_ELEMENT:
+                        advance();
+                        return sb.toString();
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                    case XMLStreamConstants.ENTITY_REFERENCE:
+                        sb.append(xmlCursor.getText());
+                        break;
+                    case XMLStreamConstants.COMMENT:
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        break;
+                    default:
+                        throw new XMLStreamException("Elément texte attendu", xmlCursor.getLocation());
+                }
+                advance();
+            }
+            throw new XMLStreamException("Fin de document inattendue");
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.xml.stream.XMLEventReader#nextTag()
+         */
+        @Override
+        public XMLEvent nextTag() throws XMLStreamException {
+            while (!endOfDocument) {
+                int type = xmlCursor.getEventType();
+                if ((type == XMLStreamConstants.START_ELEMENT) || (type == XMLStreamConstants.END_ELEMENT))
+                    return nextEvent();
+                if (!isUseless(type) && (type != XMLStreamConstants.PROCESSING_INSTRUCTION))
+                    throw new XMLStreamException("Elément attendu", xmlCursor.getLocation());
+                advance();
+            }
+            throw new XMLStreamException("Fin de document inattendue");
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.xml.stream.XMLEventReader#getProperty(java.lang.String)
+         */
+        @Override
+        public Object getProperty(String name) {
+            return xmlCursor.getProperty(name);
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see javax.xml.stream.XMLEventReader#close()
+         */
+        @Override
+        public void close() throws XMLStreamException {
+            xmlCursor.close();
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.util.Iterator#next()
+         */
+        @Override
+        public Object next() {
+            try {
+                return nextEvent();
+            } catch (XMLStreamException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
     /**
      * Gets the named element.
      *
@@ -100,16 +274,9 @@ public class SEDAXMLEventReader implements AutoCloseable {
 
         try (ByteArrayInputStream bais = new ByteArrayInputStream(xmlString.getBytes("UTF-8"));
              SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
-
-            XMLEvent event = xmlReader.nextUsefullEvent();
-            while (true) {
-                if (event.isStartElement() && event.asStartElement().getName().getLocalPart().equals(elementName)) {
-                    event = xmlReader.nextUsefullEvent();
-                    if (event.isCharacters())
-                        result = event.asCharacters().getData();
-                    break;
-                }
-                event = xmlReader.nextUsefullEvent();
+            if (xmlReader.skipToElementNamed(elementName)) {
+                xmlReader.skipNextUsefullEvent();
+                result = xmlReader.nextCharactersIfAny();
             }
         } catch (Exception ignored) {
         }
@@ -127,31 +294,13 @@ public class SEDAXMLEventReader implements AutoCloseable {
         StringWriter sw = new StringWriter();
         try (ByteArrayInputStream bais = new ByteArrayInputStream(xmlData.getBytes("UTF-8"));
              SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(bais, true)) {
-            XMLEvent event = xmlReader.nextUsefullEvent();
-            while (true) {
-                if (event.isStartElement() && event.asStartElement().getName().getLocalPart().equals(elementName)) {
-                    int count = 1;
-                    XMLEventWriter xw = xmlofFragments.createXMLEventWriter(sw);
-
-                    while (xmlReader.xmlReader.hasNext()) {
-                        event = xmlReader.xmlReader.nextEvent();
-                        if (event.isStartElement()
-                                && ((StartElement) event).getName().getLocalPart().equals(elementName))
-                            count++;
-                        else if (event.isEndElement()
-                                && ((EndElement) event).getName().getLocalPart().equals(elementName)) {
-                            count--;
-                            if (count == 0)
-                                break;
-                        }
-                        xw.add(event);
-                    }
-                    if (xw != null)
-                        xw.close();
-                    return sw.toString();
-                }
-                event = xmlReader.nextUsefullEvent();
-            }
+            if (!xmlReader.skipToElementNamed(elementName))
+                return null;
+            xmlReader.advance();
+            XMLStreamWriter2 xw = (XMLStreamWriter2) xmlofFragments.createXMLStreamWriter(sw);
+            xmlReader.copyUntilEndNamed(xw, elementName, 1, false);
+            xw.close();
+            return sw.toString();
         } catch (Exception e) {
             return null;
         }
@@ -178,24 +327,98 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws SEDALibException if impossible to open the stream
      */
     public SEDAXMLEventReader(InputStream is, boolean isForElements) throws SEDALibException {
-        InputStreamReader readerFIS = null;
+        this(new InputStreamReader(is, StandardCharsets.UTF_8), isForElements);
+    }
+
+    /**
+     * Instantiates a new SEDAXML event reader on already decoded characters, for
+     * example a String through a StringReader, without UTF-8 round-trip.
+     *
+     * @param reader        the Reader
+     * @param isForElements true, if the reader must be able to read fragements
+     *                      (multi root)
+     * @throws SEDALibException if impossible to open the stream
+     */
+    public SEDAXMLEventReader(Reader reader, boolean isForElements) throws SEDALibException {
+        this(reader, isForElements, null);
+    }
+
+    /**
+     * Instantiates a new SEDAXML event reader on a manifest file, which blocks read by
+     * {@link #nextBlockAsCompactXMLDataIfNamed(String)} are kept as byte ranges in
+     * this file.
+     *
+     * @param manifestSource the manifest source
+     * @throws SEDALibException if impossible to open the manifest file
+     */
+    public SEDAXMLEventReader(CompactXMLDataManifestSource manifestSource) throws SEDALibException {
+        this(openTrackingReader(manifestSource), false, manifestSource);
+    }
+
+    /**
+     * Instantiates a new SEDAXML event reader.
+     *
+     * @param reader         the Reader
+     * @param isForElements  true, if the reader must be able to read fragements
+     *                       (multi root)
+     * @param manifestSource the manifest source read by the reader, or null
+     * @throws SEDALibException if impossible to open the stream
+     */
+    private SEDAXMLEventReader(Reader reader, boolean isForElements, CompactXMLDataManifestSource manifestSource)
+            throws SEDALibException {
+        this.manifestSource = manifestSource;
+        this.ownedReader = (manifestSource == null ? null : reader);
         try {
-            readerFIS = new InputStreamReader(is, "UTF-8");
             if (isForElements)
-                xmlReader = xmlifFragments.createXMLEventReader(readerFIS);
+                xmlCursor = (XMLStreamReader2) xmlifFragments.createXMLStreamReader(reader);
             else
-                xmlReader = xmlif.createXMLEventReader(readerFIS);
+                xmlCursor = (XMLStreamReader2) xmlif.createXMLStreamReader(reader);
+            xmlReader = new CursorEventReader();
         } catch (Exception e) {
-            if (readerFIS != null)
-                try {
-                    readerFIS.close();
-                } catch (IOException e1) {
-                    // too bad
-                }
+            try {
+                reader.close();
+            } catch (IOException e1) {
+                // too bad
+            }
             throw new SEDALibException("Impossible d'ouvrir un flux de lecture XML", e);
         }
     }
 
+    /**
+     * Open a tracking reader on the manifest source.
+     *
+     * @param manifestSource the manifest source
+     * @return the reader
+     * @throws SEDALibException if impossible to open the manifest file
+     */
+    private static Reader openTrackingReader(CompactXMLDataManifestSource manifestSource) throws SEDALibException {
+        try {
+            return manifestSource.newTrackingReader();
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible d'ouvrir un flux de lecture XML", e);
+        }
+    }
+
+    /**
+     * Checks if the ArchiveUnit metadata blocks are directly read as objects.
+     *
+     * @return the metadata objects flag
+     */
+    public boolean isMetadataObjectsFlag() {
+        return metadataObjectsFlag;
+    }
+
+    /**
+     * Sets the metadata objects flag. If true, the ArchiveUnitProfile, Management and Content blocks of the
+     * ArchiveUnits are directly read as objects from this reader, without being kept as raw XML and parsed again
+     * when first used. The read then fails on any not SEDA compliant metadata.
+     *
+     * @param metadataObjectsFlag the metadata objects flag
+     */
+    public void setMetadataObjectsFlag(boolean metadataObjectsFlag) {
+        this.metadataObjectsFlag = metadataObjectsFlag;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -203,7 +426,13 @@ public class SEDAXMLEventReader implements AutoCloseable {
      */
     // Methods
     public void close() throws XMLStreamException {
-        xmlReader.close();
+        xmlCursor.close();
+        if (ownedReader != null)
+            try {
+                ownedReader.close();
+            } catch (IOException e) {
+                throw new XMLStreamException("Impossible de fermer le flux de lecture XML", e);
+            }
     }
 
     /**
@@ -236,6 +465,218 @@ public class SEDAXMLEventReader implements AutoCloseable {
         return LocalDate.parse(dateString, ISO_DATE);
     }
 
+    // Cursor primitives
+
+    /**
+     * Gets the XMLEvent for the cursor current token, creating it only once.
+     *
+     * @return the XML event
+     * @throws XMLStreamException the XML stream exception
+     */
+    private XMLEvent getCurrentEvent() throws XMLStreamException {
+        if (currentEvent == null)
+            currentEvent = xmlEventAllocator.allocate(xmlCursor);
+        return currentEvent;
+    }
+
+    /**
+     * Advance the cursor to the next token.
+     *
+     * @throws XMLStreamException the XML stream exception
+     */
+    private void advance() throws XMLStreamException {
+        currentEvent = null;
+        if (xmlCursor.hasNext())
+            xmlCursor.next();
+        else
+            endOfDocument = true;
+    }
+
+    /**
+     * Checks if a token type is a text one.
+     *
+     * @param type the token type
+     * @return true, if it's a text token
+     */
+    private static boolean isText(int type) {
+        return (type == XMLStreamConstants.CHARACTERS) || (type == XMLStreamConstants.CDATA)
+                || (type == XMLStreamConstants.SPACE);
+    }
+
+    /**
+     * Checks if the cursor current token, of the given type, is useless that is a
+     * comment or a whitespace text.
+     *
+     * @param type the token type
+     * @return true, if it's a useless token
+     */
+    private boolean isUseless(int type) {
+        return (type == XMLStreamConstants.COMMENT) || (isText(type) && xmlCursor.isWhiteSpace());
+    }
+
+    /**
+     * Skip the useless tokens, comments and whitespaces, so that the cursor is on
+     * the next usefull token.
+     *
+     * @throws XMLStreamException the XML stream exception
+     */
+    private void skipUseless() throws XMLStreamException {
+        while (!endOfDocument && isUseless(xmlCursor.getEventType()))
+            advance();
+    }
+
+    /**
+     * Checks if the next usefull token is a start element named "tag".
+     *
+     * @param tag the tag
+     * @return true, if it's the "tag" start element
+     * @throws XMLStreamException the XML stream exception
+     */
+    private boolean isUsefullStartNamed(String tag) throws XMLStreamException {
+        skipUseless();
+        return !endOfDocument && (xmlCursor.getEventType() == XMLStreamConstants.START_ELEMENT)
+                && tag.equals(xmlCursor.getLocalName());
+    }
+
+    /**
+     * Checks if the next usefull token is an end element named "tag".
+     *
+     * @param tag the tag
+     * @return true, if it's the "tag" end element
+     * @throws XMLStreamException the XML stream exception
+     */
+    private boolean isUsefullEndNamed(String tag) throws XMLStreamException {
+        skipUseless();
+        return !endOfDocument && (xmlCursor.getEventType() == XMLStreamConstants.END_ELEMENT)
+                && tag.equals(xmlCursor.getLocalName());
+    }
+
+    /**
+     * Skip all tokens until the next start element named "tag", the cursor
+     * stays on this start element.
+     *
+     * @param tag the tag
+     * @return true, if found, false if end of document reached
+     * @throws XMLStreamException the XML stream exception
+     */
+    private boolean skipToElementNamed(String tag) throws XMLStreamException {
+        while (!endOfDocument) {
+            if ((xmlCursor.getEventType() == XMLStreamConstants.START_ELEMENT) && tag.equals(xmlCursor.getLocalName()))
+                return true;
+            advance();
+        }
+        return false;
+    }
+
+    /**
+     * Copy the cursor current token to the writer, with the same escaping as the
+     * one used when writing events.
+     *
+     * @param xw the XML writer
+     * @throws XMLStreamException the XML stream exception
+     */
+    private void copyCurrentToken(XMLStreamWriter2 xw) throws XMLStreamException {
+        switch (xmlCursor.getEventType()) {
+            case XMLStreamConstants.START_ELEMENT:
+                xw.writeStartElement(xmlCursor.getPrefix() == null ? "" : xmlCursor.getPrefix(),
+                        xmlCursor.getLocalName(),
+                        xmlCursor.getNamespaceURI() == null ? "" : xmlCursor.getNamespaceURI());
+                for (int i = 0; i < xmlCursor.getNamespaceCount(); i++) {
+                    String prefix = xmlCursor.getNamespacePrefix(i);
+                    if ((prefix == null) || prefix.isEmpty())
+                        xw.writeDefaultNamespace(xmlCursor.getNamespaceURI(i));
+                    else
+                        xw.writeNamespace(prefix, xmlCursor.getNamespaceURI(i));
+                }
+                for (int i = 0; i < xmlCursor.getAttributeCount(); i++) {
+                    String prefix = xmlCursor.getAttributePrefix(i);
+                    String namespace = xmlCursor.getAttributeNamespace(i);
+                    xw.writeAttribute(prefix == null ? "" : prefix, namespace == null ? "" : namespace,
+                            xmlCursor.getAttributeLocalName(i), xmlCursor.getAttributeValue(i));
+                }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                xw.writeEndElement();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                xw.writeCharacters(xmlCursor.getTextCharacters(), xmlCursor.getTextStart(),
+                        xmlCursor.getTextLength());
+                break;
+            case XMLStreamConstants.CDATA:
+                xw.writeCData(xmlCursor.getText());
+                break;
+            default:
+                xw.copyEventFromReader(xmlCursor, false);
+        }
+    }
+
+    /**
+     * Copy all tokens to the writer until the end element named "tag" closing the
+     * current level, which is consumed.
+     *
+     * @param xw           the XML writer
+     * @param tag          the tag
+     * @param count        the number of "tag" elements already opened
+     * @param withLastEnd  true, if the closing "tag" end element has also to be
+     *                     written
+     * @throws XMLStreamException the XML stream exception
+     */
+    private void copyUntilEndNamed(XMLStreamWriter2 xw, String tag, int count, boolean withLastEnd)
+            throws XMLStreamException {
+        while (!endOfDocument) {
+            int type = xmlCursor.getEventType();
+            if ((type == XMLStreamConstants.START_ELEMENT) && tag.equals(xmlCursor.getLocalName()))
+                count++;
+            else if ((type == XMLStreamConstants.END_ELEMENT) && tag.equals(xmlCursor.getLocalName())) {
+                count--;
+                if (count == 0) {
+                    if (withLastEnd)
+                        copyCurrentToken(xw);
+                    advance();
+                    return;
+                }
+            }
+            copyCurrentToken(xw);
+            advance();
+        }
+    }
+
+    /**
+     * Skip all tokens until the end element named "tag" closing the current
+     * level, which is consumed.
+     *
+     * @param tag the tag
+     * @return the character offset just after the closing "tag" end element
+     * @throws XMLStreamException the XML stream exception
+     */
+    private long skipUntilEndNamed(String tag) throws XMLStreamException {
+        int count = 0;
+        while (!endOfDocument) {
+            int type = xmlCursor.getEventType();
+            if ((type == XMLStreamConstants.START_ELEMENT) && tag.equals(xmlCursor.getLocalName())) {
+                count++;
+                if ((count == 1) && xmlCursor.isEmptyElement()) {
+                    long endOffset = xmlCursor.getLocationInfo().getEndingCharOffset();
+                    advance();
+                    advance();
+                    return endOffset;
+                }
+            } else if ((type == XMLStreamConstants.END_ELEMENT) && tag.equals(xmlCursor.getLocalName())) {
+                count--;
+                if (count == 0) {
+                    long endOffset = xmlCursor.getLocationInfo().getEndingCharOffset();
+                    advance();
+                    return endOffset;
+                }
+            }
+            advance();
+        }
+        throw new XMLStreamException("Fin de document inattendue dans l'élément " + tag);
+    }
+
+    // High level functions
+
     /**
      * Peek name.
      *
@@ -243,29 +684,33 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public String peekName() throws XMLStreamException {
-        XMLEvent event = peekUsefullEvent();
-
-        if (!event.isStartElement())
+        skipUseless();
+        if (endOfDocument || (xmlCursor.getEventType() != XMLStreamConstants.START_ELEMENT))
             return null;
-        return event.asStartElement().getName().getLocalPart();
+        return xmlCursor.getLocalName();
     }
 
     /**
      * Peek usefull event.
      *
-     * @return the XML event
+     * @return the XML event, or null if at the end of document
      * @throws XMLStreamException the XML stream exception
      */
     public XMLEvent peekUsefullEvent() throws XMLStreamException {
-        XMLEvent result;
+        skipUseless();
+        if (endOfDocument)
+            return null;
+        return getCurrentEvent();
+    }
 
-        result = xmlReader.peek();
-        while ((result.getEventType() == XMLEvent.COMMENT)
-                || (result.isCharacters() && result.asCharacters().isWhiteSpace())) {
-            xmlReader.nextEvent();
-            result = xmlReader.peek();
-        }
-        return result;
+    /**
+     * Peek end document, that is verify that the next token, useless or not, is the
+     * end of document.
+     *
+     * @return true, if the end of document is next
+     */
+    public boolean peekEndDocument() {
+        return endOfDocument || (xmlCursor.getEventType() == XMLStreamConstants.END_DOCUMENT);
     }
 
     /**
@@ -276,15 +721,7 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public String peekAttribute(String attribute) throws XMLStreamException {
-        XMLEvent peek = peekUsefullEvent();
-        String result = null;
-
-        if (peek.isStartElement()) {
-            Attribute a = peek.asStartElement().getAttributeByName(new QName(attribute));
-            if (a != null)
-                result = a.getValue();
-        }
-        return result;
+        return peekAttribute(null, attribute);
     }
 
     /**
@@ -296,15 +733,10 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public String peekAttribute(String namespace, String attribute) throws XMLStreamException {
-        XMLEvent peek = peekUsefullEvent();
-        String result = null;
-
-        if (peek.isStartElement()) {
-            Attribute a = peek.asStartElement().getAttributeByName(new QName(namespace, attribute));
-            if (a != null)
-                result = a.getValue();
-        }
-        return result;
+        skipUseless();
+        if (endOfDocument || (xmlCursor.getEventType() != XMLStreamConstants.START_ELEMENT))
+            return null;
+        return xmlCursor.getAttributeValue(namespace == null ? "" : namespace, attribute);
     }
 
     /**
@@ -314,12 +746,44 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public XMLEvent nextUsefullEvent() throws XMLStreamException {
-        XMLEvent result;
+        skipUseless();
+        return xmlReader.nextEvent();
+    }
+
+    /**
+     * Skip next usefull event, that is the same as {@link #nextUsefullEvent()}
+     * without creating the XMLEvent.
+     *
+     * @throws XMLStreamException the XML stream exception
+     */
+    public void skipNextUsefullEvent() throws XMLStreamException {
+        skipUseless();
+        if (endOfDocument)
+            throw new NoSuchElementException();
+        advance();
+    }
 
-        result = xmlReader.nextEvent();
-        while ((result.getEventType() == XMLEvent.COMMENT)
-                || (result.isCharacters() && result.asCharacters().isWhiteSpace()))
-            result = xmlReader.nextEvent();
+    /**
+     * Next characters if any, that is if the next usefull token is a not
+     * whitespace text, read it and return the text value.
+     *
+     * @return the text value, or null if the next usefull token is not a text
+     * @throws XMLStreamException the XML stream exception
+     */
+    public String nextCharactersIfAny() throws XMLStreamException {
+        skipUseless();
+        if (endOfDocument || !isText(xmlCursor.getEventType()))
+            return null;
+        String result = xmlCursor.getText();
+        advance();
+        if (!endOfDocument && isText(xmlCursor.getEventType())) {
+            StringBuilder sb = new StringBuilder(result);
+            while (!endOfDocument && isText(xmlCursor.getEventType())) {
+                sb.append(xmlCursor.getText());
+                advance();
+            }
+            result = sb.toString();
+        }
         return result;
     }
 
@@ -331,13 +795,9 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public boolean nextBlockIfNamed(String tag) throws XMLStreamException {
-        XMLEvent peek = peekUsefullEvent();
-
-        if (!peek.isStartElement())
+        if (!isUsefullStartNamed(tag))
             return false;
-        if (!tag.equals(peek.asStartElement().getName().getLocalPart()))
-            return false;
-        nextUsefullEvent();
+        advance();
         return true;
     }
 
@@ -349,11 +809,7 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public boolean peekBlockIfNamed(String tag) throws XMLStreamException {
-        XMLEvent peek = peekUsefullEvent();
-
-        if (!peek.isStartElement())
-            return false;
-        return tag.equals(peek.asStartElement().getName().getLocalPart());
+        return isUsefullStartNamed(tag);
     }
 
     /**
@@ -366,12 +822,9 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public String peekAttributeBlockIfNamed(String tag, String attribute) throws XMLStreamException {
-        XMLEvent peek = peekUsefullEvent();
-        String result = null;
-
-        if (peek.isStartElement() && tag.equals(peek.asStartElement().getName().getLocalPart()))
-            result = peek.asStartElement().getAttributeByName(new QName(attribute)).getValue();
-        return result;
+        if (!isUsefullStartNamed(tag))
+            return null;
+        return xmlCursor.getAttributeValue("", attribute);
     }
 
     /**
@@ -382,12 +835,27 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws SEDALibException   if "tag" element is ended here
      */
     public void endBlockNamed(String tag) throws XMLStreamException, SEDALibException {
-        XMLEvent event = nextUsefullEvent();
-
-        if (!event.isEndElement())
-            throw new SEDALibException("Elément " + tag + " mal terminé");
-        if (!tag.equals(event.asEndElement().getName().getLocalPart()))
+        if (!isUsefullEndNamed(tag))
             throw new SEDALibException("Elément " + tag + " mal terminé");
+        advance();
+    }
+
+    /**
+     * Next text value in block, that is read the text, if any, and the end of the
+     * "tag" element whose start has already been read.
+     *
+     * @param tag          the tag
+     * @param errorMessage the error message if not well formed
+     * @return the text value or null if there is no text
+     * @throws XMLStreamException the XML stream exception
+     * @throws SEDALibException   if "tag" element is badly formed
+     */
+    private String nextTextAndEnd(String tag, String errorMessage) throws XMLStreamException, SEDALibException {
+        String result = nextCharactersIfAny();
+        if (!isUsefullEndNamed(tag))
+            throw new SEDALibException(errorMessage);
+        advance();
+        return result;
     }
 
     /**
@@ -400,17 +868,10 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws SEDALibException   if "tag" element is badly formed
      */
     public String nextValueIfNamed(String tag) throws XMLStreamException, SEDALibException {
-        XMLEvent event;
         String result = null;
 
         if (nextBlockIfNamed(tag)) {
-            event = nextUsefullEvent();
-            if (event.isCharacters()) {
-                result = event.asCharacters().getData();
-                event = nextUsefullEvent();
-            }
-            if (!event.isEndElement() || !event.asEndElement().getName().getLocalPart().equals(tag))
-                throw new SEDALibException("Elément " + tag + " mal formé");
+            result = nextTextAndEnd(tag, "Elément " + tag + " mal formé");
             if (result == null)
                 result = "";
         }
@@ -427,17 +888,12 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws SEDALibException   if "tag" element is badly formed
      */
     public LocalDateTime nextDateValueIfNamed(String tag) throws XMLStreamException, SEDALibException {
-        XMLEvent event;
-        String tmp = null;
+        String tmp;
         LocalDateTime result = null;
 
         if (nextBlockIfNamed(tag)) {
-            event = nextUsefullEvent();
-            if (event.isCharacters()) {
-                tmp = event.asCharacters().getData();
-                event = nextUsefullEvent();
-            }
-            if (!event.isEndElement() || !event.asEndElement().getName().getLocalPart().equals(tag) || (tmp == null))
+            tmp = nextTextAndEnd(tag, "Elément date " + tag + " mal formé");
+            if (tmp == null)
                 throw new SEDALibException("Elément date " + tag + " mal formé");
             try {
                 result = getDateTimeFromString(tmp);
@@ -458,17 +914,12 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws SEDALibException   the SEDALibException
      */
     public Boolean nextBooleanValueIfNamed(String tag) throws XMLStreamException, SEDALibException {
-        XMLEvent event;
-        String tmp = null;
+        String tmp;
         Boolean result = null;
 
         if (nextBlockIfNamed(tag)) {
-            event = nextUsefullEvent();
-            if (event.isCharacters()) {
-                tmp = event.asCharacters().getData();
-                event = nextUsefullEvent();
-            }
-            if (!event.isEndElement() || !event.asEndElement().getName().getLocalPart().equals(tag) || (tmp == null))
+            tmp = nextTextAndEnd(tag, "Elément booléen " + tag + " mal formé");
+            if (tmp == null)
                 throw new SEDALibException("Elément booléen " + tag + " mal formé");
             switch (tmp) {
                 case "true":
@@ -510,29 +961,42 @@ public class SEDAXMLEventReader implements AutoCloseable {
      * @throws XMLStreamException the XML stream exception
      */
     public String nextBlockAsStringIfNamed(String tag) throws XMLStreamException {
-        XMLEvent event = peekUsefullEvent();
-
-        if (event.isStartElement() && tag.equals(event.asStartElement().getName().getLocalPart())) {
-            int count = 0;
-            StringWriter sw = new StringWriter();
-            XMLEventWriter xw = xmlof.createXMLEventWriter(sw);
-
-            while (xmlReader.hasNext()) {
-                event = xmlReader.nextEvent();
-                xw.add(event);
-                if (event.isStartElement() && ((StartElement) event).getName().getLocalPart().equals(tag))
-                    count++;
-                else if (event.isEndElement() && ((EndElement) event).getName().getLocalPart().equals(tag)) {
-                    count--;
-                    if (count == 0)
-                        break;
-                }
-            }
-            if (xw != null)
-                xw.close();
-            return sw.toString();
-        } else
+        if (!isUsefullStartNamed(tag))
             return null;
+
+        StringWriter sw = new StringWriter();
+        XMLStreamWriter2 xw = (XMLStreamWriter2) xmlof.createXMLStreamWriter(sw);
+        copyUntilEndNamed(xw, tag, 0, true);
+        xw.close();
+        return sw.toString();
+    }
+
+    /**
+     * Next block as compact XML data, if named "tag". When this reader reads a
+     * manifest source, the block is kept as its byte range in the manifest file,
+     * else it's kept as defined by the compact XML data storage mode.
+     *
+     * @param tag the tag
+     * @return the compact XML data containing all the "tag" element (with begin
+     *         and end tags), or null if next element is not the "tag" element
+     * @throws XMLStreamException the XML stream exception
+     */
+    public CompactXMLData nextBlockAsCompactXMLDataIfNamed(String tag) throws XMLStreamException {
+        if ((manifestSource == null) || !isUsefullStartNamed(tag))
+            return CompactXMLData.of(nextBlockAsStringIfNamed(tag));
+        long startChar = xmlCursor.getLocationInfo().getStartingCharOffset();
+        long startByte = manifestSource.getByteOffset(startChar);
+        if (startByte == -1)
+            return CompactXMLData.of(nextBlockAsStringIfNamed(tag));
+        long endChar = skipUntilEndNamed(tag);
+        long endByte = manifestSource.getByteOffset(endChar);
+        if (endByte == -1)
+            try {
+                endByte = manifestSource.scanByteOffset(startByte, endChar - startChar);
+            } catch (IOException e) {
+                throw new XMLStreamException("Impossible de localiser l'élément " + tag + " dans le manifest", e);
+            }
+        return CompactXMLData.ofManifestRange(manifestSource, startByte, (int) (endByte - startByte));
     }
 
     /**
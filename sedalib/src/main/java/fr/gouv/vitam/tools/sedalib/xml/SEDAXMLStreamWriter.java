@@ -40,7 +40,11 @@ import javax.xml.transform.TransformerFactoryConfigurationError;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -81,6 +85,11 @@ public class SEDAXMLStreamWriter implements AutoCloseable {
      */
     private Writer rawWriter;
 
+    /**
+     * The output stream under the raw writer, used to write UTF-8 bytes as is.
+     */
+    private OutputStream rawOutputStream;
+
     /**
      * The xml writer.
      */
@@ -157,6 +166,7 @@ public class SEDAXMLStreamWriter implements AutoCloseable {
     public SEDAXMLStreamWriter(OutputStream os, int indentLength, boolean isForElements) throws SEDALibException {
         try {
             // for xml raw writing
+            rawOutputStream = os;
             rawWriter = new OutputStreamWriter(os, "UTF-8");
             // for xml indentend structured writing
             if (isForElements)
@@ -177,6 +187,23 @@ public class SEDAXMLStreamWriter implements AutoCloseable {
         this.idCounter = 1;
     }
 
+    /**
+     * Instantiates a new SEDAXML stream writer for a fragment to be inserted at the current depth of this writer,
+     * with the same indentation, by {@link #writeRawXMLFragment(byte[])}. Only this writer indentation settings and
+     * depth are read, so the fragment can be rendered in another thread while this writer goes on writing raw
+     * fragments.
+     *
+     * @param os the fragment output stream
+     * @return the fragment writer
+     * @throws SEDALibException the SEDALibException
+     */
+    public SEDAXMLStreamWriter newFragmentWriter(OutputStream os) throws SEDALibException {
+        SEDAXMLStreamWriter fragmentWriter = new SEDAXMLStreamWriter(os, indentLength, true);
+        fragmentWriter.depth = depth;
+        fragmentWriter.firstLineFlag = false;
+        return fragmentWriter;
+    }
+
     /**
      * Reset id counter.
      */
@@ -367,6 +394,82 @@ public class SEDAXMLStreamWriter implements AutoCloseable {
         }
     }
 
+    /**
+     * Write a raw xml block kept in compact form. Without indentation, the UTF-8
+     * bytes are written directly in the output stream without String decoding.
+     *
+     * @param rawXml the raw xml in compact form
+     * @throws XMLStreamException the XML stream exception
+     */
+    public void writeRawXMLBlockIfNotEmpty(CompactXMLData rawXml) throws XMLStreamException {
+        if ((rawXml == null) || rawXml.isEmpty())
+            return;
+        if (indentFlag) {
+            writeRawXMLBlockIfNotEmpty(rawXml.toString());
+            return;
+        }
+        xmlWriter.writeCharacters("");
+        xmlWriter.flush();
+        try {
+            rawWriter.flush();
+            rawXml.writeUTF8To(rawOutputStream);
+        } catch (IOException e) {
+            throw new XMLStreamException("Erreur d'écriture d'un bloc Raw XML", e);
+        }
+    }
+
+    /**
+     * Write a raw xml fragment in UTF-8 bytes as is, rendered by a fragment writer created by
+     * {@link #newFragmentWriter(OutputStream)} at the current depth.
+     *
+     * @param utf8Fragment the xml fragment in UTF-8 bytes
+     * @throws XMLStreamException the XML stream exception
+     */
+    public void writeRawXMLFragment(byte[] utf8Fragment) throws XMLStreamException {
+        if (utf8Fragment.length == 0)
+            return;
+        xmlWriter.writeCharacters("");
+        xmlWriter.flush();
+        try {
+            rawWriter.flush();
+            rawOutputStream.write(utf8Fragment);
+        } catch (IOException e) {
+            throw new XMLStreamException("Erreur d'écriture d'un fragment XML", e);
+        }
+        if (indentFlag) {
+            if (depth > 0) {
+                hasChildElement.put(depth - 1, true);
+            }
+        }
+    }
+
+    /**
+     * Write a raw xml block read from a file, as is without indentation. This is
+     * used for blocks too big to be kept in memory.
+     *
+     * @param rawXmlPath the raw xml file path
+     * @throws XMLStreamException the XML stream exception
+     */
+    public void writeRawXMLFile(Path rawXmlPath) throws XMLStreamException {
+        xmlWriter.writeCharacters("");
+        xmlWriter.flush();
+
+        try (Reader reader = Files.newBufferedReader(rawXmlPath, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[65536];
+            int n;
+            while ((n = reader.read(buffer)) != -1)
+                rawWriter.write(buffer, 0, n);
+            rawWriter.flush();
+            if (indentFlag) {
+                if (depth > 0) {
+                    hasChildElement.put(depth - 1, true);
+                }
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException("Erreur d'écriture d'un bloc Raw XML", e);
+        }
+    }
+
     /**
      * Gets the xml writer.
      *
@@ -0,0 +1,354 @@
+/**
+ * Copyright French Prime minister Office/DINSIC/Vitam Program (2015-2019)
+ * <p>
+ * contact.vitam@programmevitam.fr
+ * <p>
+ * This software is developed as a validation helper tool, for constructing Submission Information Packages (archives
+ * sets) in the Vitam program whose purpose is to implement a digital archiving back-office system managing high
+ * volumetry securely and efficiently.
+ * <p>
+ * This software is governed by the CeCILL 2.1 license under French law and abiding by the rules of distribution of free
+ * software. You can use, modify and/ or redistribute the software under the terms of the CeCILL 2.1 license as
+ * circulated by CEA, CNRS and INRIA archiveTransfer the following URL "http://www.cecill.info".
+ * <p>
+ * As a counterpart to the access to the source code and rights to copy, modify and redistribute granted by the license,
+ * users are provided only with a limited warranty and the software's author, the holder of the economic rights, and the
+ * successive licensors have only limited liability.
+ * <p>
+ * In this respect, the user's attention is drawn to the risks associated with loading, using, modifying and/or
+ * developing or reproducing the software by the user in light of its specific status of free software, that may mean
+ * that it is complicated to manipulate, and that also therefore means that it is reserved for developers and
+ * experienced professionals having in-depth computer knowledge. Users are therefore encouraged to load and test the
+ * software's suitability as regards their requirements in conditions enabling the security of their systems and/or data
+ * to be ensured and, more generally, to use and operate it in the same conditions as regards security.
+ * <p>
+ * The fact that you are presently reading this means that you have had knowledge of the CeCILL 2.1 license and that you
+ * accept its terms.
+ */
+package fr.gouv.vitam.tools.sedalib.xml;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+
+import javax.xml.validation.Schema;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Class SEDAXMLValidatingOutputStream.
+ * <p>
+ * OutputStream writing the XML manifest to the wrapped stream and, at the same time, feeding a validator thread
+ * through a bounded queue of chunks, so that the manifest is validated while exported in a single serialization
+ * pass, and never held in memory as a whole. As soon as the validator has found an error, the next write fails,
+ * so the export is aborted early. The validator keeps the last lines read, so that errors, with XSD or RNG schema,
+ * give the line text and the ArchiveUnit they are in.
+ * <p>
+ * The validation ends with {@link #finish()}, which throws the validation error if any, and leaves the wrapped
+ * stream open, or with {@link #abort()} when the export has failed.
+ */
+public class SEDAXMLValidatingOutputStream extends OutputStream {
+
+    /**
+     * The Constant CHUNK_SIZE, in bytes.
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The Constant QUEUE_SIZE, in chunks waiting for the validator.
+     */
+    static final int QUEUE_SIZE = 16;
+
+    /**
+     * The end of stream chunk.
+     */
+    private static final byte[] EOF = new byte[0];
+
+    /**
+     * The validator threads counter, used for thread names.
+     */
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    /**
+     * The InputStream read by the validator, taking chunks from the queue.
+     */
+    private final class QueueInputStream extends InputStream {
+        private byte[] current = null;
+        private int pos = 0;
+
+        private boolean nextChunk() throws IOException {
+            if (current == EOF)
+                return false;
+            if ((current == null) || (pos >= current.length)) {
+                try {
+                    current = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Validation du manifest interrompue");
+                }
+                pos = 0;
+            }
+            return current != EOF;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk())
+                return -1;
+            return current[pos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (!nextChunk())
+                return -1;
+            int count = Math.min(len, current.length - pos);
+            System.arraycopy(current, pos, b, off, count);
+            pos += count;
+            return count;
+        }
+    }
+
+    /**
+     * The wrapped output stream, null if only validated.
+     */
+    private final OutputStream out;
+
+    /**
+     * The chunks queue.
+     */
+    private final BlockingQueue<byte[]> queue;
+
+    /**
+     * The validator thread.
+     */
+    private final Thread validatorThread;
+
+    /**
+     * The chunk being filled and its fill level.
+     */
+    private byte[] buffer;
+    private int count;
+
+    /**
+     * The validation error, null if none.
+     */
+    private volatile SEDALibException validationException;
+
+    /**
+     * The validator done flag, set when the validator doesn't read anymore.
+     */
+    private volatile boolean validatorDone;
+
+    /**
+     * The aborted flag, the validator errors being then meaningless.
+     */
+    private volatile boolean aborted;
+
+    /**
+     * The finished flag.
+     */
+    private boolean finished;
+
+    /**
+     * Instantiates a new validating output stream, and starts the validator thread.
+     *
+     * @param out       the wrapped output stream, or null to only validate
+     * @param schema    the schema
+     * @param rngSchema true for a RNG schema, false for a XSD one
+     */
+    public SEDAXMLValidatingOutputStream(OutputStream out, Schema schema, boolean rngSchema) {
+        this.out = out;
+        this.queue = new ArrayBlockingQueue<byte[]>(QUEUE_SIZE);
+        this.buffer = new byte[CHUNK_SIZE];
+        this.count = 0;
+        this.validationException = null;
+        this.validatorDone = false;
+        this.aborted = false;
+        this.finished = false;
+        this.validatorThread = new Thread(() -> validate(schema, rngSchema),
+                "sedalib-validate-" + threadCounter.incrementAndGet());
+        this.validatorThread.setDaemon(true);
+        this.validatorThread.start();
+    }
+
+    /**
+     * Validate the queued manifest, in the validator thread. Any other error than a validation one is also kept as
+     * a SEDALibException, so that the validation never silently succeeds.
+     *
+     * @param schema    the schema
+     * @param rngSchema true for a RNG schema, false for a XSD one
+     */
+    private void validate(Schema schema, boolean rngSchema) {
+        SEDAXMLValidator sedaXMLValidator = new SEDAXMLValidator();
+        try (InputStream is = new QueueInputStream()) {
+            if (rngSchema)
+                sedaXMLValidator.checkWithRNGSchema(is, schema);
+            else
+                sedaXMLValidator.checkWithXSDSchema(is, schema);
+        } catch (SEDALibException e) {
+            if (!aborted)
+                validationException = e;
+        } catch (Throwable e) {
+            if (!aborted)
+                validationException = new SEDALibException("Erreur inattendue de validation du flux XML", e);
+        } finally {
+            validatorDone = true;
+            // free a writer waiting for room
+            queue.clear();
+        }
+    }
+
+    /**
+     * Queue a chunk for the validator, waiting for room unless the validator has stopped.
+     *
+     * @param chunk the chunk
+     * @throws IOException if interrupted
+     */
+    private void queueChunk(byte[] chunk) throws IOException {
+        try {
+            while (!validatorDone) {
+                if (queue.offer(chunk, 100, TimeUnit.MILLISECONDS))
+                    return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Validation du manifest interrompue");
+        }
+    }
+
+    /**
+     * Throw the validation error, if any, as an IOException to stop the writer.
+     *
+     * @throws IOException if the validator has found an error
+     */
+    private void checkNotInvalid() throws IOException {
+        if (validationException != null)
+            throw new IOException("Le flux XML n'est pas conforme", validationException);
+    }
+
+    /**
+     * Queue the chunk being filled, if not empty.
+     *
+     * @throws IOException if interrupted
+     */
+    private void queueBuffer() throws IOException {
+        if (count == 0)
+            return;
+        byte[] chunk = (count == buffer.length ? buffer : Arrays.copyOf(buffer, count));
+        queueChunk(chunk);
+        buffer = new byte[CHUNK_SIZE];
+        count = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkNotInvalid();
+        if (out != null)
+            out.write(b);
+        if (count == buffer.length)
+            queueBuffer();
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkNotInvalid();
+        if (out != null)
+            out.write(b, off, len);
+        while (len > 0) {
+            if (count == buffer.length)
+                queueBuffer();
+            int chunkLen = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, chunkLen);
+            count += chunkLen;
+            off += chunkLen;
+            len -= chunkLen;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null)
+            out.flush();
+    }
+
+    /**
+     * Gets the validation error, if already found.
+     *
+     * @return the validation exception, or null if none found yet
+     */
+    public SEDALibException getValidationException() {
+        return validationException;
+    }
+
+    /**
+     * End the validation, waiting for the validator to read the whole manifest. The wrapped stream is left open.
+     *
+     * @throws SEDALibException     if the manifest is not valid
+     * @throws InterruptedException if interrupted while waiting for the validator
+     */
+    public void finish() throws SEDALibException, InterruptedException {
+        if (finished) {
+            if (validationException != null)
+                throw validationException;
+            return;
+        }
+        finished = true;
+        try {
+            queueBuffer();
+            queueChunk(EOF);
+        } catch (InterruptedIOException e) {
+            abort();
+            throw new InterruptedException("Validation du manifest interrompue");
+        } catch (IOException e) {
+            // not thrown by queueing
+        }
+        validatorThread.join();
+        if (validationException != null)
+            throw validationException;
+    }
+
+    /**
+     * Abort the validation, when the export has failed. Any validation error is kept.
+     */
+    public void abort() {
+        finished = true;
+        if (validatorDone)
+            return;
+        aborted = true;
+        validatorThread.interrupt();
+        try {
+            validatorThread.join(60000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * End the validation and close the wrapped stream.
+     *
+     * @throws IOException if the manifest is not valid or the wrapped stream can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } catch (SEDALibException e) {
+            throw new IOException("Le flux XML n'est pas conforme", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Validation du manifest interrompue");
+        } finally {
+            if (out != null)
+                out.close();
+        }
+    }
+}
@@ -9,44 +9,218 @@ import javax.xml.XMLConstants;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
 import javax.xml.transform.stax.StAXSource;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.Scanner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * The Class SEDAXMLValidator.
+ * <p>
+ * Validate SEDA manifests against the SEDA 2.1 XSD schema or a profile, XSD or RNG. The manifests are streamed from
+ * a String, an InputStream or a file, and never held in memory as a whole. Compiled schemas are thread-safe and
+ * cached by file, and recompiled only when the file modification time or size changes, so that the same schema can
+ * be shared by concurrent validations.
+ */
 public class SEDAXMLValidator {
 
     private static final String SEDA_VITAM_VALIDATION_RESOURCE = "seda-vitam-2.1-main.xsd";
     private static final String HTTP_WWW_W3_ORG_XML_XML_SCHEMA_V1_1 = "http://www.w3.org/XML/XMLSchema/v1.1";
     private static final String CATALOG_FILENAME = "xsd_validation/catalog.xml";
     private static final String RNG_FACTORY = "com.thaiopensource.relaxng.jaxp.XMLSyntaxSchemaFactory";
-    private static final String RNG_PROPERTY_KEY = "javax.xml.validation.SchemaFactory:" + XMLConstants.RELAXNG_NS_URI;
 
-    private static Schema sedaSchema = null;
+    /**
+     * The cached schema with the file state it was compiled from.
+     */
+    private static final class CachedSchema {
+        final long lastModified;
+        final long size;
+        final Schema schema;
 
+        CachedSchema(long lastModified, long size, Schema schema) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.schema = schema;
+        }
+    }
+
+    /**
+     * The XMLStreamReader delegate keeping the last ArchiveUnit start tag read, to contextualize validation errors
+     * when the manifest can't be read again.
+     */
+    private static final class ArchiveUnitTrackingReader extends StreamReaderDelegate {
+        String inArchiveUnit = "";
+
+        ArchiveUnitTrackingReader(XMLStreamReader reader) {
+            super(reader);
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            int eventType = super.next();
+            if ((eventType == START_ELEMENT) && "ArchiveUnit".equals(getLocalName())) {
+                String id = getAttributeValue(null, "id");
+                inArchiveUnit = "<ArchiveUnit" + (id == null ? "" : " id=\"" + id + "\"") + ">";
+            }
+            return eventType;
+        }
+    }
+
+    /**
+     * The InputStream keeping a ring of the last lines read, each with the last ArchiveUnit start tag read at its
+     * end, to contextualize validation errors with the line text and the ArchiveUnit, whatever the schema type, when
+     * the manifest can't be read again.
+     */
+    private static final class RecentLinesInputStream extends FilterInputStream {
+        static final int LINES_COUNT = 1024;
+        static final int MAX_LINE_LENGTH = 1024;
+
+        private final String[] lines = new String[LINES_COUNT];
+        private final String[] archiveUnits = new String[LINES_COUNT];
+        private final ByteArrayOutputStream currentLine = new ByteArrayOutputStream();
+        private int lineCount = 0;
+        private String inArchiveUnit = "";
+
+        RecentLinesInputStream(InputStream in) {
+            super(in);
+        }
+
+        private static String getLastArchiveUnitTag(String line, String defaultTag) {
+            int index = line.length();
+            while ((index = line.lastIndexOf("<ArchiveUnit", index - 1)) >= 0) {
+                int next = index + "<ArchiveUnit".length();
+                if ((next == line.length()) || (line.charAt(next) == ' ') || (line.charAt(next) == '>')) {
+                    int end = line.indexOf('>', next);
+                    return (end < 0 ? line.substring(index) : line.substring(index, end + 1));
+                }
+            }
+            return defaultTag;
+        }
+
+        private String getCurrentLine() {
+            String line = new String(currentLine.toByteArray(), StandardCharsets.UTF_8);
+            return (line.endsWith("\r") ? line.substring(0, line.length() - 1) : line);
+        }
+
+        private void record(int b) {
+            if (b == '\n') {
+                String line = getCurrentLine();
+                inArchiveUnit = getLastArchiveUnitTag(line, inArchiveUnit);
+                lines[lineCount % LINES_COUNT] = line;
+                archiveUnits[lineCount % LINES_COUNT] = inArchiveUnit;
+                lineCount++;
+                currentLine.reset();
+            } else if (currentLine.size() < MAX_LINE_LENGTH)
+                currentLine.write(b);
+        }
+
+        boolean hasLine(int lineNumber) {
+            return (lineNumber > lineCount - LINES_COUNT) && (lineNumber > 0) && (lineNumber <= lineCount + 1);
+        }
+
+        String getLine(int lineNumber) {
+            return (lineNumber == lineCount + 1 ? getCurrentLine() : lines[(lineNumber - 1) % LINES_COUNT]);
+        }
+
+        String getArchiveUnit(int lineNumber) {
+            return (lineNumber == lineCount + 1 ? getLastArchiveUnitTag(getCurrentLine(), inArchiveUnit) :
+                    archiveUnits[(lineNumber - 1) % LINES_COUNT]);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                record(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            for (int i = 0; i < count; i++)
+                record(b[off + i]);
+            return count;
+        }
+    }
+
+    /**
+     * The supplier of a new reader on the validated manifest, to contextualize validation errors.
+     */
+    @FunctionalInterface
+    private interface ManifestReaderSupplier {
+        Reader get() throws IOException;
+    }
+
+    private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+    private static final ConcurrentHashMap<String, CachedSchema> schemaCache =
+            new ConcurrentHashMap<String, CachedSchema>();
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    private static volatile Schema sedaSchema = null;
+
+    /**
+     * Gets the SEDA 2.1 schema, compiled once.
+     *
+     * @return the SEDA schema
+     * @throws SEDALibException the seda lib exception
+     */
     public Schema getSEDASchema() throws SEDALibException {
-        if (sedaSchema == null)
-            sedaSchema = getSchemaFromXSDResource(getClass().getClassLoader().getResource(SEDA_VITAM_VALIDATION_RESOURCE));
-        return sedaSchema;
+        Schema result = sedaSchema;
+        if (result == null) {
+            synchronized (SEDAXMLValidator.class) {
+                if (sedaSchema == null)
+                    sedaSchema = getSchemaFromXSDResource(getClass().getClassLoader().getResource(SEDA_VITAM_VALIDATION_RESOURCE));
+                result = sedaSchema;
+            }
+        }
+        return result;
     }
 
+    /**
+     * Gets schema from xsd resource.
+     *
+     * @param xsdResource the xsd resource
+     * @return the schema from xsd resource
+     * @throws SEDALibException the seda lib exception
+     */
     public Schema getSchemaFromXSDResource(URL xsdResource) throws SEDALibException {
-        // Was XMLConstants.W3C_XML_SCHEMA_NS_URI
-        final SchemaFactory factory =
-                SchemaFactory.newInstance(HTTP_WWW_W3_ORG_XML_XML_SCHEMA_V1_1);
-        // Load catalog to resolve external schemas even offline.
-        final URL catalogUrl = getClass().getClassLoader().getResource(CATALOG_FILENAME);
-        factory.setResourceResolver(new XMLCatalogResolver(new String[]{catalogUrl.toString()}, false));
+        String key = "xsd:" + xsdResource;
+        CachedSchema cachedSchema = schemaCache.get(key);
+        if (cachedSchema != null)
+            return cachedSchema.schema;
 
         try {
-            return factory.newSchema(xsdResource);
+            Schema schema = getSchemaFactory(false).newSchema(xsdResource);
+            schemaCache.put(key, new CachedSchema(-1, -1, schema));
+            return schema;
         } catch (SAXException e) {
             throw new SEDALibException("Impossible de charger le schéma " + xsdResource, e);
         }
@@ -60,17 +234,7 @@ public class SEDAXMLValidator {
      * @throws SEDALibException the seda lib exception
      */
     public Schema getSchemaFromXSDFile(String xsdFile) throws SEDALibException {
-        SchemaFactory factory = SchemaFactory.newInstance(HTTP_WWW_W3_ORG_XML_XML_SCHEMA_V1_1);
-
-        // Load catalog to resolve external schemas even offline.
-        final URL catalogUrl = getClass().getClassLoader().getResource(CATALOG_FILENAME);
-        factory.setResourceResolver(new XMLCatalogResolver(new String[]{catalogUrl.toString()}, false));
-
-        try {
-            return factory.newSchema(new File(xsdFile));
-        } catch (SAXException e) {
-            throw new SEDALibException("Impossible de charger le schéma " + xsdFile, e);
-        }
+        return getSchemaFromFile(xsdFile, false);
     }
 
     /**
@@ -81,56 +245,153 @@ public class SEDAXMLValidator {
      * @throws SEDALibException the seda lib exception
      */
     public Schema getSchemaFromRNGFile(String rngFile) throws SEDALibException {
-        System.setProperty(RNG_PROPERTY_KEY, RNG_FACTORY);
-        SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.RELAXNG_NS_URI);
+        return getSchemaFromFile(rngFile, true);
+    }
+
+    /**
+     * Gets schema from a profile file, RNG if the file name ends with ".rng" and XSD otherwise.
+     *
+     * @param profileFile the profile file
+     * @return the schema from the profile file
+     * @throws SEDALibException the seda lib exception
+     */
+    public Schema getSchemaFromProfileFile(String profileFile) throws SEDALibException {
+        return getSchemaFromFile(profileFile, isRNGProfile(profileFile));
+    }
+
+    /**
+     * Checks if the profile file is a RNG one, by its ".rng" extension.
+     *
+     * @param profileFile the profile file
+     * @return true if RNG profile
+     */
+    public static boolean isRNGProfile(String profileFile) {
+        return profileFile.endsWith(".rng");
+    }
+
+    /**
+     * Clear the compiled schemas cache, apart from the SEDA 2.1 schema.
+     */
+    public static void clearSchemaCache() {
+        schemaCache.clear();
+    }
+
+    /**
+     * Gets the schema factory, with the catalog resolving external schemas even offline.
+     *
+     * @param rng true for a RNG schema factory, false for a XSD 1.1 one
+     * @return the schema factory
+     */
+    private SchemaFactory getSchemaFactory(boolean rng) {
+        SchemaFactory factory;
+        if (rng)
+            factory = SchemaFactory.newInstance(XMLConstants.RELAXNG_NS_URI, RNG_FACTORY,
+                    getClass().getClassLoader());
+        else
+            // Was XMLConstants.W3C_XML_SCHEMA_NS_URI
+            factory = SchemaFactory.newInstance(HTTP_WWW_W3_ORG_XML_XML_SCHEMA_V1_1);
 
         // Load catalog to resolve external schemas even offline.
         final URL catalogUrl = getClass().getClassLoader().getResource(CATALOG_FILENAME);
         factory.setResourceResolver(new XMLCatalogResolver(new String[]{catalogUrl.toString()}, false));
+        return factory;
+    }
 
+    /**
+     * Gets schema from file, from the cache if the file has not changed since last compilation.
+     *
+     * @param schemaFile the schema file
+     * @param rng        true for a RNG schema, false for a XSD one
+     * @return the schema
+     * @throws SEDALibException the seda lib exception
+     */
+    private Schema getSchemaFromFile(String schemaFile, boolean rng) throws SEDALibException {
+        Path path = Paths.get(schemaFile).toAbsolutePath().normalize();
+        String key = (rng ? "rng:" : "xsd:") + path;
+        long lastModified;
+        long size;
         try {
-            return factory.newSchema(new File(rngFile));
-        } catch (SAXException e) {
-            throw new SEDALibException("Impossible de charger le schéma " + rngFile, e);
+            lastModified = Files.getLastModifiedTime(path).toMillis();
+            size = Files.size(path);
+        } catch (IOException e) {
+            throw new SEDALibException("Impossible de charger le schéma " + schemaFile, e);
         }
-    }
 
-    private String getContextualErrorMessage(String manifest, SAXParseException e) {
-        int i = 0;
-        String line="", inArchiveUnit = "", result;
+        CachedSchema cachedSchema = schemaCache.get(key);
+        if ((cachedSchema != null) && (cachedSchema.lastModified == lastModified) && (cachedSchema.size == size))
+            return cachedSchema.schema;
 
-        Scanner scanner = new Scanner(manifest);
-        while (scanner.hasNextLine() && (i < e.getLineNumber())) {
-            line = scanner.nextLine();
-            if (line.trim().startsWith("<ArchiveUnit "))
-                inArchiveUnit = line.trim();
-            i++;
+        try {
+            Schema schema = getSchemaFactory(rng).newSchema(path.toFile());
+            schemaCache.put(key, new CachedSchema(lastModified, size, schema));
+            return schema;
+        } catch (SAXException e) {
+            throw new SEDALibException("Impossible de charger le schéma " + schemaFile, e);
         }
-        result = "Contexte de l'erreur: " + (inArchiveUnit.isEmpty()?"hors AU":inArchiveUnit) + "\n" +
+    }
+
+    private String getContextualErrorMessage(String inArchiveUnit, String line, SAXParseException e) {
+        return "Contexte de l'erreur: " + (inArchiveUnit.isEmpty() ? "hors AU" : inArchiveUnit) + "\n" +
                 "position de l'erreur identifiée: ligne " + e.getLineNumber() + ", colonne " + e.getColumnNumber() + "\n" +
-                "ligne: " + line+"\n" +
+                (line == null ? "" : "ligne: " + line + "\n") +
                 "erreur brute: " + e.getMessage();
-        scanner.close();
-        return result;
+    }
+
+    private String getContextualErrorMessage(ManifestReaderSupplier manifestReaderSupplier,
+                                             RecentLinesInputStream recentLines,
+                                             ArchiveUnitTrackingReader trackingReader, SAXParseException e) {
+        if (manifestReaderSupplier == null) {
+            if ((recentLines != null) && recentLines.hasLine(e.getLineNumber()))
+                return getContextualErrorMessage(recentLines.getArchiveUnit(e.getLineNumber()),
+                        recentLines.getLine(e.getLineNumber()), e);
+            return getContextualErrorMessage(trackingReader == null ? "" : trackingReader.inArchiveUnit, null, e);
+        }
+
+        int i = 0;
+        String line = "", nextLine;
+        String inArchiveUnit = "";
+        try (BufferedReader br = new BufferedReader(manifestReaderSupplier.get())) {
+            while ((i < e.getLineNumber()) && ((nextLine = br.readLine()) != null)) {
+                line = nextLine;
+                if (line.trim().startsWith("<ArchiveUnit "))
+                    inArchiveUnit = line.trim();
+                i++;
+            }
+        } catch (IOException ignored) {
+            // keep what has been read
+        }
+        return getContextualErrorMessage(inArchiveUnit, line, e);
     }
 
     /**
-     * Check with xsd schema.
+     * Check a manifest stream with a schema.
      *
-     * @param manifest  the XML manifest
-     * @param xmlSchema the xml schema
+     * @param is                     the manifest input stream
+     * @param schema                 the schema
+     * @param rng                    true for a RNG schema, false for a XSD one
+     * @param manifestReaderSupplier the supplier of a new reader on the manifest, or null if it can't be read again,
+     *                               the last lines read being then kept for errors context
      * @return true if validated
      * @throws SEDALibException the seda lib exception
      */
-    public boolean checkWithXSDSchema(String manifest, Schema xmlSchema) throws SEDALibException {
-        XMLInputFactory xmlInputFactory;
+    private boolean check(InputStream is, Schema schema, boolean rng, ManifestReaderSupplier manifestReaderSupplier)
+            throws SEDALibException {
         XMLStreamReader xmlStreamReader = null;
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8))) {
-            xmlInputFactory = XMLInputFactory.newInstance();
-            xmlStreamReader = xmlInputFactory.createXMLStreamReader(bais, "UTF-8");
-
-            final Validator validator = xmlSchema.newValidator();
-            validator.validate(new StAXSource(xmlStreamReader));
+        ArchiveUnitTrackingReader trackingReader = null;
+        RecentLinesInputStream recentLines = null;
+        if (manifestReaderSupplier == null) {
+            recentLines = new RecentLinesInputStream(is);
+            is = recentLines;
+        }
+        try {
+            final Validator validator = schema.newValidator();
+            if (rng)
+                validator.validate(new StreamSource(is));
+            else {
+                xmlStreamReader = xmlInputFactory.createXMLStreamReader(is, "UTF-8");
+                trackingReader = new ArchiveUnitTrackingReader(xmlStreamReader);
+                validator.validate(new StAXSource(trackingReader));
+            }
             return true;
         } catch (IOException e) {
             throw new SEDALibException("Erreur d'accès au flux XML", e);
@@ -138,7 +399,7 @@ public class SEDAXMLValidator {
             throw new SEDALibException("Impossible d'ouvrir le flux XML", e);
         } catch (SAXParseException e) {
             throw new SEDALibException("Le flux XML n'est pas conforme\n-> "
-                    + getContextualErrorMessage(manifest, e));
+                    + getContextualErrorMessage(manifestReaderSupplier, recentLines, trackingReader, e));
         } catch (SAXException e) {
             throw new SEDALibException("Le flux XML n'est pas conforme", e);
         } finally {
@@ -151,6 +412,60 @@ public class SEDAXMLValidator {
         }
     }
 
+    /**
+     * Check a manifest file with a schema.
+     *
+     * @param manifest the manifest file path
+     * @param schema   the schema
+     * @param rng      true for a RNG schema, false for a XSD one
+     * @return true if validated
+     * @throws SEDALibException the seda lib exception
+     */
+    private boolean check(Path manifest, Schema schema, boolean rng) throws SEDALibException {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(manifest))) {
+            return check(is, schema, rng, () -> Files.newBufferedReader(manifest, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new SEDALibException("Erreur d'accès au flux XML", e);
+        }
+    }
+
+    /**
+     * Check with xsd schema.
+     *
+     * @param manifest  the XML manifest
+     * @param xmlSchema the xml schema
+     * @return true if validated
+     * @throws SEDALibException the seda lib exception
+     */
+    public boolean checkWithXSDSchema(String manifest, Schema xmlSchema) throws SEDALibException {
+        return check(new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8)), xmlSchema, false,
+                () -> new StringReader(manifest));
+    }
+
+    /**
+     * Check with xsd schema.
+     *
+     * @param manifest  the XML manifest input stream, not closed
+     * @param xmlSchema the xml schema
+     * @return true if validated
+     * @throws SEDALibException the seda lib exception
+     */
+    public boolean checkWithXSDSchema(InputStream manifest, Schema xmlSchema) throws SEDALibException {
+        return check(manifest, xmlSchema, false, null);
+    }
+
+    /**
+     * Check with xsd schema.
+     *
+     * @param manifest  the XML manifest file path
+     * @param xmlSchema the xml schema
+     * @return true if validated
+     * @throws SEDALibException the seda lib exception
+     */
+    public boolean checkWithXSDSchema(Path manifest, Schema xmlSchema) throws SEDALibException {
+        return check(manifest, xmlSchema, false);
+    }
+
     /**
      * Check with rng schema.
      *
@@ -160,17 +475,85 @@ public class SEDAXMLValidator {
      * @throws SEDALibException the seda lib exception
      */
     public boolean checkWithRNGSchema(String manifest, Schema rngSchema) throws SEDALibException {
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8))) {
-            final Validator validator = rngSchema.newValidator();
-            validator.validate(new StreamSource(bais));
-            return true;
-        } catch (SAXParseException e) {
-            throw new SEDALibException("Le flux XML n'est pas conforme\n-> "
-                    + getContextualErrorMessage(manifest, e));
-        } catch (SAXException e) {
-            throw new SEDALibException("Le flux XML n'est pas conforme", e);
-        } catch (IOException e) {
-            throw new SEDALibException("Erreur d'accès au flux XML", e);
+        return check(new ByteArrayInputStream(manifest.getBytes(StandardCharsets.UTF_8)), rngSchema, true,
+                () -> new StringReader(manifest));
+    }
+
+    /**
+     * Check with rng schema.
+     *
+     * @param manifest  the XML manifest input stream, not closed
+     * @param rngSchema the rng schema
+     * @return true if validated
+     * @throws SEDALibException the seda lib exception
+     */
+    public boolean checkWithRNGSchema(InputStream manifest, Schema rngSchema) throws SEDALibException {
+        return check(manifest, rngSchema, true, null);
+    }
+
+    /**
+     * Check with rng schema.
+     *
+     * @param manifest  the XML manifest file path
+     * @param rngSchema the rng schema
+     * @return true if validated
+     * @throws SEDALibException the seda lib exception
+     */
+    public boolean checkWithRNGSchema(Path manifest, Schema rngSchema) throws SEDALibException {
+        return check(manifest, rngSchema, true);
+    }
+
+    /**
+     * Check a batch of manifest files with the same schema, by threadCount concurrent validations.
+     *
+     * @param manifests   the XML manifest file paths
+     * @param schema      the schema
+     * @param rng         true for a RNG schema, false for a XSD one
+     * @param threadCount the number of concurrent validations, 1 for sequential validation in the calling thread
+     * @return the validation exceptions by manifest, in manifests order, empty if all are validated
+     * @throws InterruptedException if validation process is interrupted
+     */
+    public Map<Path, SEDALibException> checkAll(List<Path> manifests, Schema schema, boolean rng, int threadCount)
+            throws InterruptedException {
+        Map<Path, SEDALibException> result = new LinkedHashMap<Path, SEDALibException>();
+        if ((threadCount <= 1) || (manifests.size() <= 1)) {
+            for (Path manifest : manifests) {
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                try {
+                    check(manifest, schema, rng);
+                } catch (SEDALibException e) {
+                    result.put(manifest, e);
+                }
+            }
+            return result;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, manifests.size()), r -> {
+            Thread t = new Thread(r, "sedalib-validate-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(manifests.size());
+            for (Path manifest : manifests)
+                futures.add(executor.submit(() -> check(manifest, schema, rng)));
+            for (int i = 0; i < manifests.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof SEDALibException)
+                        result.put(manifests.get(i), (SEDALibException) e.getCause());
+                    else
+                        result.put(manifests.get(i), new SEDALibException("Erreur d'accès au flux XML", e.getCause()));
+                } catch (CancellationException e) {
+                    throw new InterruptedException("Validation des manifests annulée");
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
         }
+        return result;
     }
 }
@@ -0,0 +1,33 @@
+package fr.gouv.vitam.tools.sedalib;
+
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+
+/**
+ * The type Test fixtures, building small DataObjectPackages in memory.
+ */
+public class TestFixtures {
+
+    /**
+     * New ArchiveUnit, child of the ghost root.
+     *
+     * @param dataObjectPackage the data object package
+     * @return the archive unit
+     */
+    public static ArchiveUnit newArchiveUnit(DataObjectPackage dataObjectPackage) {
+        return newArchiveUnit(dataObjectPackage, dataObjectPackage.getGhostRootAu());
+    }
+
+    /**
+     * New ArchiveUnit, child of the parent ArchiveUnit.
+     *
+     * @param dataObjectPackage the data object package
+     * @param parent            the parent archive unit
+     * @return the archive unit
+     */
+    public static ArchiveUnit newArchiveUnit(DataObjectPackage dataObjectPackage, ArchiveUnit parent) {
+        ArchiveUnit au = new ArchiveUnit(dataObjectPackage);
+        parent.addChildArchiveUnit(au);
+        return au;
+    }
+}
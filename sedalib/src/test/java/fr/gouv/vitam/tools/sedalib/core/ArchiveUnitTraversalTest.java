@@ -0,0 +1,122 @@
+package fr.gouv.vitam.tools.sedalib.core;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static fr.gouv.vitam.tools.sedalib.TestFixtures.newArchiveUnit;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ArchiveUnitTraversalTest {
+
+    @Test
+    void testPreAndPostOrderInDAG() throws Exception {
+        // Given au1->(au2->au4, au3->au4)
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        ArchiveUnit au1 = newArchiveUnit(dataObjectPackage);
+        ArchiveUnit au2 = newArchiveUnit(dataObjectPackage, au1);
+        ArchiveUnit au3 = newArchiveUnit(dataObjectPackage, au1);
+        ArchiveUnit au4 = newArchiveUnit(dataObjectPackage, au2);
+        au3.addChildArchiveUnit(au4);
+        List<String> events = new ArrayList<String>();
+
+        // When traversed
+        ArchiveUnitTraversal traversal = new ArchiveUnitTraversal(dataObjectPackage);
+        traversal.traverse(new ArchiveUnitVisitor() {
+            @Override
+            public boolean preVisit(ArchiveUnit archiveUnit) {
+                events.add("+" + archiveUnit.getInDataObjectPackageId());
+                return true;
+            }
+
+            @Override
+            public void postVisit(ArchiveUnit archiveUnit) {
+                events.add("-" + archiveUnit.getInDataObjectPackageId());
+            }
+        });
+
+        // Then each ArchiveUnit visited once, in recursive walk order
+        assertThat(events).containsExactly("+" + au1.getInDataObjectPackageId(), "+" + au2.getInDataObjectPackageId(),
+                "+" + au4.getInDataObjectPackageId(), "-" + au4.getInDataObjectPackageId(),
+                "-" + au2.getInDataObjectPackageId(), "+" + au3.getInDataObjectPackageId(),
+                "-" + au3.getInDataObjectPackageId(), "-" + au1.getInDataObjectPackageId());
+        assertThat(traversal.getVisitedCount()).isEqualTo(4);
+        assertThat(traversal.isVisited(au4)).isTrue();
+        assertThat(dataObjectPackage.isTouched(au4)).isFalse();
+    }
+
+    @Test
+    void testDeepTreeAndCancellation() throws Exception {
+        // Given a 100000 levels deep chain
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        ArchiveUnit au = newArchiveUnit(dataObjectPackage);
+        for (int i = 0; i < 100000; i++)
+            au = newArchiveUnit(dataObjectPackage, au);
+        ArchiveUnitTraversal traversal = new ArchiveUnitTraversal(dataObjectPackage);
+
+        // When traversed, Then no stack overflow
+        traversal.traverse(archiveUnit -> true);
+        assertThat(traversal.getVisitedCount()).isEqualTo(100001);
+
+        // When cancelled by the visitor, Then stopped
+        assertThatThrownBy(() -> traversal.traverse(archiveUnit -> {
+            if (traversal.getVisitedCount() == 10)
+                traversal.cancel();
+            return true;
+        })).isInstanceOf(InterruptedException.class);
+        assertThat(traversal.getVisitedCount()).isEqualTo(10);
+
+        // When cycle, Then detected
+        ArchiveUnit root = dataObjectPackage.getGhostRootAu().getChildrenAuList().getArchiveUnitList().get(0);
+        au.addChildArchiveUnit(root);
+        traversal.setCycleDetectionFlag(true);
+        assertThatThrownBy(() -> traversal.traverse(archiveUnit -> true))
+                .isInstanceOf(SEDALibException.class)
+                .hasMessageStartingWith("Cycle détecté " + root.getInDataObjectPackageId() + "->")
+                .hasMessageEndingWith("->" + au.getInDataObjectPackageId() + "->" + root.getInDataObjectPackageId());
+    }
+
+    @Test
+    void testParallelTraversal() throws Exception {
+        // Given 50 roots sharing a common subtree
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        ArchiveUnit shared = new ArchiveUnit(dataObjectPackage);
+        for (int i = 0; i < 10; i++)
+            newArchiveUnit(dataObjectPackage, shared);
+        for (int i = 0; i < 50; i++) {
+            ArchiveUnit root = newArchiveUnit(dataObjectPackage);
+            for (int j = 0; j < 20; j++)
+                newArchiveUnit(dataObjectPackage, root);
+            root.addChildArchiveUnit(shared);
+        }
+        Set<ArchiveUnit> visited = Collections.newSetFromMap(new ConcurrentHashMap<ArchiveUnit, Boolean>());
+        List<ArchiveUnit> duplicates = Collections.synchronizedList(new ArrayList<ArchiveUnit>());
+
+        // When traversed with many threads
+        ArchiveUnitTraversal traversal = new ArchiveUnitTraversal(dataObjectPackage);
+        traversal.setThreadCount(4);
+        traversal.traverse(archiveUnit -> {
+            if (!visited.add(archiveUnit))
+                duplicates.add(archiveUnit);
+            return true;
+        });
+
+        // Then all visited once
+        assertThat(duplicates).isEmpty();
+        assertThat(visited).hasSize(dataObjectPackage.getAuInDataObjectPackageIdMap().size());
+        assertThat(traversal.getVisitedCount()).isEqualTo(visited.size());
+
+        // When the visitor fails, Then the exception is thrown
+        assertThatThrownBy(() -> traversal.traverse(archiveUnit -> {
+            if (archiveUnit == shared)
+                throw new SEDALibException("Erreur de test");
+            return true;
+        })).isInstanceOf(SEDALibException.class).hasMessage("Erreur de test");
+    }
+}
@@ -8,8 +8,18 @@ import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageDeserializer;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageSerializer;
 import fr.gouv.vitam.tools.sedalib.inout.importer.SIPToArchiveTransferImporter;
 import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.xml.SEDAXMLStreamWriter;
 import org.junit.jupiter.api.Test;
 
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
 import static fr.gouv.vitam.tools.sedalib.TestUtilities.LineEndNormalize;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -612,4 +622,222 @@ class DataObjectPackageTest {
     //    System.out.println(sau);
         assertEquals(LineEndNormalize(testau), LineEndNormalize(sau));
     }
+
+    @Test
+    void testReferencesListsByIndexAndId() throws SEDALibException {
+        // Given a parent declaring children by id before they exist
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        ArchiveUnit parent = new ArchiveUnit(dataObjectPackage);
+        parent.setInDataObjectPackageId("Parent");
+        dataObjectPackage.getAuInDataObjectPackageIdMap().put("Parent", parent);
+        parent.addChildArchiveUnitById("ChildB");
+        parent.addChildArchiveUnitById("ChildA");
+        ArchiveUnit childB = new ArchiveUnit();
+        childB.setInDataObjectPackageId("ChildB");
+        dataObjectPackage.addArchiveUnit(childB);
+        ArchiveUnit childA = new ArchiveUnit();
+        childA.setInDataObjectPackageId("ChildA");
+        dataObjectPackage.addArchiveUnit(childA);
+        dataObjectPackage.addRootAu(parent);
+
+        // When resolved by objects, sorted and ids regenerated
+        assertThat(parent.getChildrenAuList().getArchiveUnitList()).containsExactly(childB, childA);
+        parent.getChildrenAuList().getArchiveUnitList()
+                .sort((au1, au2) -> au1.getInDataObjectPackageId().compareTo(au2.getInDataObjectPackageId()));
+        dataObjectPackage.regenerateContinuousIds();
+
+        // Then the references follow the objects and their new ids
+        assertThat(parent.getChildrenAuList().getArchiveUnitList()).containsExactly(childA, childB);
+        assertThat(parent.getChildrenAuList().getInDataObjectPackageIdList())
+                .containsExactly(childA.getInDataObjectPackageId(), childB.getInDataObjectPackageId());
+        assertThat(dataObjectPackage.getArchiveUnitById(childA.getInDataObjectPackageId())).isSameAs(childA);
+        parent.removeChildArchiveUnitById(childA.getInDataObjectPackageId());
+        assertThat(parent.getChildrenAuList().getArchiveUnitList()).containsExactly(childB);
+
+        // When touched by object or by id, Then the same count is shared
+        dataObjectPackage.resetTouchedInDataObjectPackageIdMap();
+        dataObjectPackage.incTouched(childB);
+        dataObjectPackage.incTouchedInDataObjectPackageId(childB.getInDataObjectPackageId());
+        dataObjectPackage.addTouchedInDataObjectPackageId("Unknown");
+        assertThat(dataObjectPackage.getTouchedCount(childB)).isEqualTo(2);
+        assertThat(dataObjectPackage.getTouchedInDataObjectPackageId(childB.getInDataObjectPackageId())).isEqualTo(2);
+        assertThat(dataObjectPackage.isTouched(childA)).isFalse();
+        assertThat(dataObjectPackage.isTouchedInDataObjectPackageId("Unknown")).isTrue();
+        dataObjectPackage.resetTouchedInDataObjectPackageIdMap();
+        assertThat(dataObjectPackage.getTouchedInDataObjectPackageId(childB.getInDataObjectPackageId())).isNull();
+    }
+
+    @Test
+    void testElementIndexCompaction() throws SEDALibException, InterruptedException {
+        // Given a normalized DataObjectPackage with an ArchiveUnit then detached from the graph
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        ArchiveUnit root = new ArchiveUnit(dataObjectPackage);
+        dataObjectPackage.getGhostRootAu().addChildArchiveUnit(root);
+        ArchiveUnit kept = new ArchiveUnit(dataObjectPackage);
+        root.addChildArchiveUnit(kept);
+        BinaryDataObject keptBdo = new BinaryDataObject(dataObjectPackage);
+        kept.getDataObjectRefList().add(keptBdo);
+        ArchiveUnit detached = new ArchiveUnit(dataObjectPackage);
+        root.addChildArchiveUnit(detached);
+        BinaryDataObject detachedBdo = new BinaryDataObject(dataObjectPackage);
+        detached.getDataObjectRefList().add(detachedBdo);
+        dataObjectPackage.vitamNormalize(null);
+        root.removeChildArchiveUnit(detached);
+        dataObjectPackage.incTouched(kept);
+        int sizeBefore = dataObjectPackage.getElementIndex().size();
+
+        // When ids are regenerated
+        dataObjectPackage.regenerateContinuousIds();
+
+        // Then the detached elements are released and the kept ones remapped
+        DataObjectPackageIndex elementIndex = dataObjectPackage.getElementIndex();
+        assertThat(elementIndex.size()).isLessThan(sizeBefore);
+        assertThat(elementIndex.indexIfKnown(detached)).isEqualTo(-1);
+        assertThat(elementIndex.indexIfKnown(detachedBdo)).isEqualTo(-1);
+        assertThat(elementIndex.get(elementIndex.indexIfKnown(kept))).isSameAs(kept);
+        assertThat(root.getChildrenAuList().getArchiveUnitList()).containsExactly(kept);
+        assertThat(kept.getTheDataObjectGroup().getBinaryDataObjectList()).containsExactly(keptBdo);
+        assertThat(dataObjectPackage.getTouchedCount(kept)).isEqualTo(1);
+        assertThat(dataObjectPackage.isTouched(root)).isFalse();
+        // the detached ArchiveUnit references are still readable
+        assertThat(detached.getTheDataObjectGroup().getBinaryDataObjectList()).containsExactly(detachedBdo);
+    }
+
+    @Test
+    void testIdMapsViewElementIndexMembers() throws SEDALibException {
+        // Given ArchiveUnits and DataObjects added to the DataObjectPackage
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        List<ArchiveUnit> archiveUnits = new ArrayList<ArchiveUnit>();
+        for (int i = 0; i < 100; i++)
+            archiveUnits.add(new ArchiveUnit(dataObjectPackage));
+        DataObjectGroup dog = new DataObjectGroup(dataObjectPackage, null);
+        BinaryDataObject bdo = new BinaryDataObject(dataObjectPackage);
+
+        // When read through the maps, Then each map only sees its kind, in insertion order
+        Map<String, ArchiveUnit> auMap = dataObjectPackage.getAuInDataObjectPackageIdMap();
+        assertThat(auMap).hasSize(100);
+        assertThat(new ArrayList<ArchiveUnit>(auMap.values())).containsExactlyElementsOf(archiveUnits);
+        assertThat(auMap.get(dog.getInDataObjectPackageId())).isNull();
+        assertThat(dataObjectPackage.getDataObjectById(dog.getInDataObjectPackageId())).isSameAs(dog);
+        assertThat(dataObjectPackage.getBdoInDataObjectPackageIdMap()).containsOnlyKeys(bdo.getInDataObjectPackageId());
+
+        // When removed through the maps and their iterators, Then no more found but still indexed
+        for (int i = 0; i < 50; i++)
+            assertThat(auMap.remove(archiveUnits.get(i * 2).getInDataObjectPackageId()))
+                    .isSameAs(archiveUnits.get(i * 2));
+        Iterator<Map.Entry<String, ArchiveUnit>> iterator = auMap.entrySet().iterator();
+        iterator.next();
+        iterator.remove();
+        assertThat(auMap).hasSize(49).doesNotContainKey(archiveUnits.get(1).getInDataObjectPackageId());
+        for (int i = 3; i < 100; i += 2)
+            assertThat(dataObjectPackage.getArchiveUnitById(archiveUnits.get(i).getInDataObjectPackageId()))
+                    .isSameAs(archiveUnits.get(i));
+        assertThat(dataObjectPackage.getElementIndex().indexIfKnown(archiveUnits.get(0))).isGreaterThanOrEqualTo(0);
+
+        // When put under a new key, Then found only under this key and a modifying iteration fails
+        ArchiveUnit moved = archiveUnits.get(3);
+        auMap.put("Moved", moved);
+        assertThat(auMap).hasSize(49).containsEntry("Moved", moved)
+                .doesNotContainKey(moved.getInDataObjectPackageId());
+        assertThatThrownBy(() -> {
+            for (String key : auMap.keySet())
+                auMap.remove(key);
+        }).isInstanceOf(ConcurrentModificationException.class);
+
+        // When the maps are cleared, Then the elements ids are available again
+        dataObjectPackage.getAuInDataObjectPackageIdMap().clear();
+        assertThat(auMap).isEmpty();
+        assertThat(dataObjectPackage.getDogInDataObjectPackageIdMap()).hasSize(1);
+        ArchiveUnit readded = new ArchiveUnit();
+        readded.setInDataObjectPackageId(archiveUnits.get(5).getInDataObjectPackageId());
+        dataObjectPackage.addArchiveUnit(readded);
+        assertThat(auMap).containsOnlyKeys(readded.getInDataObjectPackageId());
+    }
+
+    @Test
+    void testIncrementalVitamNormalization() throws SEDALibException, InterruptedException {
+        // Given a normalized DataObjectPackage
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        ArchiveUnit root = new ArchiveUnit(dataObjectPackage);
+        dataObjectPackage.getGhostRootAu().addChildArchiveUnit(root);
+        ArchiveUnit child = new ArchiveUnit(dataObjectPackage);
+        root.addChildArchiveUnit(child);
+        BinaryDataObject bdo = new BinaryDataObject(dataObjectPackage);
+        child.getDataObjectRefList().add(bdo);
+        dataObjectPackage.vitamNormalize(null);
+        assertThat(child.getTheDataObjectGroup().getBinaryDataObjectList()).containsExactly(bdo);
+
+        // When a DataObjectGroup is put directly in the map, Then swept as unused
+        DataObjectGroup hiddenDog = new DataObjectGroup();
+        hiddenDog.setInDataObjectPackageId("HiddenDog");
+        dataObjectPackage.getDogInDataObjectPackageIdMap().put("HiddenDog", hiddenDog);
+        dataObjectPackage.vitamNormalize(null);
+        assertThat(dataObjectPackage.getDogInDataObjectPackageIdMap()).doesNotContainKey("HiddenDog");
+
+        // When a cycle is created, Then detected from the changed ArchiveUnit
+        child.addChildArchiveUnit(root);
+        assertThatThrownBy(() -> dataObjectPackage.vitamNormalize(null))
+                .hasMessageContaining("Cycle détecté");
+        assertThat(dataObjectPackage.getVitamNormalizationStatus())
+                .isEqualTo(DataObjectPackage.NORMALIZATION_STATUS_KO);
+        child.removeChildArchiveUnit(root);
+        dataObjectPackage.vitamNormalize(null);
+
+        // When a new ArchiveUnit with a DataObject is added, Then normalized and unused DataObjects swept
+        ArchiveUnit newChild = new ArchiveUnit(dataObjectPackage);
+        child.addChildArchiveUnit(newChild);
+        BinaryDataObject newBdo = new BinaryDataObject(dataObjectPackage);
+        newChild.getDataObjectRefList().add(newBdo);
+        dataObjectPackage.vitamNormalize(null);
+        assertThat(newChild.getTheDataObjectGroup().getBinaryDataObjectList()).containsExactly(newBdo);
+        assertThat(dataObjectPackage.getDogInDataObjectPackageIdMap()).hasSize(2);
+        assertThat(dataObjectPackage.getVitamNormalizationStatus())
+                .isEqualTo(DataObjectPackage.NORMALIZATION_STATUS_OK);
+    }
+
+    @Test
+    void testIncrementalNormalizationSweepsRemovedDataObjects() throws SEDALibException, InterruptedException,
+            XMLStreamException, UnsupportedEncodingException {
+        // Given a normalized DataObjectPackage
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        ArchiveUnit root = new ArchiveUnit(dataObjectPackage);
+        dataObjectPackage.getGhostRootAu().addChildArchiveUnit(root);
+        ArchiveUnit child = new ArchiveUnit(dataObjectPackage);
+        root.addChildArchiveUnit(child);
+        BinaryDataObject keptBdo = new BinaryDataObject(dataObjectPackage);
+        BinaryDataObject removedBdo = new BinaryDataObject(dataObjectPackage);
+        PhysicalDataObject removedPdo = new PhysicalDataObject(dataObjectPackage);
+        child.getDataObjectRefList().add(keptBdo);
+        child.getDataObjectRefList().add(removedBdo);
+        child.getDataObjectRefList().add(removedPdo);
+        ArchiveUnit dustbinAu = new ArchiveUnit(dataObjectPackage);
+        root.addChildArchiveUnit(dustbinAu);
+        BinaryDataObject dustbinBdo = new BinaryDataObject(dataObjectPackage);
+        dustbinAu.getDataObjectRefList().add(dustbinBdo);
+        dataObjectPackage.vitamNormalize(null);
+        DataObjectGroup dustbinDog = dustbinAu.getTheDataObjectGroup();
+
+        // When DataObjects are removed from their group, and an ArchiveUnit only from its parent and the map
+        child.getTheDataObjectGroup().removeDataObject(removedBdo);
+        child.getTheDataObjectGroup().removeDataObject(removedPdo);
+        root.removeChildArchiveUnit(dustbinAu);
+        dataObjectPackage.getAuInDataObjectPackageIdMap().remove(dustbinAu.getInDataObjectPackageId());
+        dataObjectPackage.vitamNormalize(null);
+
+        // Then the unused DataObjects are no more in the maps nor in the exported manifest
+        assertThat(dataObjectPackage.getBdoInDataObjectPackageIdMap()).containsOnlyKeys(keptBdo.getInDataObjectPackageId());
+        assertThat(dataObjectPackage.getPdoInDataObjectPackageIdMap()).isEmpty();
+        assertThat(dataObjectPackage.getDogInDataObjectPackageIdMap()).hasSize(1)
+                .doesNotContainKey(dustbinDog.getInDataObjectPackageId());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SEDAXMLStreamWriter xmlWriter = new SEDAXMLStreamWriter(baos, 2);
+        dataObjectPackage.exportDataObjectPackageObjects(xmlWriter, null);
+        xmlWriter.flush();
+        String manifest = baos.toString("UTF-8");
+        assertThat(manifest).contains("id=\"" + keptBdo.getInDataObjectPackageId() + "\"")
+                .doesNotContain("id=\"" + removedBdo.getInDataObjectPackageId() + "\"")
+                .doesNotContain("id=\"" + removedPdo.getInDataObjectPackageId() + "\"")
+                .doesNotContain("id=\"" + dustbinBdo.getInDataObjectPackageId() + "\"")
+                .doesNotContain("id=\"" + dustbinDog.getInDataObjectPackageId() + "\"");
+    }
 }
@@ -0,0 +1,61 @@
+package fr.gouv.vitam.tools.sedalib.droid;
+
+import fr.gouv.vitam.tools.sedalib.UseTestFiles;
+import org.junit.jupiter.api.Test;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DroidIdentifierTest implements UseTestFiles {
+
+    private static String getPuid(IdentificationResult ir) {
+        return ir == null ? null : ir.getPuid();
+    }
+
+    @Test
+    void testConcurrentIdentification() throws Exception {
+        // Given
+        List<Path> pathList;
+        try (Stream<Path> stream = Files.walk(Paths.get("src/test/resources/PacketSamples/SampleWithoutLinksModelV1"))) {
+            pathList = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        DroidIdentifier droidIdentifier = DroidIdentifier.getInstance();
+        Map<Path, String> sequentialPuids = new HashMap<Path, String>();
+        for (Path path : pathList)
+            sequentialPuids.put(path, getPuid(droidIdentifier.getIdentificationResult(path)));
+        long countBefore = droidIdentifier.getIdentificationCount();
+
+        // When identified by many threads, each file several times
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+        List<Path> submittedPaths = new ArrayList<Path>();
+        try {
+            for (int i = 0; i < 4; i++)
+                for (Path path : pathList) {
+                    futures.add(executor.submit(() -> getPuid(DroidIdentifier.getInstance()
+                            .getIdentificationResult(ScannedFile.scan(path)))));
+                    submittedPaths.add(path);
+                }
+            // Then
+            for (int i = 0; i < futures.size(); i++)
+                assertThat(futures.get(i).get()).isEqualTo(sequentialPuids.get(submittedPaths.get(i)));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(droidIdentifier.getIdentificationCount() - countBefore).isEqualTo(futures.size());
+        assertThat(droidIdentifier.getLastIdentificationNanos()).isGreaterThan(0);
+    }
+}
@@ -0,0 +1,81 @@
+package fr.gouv.vitam.tools.sedalib.droid;
+
+import fr.gouv.vitam.tools.sedalib.UseTestFiles;
+import org.junit.jupiter.api.Test;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScannedFileTest implements UseTestFiles {
+
+    private static String getReferenceDigest(Path path) throws Exception {
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-512");
+        try (Formatter formatter = new Formatter()) {
+            for (final byte b : messageDigest.digest(Files.readAllBytes(path))) {
+                formatter.format("%02x", b);
+            }
+            return formatter.toString();
+        }
+    }
+
+    private static String getPuid(IdentificationResult ir) {
+        return ir == null ? null : ir.getPuid();
+    }
+
+    private static void checkScannedFile(Path path) throws Exception {
+        // When scanned
+        ScannedFile scannedFile = ScannedFile.scan(path);
+
+        // Then same digest, size and identification as separate reads
+        assertThat(scannedFile.getDigestSha512()).isEqualTo(getReferenceDigest(path));
+        assertThat(scannedFile.getSize()).isEqualTo(Files.size(path));
+        assertThat(getPuid(DroidIdentifier.getInstance().getIdentificationResult(scannedFile)))
+                .isEqualTo(getPuid(DroidIdentifier.getInstance().getIdentificationResult(path)));
+    }
+
+    @Test
+    void testScanSampleFiles() throws Exception {
+        // Given
+        List<Path> pathList;
+        try (Stream<Path> stream = Files.walk(Paths.get("src/test/resources/PacketSamples/SampleWithoutLinksModelV1"))) {
+            pathList = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        for (Path path : pathList)
+            checkScannedFile(path);
+    }
+
+    @Test
+    void testScanLargeFile() throws Exception {
+        // Given a file bigger than header and trailer kept in memory
+        Path path = Paths.get("target/tmpJunit/ScannedFileTest/large.pdf");
+        Files.createDirectories(path.getParent());
+        byte[] body = new byte[ScannedFile.HEADER_CAPACITY + ScannedFile.TRAILER_CAPACITY + 12345];
+        new Random(42).nextBytes(body);
+        try (OutputStream os = Files.newOutputStream(path)) {
+            os.write("%PDF-1.4\n".getBytes("US-ASCII"));
+            os.write(body);
+            os.write("\n%%EOF\n".getBytes("US-ASCII"));
+        }
+
+        // When scanned
+        ScannedFile scannedFile = ScannedFile.scan(path);
+
+        // Then
+        assertThat(scannedFile.isFullyInMemory()).isFalse();
+        assertThat(scannedFile.getHeader().length).isEqualTo(ScannedFile.HEADER_CAPACITY);
+        assertThat(scannedFile.getTrailer().length).isEqualTo(ScannedFile.TRAILER_CAPACITY);
+        checkScannedFile(path);
+    }
+}
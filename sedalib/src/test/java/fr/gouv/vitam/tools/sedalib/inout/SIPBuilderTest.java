@@ -2,6 +2,9 @@ package fr.gouv.vitam.tools.sedalib.inout;
 
 import fr.gouv.vitam.tools.sedalib.TestUtilities;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.inout.importer.SIPToArchiveTransferImporter;
 import fr.gouv.vitam.tools.sedalib.metadata.content.Content;
 import fr.gouv.vitam.tools.sedalib.metadata.content.Event;
 import fr.gouv.vitam.tools.sedalib.metadata.management.AppraisalRule;
@@ -20,9 +23,15 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.StringTokenizer;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertAll;
 
@@ -157,4 +166,110 @@ public class SIPBuilderTest {
             throw new SEDALibException("SIPBuilder test KO");
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void generateStreamingSIP() throws Exception {
+        // Given
+        TestUtilities.createOrEraseAll("target/tmpJunit/SIPBuilder");
+
+        SEDALibProgressLogger pl = new SEDALibProgressLogger(LoggerFactory.getLogger("SIPBuilderTest"), SEDALibProgressLogger.OBJECTS_GROUP);
+        List<String> children = new ArrayList<String>();
+        try (StreamingSIPBuilder sb = new StreamingSIPBuilder("target/tmpJunit/SIPBuilder/StreamingSIPBuilderTest.zip", pl)) {
+            sb.setAgencies("FRAN_NP_000001", "FRAN_NP_000010", "FRAN_NP_000015", "FRAN_NP_000019");
+            sb.setArchivalAgreement("IC-000001");
+
+            // When children appended before their parent
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(Paths.get("src/test/resources/Procedure/Contexte"))) {
+                int i = 1;
+                for (Path file : ds) {
+                    String dogId = sb.appendFileDataObjectGroup(file.toString(), "BinaryMaster_1");
+                    String auId = "Fichier" + i++;
+                    sb.appendArchiveUnit(auId, "Item", file.getFileName().toString(), null,
+                            null, Collections.singletonList(dogId));
+                    children.add(auId);
+                }
+            }
+            sb.appendArchiveUnit("Racine", "RecordGrp", "Contexte", "Fichiers de contexte", children, null);
+            sb.generateSIP();
+
+            // Then
+            assertThat(sb.getArchiveUnitCount()).isEqualTo(children.size() + 1);
+            assertThat(sb.getBinaryDataObjectCount()).isEqualTo(children.size());
+        }
+        assertThat(Files.list(Paths.get("target/tmpJunit/SIPBuilder")).count()).isEqualTo(1);
+
+        // and the SIP is importable and valid
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "target/tmpJunit/SIPBuilder/StreamingSIPBuilderTest.zip", "target/tmpJunit/SIPBuilder/import", null);
+        si.doImport();
+        DataObjectPackage dop = si.getArchiveTransfer().getDataObjectPackage();
+        assertThat(dop.getAuInDataObjectPackageIdMap().size()).isEqualTo(children.size() + 1);
+        assertThat(dop.getBdoInDataObjectPackageIdMap().size()).isEqualTo(children.size());
+        assertThat(dop.getGhostRootAu().getChildrenAuList().getInDataObjectPackageIdList()).containsExactly("Racine");
+        assertThat(dop.getArchiveUnitById("Racine").getChildrenAuList().getInDataObjectPackageIdList())
+                .containsExactlyElementsOf(children);
+        for (BinaryDataObject bdo : dop.getBdoInDataObjectPackageIdMap().values())
+            assertThat(BinaryDataObject.getDigestSha512(bdo.getOnDiskPath())).isEqualTo(bdo.messageDigest.getValue());
+        si.getArchiveTransfer().seda21Validate(null);
+    }
+
+    @Test
+    void generateStreamingSIPWithInconsistentReferences() throws Exception {
+        // Given
+        TestUtilities.createOrEraseAll("target/tmpJunit/SIPBuilder");
+        String sipPathString = "target/tmpJunit/SIPBuilder/StreamingSIPBuilderKOTest.zip";
+
+        try (StreamingSIPBuilder sb = new StreamingSIPBuilder(sipPathString, null)) {
+            sb.setAgencies("FRAN_NP_000001", "FRAN_NP_000010", "FRAN_NP_000015", "FRAN_NP_000019");
+            sb.setArchivalAgreement("IC-000001");
+            sb.appendArchiveUnit("Racine", "RecordGrp", "Racine", null,
+                    Collections.singletonList("Absent"), Collections.singletonList("ID999"));
+
+            // When an ArchiveUnit id is appended twice, Then rejected
+            assertThatThrownBy(() -> sb.appendArchiveUnit("Racine", "Item", "Doublon", null, null, null))
+                    .isInstanceOf(SEDALibException.class).hasMessageContaining("déjà utilisé");
+
+            // When referenced ArchiveUnits are not appended, Then the SIP is not generated
+            assertThatThrownBy(sb::generateSIP).isInstanceOf(SEDALibException.class)
+                    .hasMessageContaining("ArchiveUnits référencées mais non ajoutées au SIP [Absent]");
+            sb.appendArchiveUnit("Absent", "Item", "Absent", null, null, null);
+
+            // When referenced DataObjectGroups are not appended, Then the SIP is not generated
+            assertThatThrownBy(sb::generateSIP).isInstanceOf(SEDALibException.class)
+                    .hasMessageContaining("DataObjectGroups référencés mais non ajoutés au SIP [ID999]");
+        }
+        assertThat(new File(sipPathString)).doesNotExist();
+    }
+
+    @Test
+    void generateStreamingSIPAfterWriteFailure() throws Exception {
+        // Given a progress logger interrupting the export after the first BinaryDataObject metadata
+        TestUtilities.createOrEraseAll("target/tmpJunit/SIPBuilder");
+        String sipPathString = "target/tmpJunit/SIPBuilder/StreamingSIPBuilderFailureTest.zip";
+        SEDALibProgressLogger pl = new SEDALibProgressLogger(LoggerFactory.getLogger("SIPBuilderTest"),
+                SEDALibProgressLogger.OBJECTS_GROUP, (count, log) -> {
+            if (log.contains("métadonnées DataObject exportées"))
+                Thread.currentThread().interrupt();
+        }, 1);
+        Map<String, String> files = new LinkedHashMap<String, String>();
+        files.put("BinaryMaster_1", "src/test/resources/Procedure/Contexte/Grenouilles.jpg");
+        files.put("Dissemination_1", "src/test/resources/Procedure/Contexte/Grenouilles.jpg");
+
+        try (StreamingSIPBuilder sb = new StreamingSIPBuilder(sipPathString, pl)) {
+            sb.setAgencies("FRAN_NP_000001", "FRAN_NP_000010", "FRAN_NP_000015", "FRAN_NP_000019");
+            sb.setArchivalAgreement("IC-000001");
+
+            // When the DataObjectGroup write is interrupted in the middle of its manifest fragment
+            assertThatThrownBy(() -> sb.appendDataObjectGroup(files)).isInstanceOf(InterruptedException.class);
+
+            // Then the next appends and the generation fail
+            assertThatThrownBy(() -> sb.appendArchiveUnit("Racine", "RecordGrp", "Racine", null, null, null))
+                    .isInstanceOf(SEDALibException.class).hasMessageContaining("inutilisable après un échec d'écriture");
+            assertThatThrownBy(() -> sb.appendFileDataObjectGroup(files.get("BinaryMaster_1"), "BinaryMaster_1"))
+                    .isInstanceOf(SEDALibException.class).hasMessageContaining("inutilisable après un échec d'écriture");
+            assertThatThrownBy(sb::generateSIP)
+                    .isInstanceOf(SEDALibException.class).hasMessageContaining("inutilisable après un échec d'écriture");
+        }
+        assertThat(new File(sipPathString)).doesNotExist();
+    }
+}
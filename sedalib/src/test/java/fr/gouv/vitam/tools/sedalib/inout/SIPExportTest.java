@@ -0,0 +1,194 @@
+package fr.gouv.vitam.tools.sedalib.inout;
+
+import fr.gouv.vitam.tools.sedalib.TestUtilities;
+import fr.gouv.vitam.tools.sedalib.UseTestFiles;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.core.GlobalMetadata;
+import fr.gouv.vitam.tools.sedalib.inout.exporter.ArchiveTransferToSIPExporter;
+import fr.gouv.vitam.tools.sedalib.inout.exporter.DigestVerificationReport;
+import fr.gouv.vitam.tools.sedalib.inout.exporter.ZipCompressionPolicy;
+import fr.gouv.vitam.tools.sedalib.inout.importer.DiskToArchiveTransferImporter;
+import fr.gouv.vitam.tools.sedalib.inout.importer.SIPToArchiveTransferImporter;
+import fr.gouv.vitam.tools.sedalib.metadata.namedtype.DigestType;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SIPExportTest implements UseTestFiles {
+
+    @Test
+    void testParallelFormatAwareSIPExport() throws Exception {
+        // Given
+        DiskToArchiveTransferImporter di = new DiskToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/SampleWithoutLinksModelV1", null);
+        di.addIgnorePattern("Thumbs.db");
+        di.addIgnorePattern("pagefile.sys");
+        di.doImport();
+        di.getArchiveTransfer().setGlobalMetadata(new GlobalMetadata());
+        di.getArchiveTransfer().getGlobalMetadata().messageIdentifier = "MessageIdentifier0";
+        di.getArchiveTransfer().getGlobalMetadata().archivalAgreement = "ArchivalAgreement0";
+        di.getArchiveTransfer().getGlobalMetadata().codeListVersionsXmlData = "<CodeListVersions>\n"
+                + "  <ReplyCodeListVersion>ReplyCodeListVersion0</ReplyCodeListVersion>\n"
+                + "</CodeListVersions>";
+        di.getArchiveTransfer().getGlobalMetadata().archivalAgencyIdentifier = "ArchivalAgency0";
+        di.getArchiveTransfer().getGlobalMetadata().transferringAgencyIdentifier = "TransferringAgency0";
+        DataObjectPackage dop = di.getArchiveTransfer().getDataObjectPackage();
+        dop.setManagementMetadataXmlData("<ManagementMetadata>\n"
+                + "  <OriginatingAgencyIdentifier>OriginatingAgency0</OriginatingAgencyIdentifier>\n"
+                + "</ManagementMetadata>");
+        TestUtilities.createOrEraseAll("target/tmpJunit/SIPExportTest");
+
+        // When exported with many threads
+        ArchiveTransferToSIPExporter sm = new ArchiveTransferToSIPExporter(di.getArchiveTransfer(), null);
+        sm.setThreadCount(4);
+        sm.doExportToSEDASIP("target/tmpJunit/SIPExportTest/ParallelSIP.zip", true, true);
+
+        // Then manifest first, incompressible formats stored, others deflated
+        ZipCompressionPolicy zipCompressionPolicy = new ZipCompressionPolicy();
+        int storedCount = 0;
+        try (ZipFile zipFile = new ZipFile(new File("target/tmpJunit/SIPExportTest/ParallelSIP.zip"))) {
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+            assertThat(entries.nextElement().getName()).isEqualTo("manifest.xml");
+            for (BinaryDataObject bdo : dop.getBdoInDataObjectPackageIdMap().values()) {
+                ZipArchiveEntry entry = zipFile.getEntry(bdo.uri.getValue());
+                assertThat(entry).isNotNull();
+                assertThat(entry.getSize()).isEqualTo(bdo.size.getValue());
+                if (zipCompressionPolicy.isCompressible(bdo))
+                    assertThat(entry.getMethod()).isEqualTo(ZipArchiveEntry.DEFLATED);
+                else {
+                    assertThat(entry.getMethod()).isEqualTo(ZipArchiveEntry.STORED);
+                    storedCount++;
+                }
+            }
+        }
+        assertThat(storedCount).isGreaterThan(0);
+        assertThat(new File("target/tmpJunit/SIPExportTest").list()).containsExactly("ParallelSIP.zip");
+
+        // and SIP can be imported again with the same files
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "target/tmpJunit/SIPExportTest/ParallelSIP.zip", "target/tmpJunit/SIPExportTest-tmpdir", null);
+        si.doImport();
+        DataObjectPackage importedDop = si.getArchiveTransfer().getDataObjectPackage();
+        assertThat(importedDop.getBinaryDataObjectCount()).isEqualTo(dop.getBinaryDataObjectCount());
+        for (Map.Entry<String, BinaryDataObject> pair : dop.getBdoInDataObjectPackageIdMap().entrySet())
+            assertThat(importedDop.getBdoInDataObjectPackageIdMap().get(pair.getKey()).messageDigest.getValue())
+                    .isEqualTo(pair.getValue().messageDigest.getValue());
+    }
+
+    @Test
+    void testDigestVerificationDuringSIPExport() throws Exception {
+        // Given a BinaryDataObject with a wrong digest
+        DiskToArchiveTransferImporter di = new DiskToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/SampleWithoutLinksModelV1", null);
+        di.addIgnorePattern("Thumbs.db");
+        di.addIgnorePattern("pagefile.sys");
+        di.doImport();
+        di.getArchiveTransfer().setGlobalMetadata(new GlobalMetadata());
+        DataObjectPackage dop = di.getArchiveTransfer().getDataObjectPackage();
+        BinaryDataObject wrongBdo = dop.getBdoInDataObjectPackageIdMap().values().iterator().next();
+        wrongBdo.messageDigest = new DigestType("MessageDigest", "0123456789abcdef", "SHA-512");
+        TestUtilities.createOrEraseAll("target/tmpJunit/SIPExportTest");
+
+        // When exported with digest verification warnings
+        ArchiveTransferToSIPExporter sm = new ArchiveTransferToSIPExporter(di.getArchiveTransfer(), null);
+        sm.setThreadCount(4);
+        sm.setDigestVerificationMode(ArchiveTransferToSIPExporter.DigestVerificationMode.WARN);
+        sm.doExportToSEDASIP("target/tmpJunit/SIPExportTest/WarnSIP.zip", true, true);
+
+        // Then all files are verified and only the wrong one is reported
+        DigestVerificationReport report = sm.getDigestVerificationReport();
+        assertThat(report.getVerifiedCount()).isEqualTo(dop.getBinaryDataObjectCount());
+        assertThat(report.getUnverifiedUris()).isEmpty();
+        assertThat(report.getMismatches()).hasSize(1);
+        assertThat(report.getMismatches().get(0).getUri()).isEqualTo(wrongBdo.uri.getValue());
+        assertThat(sm.getSummary()).contains("1 non conformes");
+
+        // When exported with digest verification failure
+        ArchiveTransferToSIPExporter smFail = new ArchiveTransferToSIPExporter(di.getArchiveTransfer(), null);
+        smFail.setDigestVerificationMode(ArchiveTransferToSIPExporter.DigestVerificationMode.FAIL);
+
+        // Then export fails on the wrong one
+        assertThatThrownBy(() -> smFail.doExportToSEDASIP("target/tmpJunit/SIPExportTest/FailSIP.zip", true, true))
+                .isInstanceOf(SEDALibException.class)
+                .hasStackTraceContaining(wrongBdo.uri.getValue());
+
+        // When exported with digest verification failure and compressing threads
+        ArchiveTransferToSIPExporter smParallelFail = new ArchiveTransferToSIPExporter(di.getArchiveTransfer(), null);
+        smParallelFail.setThreadCount(4);
+        smParallelFail.setDigestVerificationMode(ArchiveTransferToSIPExporter.DigestVerificationMode.FAIL);
+
+        // Then export fails on the wrong one, not on the aborted others
+        assertThatThrownBy(() -> smParallelFail.doExportToSEDASIP("target/tmpJunit/SIPExportTest/ParallelFailSIP.zip",
+                true, true))
+                .isInstanceOf(SEDALibException.class)
+                .hasStackTraceContaining("Empreinte non conforme du fichier [" + wrongBdo.uri.getValue() + "]");
+    }
+
+    @Test
+    void testValidatedManifestExport() throws Exception {
+        // Given
+        TestUtilities.eraseAll("target/tmpJunit/OK_468.zip-tmpdir");
+        TestUtilities.eraseAll("target/tmpJunit/KO_468.zip-tmpdir");
+        SIPToArchiveTransferImporter siOK = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/OK_468.zip", "target/tmpJunit/OK_468.zip-tmpdir", null);
+        siOK.doImport();
+        SIPToArchiveTransferImporter siKO = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/KO_468.zip", "target/tmpJunit/KO_468.zip-tmpdir", null);
+        siKO.doImport();
+
+        // When exported with and without profile validation
+        ArchiveTransferToSIPExporter sm = new ArchiveTransferToSIPExporter(siOK.getArchiveTransfer(), null);
+        sm.doExportToSEDAXMLManifest("target/tmpJunit/SIPExportTestManifest.xml", true, true);
+        ArchiveTransferToSIPExporter smOK = new ArchiveTransferToSIPExporter(siOK.getArchiveTransfer(), null);
+        smOK.setManifestValidation("src/test/resources/PacketSamples/profile.rng");
+        smOK.doExportToSEDAXMLManifest("target/tmpJunit/SIPExportTestValidatedManifest.xml", true, true);
+        ArchiveTransferToSIPExporter smKO = new ArchiveTransferToSIPExporter(siKO.getArchiveTransfer(), null);
+        smKO.setManifestValidation("src/test/resources/PacketSamples/profile.rng");
+
+        // Then valid one exported unchanged but for the generation date, and not valid one fails
+        List<String> lines = Files.readAllLines(Paths.get("target/tmpJunit/SIPExportTestManifest.xml"));
+        List<String> validatedLines = Files.readAllLines(Paths.get("target/tmpJunit/SIPExportTestValidatedManifest.xml"));
+        assertThat(validatedLines).hasSameSizeAs(lines);
+        assertThat(validatedLines.subList(3, validatedLines.size())).isEqualTo(lines.subList(3, lines.size()));
+        assertThatThrownBy(() -> smKO.doExportToSEDAXMLManifest("target/tmpJunit/SIPExportTestNotValidatedManifest.xml", true, true))
+                .isInstanceOf(SEDALibException.class)
+                .hasStackTraceContaining("\"Title\" invalid");
+    }
+
+    @Test
+    void testParallelFlatManifestExport() throws Exception {
+        // Given
+        DiskToArchiveTransferImporter di = new DiskToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/SampleWithLinksModelV2", null);
+        di.addIgnorePattern("Thumbs.db");
+        di.addIgnorePattern("pagefile.sys");
+        di.doImport();
+
+        for (boolean indentedFlag : new boolean[]{true, false}) {
+            // When exported in flat mode in the calling thread and with many threads
+            ArchiveTransferToSIPExporter sm = new ArchiveTransferToSIPExporter(di.getArchiveTransfer(), null);
+            sm.setThreadCount(1);
+            String manifest = sm.getSEDAXMLManifest(false, indentedFlag);
+            sm.setThreadCount(4);
+            String parallelManifest = sm.getSEDAXMLManifest(false, indentedFlag);
+
+            // Then same manifest but for the generation date
+            assertThat(parallelManifest.replaceFirst("<Date>[^<]*</Date>", ""))
+                    .isEqualTo(manifest.replaceFirst("<Date>[^<]*</Date>", ""));
+            assertThat(parallelManifest).contains("RefID");
+            assertThat(di.getArchiveTransfer().getDataObjectPackage().getExportThreadCount()).isEqualTo(1);
+        }
+    }
+}
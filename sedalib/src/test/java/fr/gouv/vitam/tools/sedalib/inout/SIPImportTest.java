@@ -7,6 +7,7 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
 import fr.gouv.vitam.tools.sedalib.TestUtilities;
 import fr.gouv.vitam.tools.sedalib.UseTestFiles;
 import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
 import fr.gouv.vitam.tools.sedalib.core.DataObjectGroup;
 import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
 import fr.gouv.vitam.tools.sedalib.core.json.DataObjectPackageDeserializer;
@@ -15,15 +16,20 @@ import fr.gouv.vitam.tools.sedalib.inout.exporter.ArchiveTransferToDiskExporter;
 import fr.gouv.vitam.tools.sedalib.inout.exporter.ArchiveTransferToSIPExporter;
 import fr.gouv.vitam.tools.sedalib.inout.importer.DiskToArchiveTransferImporter;
 import fr.gouv.vitam.tools.sedalib.inout.importer.SIPToArchiveTransferImporter;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SIPImportTest implements UseTestFiles {
@@ -628,6 +634,127 @@ public class SIPImportTest implements UseTestFiles {
 
     }
 
+    @Test
+    public void TestSIPOKLazyImport() throws Exception {
+
+        // do lazy import of test SIP
+        TestUtilities.eraseAll("target/tmpJunit/SipOKLazy.zip-tmpdir");
+        SIPToArchiveTransferImporter si = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/SIP_OK.zip", "target/tmpJunit/SipOKLazy.zip-tmpdir", null);
+        si.setLazyExtractionFlag(true);
+        si.doImport();
+
+        // assert same macro results without any extracted file
+        DataObjectPackage dop = si.getArchiveTransfer().getDataObjectPackage();
+        assertEquals(28, dop.getAuInDataObjectPackageIdMap().size());
+        assertEquals(4, dop.getDogInDataObjectPackageIdMap().size());
+        assertThat(new File("target/tmpJunit/SipOKLazy.zip-tmpdir").list().length).isEqualTo(0);
+
+        // assert files are streamed from the SIP in export, with right digests
+        ArchiveTransferToSIPExporter se = new ArchiveTransferToSIPExporter(si.getArchiveTransfer(), null);
+        se.setDigestVerificationMode(ArchiveTransferToSIPExporter.DigestVerificationMode.FAIL);
+        se.doExportToSEDASIP("target/tmpJunit/SipOKLazy.zip", true, false);
+        assertEquals(4, se.getDigestVerificationReport().getVerifiedCount());
+        assertThat(new File("target/tmpJunit/SipOKLazy.zip-tmpdir").list().length).isEqualTo(0);
+
+        // assert zip source is kept through json serialization and files extracted on demand
+        ObjectMapper mapper = new ObjectMapper();
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(DataObjectPackage.class, new DataObjectPackageSerializer());
+        module.addDeserializer(DataObjectPackage.class, new DataObjectPackageDeserializer());
+        mapper.registerModule(module);
+        DataObjectPackage deserializedDop = mapper.readValue(mapper.writeValueAsString(dop), DataObjectPackage.class);
+        for (BinaryDataObject bdo : deserializedDop.getBdoInDataObjectPackageIdMap().values()) {
+            assertEquals(bdo.messageDigest.getValue(), BinaryDataObject.getDigestSha512(bdo.getAvailableOnDiskPath()));
+        }
+        assertThat(FileUtils.listFiles(new File("target/tmpJunit/SipOKLazy.zip-tmpdir"), null, true).size())
+                .isEqualTo(4);
+        deserializedDop.getZipContentSource().close();
+        dop.getZipContentSource().close();
+
+        // assert zip content is no more readable once closed
+        assertThrows(SEDALibException.class, () -> dop.getZipContentSource().getNormalizedEntryNames());
+    }
+
+    @Test
+    public void TestSipMetadataObjectsImport() throws Exception {
+
+        // do import of test SIP with and without metadata read as objects
+        TestUtilities.eraseAll("target/tmpJunit/TestSipRaw.zip-tmpdir");
+        SIPToArchiveTransferImporter raw = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSipRaw.zip-tmpdir", null);
+        raw.doImport();
+        TestUtilities.eraseAll("target/tmpJunit/TestSipObjects.zip-tmpdir");
+        SIPToArchiveTransferImporter objects = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSipObjects.zip-tmpdir", null);
+        objects.setMetadataObjectsFlag(true);
+        objects.doImport();
+
+        // assert same metadata
+        DataObjectPackage rawDop = raw.getArchiveTransfer().getDataObjectPackage();
+        DataObjectPackage objectsDop = objects.getArchiveTransfer().getDataObjectPackage();
+        assertEquals(rawDop.getAuInDataObjectPackageIdMap().size(), objectsDop.getAuInDataObjectPackageIdMap().size());
+        for (ArchiveUnit au : objectsDop.getAuInDataObjectPackageIdMap().values()) {
+            ArchiveUnit rawAu = rawDop.getArchiveUnitById(au.getInDataObjectPackageId());
+            assertEquals(rawAu.getContent().toString(), au.getContent().toString());
+            assertEquals(String.valueOf(rawAu.getManagement()), String.valueOf(au.getManagement()));
+        }
+
+        // assert not SEDA compliant metadata are rejected
+        TestUtilities.eraseAll("target/tmpJunit/SipOKObjects.zip-tmpdir");
+        SIPToArchiveTransferImporter notCompliant = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/SIP_OK.zip", "target/tmpJunit/SipOKObjects.zip-tmpdir", null);
+        notCompliant.setMetadataObjectsFlag(true);
+        assertThrows(SEDALibException.class, notCompliant::doImport);
+    }
+
+    @Test
+    public void TestSipMetadataInManifestImport() throws Exception {
+
+        // do import of test SIP with metadata kept in manifest, lazy extraction or not
+        TestUtilities.eraseAll("target/tmpJunit/TestSipRaw.zip-tmpdir");
+        SIPToArchiveTransferImporter raw = new SIPToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSipRaw.zip-tmpdir", null);
+        raw.doImport();
+        DataObjectPackage rawDop = raw.getArchiveTransfer().getDataObjectPackage();
+        for (boolean lazyExtraction : new boolean[]{false, true}) {
+            TestUtilities.eraseAll("target/tmpJunit/TestSipInManifest.zip-tmpdir");
+            SIPToArchiveTransferImporter inManifest = new SIPToArchiveTransferImporter(
+                    "src/test/resources/PacketSamples/TestSip.zip", "target/tmpJunit/TestSipInManifest.zip-tmpdir", null);
+            inManifest.setLazyExtractionFlag(lazyExtraction);
+            inManifest.setMetadataInManifestFlag(true);
+            inManifest.doImport();
+
+            // assert same metadata
+            DataObjectPackage inManifestDop = inManifest.getArchiveTransfer().getDataObjectPackage();
+            assertEquals(rawDop.getAuInDataObjectPackageIdMap().size(), inManifestDop.getAuInDataObjectPackageIdMap().size());
+            for (ArchiveUnit au : inManifestDop.getAuInDataObjectPackageIdMap().values()) {
+                ArchiveUnit rawAu = rawDop.getArchiveUnitById(au.getInDataObjectPackageId());
+                assertEquals(rawAu.getContent().toString(), au.getContent().toString());
+                assertEquals(String.valueOf(rawAu.getManagement()), String.valueOf(au.getManagement()));
+            }
+
+            // assert export and reimport
+            ArchiveTransferToSIPExporter se = new ArchiveTransferToSIPExporter(inManifest.getArchiveTransfer(), null);
+            se.doExportToSEDASIP("target/tmpJunit/TestSipInManifest.zip", false, false);
+            TestUtilities.eraseAll("target/tmpJunit/TestSipInManifestBis.zip-tmpdir");
+            SIPToArchiveTransferImporter reimport = new SIPToArchiveTransferImporter(
+                    "target/tmpJunit/TestSipInManifest.zip", "target/tmpJunit/TestSipInManifestBis.zip-tmpdir", null);
+            reimport.doImport();
+            assertEquals(rawDop.getAuInDataObjectPackageIdMap().size(),
+                    reimport.getArchiveTransfer().getDataObjectPackage().getAuInDataObjectPackageIdMap().size());
+
+            // assert manifest kept open with the DataObjectPackage and closed with it
+            assertEquals(1, inManifestDop.getManifestSourceList().size());
+            Path manifestFile = inManifestDop.getManifestSourceList().get(0).getManifestFile();
+            assertTrue(inManifestDop.isUsedManifestFile(manifestFile));
+            inManifestDop.closeContentSources();
+            assertTrue(inManifestDop.getManifestSourceList().isEmpty());
+            assertFalse(inManifestDop.isUsedManifestFile(manifestFile));
+            assertNull(inManifestDop.getZipContentSource());
+        }
+    }
+
     @Test
     public void TestSipWrongDogReferences() throws Exception {
 
@@ -0,0 +1,101 @@
+package fr.gouv.vitam.tools.sedalib.inout;
+
+import fr.gouv.vitam.tools.sedalib.UseTestFiles;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.inout.importer.DiskToArchiveTransferImporter;
+import fr.gouv.vitam.tools.sedalib.inout.importer.TechnicalElementsCache;
+import fr.gouv.vitam.tools.sedalib.inout.importer.TechnicalElementsExtractor;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TechnicalElementsCacheTest implements UseTestFiles {
+
+    private DataObjectPackage importWithCache(TechnicalElementsCache technicalElementsCache) throws Exception {
+        DiskToArchiveTransferImporter di = new DiskToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/SampleWithoutLinksModelV1", null);
+        di.addIgnorePattern("Thumbs.db");
+        di.addIgnorePattern("pagefile.sys");
+        TechnicalElementsExtractor technicalElementsExtractor = new TechnicalElementsExtractor(2, 2);
+        technicalElementsExtractor.setTechnicalElementsCache(technicalElementsCache);
+        di.setTechnicalElementsExtractor(technicalElementsExtractor);
+        di.doImport();
+        return di.getArchiveTransfer().getDataObjectPackage();
+    }
+
+    @Test
+    void testCacheReusedBetweenImports() throws Exception {
+        // Given
+        Path cacheFile = Paths.get("target/tmpJunit/TechnicalElementsCacheTest/import.cache");
+        Files.deleteIfExists(cacheFile);
+        TechnicalElementsCache firstCache = new TechnicalElementsCache(cacheFile);
+        DataObjectPackage firstDop = importWithCache(firstCache);
+
+        // When imported again with cache reloaded from disk
+        TechnicalElementsCache secondCache = new TechnicalElementsCache(cacheFile);
+        DataObjectPackage secondDop = importWithCache(secondCache);
+
+        // Then
+        assertThat(firstCache.getMissCount()).isEqualTo(firstDop.getBinaryDataObjectCount());
+        assertThat(secondCache.getHitCount()).isEqualTo(secondDop.getBinaryDataObjectCount());
+        assertThat(secondCache.getMissCount()).isEqualTo(0);
+        for (Map.Entry<String, BinaryDataObject> pair : firstDop.getBdoInDataObjectPackageIdMap().entrySet()) {
+            BinaryDataObject firstBdo = pair.getValue();
+            BinaryDataObject secondBdo = secondDop.getBdoInDataObjectPackageIdMap().get(pair.getKey());
+            assertThat(secondBdo.messageDigest.getValue()).isEqualTo(firstBdo.messageDigest.getValue());
+            assertThat(secondBdo.size.getValue()).isEqualTo(firstBdo.size.getValue());
+            assertThat(secondBdo.formatIdentification.toString()).isEqualTo(firstBdo.formatIdentification.toString());
+            assertThat(secondBdo.fileInfo.toString()).isEqualTo(firstBdo.fileInfo.toString());
+        }
+    }
+
+    @Test
+    void testCacheInvalidatedWhenFileChanged() throws Exception {
+        // Given
+        Path dir = Paths.get("target/tmpJunit/TechnicalElementsCacheTest");
+        Files.createDirectories(dir);
+        Path cacheFile = dir.resolve("changed.cache");
+        Files.deleteIfExists(cacheFile);
+        Path file = dir.resolve("changed.txt");
+        Files.write(file, "First content".getBytes("UTF-8"));
+        DataObjectPackage dop = new DataObjectPackage();
+        BinaryDataObject bdo = new BinaryDataObject(dop, file, null, "BinaryMaster_1");
+        TechnicalElementsExtractor technicalElementsExtractor = new TechnicalElementsExtractor(1, 0);
+        technicalElementsExtractor.setTechnicalElementsCache(new TechnicalElementsCache(cacheFile));
+        technicalElementsExtractor.extractTechnicalElements(Arrays.asList(bdo), null);
+        String firstDigest = bdo.messageDigest.getValue();
+
+        // When extracted again with nanoseconds last modified time, Then same FileInfo as from file
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2020-01-02T03:04:05.123456789Z")));
+        TechnicalElementsCache nanosCache = new TechnicalElementsCache(cacheFile);
+        technicalElementsExtractor.setTechnicalElementsCache(nanosCache);
+        BinaryDataObject nanosBdo = new BinaryDataObject(dop, file, null, "BinaryMaster_1");
+        technicalElementsExtractor.extractTechnicalElements(Arrays.asList(nanosBdo), null);
+        BinaryDataObject cachedBdo = new BinaryDataObject(dop, file, null, "BinaryMaster_1");
+        technicalElementsExtractor.extractTechnicalElements(Arrays.asList(cachedBdo), null);
+        assertThat(nanosCache.getHitCount()).isEqualTo(1);
+        assertThat(cachedBdo.fileInfo.toString()).isEqualTo(nanosBdo.fileInfo.toString());
+
+        // When file changed with same size
+        Files.write(file, "Other content".getBytes("UTF-8"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        TechnicalElementsCache technicalElementsCache = new TechnicalElementsCache(cacheFile);
+        technicalElementsExtractor.setTechnicalElementsCache(technicalElementsCache);
+        BinaryDataObject changedBdo = new BinaryDataObject(dop, file, null, "BinaryMaster_1");
+        technicalElementsExtractor.extractTechnicalElements(Arrays.asList(changedBdo), null);
+
+        // Then
+        assertThat(technicalElementsCache.getEntryCount()).isEqualTo(1);
+        assertThat(technicalElementsCache.getMissCount()).isEqualTo(1);
+        assertThat(changedBdo.messageDigest.getValue()).isNotEqualTo(firstDigest);
+    }
+}
@@ -0,0 +1,67 @@
+package fr.gouv.vitam.tools.sedalib.inout;
+
+import fr.gouv.vitam.tools.sedalib.UseTestFiles;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import fr.gouv.vitam.tools.sedalib.inout.importer.DiskToArchiveTransferImporter;
+import fr.gouv.vitam.tools.sedalib.inout.importer.TechnicalElementsExtractor;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TechnicalElementsExtractorTest implements UseTestFiles {
+
+    private DataObjectPackage importWithExtractor(TechnicalElementsExtractor technicalElementsExtractor) throws Exception {
+        DiskToArchiveTransferImporter di = new DiskToArchiveTransferImporter(
+                "src/test/resources/PacketSamples/SampleWithoutLinksModelV1", null);
+        di.addIgnorePattern("Thumbs.db");
+        di.addIgnorePattern("pagefile.sys");
+        di.setTechnicalElementsExtractor(technicalElementsExtractor);
+        di.doImport();
+        return di.getArchiveTransfer().getDataObjectPackage();
+    }
+
+    @Test
+    void testParallelExtractionSameAsSequential() throws Exception {
+        // Given
+        DataObjectPackage sequentialDop = importWithExtractor(new TechnicalElementsExtractor(1, 0));
+
+        // When
+        DataObjectPackage parallelDop = importWithExtractor(new TechnicalElementsExtractor(4, 2));
+
+        // Then
+        assertEquals(sequentialDop.getBinaryDataObjectCount(), parallelDop.getBinaryDataObjectCount());
+        for (Map.Entry<String, BinaryDataObject> pair : sequentialDop.getBdoInDataObjectPackageIdMap().entrySet()) {
+            BinaryDataObject sequentialBdo = pair.getValue();
+            BinaryDataObject parallelBdo = parallelDop.getBdoInDataObjectPackageIdMap().get(pair.getKey());
+            assertEquals(sequentialBdo.messageDigest.getValue(), parallelBdo.messageDigest.getValue());
+            assertEquals(sequentialBdo.size.getValue(), parallelBdo.size.getValue());
+            assertEquals(sequentialBdo.formatIdentification.toString(), parallelBdo.formatIdentification.toString());
+        }
+    }
+
+    @Test
+    void testParallelExtractionFirstErrorPropagated() {
+        // Given
+        DataObjectPackage dop = new DataObjectPackage();
+        List<BinaryDataObject> bdoList = new ArrayList<BinaryDataObject>();
+        for (int i = 0; i < 10; i++)
+            bdoList.add(new BinaryDataObject(dop,
+                    Paths.get("src/test/resources/PacketSamples/SampleWithoutLinksModelV1/Root/CSIC Tech : 2/Unknown" + i),
+                    null, "BinaryMaster_1"));
+
+        // When loaded with wrong paths
+
+        // Then
+        assertThatThrownBy(() -> new TechnicalElementsExtractor(4, 2).extractTechnicalElements(bdoList, null))
+                .isInstanceOf(SEDALibException.class)
+                .hasMessageContaining("Unknown0");
+    }
+}
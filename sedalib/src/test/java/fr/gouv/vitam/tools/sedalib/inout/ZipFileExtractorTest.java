@@ -0,0 +1,147 @@
+package fr.gouv.vitam.tools.sedalib.inout;
+
+import fr.gouv.vitam.tools.sedalib.TestUtilities;
+import fr.gouv.vitam.tools.sedalib.UseTestFiles;
+import fr.gouv.vitam.tools.sedalib.core.BinaryDataObject;
+import fr.gouv.vitam.tools.sedalib.inout.importer.ZipFileExtractor;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibProgressLogger;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ZipFileExtractorTest implements UseTestFiles {
+
+    @Test
+    void testParallelExtractionSameAsSequential() throws Exception {
+        // Given
+        TestUtilities.createOrEraseAll("target/tmpJunit/ZipFileExtractorTest");
+        ZipFileExtractor sequentialExtractor = new ZipFileExtractor(1, 0);
+        ZipFileExtractor parallelExtractor = new ZipFileExtractor(4, 2);
+
+        // When
+        List<String> sequentialNames = sequentialExtractor.extract("src/test/resources/PacketSamples/TestDIP.zip",
+                "UTF-8", "target/tmpJunit/ZipFileExtractorTest/sequential", null, null);
+        List<String> parallelNames = parallelExtractor.extract("src/test/resources/PacketSamples/TestDIP.zip",
+                "UTF-8", "target/tmpJunit/ZipFileExtractorTest/parallel", null, null);
+
+        // Then same files and metrics
+        assertThat(parallelNames).containsExactlyElementsOf(sequentialNames);
+        long size = 0;
+        for (String name : sequentialNames) {
+            File sequentialFile = new File("target/tmpJunit/ZipFileExtractorTest/sequential", name);
+            File parallelFile = new File("target/tmpJunit/ZipFileExtractorTest/parallel", name);
+            assertThat(BinaryDataObject.getDigestSha512(parallelFile.toPath()))
+                    .isEqualTo(BinaryDataObject.getDigestSha512(sequentialFile.toPath()));
+            size += sequentialFile.length();
+        }
+        assertThat(parallelExtractor.getExtractedFileCount()).isEqualTo(sequentialNames.size());
+        assertThat(parallelExtractor.getExtractedByteCount()).isEqualTo(size);
+        assertThat(parallelExtractor.getDuration()).isNotNull();
+        assertThat(parallelExtractor.getSummary()).contains("Mo/s").contains("fichiers/s");
+    }
+
+    @Test
+    void testExtractionOutsideDirectoryRejected() throws Exception {
+        // Given a zip with an entry outside extraction directory
+        TestUtilities.createOrEraseAll("target/tmpJunit/ZipFileExtractorTest");
+        Files.createDirectories(Paths.get("target/tmpJunit/ZipFileExtractorTest"));
+        try (ZipArchiveOutputStream zaos = new ZipArchiveOutputStream(
+                new File("target/tmpJunit/ZipFileExtractorTest/ZipSlip.zip"))) {
+            zaos.putArchiveEntry(new ZipArchiveEntry("../ZipSlip.txt"));
+            zaos.write("Evil".getBytes(StandardCharsets.UTF_8));
+            zaos.closeArchiveEntry();
+        }
+
+        // When extracted, Then
+        assertThatThrownBy(() -> new ZipFileExtractor(4, 2).extract(
+                "target/tmpJunit/ZipFileExtractorTest/ZipSlip.zip", "UTF-8",
+                "target/tmpJunit/ZipFileExtractorTest/extract", null, null))
+                .isInstanceOf(SEDALibException.class);
+        assertThat(Files.exists(Paths.get("target/tmpJunit/ZipSlip.txt"))).isFalse();
+    }
+
+    @Test
+    void testUnreadableEntryLoggedAndNotExtracted() throws Exception {
+        // Given a zip with an entry flagged as encrypted
+        TestUtilities.createOrEraseAll("target/tmpJunit/ZipFileExtractorTest");
+        Files.createDirectories(Paths.get("target/tmpJunit/ZipFileExtractorTest"));
+        Path zipPath = Paths.get("target/tmpJunit/ZipFileExtractorTest/Encrypted.zip");
+        try (ZipArchiveOutputStream zaos = new ZipArchiveOutputStream(zipPath.toFile())) {
+            for (String name : new String[]{"Encrypted.txt", "Clear.txt"}) {
+                zaos.putArchiveEntry(new ZipArchiveEntry(name));
+                zaos.write(name.getBytes(StandardCharsets.UTF_8));
+                zaos.closeArchiveEntry();
+            }
+        }
+        byte[] zip = Files.readAllBytes(zipPath);
+        zip[6] |= 1;
+        for (int i = 0; i < zip.length - 4; i++)
+            if ((zip[i] == 'P') && (zip[i + 1] == 'K') && (zip[i + 2] == 1) && (zip[i + 3] == 2)) {
+                zip[i + 8] |= 1;
+                break;
+            }
+        Files.write(zipPath, zip);
+        List<String> logs = new ArrayList<String>();
+        SEDALibProgressLogger spl = new SEDALibProgressLogger(LoggerFactory.getLogger("ZipFileExtractorTest"),
+                SEDALibProgressLogger.OBJECTS_WARNINGS, (count, log) -> logs.add(log), 1000);
+
+        // When extracted
+        List<String> names = new ZipFileExtractor(1, 0).extract(zipPath.toString(), "UTF-8",
+                "target/tmpJunit/ZipFileExtractorTest/extract", null, spl);
+
+        // Then the readable one is extracted and logged, and the other one is reported
+        assertThat(names).containsExactly("Clear.txt");
+        assertThat(logs).anyMatch(log -> log.contains("[Encrypted.txt] du zip n'est pas lisible"));
+        assertThat(logs).contains("sedalib: unzip fichier [Clear.txt]");
+    }
+
+    @Test
+    void testSameTargetEntriesExtractedInOrder() throws Exception {
+        // Given a zip with big entries having the same normalized target path
+        TestUtilities.createOrEraseAll("target/tmpJunit/ZipFileExtractorTest");
+        Files.createDirectories(Paths.get("target/tmpJunit/ZipFileExtractorTest"));
+        Path zipPath = Paths.get("target/tmpJunit/ZipFileExtractorTest/SameTarget.zip");
+        String[] names = new String[]{"Same.txt", "Other.txt", "dir/../Same.txt", "./Same.txt"};
+        try (ZipArchiveOutputStream zaos = new ZipArchiveOutputStream(zipPath.toFile())) {
+            for (int i = 0; i < names.length; i++) {
+                zaos.putArchiveEntry(new ZipArchiveEntry(names[i]));
+                byte[] content = new byte[4 * 1024 * 1024];
+                Arrays.fill(content, (byte) ('A' + i));
+                zaos.write(content);
+                zaos.closeArchiveEntry();
+            }
+        }
+        List<String> logs = new ArrayList<String>();
+        SEDALibProgressLogger spl = new SEDALibProgressLogger(LoggerFactory.getLogger("ZipFileExtractorTest"),
+                SEDALibProgressLogger.OBJECTS_WARNINGS, (count, log) -> logs.add(log), 1000);
+
+        // When extracted in parallel
+        List<String> extractedNames = new ZipFileExtractor(4, 2).extract(zipPath.toString(), "UTF-8",
+                "target/tmpJunit/ZipFileExtractorTest/extract", null, spl);
+
+        // Then the collisions are reported and the last entry is kept, as in sequential extraction
+        assertThat(extractedNames).containsExactly(names);
+        assertThat(logs).anyMatch(log -> log.contains("[dir/../Same.txt] du zip est extrait au même emplacement " +
+                "que le fichier [Same.txt]"));
+        assertThat(logs).anyMatch(log -> log.contains("[./Same.txt] du zip est extrait au même emplacement " +
+                "que le fichier [dir/../Same.txt]"));
+        byte[] extracted = Files.readAllBytes(Paths.get("target/tmpJunit/ZipFileExtractorTest/extract/Same.txt"));
+        byte[] expected = new byte[4 * 1024 * 1024];
+        Arrays.fill(expected, (byte) 'D');
+        assertThat(Arrays.equals(extracted, expected)).isTrue();
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedHashMap;
@@ -1153,4 +1154,37 @@ class ContentTest {
                 "</Content>";
         assertThat(cNextOut).isEqualTo(testOut);
     }
+
+    @Test
+    void testOrderedInsertion() throws SEDALibException {
+        // Given
+        Content c = new Content();
+
+        // When added in any order, with unknown metadata and single value replacement
+        c.addNewMetadata("Tag", "Tag1");
+        c.addNewMetadata("Frog", "<Frog>A</Frog>");
+        c.addNewMetadata("Description", "Description1");
+        c.addNewMetadata("DescriptionLevel", "Item");
+        c.addNewMetadata("Tag", "Tag2");
+        c.addNewMetadata("Title", "Title1");
+        c.addNewMetadata("Toad", "<Toad>B</Toad>");
+        c.addNewMetadata("Frog", "<Frog>C</Frog>");
+        c.addNewMetadata("DescriptionLevel", "File");
+        c.addNewMetadata("Title", "Title2");
+
+        // Then
+        List<String> names = new ArrayList<String>();
+        for (SEDAMetadata sm : c.metadataList)
+            names.add(sm.getXmlElementName());
+        assertThat(((DescriptionLevel) c.metadataList.get(0)).getValue()).isEqualTo("File");
+        assertThat(names).containsExactly("DescriptionLevel", "Title", "Title", "Description", "Tag", "Tag",
+                "Frog", "Frog", "Toad");
+        assertThat(c.getSimpleMetadata("Tag")).isEqualTo("Tag1");
+        assertThat(c.getSimpleMetadata("Title")).isEqualTo("Title1");
+        assertThat(c.getSimpleMetadata("Keyword")).isNull();
+        assertThat(c.isMetadataLacking("Tag")).isFalse();
+        assertThat(c.isMetadataLacking("Toad")).isFalse();
+        assertThat(c.isMetadataLacking("Keyword")).isTrue();
+        assertThat(c.isMetadataLacking("Snake")).isTrue();
+    }
 }
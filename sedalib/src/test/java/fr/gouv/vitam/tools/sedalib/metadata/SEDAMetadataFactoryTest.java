@@ -0,0 +1,59 @@
+package fr.gouv.vitam.tools.sedalib.metadata;
+
+import fr.gouv.vitam.tools.sedalib.metadata.content.Gps;
+import fr.gouv.vitam.tools.sedalib.metadata.namedtype.IntegerType;
+import fr.gouv.vitam.tools.sedalib.metadata.namedtype.StringType;
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SEDAMetadataFactoryTest {
+
+    @Test
+    void testNewMetadataFromArgs() throws SEDALibException {
+        // Given
+        SEDAMetadataFactory factory = SEDAMetadataFactory.getFactory(IntegerType.class);
+
+        // When
+        SEDAMetadata fromInt = factory.newMetadata("Size", new Object[]{12});
+        SEDAMetadata fromLong = factory.newMetadata("Size", new Object[]{13L});
+        SEDAMetadata againFromInt = factory.newMetadata("Size", new Object[]{14});
+        SEDAMetadata gps = SEDAMetadataFactory.getFactory(Gps.class)
+                .newMetadata("Gps", new Object[]{"1", 2, "3", "4", "5"});
+
+        // Then
+        assertThat(SEDAMetadataFactory.getFactory(IntegerType.class)).isSameAs(factory);
+        assertThat(factory.isNamedType()).isTrue();
+        assertThat(((IntegerType) fromInt).getValue()).isEqualTo(12L);
+        assertThat(((IntegerType) fromLong).getValue()).isEqualTo(13L);
+        assertThat(((IntegerType) againFromInt).getValue()).isEqualTo(14L);
+        assertThat(fromInt.getXmlElementName()).isEqualTo("Size");
+        assertThat(gps.toString()).contains("<GpsAltitude>2</GpsAltitude>");
+    }
+
+    @Test
+    void testFromSedaXml() throws SEDALibException {
+        // Given
+        String xml = "<Title>Titre</Title>";
+
+        // When
+        SEDAMetadata sm = SEDAMetadata.fromString(xml, StringType.class);
+
+        // Then
+        assertThat(sm).isInstanceOf(StringType.class);
+        assertThat(((StringType) sm).getValue()).isEqualTo("Titre");
+        assertThat(sm.getXmlElementName()).isEqualTo("Title");
+    }
+
+    @Test
+    void testNoConvenientConstructor() {
+        // Given
+        SEDAMetadataFactory factory = SEDAMetadataFactory.getFactory(Gps.class);
+
+        // When, Then
+        assertThatThrownBy(() -> factory.newMetadata("Gps", new Object[]{"1", "2"}))
+                .isInstanceOf(SEDALibException.class).hasMessageContaining("Pas de constructeur");
+    }
+}
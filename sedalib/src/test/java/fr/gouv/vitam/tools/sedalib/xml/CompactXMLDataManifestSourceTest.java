@@ -0,0 +1,72 @@
+package fr.gouv.vitam.tools.sedalib.xml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactXMLDataManifestSourceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String getLongText() {
+        StringBuilder sb = new StringBuilder();
+        // more than two chunks of multi-bytes characters, and a 4 bytes one
+        for (int i = 0; i < 30000; i++)
+            sb.append("é€a");
+        sb.append("😀");
+        return sb.toString();
+    }
+
+    @Test
+    void testBlocksKeptAsManifestRanges() throws Exception {
+        // Given
+        String content1 = "<Content><Title xml:lang=\"fr\">Été &amp; €</Title>\r\n<Description/></Content>";
+        String content2 = "<Content><Description>" + getLongText() + "</Description></Content>";
+        String content3 = "<Content><Title>Après</Title></Content>";
+        String manifest = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n<Root xmlns=\"fr:gouv:culture:archivesdefrance:seda:v2.1\">\r\n" +
+                "<Unit><Management/>" + content1 + "</Unit>\r\n" +
+                "<Unit>" + content2 + "</Unit>\n" +
+                "<Unit>" + content3 + "</Unit></Root>";
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        baos.write(manifest.getBytes(StandardCharsets.UTF_8));
+        Path manifestPath = tempDir.resolve("manifest.xml");
+        Files.write(manifestPath, baos.toByteArray());
+
+        // When
+        CompactXMLData management, block1, block2, block3;
+        try (CompactXMLDataManifestSource source = new CompactXMLDataManifestSource(manifestPath)) {
+            try (SEDAXMLEventReader xmlReader = new SEDAXMLEventReader(source)) {
+                xmlReader.nextUsefullEvent();
+                xmlReader.nextUsefullEvent();
+                xmlReader.nextUsefullEvent();
+                management = xmlReader.nextBlockAsCompactXMLDataIfNamed("Management");
+                block1 = xmlReader.nextBlockAsCompactXMLDataIfNamed("Content");
+                xmlReader.endBlockNamed("Unit");
+                xmlReader.nextUsefullEvent();
+                block2 = xmlReader.nextBlockAsCompactXMLDataIfNamed("Content");
+                xmlReader.endBlockNamed("Unit");
+                xmlReader.nextUsefullEvent();
+                block3 = xmlReader.nextBlockAsCompactXMLDataIfNamed("Content");
+                assertThat(xmlReader.nextBlockAsCompactXMLDataIfNamed("Content")).isNull();
+            }
+
+            // Then
+            assertThat(block1.isOnDisk()).isTrue();
+            assertThat(management.toString()).isEqualTo("<Management/>");
+            assertThat(block1.toString()).isEqualTo(content1);
+            assertThat(block2.toString()).isEqualTo(content2);
+            assertThat(block3.toString()).isEqualTo(content3);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            block2.writeUTF8To(out);
+            assertThat(out.toByteArray()).isEqualTo(content2.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package fr.gouv.vitam.tools.sedalib.xml;
+
+import fr.gouv.vitam.tools.sedalib.core.ArchiveUnit;
+import fr.gouv.vitam.tools.sedalib.core.DataObjectPackage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactXMLDataTest {
+
+    private static final String CONTENT = "<Content>\n" +
+            "          <DescriptionLevel>Item</DescriptionLevel>\n" +
+            "          <Title>Titre accentué é à ç</Title>\n" +
+            "          <Description>Une description répétée, une description répétée, une description répétée" +
+            "</Description>\n" +
+            "        </Content>";
+
+    @AfterEach
+    void resetStorageMode() {
+        CompactXMLData.setStorageMode(CompactXMLData.STRING_STORAGE);
+        CompactXMLData.setDiskStore(null);
+    }
+
+    @Test
+    void testStorageModes() {
+        for (int mode = CompactXMLData.STRING_STORAGE; mode <= CompactXMLData.DEFLATED_STORAGE; mode++) {
+            // Given
+            CompactXMLData.setStorageMode(mode);
+
+            // When
+            CompactXMLData data = CompactXMLData.of(CONTENT);
+
+            // Then
+            assertThat(data.toString()).isEqualTo(CONTENT);
+            assertThat(data.isEmpty()).isFalse();
+            if (mode == CompactXMLData.UTF8_STORAGE)
+                assertThat(data.getStoredSize()).isEqualTo(CONTENT.getBytes(StandardCharsets.UTF_8).length);
+            else if (mode == CompactXMLData.DEFLATED_STORAGE)
+                assertThat(data.getStoredSize()).isLessThan(CONTENT.length() / 2);
+        }
+        assertThat(CompactXMLData.of(null)).isNull();
+        assertThatThrownBy(() -> CompactXMLData.setStorageMode(4)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CompactXMLData.setStorageMode(CompactXMLData.DISK_STORAGE))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testArchiveUnitInDeflatedMode() throws Exception {
+        // Given
+        CompactXMLData.setStorageMode(CompactXMLData.DEFLATED_STORAGE);
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        ArchiveUnit au = new ArchiveUnit(dataObjectPackage);
+        au.setContentXmlData(CONTENT);
+
+        // When written directly and in String form
+        ByteArrayOutputStream direct = new ByteArrayOutputStream();
+        try (SEDAXMLStreamWriter xmlWriter = new SEDAXMLStreamWriter(direct, 0, true)) {
+            xmlWriter.writeStartElement("ArchiveUnit");
+            xmlWriter.writeRawXMLBlockIfNotEmpty(CompactXMLData.of(CONTENT));
+            xmlWriter.writeEndElement();
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        try (SEDAXMLStreamWriter xmlWriter = new SEDAXMLStreamWriter(decoded, 0, true)) {
+            xmlWriter.writeStartElement("ArchiveUnit");
+            xmlWriter.writeRawXMLBlockIfNotEmpty(CONTENT);
+            xmlWriter.writeEndElement();
+        }
+
+        // Then
+        assertThat(direct.toByteArray()).isEqualTo(decoded.toByteArray());
+        assertThat(au.getContentXmlData()).isEqualTo(CONTENT);
+        assertThat(au.getContent().getSimpleMetadata("Title")).isEqualTo("Titre accentué é à ç");
+    }
+
+    @Test
+    void testDiskStorage() throws Exception {
+        // Given a store with small segments and cache
+        CompactXMLDataDiskStore diskStore = new CompactXMLDataDiskStore(Paths.get("target/tmpJunit"), 256, 2);
+        CompactXMLData.setDiskStore(diskStore);
+        CompactXMLData.setStorageMode(CompactXMLData.DISK_STORAGE);
+
+        // When more blocks than a segment can hold are stored
+        List<CompactXMLData> dataList = new ArrayList<CompactXMLData>();
+        for (int i = 0; i < 20; i++)
+            dataList.add(CompactXMLData.of(CONTENT.replace("Item", "Item" + i)));
+
+        // Then all are on disk and readable, directly or through the cache
+        assertThat(diskStore.getStoreSize()).isGreaterThan(256);
+        for (int i = 0; i < 20; i++) {
+            assertThat(dataList.get(i).isOnDisk()).isTrue();
+            assertThat(dataList.get(i).toString()).isEqualTo(CONTENT.replace("Item", "Item" + i));
+            assertThat(dataList.get(i).toString()).isEqualTo(CONTENT.replace("Item", "Item" + i));
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        dataList.get(3).writeUTF8To(baos);
+        assertThat(baos.toString("UTF-8")).isEqualTo(CONTENT.replace("Item", "Item3"));
+
+        // When closed, Then files are deleted and blocks no more readable
+        diskStore.close();
+        assertThat(Files.exists(diskStore.getStoreDir())).isFalse();
+        assertThatThrownBy(() -> dataList.get(10).toString()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testMoveToDiskStore() throws Exception {
+        // Given ArchiveUnits edited in a disk store
+        CompactXMLDataDiskStore previousDiskStore = new CompactXMLDataDiskStore(Paths.get("target/tmpJunit"), 256, 2);
+        CompactXMLData.setDiskStore(previousDiskStore);
+        CompactXMLData.setStorageMode(CompactXMLData.DISK_STORAGE);
+        DataObjectPackage dataObjectPackage = new DataObjectPackage();
+        List<ArchiveUnit> auList = new ArrayList<ArchiveUnit>();
+        for (int i = 0; i < 10; i++) {
+            ArchiveUnit au = new ArchiveUnit(dataObjectPackage);
+            for (int j = 0; j < 5; j++)
+                au.setContentXmlData(CONTENT.replace("Item", "Item" + i + "-" + j));
+            auList.add(au);
+        }
+
+        // When the living blocks are moved in a new store and the previous one closed
+        CompactXMLDataDiskStore diskStore = new CompactXMLDataDiskStore(Paths.get("target/tmpJunit"), 256, 2);
+        dataObjectPackage.moveXmlDataToDiskStore(diskStore);
+        CompactXMLData.setDiskStore(diskStore);
+        long previousStoreSize = previousDiskStore.getStoreSize();
+        previousDiskStore.close();
+
+        // Then the ArchiveUnits are still readable and the new store only holds the last blocks
+        for (int i = 0; i < 10; i++)
+            assertThat(auList.get(i).getContentXmlData()).isEqualTo(CONTENT.replace("Item", "Item" + i + "-4"));
+        assertThat(diskStore.getStoreSize()).isLessThan(previousStoreSize / 3);
+        diskStore.close();
+    }
+}
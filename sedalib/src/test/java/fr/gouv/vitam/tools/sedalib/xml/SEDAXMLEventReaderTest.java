@@ -0,0 +1,103 @@
+package fr.gouv.vitam.tools.sedalib.xml;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SEDAXMLEventReaderTest {
+
+    private static final String FRAGMENTS = "<!-- comment -->\n" +
+            "<ArchiveUnit id=\"AU1\">\n" +
+            "  <Title xml:lang=\"fr\">Titre &lt;a&gt; &amp; b<![CDATA[ <c>]]></Title>\n" +
+            "  <Empty/>\n" +
+            "  <Date>2019-01-02T10:11:12</Date>\n" +
+            "  <Flag>1</Flag>\n" +
+            "  <Content><DescriptionLevel>Item</DescriptionLevel><Description>x &gt; y</Description></Content>\n" +
+            "</ArchiveUnit>\n" +
+            "<Next>Value</Next>";
+
+    private SEDAXMLEventReader getReader(String xml) throws SEDALibException {
+        return new SEDAXMLEventReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), true);
+    }
+
+    @Test
+    void testHighLevelFunctions() throws Exception {
+        // Given
+        try (SEDAXMLEventReader xmlReader = getReader(FRAGMENTS)) {
+            // jump StartDocument
+            xmlReader.skipNextUsefullEvent();
+
+            // When read, Then
+            assertThat(xmlReader.peekName()).isEqualTo("ArchiveUnit");
+            assertThat(xmlReader.peekAttributeBlockIfNamed("ArchiveUnit", "id")).isEqualTo("AU1");
+            assertThat(xmlReader.nextBlockIfNamed("Title")).isFalse();
+            assertThat(xmlReader.nextBlockIfNamed("ArchiveUnit")).isTrue();
+            assertThat(xmlReader.peekAttribute("http://www.w3.org/XML/1998/namespace", "lang")).isEqualTo("fr");
+            assertThat(xmlReader.nextValueIfNamed("Title")).isEqualTo("Titre <a> & b <c>");
+            assertThat(xmlReader.nextValueIfNamed("Empty")).isEqualTo("");
+            assertThat(xmlReader.nextDateValueIfNamed("Date")).isEqualTo(LocalDateTime.of(2019, 1, 2, 10, 11, 12));
+            assertThat(xmlReader.nextBooleanValueIfNamed("Flag")).isTrue();
+            assertThat(xmlReader.nextBlockAsStringIfNamed("Content")).isEqualTo(
+                    "<Content><DescriptionLevel>Item</DescriptionLevel><Description>x > y</Description></Content>");
+            xmlReader.endBlockNamed("ArchiveUnit");
+            assertThat(xmlReader.nextMandatoryValue("Next")).isEqualTo("Value");
+            assertThat(xmlReader.peekName()).isNull();
+            assertThat(xmlReader.peekEndDocument()).isTrue();
+        }
+    }
+
+    @Test
+    void testEventsMixedWithHighLevelFunctions() throws Exception {
+        // Given
+        try (SEDAXMLEventReader xmlReader = getReader(FRAGMENTS)) {
+            xmlReader.skipNextUsefullEvent();
+
+            // When read by events, Then same tokens as the cursor
+            XMLEvent event = xmlReader.peekUsefullEvent();
+            assertThat(event.isStartElement()).isTrue();
+            assertThat(xmlReader.peekUsefullEvent()).isSameAs(event);
+            assertThat(xmlReader.nextUsefullEvent()).isSameAs(event);
+            event = xmlReader.nextUsefullEvent();
+            assertThat(event.asStartElement().getName().getLocalPart()).isEqualTo("Title");
+            assertThat(xmlReader.nextCharactersIfAny()).isEqualTo("Titre <a> & b <c>");
+            xmlReader.endBlockNamed("Title");
+            assertThat(xmlReader.xmlReader.nextTag().asStartElement().getName().getLocalPart()).isEqualTo("Empty");
+            assertThat(xmlReader.xmlReader.getElementText()).isEqualTo("");
+            assertThat(xmlReader.peekName()).isEqualTo("Date");
+        }
+    }
+
+    @Test
+    void testBadlyFormedElements() throws Exception {
+        // Given
+        try (SEDAXMLEventReader xmlReader = getReader("<Date>not a date</Date><Flag><Sub/></Flag>")) {
+            xmlReader.skipNextUsefullEvent();
+
+            // When read, Then
+            assertThatThrownBy(() -> xmlReader.nextDateValueIfNamed("Date"))
+                    .isInstanceOf(SEDALibException.class).hasMessageContaining("Valeur non interprétable");
+            assertThatThrownBy(() -> xmlReader.nextBooleanValueIfNamed("Flag"))
+                    .isInstanceOf(SEDALibException.class).hasMessageContaining("mal formé");
+        }
+    }
+
+    @Test
+    void testExtractFunctions() {
+        // Given
+        String xml = "<Root><Other>1</Other><Fragments><A>a &amp; b</A><B/></Fragments></Root>";
+
+        // When, Then
+        assertThat(SEDAXMLEventReader.extractNamedElement("Other", xml)).isEqualTo("1");
+        assertThat(SEDAXMLEventReader.extractNamedElement("A", xml)).isEqualTo("a & b");
+        assertThat(SEDAXMLEventReader.extractNamedElement("Missing", xml)).isNull();
+        assertThat(SEDAXMLEventReader.extractFragments("Fragments", xml)).isEqualTo("<A>a &amp; b</A><B/>");
+        assertThat(SEDAXMLEventReader.extractFragments("Missing", xml)).isNull();
+    }
+}
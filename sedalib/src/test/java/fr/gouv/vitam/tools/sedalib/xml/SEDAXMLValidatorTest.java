@@ -0,0 +1,212 @@
+package fr.gouv.vitam.tools.sedalib.xml;
+
+import fr.gouv.vitam.tools.sedalib.utils.SEDALibException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SEDAXMLValidatorTest {
+
+    private static final String XSD = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\n" +
+            "  <xs:element name=\"Root\">\n" +
+            "    <xs:complexType><xs:sequence>\n" +
+            "      <xs:element name=\"ArchiveUnit\" maxOccurs=\"unbounded\">\n" +
+            "        <xs:complexType><xs:sequence>\n" +
+            "          <xs:element name=\"Title\" type=\"xs:string\"/>\n" +
+            "        </xs:sequence><xs:attribute name=\"id\" type=\"xs:ID\"/></xs:complexType>\n" +
+            "      </xs:element>\n" +
+            "    </xs:sequence></xs:complexType>\n" +
+            "  </xs:element>\n" +
+            "</xs:schema>";
+
+    private static final String RNG = "<grammar xmlns=\"http://relaxng.org/ns/structure/1.0\">\n" +
+            "  <start>\n" +
+            "    <element name=\"Root\">\n" +
+            "      <oneOrMore>\n" +
+            "        <element name=\"ArchiveUnit\">\n" +
+            "          <optional><attribute name=\"id\"/></optional>\n" +
+            "          <element name=\"Title\"><text/></element>\n" +
+            "        </element>\n" +
+            "      </oneOrMore>\n" +
+            "    </element>\n" +
+            "  </start>\n" +
+            "</grammar>";
+
+    private static final String OK_MANIFEST = "<Root>\n" +
+            "  <ArchiveUnit id=\"AU1\">\n" +
+            "    <Title>Titre</Title>\n" +
+            "  </ArchiveUnit>\n" +
+            "</Root>";
+
+    private static final String KO_MANIFEST = "<Root>\n" +
+            "  <ArchiveUnit id=\"AU1\">\n" +
+            "    <Title>Titre</Title>\n" +
+            "  </ArchiveUnit>\n" +
+            "  <ArchiveUnit id=\"AU2\">\n" +
+            "    <Bad/>\n" +
+            "  </ArchiveUnit>\n" +
+            "</Root>";
+
+    @TempDir
+    Path tempDir;
+
+    private Path write(String name, String content) throws Exception {
+        Path path = tempDir.resolve(name);
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    @Test
+    void testSchemaCache() throws Exception {
+        // Given
+        Path xsd = write("schema.xsd", XSD);
+        SEDAXMLValidator validator = new SEDAXMLValidator();
+
+        // When compiled twice
+        Schema schema = validator.getSchemaFromXSDFile(xsd.toString());
+        Schema cachedSchema = new SEDAXMLValidator().getSchemaFromXSDFile(xsd.toString());
+
+        // Then same compiled schema
+        assertThat(cachedSchema).isSameAs(schema);
+        assertThat(validator.getSEDASchema()).isSameAs(validator.getSEDASchema());
+
+        // When file changed, Then compiled again
+        Files.setLastModifiedTime(xsd, FileTime.fromMillis(Files.getLastModifiedTime(xsd).toMillis() + 10000));
+        assertThat(validator.getSchemaFromXSDFile(xsd.toString())).isNotSameAs(schema);
+        assertThatThrownBy(() -> validator.getSchemaFromXSDFile(tempDir.resolve("missing.xsd").toString()))
+                .isInstanceOf(SEDALibException.class).hasMessageContaining("Impossible de charger le schéma");
+    }
+
+    @Test
+    void testStreamingCheck() throws Exception {
+        // Given
+        SEDAXMLValidator validator = new SEDAXMLValidator();
+        Schema schema = validator.getSchemaFromXSDFile(write("schema.xsd", XSD).toString());
+        Path koManifest = write("ko.xml", KO_MANIFEST);
+
+        // When validated, Then
+        assertThat(validator.checkWithXSDSchema(new ByteArrayInputStream(OK_MANIFEST.getBytes(StandardCharsets.UTF_8)),
+                schema)).isTrue();
+        assertThat(validator.checkWithXSDSchema(write("ok.xml", OK_MANIFEST), schema)).isTrue();
+        assertThatThrownBy(() -> validator.checkWithXSDSchema(
+                new ByteArrayInputStream(KO_MANIFEST.getBytes(StandardCharsets.UTF_8)), schema))
+                .hasMessageContaining("Contexte de l'erreur: <ArchiveUnit id=\"AU2\">")
+                .hasMessageContaining("ligne 6")
+                .hasMessageContaining("ligne:     <Bad/>");
+        assertThatThrownBy(() -> validator.checkWithXSDSchema(koManifest, schema))
+                .hasMessageContaining("Contexte de l'erreur: <ArchiveUnit id=\"AU2\">")
+                .hasMessageContaining("ligne:     <Bad/>");
+        assertThatThrownBy(() -> validator.checkWithXSDSchema(KO_MANIFEST, schema))
+                .hasMessageContaining("ligne:     <Bad/>");
+    }
+
+    @Test
+    void testCheckAll() throws Exception {
+        // Given
+        SEDAXMLValidator validator = new SEDAXMLValidator();
+        Schema schema = validator.getSchemaFromXSDFile(write("schema.xsd", XSD).toString());
+        List<Path> manifests = new ArrayList<Path>();
+        for (int i = 0; i < 20; i++)
+            manifests.add(write("manifest" + i + ".xml", (i % 7 == 3 ? KO_MANIFEST : OK_MANIFEST)));
+
+        // When validated concurrently and sequentially
+        Map<Path, SEDALibException> errors = validator.checkAll(manifests, schema, false, 4);
+        Map<Path, SEDALibException> sequentialErrors = validator.checkAll(manifests, schema, false, 1);
+
+        // Then
+        assertThat(errors.keySet()).containsExactly(manifests.get(3), manifests.get(10), manifests.get(17));
+        assertThat(sequentialErrors.keySet()).containsExactlyElementsOf(errors.keySet());
+        assertThat(errors.get(manifests.get(10))).hasMessageContaining("<ArchiveUnit id=\"AU2\">");
+        assertThat(validator.checkAll(Arrays.asList(manifests.get(0), manifests.get(1)), schema, false, 4))
+                .isEmpty();
+    }
+
+    @Test
+    void testValidatingOutputStream() throws Exception {
+        // Given
+        SEDAXMLValidator validator = new SEDAXMLValidator();
+        Schema schema = validator.getSchemaFromXSDFile(write("schema.xsd", XSD).toString());
+        byte[] unit = "  <ArchiveUnit><Title>Titre</Title></ArchiveUnit>\n".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        // When written and validated, Then same bytes written and valid
+        SEDAXMLValidatingOutputStream vos = new SEDAXMLValidatingOutputStream(baos, schema, false);
+        vos.write(OK_MANIFEST.getBytes(StandardCharsets.UTF_8));
+        vos.finish();
+        assertThat(baos.toString("UTF-8")).isEqualTo(OK_MANIFEST);
+        assertThat(vos.getValidationException()).isNull();
+
+        // When not valid at the beginning of a big manifest, Then write fails before the end
+        SEDAXMLValidatingOutputStream koVos = new SEDAXMLValidatingOutputStream(null, schema, false);
+        assertThatThrownBy(() -> {
+            koVos.write("<Root>\n  <ArchiveUnit id=\"AU1\"><Bad/></ArchiveUnit>\n".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < 1000000; i++)
+                koVos.write(unit);
+        }).isInstanceOf(IOException.class);
+        assertThatThrownBy(koVos::finish).isInstanceOf(SEDALibException.class)
+                .hasMessageContaining("Contexte de l'erreur: <ArchiveUnit id=\"AU1\">");
+
+        // When the validator fails unexpectedly, Then finish fails too
+        SEDAXMLValidatingOutputStream failingVos = new SEDAXMLValidatingOutputStream(null, null, false);
+        try {
+            failingVos.write(OK_MANIFEST.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ignored) {
+            // the validator may already have failed
+        }
+        assertThatThrownBy(failingVos::finish).isInstanceOf(SEDALibException.class)
+                .hasMessageContaining("Erreur inattendue de validation");
+    }
+
+    @Test
+    void testValidatingOutputStreamErrorContext() throws Exception {
+        // Given
+        SEDAXMLValidator validator = new SEDAXMLValidator();
+        Schema xsdSchema = validator.getSchemaFromXSDFile(write("schema.xsd", XSD).toString());
+        Schema rngSchema = validator.getSchemaFromRNGFile(write("schema.rng", RNG).toString());
+        StringBuilder manifest = new StringBuilder("<Root>\n");
+        for (int i = 0; i < 2000; i++)
+            manifest.append("  <ArchiveUnit id=\"AU").append(i).append("\">\n    <Title>Titre</Title>\n  </ArchiveUnit>\n");
+        manifest.append("  <ArchiveUnit id=\"AUKO\">\n    <Bad/>\n  </ArchiveUnit>\n");
+        for (int i = 0; i < 2000; i++)
+            manifest.append("  <ArchiveUnit id=\"AUEND").append(i).append("\">\n    <Title>Titre</Title>\n  </ArchiveUnit>\n");
+        manifest.append("</Root>");
+        byte[] bytes = manifest.toString().getBytes(StandardCharsets.UTF_8);
+
+        // When validated while written with a RNG schema, Then the error names the line and the failing ArchiveUnit
+        SEDAXMLValidatingOutputStream rngVos = new SEDAXMLValidatingOutputStream(null, rngSchema, true);
+        try {
+            rngVos.write(bytes);
+        } catch (IOException ignored) {
+            // the error is thrown by finish
+        }
+        assertThatThrownBy(rngVos::finish).isInstanceOf(SEDALibException.class)
+                .hasMessageContaining("Contexte de l'erreur: <ArchiveUnit id=\"AUKO\">")
+                .hasMessageContaining("ligne:     <Bad/>");
+
+        // When validated while written with a XSD schema, Then the error names the same line and ArchiveUnit
+        SEDAXMLValidatingOutputStream xsdVos = new SEDAXMLValidatingOutputStream(null, xsdSchema, false);
+        try {
+            xsdVos.write(bytes);
+        } catch (IOException ignored) {
+            // the error is thrown by finish
+        }
+        assertThatThrownBy(xsdVos::finish).isInstanceOf(SEDALibException.class)
+                .hasMessageContaining("Contexte de l'erreur: <ArchiveUnit id=\"AUKO\">")
+                .hasMessageContaining("ligne:     <Bad/>");
+    }
+}